@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+
+/**
+ * SmsRow implementation reading the row where a sms content provider cursor is positioned.
+ * <p/>
+ * Column indexes are resolved once per cursor and the numeric values are read directly from the cursor. Address and
+ * body are copied into buffers reused for every row only the first time they are requested.
+ */
+class CursorSmsRow implements SmsRow {
+
+	private static final int INITIAL_BUFFER_SIZE = 160;
+
+	private final CharArrayBuffer addressBuffer = new CharArrayBuffer(INITIAL_BUFFER_SIZE);
+	private final CharArrayBuffer bodyBuffer = new CharArrayBuffer(INITIAL_BUFFER_SIZE);
+	private final BufferCharSequence address = new BufferCharSequence(addressBuffer);
+	private final BufferCharSequence body = new BufferCharSequence(bodyBuffer);
+	private Cursor cursor;
+	private int idColumnIndex;
+	private int addressColumnIndex;
+	private int dateColumnIndex;
+	private int dateSentColumnIndex;
+	private int bodyColumnIndex;
+	private int typeColumnIndex;
+	private int subIdColumnIndex;
+	private int threadIdColumnIndex;
+	private boolean addressCopied;
+	private boolean bodyCopied;
+
+	/**
+	 * Points this row to the row where the cursor passed as parameter is positioned.
+	 */
+	void moveTo(Cursor cursor) {
+		if (this.cursor != cursor) {
+			this.cursor = cursor;
+			idColumnIndex = cursor.getColumnIndex(SmsRowReader.ID_COLUMN_NAME);
+			addressColumnIndex = cursor.getColumnIndex(SmsRowReader.ADDRESS_COLUMN_NAME);
+			dateColumnIndex = cursor.getColumnIndex(SmsRowReader.DATE_COLUMN_NAME);
+			dateSentColumnIndex = cursor.getColumnIndex(SmsRowReader.DATE_SENT_COLUMN_NAME);
+			bodyColumnIndex = cursor.getColumnIndex(SmsRowReader.BODY_COLUMN_NAME);
+			typeColumnIndex = cursor.getColumnIndex(SmsRowReader.TYPE_COLUMN_NAME);
+			subIdColumnIndex = cursor.getColumnIndex(SmsRowReader.SUB_ID_COLUMN_NAME);
+			threadIdColumnIndex = cursor.getColumnIndex(SmsRowReader.THREAD_ID_COLUMN_NAME);
+		}
+		addressCopied = false;
+		bodyCopied = false;
+	}
+
+	/**
+	 * Releases the cursor once the rows have been read.
+	 */
+	void clear() {
+		cursor = null;
+	}
+
+	@Override
+	public int getId() {
+		return cursor.getInt(idColumnIndex);
+	}
+
+	@Override
+	public long getDate() {
+		return cursor.getLong(dateColumnIndex);
+	}
+
+	@Override
+	public long getDateSent() {
+		if (dateSentColumnIndex == -1 || cursor.isNull(dateSentColumnIndex)) {
+			return 0;
+		}
+		return cursor.getLong(dateSentColumnIndex);
+	}
+
+	@Override
+	public int getType() {
+		return cursor.getInt(typeColumnIndex);
+	}
+
+	@Override
+	public int getSubscriptionId() {
+		if (subIdColumnIndex == -1 || cursor.isNull(subIdColumnIndex)) {
+			return Sms.NO_SUBSCRIPTION;
+		}
+		return cursor.getInt(subIdColumnIndex);
+	}
+
+	@Override
+	public long getThreadId() {
+		if (threadIdColumnIndex == -1 || cursor.isNull(threadIdColumnIndex)) {
+			return Sms.NO_THREAD;
+		}
+		return cursor.getLong(threadIdColumnIndex);
+	}
+
+	@Override
+	public CharSequence getAddress() {
+		if (!addressCopied) {
+			copyAddressTo(addressBuffer);
+			addressCopied = true;
+		}
+		return address;
+	}
+
+	@Override
+	public CharSequence getBody() {
+		if (!bodyCopied) {
+			copyBodyTo(bodyBuffer);
+			bodyCopied = true;
+		}
+		return body;
+	}
+
+	@Override
+	public void copyAddressTo(CharArrayBuffer buffer) {
+		cursor.copyStringToBuffer(addressColumnIndex, buffer);
+	}
+
+	@Override
+	public void copyBodyTo(CharArrayBuffer buffer) {
+		cursor.copyStringToBuffer(bodyColumnIndex, buffer);
+	}
+
+	/**
+	 * CharSequence backed by the chars copied into a CharArrayBuffer.
+	 */
+	private static class BufferCharSequence implements CharSequence {
+
+		private final CharArrayBuffer buffer;
+
+		BufferCharSequence(CharArrayBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int length() {
+			return buffer.sizeCopied;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= buffer.sizeCopied) {
+				throw new IndexOutOfBoundsException("Invalid index: " + index);
+			}
+			return buffer.data[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || end > buffer.sizeCopied || start > end) {
+				throw new IndexOutOfBoundsException("Invalid range: " + start + ", " + end);
+			}
+			return new String(buffer.data, start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(buffer.data, 0, buffer.sizeCopied);
+		}
+	}
+}
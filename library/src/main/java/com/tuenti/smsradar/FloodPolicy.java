@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Strategies applied by SmsRadar when a sender sends more sms than the configured limit inside the flood window.
+ * Only received sms are counted, the sms sent by the user are never throttled nor coalesced.
+ * <p/>
+ * NONE only detects the flooding senders, which are available using SmsRadar getHeavyHitters method.
+ * THROTTLE stops notifying SmsListener and SmsSubscribers the sms of the flooding sender until its rate goes below
+ * the limit. Throttled sms are still available using SmsRadar getRecentSms methods.
+ * COALESCE replaces the sms of the flooding sender waiting to be delivered with the new one, so SmsListener is
+ * notified only with the last sms of the sender received while it was busy. The replaced sms are dropped: they are
+ * not notified to SmsListener, SmsThreadListener nor SmsSubscribers and are only available using SmsRadar
+ * getRecentSms methods.
+ */
+public enum FloodPolicy {
+
+	NONE,
+	THROTTLE,
+	COALESCE
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * SmsPriorityClassifier implementation which delivers using the high priority lane the sms containing some of the
+ * keywords passed as parameter. Keywords have to be registered using SmsRadar registerKeyword method to be searched
+ * in the sms body.
+ */
+public class KeywordClassifier implements SmsPriorityClassifier {
+
+	private final Set<String> keywords = new HashSet<String>();
+
+	/**
+	 * @param keywords which make a sms high priority, compared ignoring case
+	 */
+	public KeywordClassifier(String... keywords) {
+		if (keywords == null || keywords.length == 0) {
+			throw new IllegalArgumentException("Keywords param can't be empty");
+		}
+		for (String keyword : keywords) {
+			this.keywords.add(keyword.toLowerCase(Locale.US));
+		}
+	}
+
+	@Override
+	public boolean isHighPriority(Sms sms) {
+		for (SmsKeywordMatch keywordMatch : sms.getKeywordMatches()) {
+			if (keywords.contains(keywordMatch.getKeyword().toLowerCase(Locale.US))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
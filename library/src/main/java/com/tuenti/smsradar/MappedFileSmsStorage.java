@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * SmsStorage implementation based on a small memory mapped file which can be shared by different processes, for
+ * example when the SmsRadar service is declared in its own process and the application reads the sms intercepted
+ * from the main one.
+ * <p/>
+ * Every update takes an exclusive file lock, stores the sms id only if it's greater than the stored one and
+ * increments a generation counter. Reads are served from a copy cached in memory which is reloaded, taking a shared
+ * file lock, only if the generation counter stored in the file has changed.
+ * <p/>
+ * File locks are held by the process, so only one instance per file has to be created in every process. If the file
+ * can't be locked, for example once the storage has been closed, the file is not updated and reads are served from
+ * the copy cached in memory, never touching the mapped file without holding its lock.
+ */
+class MappedFileSmsStorage implements SmsStorage {
+
+	static final int MAX_SUBSCRIPTIONS = 32;
+
+	private static final int MAGIC = 0x534d5352;
+	private static final int VERSION = 1;
+	private static final int DEFAULT_SMS_PARSED_VALUE = -1;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int GENERATION_OFFSET = 8;
+	private static final int LAST_SMS_PARSED_OFFSET = 16;
+	private static final int SUBSCRIPTION_COUNT_OFFSET = 20;
+	private static final int SUBSCRIPTIONS_OFFSET = 24;
+	private static final int SUBSCRIPTION_ENTRY_SIZE = 8;
+	private static final int FILE_SIZE = SUBSCRIPTIONS_OFFSET + MAX_SUBSCRIPTIONS * SUBSCRIPTION_ENTRY_SIZE;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	private long cachedGeneration = -1;
+	private int cachedLastSmsParsed = DEFAULT_SMS_PARSED_VALUE;
+	private int cachedSubscriptionCount;
+	private final int[] cachedSubscriptionIds = new int[MAX_SUBSCRIPTIONS];
+	private final int[] cachedSubscriptionLastSmsParsed = new int[MAX_SUBSCRIPTIONS];
+
+	MappedFileSmsStorage(File storageFile) throws IOException {
+		if (storageFile == null) {
+			throw new IllegalArgumentException("File param can't be null");
+		}
+		this.file = new RandomAccessFile(storageFile, "rw");
+		this.channel = file.getChannel();
+		FileLock lock = channel.lock();
+		try {
+			boolean initialized = file.length() >= FILE_SIZE;
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+			if (!initialized || buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+				initializeFile();
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public synchronized void updateLastSmsIntercepted(int smsId) {
+		FileLock lock = lock(false);
+		if (lock == null) {
+			return;
+		}
+		try {
+			if (smsId > buffer.getInt(LAST_SMS_PARSED_OFFSET)) {
+				buffer.putInt(LAST_SMS_PARSED_OFFSET, smsId);
+				commit();
+			}
+		} finally {
+			release(lock);
+		}
+	}
+
+	@Override
+	public synchronized int getLastSmsIntercepted() {
+		refreshCache();
+		return cachedLastSmsParsed;
+	}
+
+	@Override
+	public synchronized boolean isFirstSmsIntercepted() {
+		return getLastSmsIntercepted() == DEFAULT_SMS_PARSED_VALUE;
+	}
+
+	@Override
+	public synchronized void updateLastSmsIntercepted(int subscriptionId, int smsId) {
+		FileLock lock = lock(false);
+		if (lock == null) {
+			return;
+		}
+		try {
+			int entryOffset = getOrCreateSubscriptionEntry(subscriptionId);
+			boolean updated = false;
+			if (smsId > buffer.getInt(entryOffset + 4)) {
+				buffer.putInt(entryOffset + 4, smsId);
+				updated = true;
+			}
+			if (smsId > buffer.getInt(LAST_SMS_PARSED_OFFSET)) {
+				buffer.putInt(LAST_SMS_PARSED_OFFSET, smsId);
+				updated = true;
+			}
+			if (updated) {
+				commit();
+			}
+		} finally {
+			release(lock);
+		}
+	}
+
+	@Override
+	public synchronized int getLastSmsIntercepted(int subscriptionId) {
+		refreshCache();
+		for (int i = 0; i < cachedSubscriptionCount; i++) {
+			if (cachedSubscriptionIds[i] == subscriptionId) {
+				return cachedSubscriptionLastSmsParsed[i];
+			}
+		}
+		return cachedLastSmsParsed;
+	}
+
+	@Override
+	public synchronized boolean isFirstSmsIntercepted(int subscriptionId) {
+		return getLastSmsIntercepted(subscriptionId) == DEFAULT_SMS_PARSED_VALUE;
+	}
+
+	/**
+	 * @return the generation counter stored in the file. Incremented every time the file is updated.
+	 */
+	synchronized long getGeneration() {
+		return buffer.getLong(GENERATION_OFFSET);
+	}
+
+	synchronized void close() throws IOException {
+		file.close();
+	}
+
+	private void initializeFile() {
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+		buffer.putInt(VERSION_OFFSET, VERSION);
+		buffer.putLong(GENERATION_OFFSET, 0);
+		buffer.putInt(LAST_SMS_PARSED_OFFSET, DEFAULT_SMS_PARSED_VALUE);
+		buffer.putInt(SUBSCRIPTION_COUNT_OFFSET, 0);
+		buffer.force();
+	}
+
+	private void refreshCache() {
+		if (buffer.getLong(GENERATION_OFFSET) == cachedGeneration) {
+			return;
+		}
+		FileLock lock = lock(true);
+		if (lock == null) {
+			return;
+		}
+		try {
+			cachedGeneration = buffer.getLong(GENERATION_OFFSET);
+			cachedLastSmsParsed = buffer.getInt(LAST_SMS_PARSED_OFFSET);
+			cachedSubscriptionCount = buffer.getInt(SUBSCRIPTION_COUNT_OFFSET);
+			for (int i = 0; i < cachedSubscriptionCount; i++) {
+				int entryOffset = SUBSCRIPTIONS_OFFSET + i * SUBSCRIPTION_ENTRY_SIZE;
+				cachedSubscriptionIds[i] = buffer.getInt(entryOffset);
+				cachedSubscriptionLastSmsParsed[i] = buffer.getInt(entryOffset + 4);
+			}
+		} finally {
+			release(lock);
+		}
+	}
+
+	/**
+	 * Returns the offset of the entry used by a subscription. New entries are created without sms id. When every
+	 * entry is used the one with the lowest sms id, the subscription not used for longer, is reused.
+	 */
+	private int getOrCreateSubscriptionEntry(int subscriptionId) {
+		int subscriptionCount = buffer.getInt(SUBSCRIPTION_COUNT_OFFSET);
+		int oldestEntryOffset = SUBSCRIPTIONS_OFFSET;
+		for (int i = 0; i < subscriptionCount; i++) {
+			int entryOffset = SUBSCRIPTIONS_OFFSET + i * SUBSCRIPTION_ENTRY_SIZE;
+			if (buffer.getInt(entryOffset) == subscriptionId) {
+				return entryOffset;
+			}
+			if (buffer.getInt(entryOffset + 4) < buffer.getInt(oldestEntryOffset + 4)) {
+				oldestEntryOffset = entryOffset;
+			}
+		}
+		int entryOffset = oldestEntryOffset;
+		if (subscriptionCount < MAX_SUBSCRIPTIONS) {
+			entryOffset = SUBSCRIPTIONS_OFFSET + subscriptionCount * SUBSCRIPTION_ENTRY_SIZE;
+			buffer.putInt(SUBSCRIPTION_COUNT_OFFSET, subscriptionCount + 1);
+		}
+		buffer.putInt(entryOffset, subscriptionId);
+		buffer.putInt(entryOffset + 4, DEFAULT_SMS_PARSED_VALUE);
+		return entryOffset;
+	}
+
+	private void commit() {
+		SmsTracer smsTracer = SmsRadar.smsTracer;
+		smsTracer.begin(SmsTraceStage.STORAGE_COMMIT);
+		try {
+			buffer.putLong(GENERATION_OFFSET, buffer.getLong(GENERATION_OFFSET) + 1);
+			buffer.force();
+		} finally {
+			smsTracer.end(SmsTraceStage.STORAGE_COMMIT);
+		}
+	}
+
+	/**
+	 * @return the file lock or null if the file can't be locked.
+	 */
+	private FileLock lock(boolean shared) {
+		try {
+			return channel.lock(0, FILE_SIZE, shared);
+		} catch (IOException e) {
+			return null;
+		} catch (OverlappingFileLockException e) {
+			return null;
+		}
+	}
+
+	private void release(FileLock lock) {
+		try {
+			lock.release();
+		} catch (IOException e) {
+			//The lock is released anyway when the file is closed
+		}
+	}
+}
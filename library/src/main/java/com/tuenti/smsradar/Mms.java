@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.List;
+
+/**
+ * Represents the headers of a mms stored in Android mms content provider.
+ * <p/>
+ * Only the values needed to notify the mms are read when the mms is intercepted. The content of every part is
+ * loaded on demand using SmsRadar openMmsPart or getMmsPartText methods, so big attachments are not read until
+ * they are needed.
+ */
+public class Mms {
+
+	private final long id;
+	private final long threadId;
+	private final String address;
+	private final long date;
+	private final String subject;
+	private final SmsType type;
+	private final List<MmsPart> parts;
+
+	Mms(long id, long threadId, String address, long date, String subject, SmsType type, List<MmsPart> parts) {
+		this.id = id;
+		this.threadId = threadId;
+		this.address = address;
+		this.date = date;
+		this.subject = subject;
+		this.type = type;
+		this.parts = parts;
+	}
+
+	/**
+	 * @return _id of the mms in the mms content provider.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return thread_id of the conversation the mms belongs to.
+	 */
+	public long getThreadId() {
+		return threadId;
+	}
+
+	/**
+	 * @return sender address of the received mms or first recipient address of the sent mms. Can be null.
+	 */
+	public String getAddress() {
+		return address;
+	}
+
+	/**
+	 * @return mms date in milliseconds.
+	 */
+	public long getDate() {
+		return date;
+	}
+
+	/**
+	 * @return mms subject or null if the mms has no subject.
+	 */
+	public String getSubject() {
+		return subject;
+	}
+
+	/**
+	 * @return RECEIVED, SENT or the intermediate state of an outgoing mms, like OUTBOX or FAILED.
+	 */
+	public SmsType getType() {
+		return type;
+	}
+
+	/**
+	 * @return headers of the mms parts in the order they are stored. The content is not loaded.
+	 */
+	public List<MmsPart> getParts() {
+		return parts;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof Mms)) return false;
+
+		Mms mms = (Mms) o;
+
+		return id == mms.id;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (id ^ (id >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return "Mms{" +
+				"id=" + id +
+				", threadId=" + threadId +
+				", address='" + address + '\'' +
+				", date=" + date +
+				", subject='" + subject + '\'' +
+				", type=" + type +
+				", parts=" + parts +
+				'}';
+	}
+}
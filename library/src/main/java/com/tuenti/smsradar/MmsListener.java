@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * This interface can be implemented by the SmsListener used to initialize SmsRadar to be notified when a mms is
+ * received or sent.
+ * <p/>
+ * The mms notified only contain the headers of the mms and its parts. The content of the parts can be loaded on
+ * demand using SmsRadar openMmsPart or getMmsPartText methods.
+ */
+public interface MmsListener {
+
+	/**
+	 * Invoked when a received mms has been downloaded.
+	 *
+	 * @param mms received.
+	 */
+	public void onMmsReceived(Mms mms);
+
+	/**
+	 * Invoked when an outgoing mms is found, even if it has not been sent yet. Check Mms getType to know its state.
+	 *
+	 * @param mms sent.
+	 */
+	public void onMmsSent(Mms mms);
+
+}
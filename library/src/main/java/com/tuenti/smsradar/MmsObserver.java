@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.ContentResolver;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+
+/**
+ * ContentObserver created to intercept the mms stored in the mms content provider and notify them to the SmsListener
+ * if it implements MmsListener.
+ * <p/>
+ * The mms newer than the last one intercepted are read incrementally using the _id column as watermark, which is
+ * stored in its own shared preferences. The first time the observer is used the watermark is initialized with the
+ * newest mms so only the mms stored from then on are notified.
+ * <p/>
+ * Drafts and the notifications of received mms not downloaded yet are ignored. A received mms is notified once it has
+ * been downloaded and an outgoing mms as soon as it's stored, even if it's still in the outbox.
+ * <p/>
+ * Only the mms headers, the address and the part headers are read before notifying the mms. The content of the parts
+ * is loaded on demand using MmsPartLoader.
+ * <p/>
+ * The mms content provider is read and the watermark is stored from the thread of the Handler used to create the
+ * observer, which shouldn't be the main thread because the address and the parts of every mms are queried. The
+ * MmsListener is notified from the thread of the listener Handler.
+ */
+class MmsObserver extends ContentObserver {
+
+	static final Uri MMS_URI = Uri.parse("content://mms");
+	static final String LAST_MMS_PARSED = "last_mms_parsed";
+	static final String ID_COLUMN_NAME = "_id";
+	static final String THREAD_ID_COLUMN_NAME = "thread_id";
+	static final String DATE_COLUMN_NAME = "date";
+	static final String SUBJECT_COLUMN_NAME = "sub";
+	static final String MESSAGE_BOX_COLUMN_NAME = "msg_box";
+	static final String MESSAGE_TYPE_COLUMN_NAME = "m_type";
+	static final String ADDRESS_COLUMN_NAME = "address";
+	static final String ADDRESS_TYPE_COLUMN_NAME = "type";
+	static final int MESSAGE_BOX_DRAFTS = 3;
+	static final int MESSAGE_TYPE_NOTIFICATION_IND = 130;
+	static final int ADDRESS_TYPE_FROM = 137;
+	static final int ADDRESS_TYPE_TO = 151;
+
+	private static final long NO_MMS_PARSED = -1;
+	private static final long NO_MMS = 0;
+	private static final long MILLIS_PER_SECOND = 1000;
+	private static final String MMS_PATH = "content://mms/";
+	private static final String ADDRESS_PATH = "/addr";
+	private static final String[] ID_PROJECTION = {ID_COLUMN_NAME};
+	private static final String[] MMS_PROJECTION = {ID_COLUMN_NAME, THREAD_ID_COLUMN_NAME, DATE_COLUMN_NAME,
+			SUBJECT_COLUMN_NAME, MESSAGE_BOX_COLUMN_NAME};
+	private static final String[] ADDRESS_PROJECTION = {ADDRESS_COLUMN_NAME};
+	private static final String NEW_MMS_SELECTION = MESSAGE_BOX_COLUMN_NAME + " != ? AND " + MESSAGE_TYPE_COLUMN_NAME
+			+ " != ?";
+	private static final String[] NEW_MMS_SELECTION_ARGS = {String.valueOf(MESSAGE_BOX_DRAFTS),
+			String.valueOf(MESSAGE_TYPE_NOTIFICATION_IND)};
+	private static final String ADDRESS_TYPE_SELECTION = ADDRESS_TYPE_COLUMN_NAME + " = ?";
+	private static final int NEWEST_MMS_LIMIT = 1;
+
+	private final Handler listenerHandler;
+	private final ContentResolver contentResolver;
+	private final SmsQueryPager smsQueryPager;
+	private final SharedPreferences preferences;
+	private final MmsPartLoader mmsPartLoader;
+	private long lastMmsIdParsed = NO_MMS_PARSED;
+
+	MmsObserver(Handler handler, Handler listenerHandler, ContentResolver contentResolver,
+			SmsQueryPager smsQueryPager, SharedPreferences preferences) {
+		super(handler);
+		if (listenerHandler == null) {
+			throw new IllegalArgumentException("Handler param can't be null");
+		}
+		if (preferences == null) {
+			throw new IllegalArgumentException("SharedPreferences param can't be null");
+		}
+		this.listenerHandler = listenerHandler;
+		this.contentResolver = contentResolver;
+		this.smsQueryPager = smsQueryPager;
+		this.preferences = preferences;
+		this.mmsPartLoader = new MmsPartLoader(contentResolver);
+	}
+
+	@Override
+	public boolean deliverSelfNotifications() {
+		return true;
+	}
+
+	@Override
+	public void onChange(boolean selfChange) {
+		super.onChange(selfChange);
+		interceptNewMms();
+	}
+
+	/**
+	 * @return id of the last mms intercepted, initializing it with the newest mms the first time.
+	 */
+	synchronized long getLastMmsIdParsed() {
+		if (lastMmsIdParsed == NO_MMS_PARSED) {
+			lastMmsIdParsed = preferences.getLong(LAST_MMS_PARSED, NO_MMS_PARSED);
+			if (lastMmsIdParsed == NO_MMS_PARSED) {
+				updateLastMmsIdParsed(queryNewestMmsId());
+			}
+		}
+		return lastMmsIdParsed;
+	}
+
+	/**
+	 * Notifies every mms newer than the last mms intercepted. The mms are skipped without reading their headers if
+	 * the SmsListener doesn't implement MmsListener.
+	 *
+	 * @return number of mms notified
+	 */
+	int interceptNewMms() {
+		final MmsListener mmsListener = getMmsListener();
+		final List<Mms> mmsIntercepted = new ArrayList<Mms>();
+		final long[] lastMmsId = {getLastMmsIdParsed()};
+		SmsTracer smsTracer = SmsRadar.smsTracer;
+		smsTracer.begin(SmsTraceStage.PROVIDER_QUERY);
+		try {
+			smsQueryPager.forEachRowAfter(MMS_URI, MMS_PROJECTION, NEW_MMS_SELECTION, NEW_MMS_SELECTION_ARGS,
+					lastMmsId[0], new SmsQueryPager.RowCallback() {
+						@Override
+						public boolean onRow(Cursor cursor) {
+							lastMmsId[0] = cursor.getLong(cursor.getColumnIndex(ID_COLUMN_NAME));
+							if (mmsListener != null) {
+								mmsIntercepted.add(readMms(cursor));
+							}
+							return true;
+						}
+					});
+		} finally {
+			smsTracer.end(SmsTraceStage.PROVIDER_QUERY);
+		}
+		synchronized (this) {
+			if (lastMmsId[0] > lastMmsIdParsed) {
+				updateLastMmsIdParsed(lastMmsId[0]);
+			}
+		}
+		for (Mms mms : mmsIntercepted) {
+			notifyMmsListener(mmsListener, mms);
+		}
+		return mmsIntercepted.size();
+	}
+
+	private MmsListener getMmsListener() {
+		SmsListener smsListener = SmsRadar.config.getSmsListener();
+		return smsListener instanceof MmsListener ? (MmsListener) smsListener : null;
+	}
+
+	private Mms readMms(Cursor cursor) {
+		long id = cursor.getLong(cursor.getColumnIndex(ID_COLUMN_NAME));
+		long threadId = cursor.getLong(cursor.getColumnIndex(THREAD_ID_COLUMN_NAME));
+		long date = cursor.getLong(cursor.getColumnIndex(DATE_COLUMN_NAME)) * MILLIS_PER_SECOND;
+		String subject = cursor.getString(cursor.getColumnIndex(SUBJECT_COLUMN_NAME));
+		SmsType type = getType(cursor.getInt(cursor.getColumnIndex(MESSAGE_BOX_COLUMN_NAME)));
+		String address = queryAddress(id, type == SmsType.RECEIVED ? ADDRESS_TYPE_FROM : ADDRESS_TYPE_TO);
+		return new Mms(id, threadId, address, date, subject, type, mmsPartLoader.loadParts(id));
+	}
+
+	private SmsType getType(int messageBox) {
+		try {
+			return SmsType.fromValue(messageBox);
+		} catch (IllegalArgumentException e) {
+			return SmsType.UNKNOWN;
+		}
+	}
+
+	private String queryAddress(long mmsId, int addressType) {
+		Cursor cursor = null;
+		try {
+			cursor = contentResolver.query(Uri.parse(MMS_PATH + mmsId + ADDRESS_PATH), ADDRESS_PROJECTION,
+					ADDRESS_TYPE_SELECTION, new String[] {String.valueOf(addressType)}, null);
+			return cursor != null && cursor.moveToFirst()
+					? cursor.getString(cursor.getColumnIndex(ADDRESS_COLUMN_NAME)) : null;
+		} finally {
+			close(cursor);
+		}
+	}
+
+	private long queryNewestMmsId() {
+		Cursor cursor = null;
+		try {
+			cursor = smsQueryPager.queryNewest(MMS_URI, ID_PROJECTION, NEWEST_MMS_LIMIT);
+			return cursor != null && cursor.moveToFirst()
+					? cursor.getLong(cursor.getColumnIndex(ID_COLUMN_NAME)) : NO_MMS;
+		} finally {
+			close(cursor);
+		}
+	}
+
+	private void updateLastMmsIdParsed(long mmsId) {
+		lastMmsIdParsed = mmsId;
+		SharedPreferences.Editor editor = preferences.edit();
+		editor.putLong(LAST_MMS_PARSED, mmsId);
+		editor.commit();
+	}
+
+	private void notifyMmsListener(final MmsListener mmsListener, final Mms mms) {
+		listenerHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (SmsType.RECEIVED == mms.getType()) {
+					mmsListener.onMmsReceived(mms);
+				} else {
+					mmsListener.onMmsSent(mms);
+				}
+			}
+		});
+	}
+
+	private void close(Cursor cursor) {
+		if (cursor != null) {
+			cursor.close();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Represents the headers of a mms part: the text, the images or any other attachment sent in a mms.
+ * <p/>
+ * The content is not kept in memory. It's streamed from the mms content provider using SmsRadar openMmsPart method
+ * or read as text using SmsRadar getMmsPartText method.
+ */
+public class MmsPart {
+
+	private static final String TEXT_CONTENT_TYPE_PREFIX = "text/";
+
+	private final long id;
+	private final long mmsId;
+	private final String contentType;
+	private final String name;
+	private final int charset;
+	private final boolean storedInFile;
+
+	MmsPart(long id, long mmsId, String contentType, String name, int charset, boolean storedInFile) {
+		this.id = id;
+		this.mmsId = mmsId;
+		this.contentType = contentType;
+		this.name = name;
+		this.charset = charset;
+		this.storedInFile = storedInFile;
+	}
+
+	/**
+	 * @return _id of the part in the mms content provider.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	public long getMmsId() {
+		return mmsId;
+	}
+
+	/**
+	 * @return MIME type of the part, like text/plain, image/jpeg or application/smil.
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return file name of the part or null if the sender didn't provide it.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public boolean isText() {
+		return contentType != null && contentType.startsWith(TEXT_CONTENT_TYPE_PREFIX);
+	}
+
+	/**
+	 * @return IANA MIBenum of the charset used by text parts or 0 if unknown.
+	 */
+	int getCharset() {
+		return charset;
+	}
+
+	/**
+	 * @return true if the content is stored in a file instead of the text column of the part.
+	 */
+	boolean isStoredInFile() {
+		return storedInFile;
+	}
+
+	@Override
+	public String toString() {
+		return "MmsPart{" +
+				"id=" + id +
+				", mmsId=" + mmsId +
+				", contentType='" + contentType + '\'' +
+				", name='" + name + '\'' +
+				'}';
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * Reads the parts of a mms from the mms content provider.
+ * <p/>
+ * The part headers are read without the text column, so the content of a part is only transferred when it's
+ * requested. Parts stored in a file, like images or videos, are streamed from the mms content provider without
+ * buffering them. Text parts are usually stored in the text column of the part row and are returned encoded using
+ * the part charset when they are opened as a stream.
+ */
+class MmsPartLoader {
+
+	static final Uri PART_URI = Uri.parse("content://mms/part");
+	static final String ID_COLUMN_NAME = "_id";
+	static final String CONTENT_TYPE_COLUMN_NAME = "ct";
+	static final String NAME_COLUMN_NAME = "name";
+	static final String CONTENT_LOCATION_COLUMN_NAME = "cl";
+	static final String CHARSET_COLUMN_NAME = "chset";
+	static final String DATA_COLUMN_NAME = "_data";
+	static final String TEXT_COLUMN_NAME = "text";
+
+	private static final String MMS_PATH = "content://mms/";
+	private static final String PART_PATH = "/part";
+	private static final String[] PART_PROJECTION = {ID_COLUMN_NAME, CONTENT_TYPE_COLUMN_NAME, NAME_COLUMN_NAME,
+			CONTENT_LOCATION_COLUMN_NAME, CHARSET_COLUMN_NAME, DATA_COLUMN_NAME};
+	private static final String[] TEXT_PROJECTION = {TEXT_COLUMN_NAME};
+	private static final String ID_SELECTION = ID_COLUMN_NAME + " = ?";
+	private static final String ID_ASC_ORDER = ID_COLUMN_NAME + " ASC";
+	private static final String DEFAULT_CHARSET_NAME = "UTF-8";
+	private static final int BUFFER_SIZE = 4096;
+
+	private final ContentResolver contentResolver;
+
+	MmsPartLoader(ContentResolver contentResolver) {
+		this.contentResolver = contentResolver;
+	}
+
+	/**
+	 * @return headers of the parts of the mms passed as parameter sorted by _id.
+	 */
+	List<MmsPart> loadParts(long mmsId) {
+		Cursor cursor = null;
+		try {
+			cursor = contentResolver.query(Uri.parse(MMS_PATH + mmsId + PART_PATH), PART_PROJECTION, null, null,
+					ID_ASC_ORDER);
+			if (cursor == null) {
+				return Collections.emptyList();
+			}
+			List<MmsPart> parts = new ArrayList<MmsPart>(cursor.getCount());
+			while (cursor.moveToNext()) {
+				parts.add(readPart(cursor, mmsId));
+			}
+			return Collections.unmodifiableList(parts);
+		} finally {
+			close(cursor);
+		}
+	}
+
+	/**
+	 * Opens the content of a part. The stream returned has to be closed by the caller.
+	 *
+	 * @throws FileNotFoundException if the part doesn't exist anymore.
+	 */
+	InputStream openInputStream(MmsPart mmsPart) throws IOException {
+		if (!mmsPart.isStoredInFile()) {
+			return new ByteArrayInputStream(queryText(mmsPart).getBytes(getCharsetName(mmsPart.getCharset())));
+		}
+		InputStream inputStream = contentResolver.openInputStream(getPartUri(mmsPart));
+		if (inputStream == null) {
+			throw new FileNotFoundException("Mms part not found: " + mmsPart.getId());
+		}
+		return inputStream;
+	}
+
+	/**
+	 * Reads the content of a part as text decoded using the part charset.
+	 *
+	 * @throws FileNotFoundException if the part doesn't exist anymore.
+	 */
+	String loadText(MmsPart mmsPart) throws IOException {
+		if (!mmsPart.isStoredInFile()) {
+			return queryText(mmsPart);
+		}
+		InputStream inputStream = openInputStream(mmsPart);
+		try {
+			return readText(inputStream, getCharsetName(mmsPart.getCharset()));
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	static String readText(InputStream inputStream, String charsetName) throws IOException {
+		Reader reader = new InputStreamReader(inputStream, charsetName);
+		StringBuilder text = new StringBuilder();
+		char[] buffer = new char[BUFFER_SIZE];
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			text.append(buffer, 0, read);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * @param mibEnum IANA MIBenum stored in the chset column
+	 * @return charset name or UTF-8 if the charset is unknown
+	 */
+	static String getCharsetName(int mibEnum) {
+		switch (mibEnum) {
+			case 3:
+				return "US-ASCII";
+			case 4:
+				return "ISO-8859-1";
+			case 1013:
+				return "UTF-16BE";
+			case 1014:
+				return "UTF-16LE";
+			case 1015:
+				return "UTF-16";
+			default:
+				return DEFAULT_CHARSET_NAME;
+		}
+	}
+
+	private MmsPart readPart(Cursor cursor, long mmsId) {
+		long id = cursor.getLong(cursor.getColumnIndex(ID_COLUMN_NAME));
+		String contentType = cursor.getString(cursor.getColumnIndex(CONTENT_TYPE_COLUMN_NAME));
+		String name = cursor.getString(cursor.getColumnIndex(NAME_COLUMN_NAME));
+		if (name == null) {
+			name = cursor.getString(cursor.getColumnIndex(CONTENT_LOCATION_COLUMN_NAME));
+		}
+		int charset = cursor.getInt(cursor.getColumnIndex(CHARSET_COLUMN_NAME));
+		boolean storedInFile = cursor.getString(cursor.getColumnIndex(DATA_COLUMN_NAME)) != null;
+		return new MmsPart(id, mmsId, contentType, name, charset, storedInFile);
+	}
+
+	private String queryText(MmsPart mmsPart) throws FileNotFoundException {
+		Cursor cursor = null;
+		try {
+			cursor = contentResolver.query(PART_URI, TEXT_PROJECTION, ID_SELECTION,
+					new String[] {String.valueOf(mmsPart.getId())}, null);
+			if (cursor == null || !cursor.moveToFirst()) {
+				throw new FileNotFoundException("Mms part not found: " + mmsPart.getId());
+			}
+			String text = cursor.getString(cursor.getColumnIndex(TEXT_COLUMN_NAME));
+			return text != null ? text : "";
+		} finally {
+			close(cursor);
+		}
+	}
+
+	private Uri getPartUri(MmsPart mmsPart) {
+		return Uri.withAppendedPath(PART_URI, String.valueOf(mmsPart.getId()));
+	}
+
+	private void close(Cursor cursor) {
+		if (cursor != null) {
+			cursor.close();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Strategies applied by SmsRadar publisher when a subscriber buffer is full because the subscriber has not requested
+ * more sms yet.
+ * <p/>
+ * DROP_OLDEST discards the oldest buffered sms to make room for the new one.
+ * DROP_NEWEST discards the new sms and keeps the buffer as it was.
+ * COALESCE_BY_ADDRESS replaces the buffered sms with the same normalized address with the new one. If there is no
+ * buffered sms with the same address the oldest one is discarded.
+ * BLOCK blocks the thread that intercepted the sms until the subscriber requests more sms or cancels the
+ * subscription. Use it only if the subscriber requests sms from a different thread. SmsRadarService delivers the sms
+ * from the main thread, which is never blocked: the subscription is cancelled and the subscriber is notified with an
+ * IllegalStateException instead.
+ */
+public enum OverflowPolicy {
+
+	DROP_OLDEST,
+	DROP_NEWEST,
+	COALESCE_BY_ADDRESS,
+	BLOCK
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded in memory cache of the last sms intercepted by SmsRadar.
+ * <p/>
+ * Sms are indexed by interception order and by normalized address to be able to answer the most common queries
+ * without using the sms content provider. When the cache is full the oldest sms is evicted from both indexes.
+ */
+class RecentSmsCache {
+
+	private final int capacity;
+	private final LinkedList<Sms> smsByTime = new LinkedList<Sms>();
+	private final Map<String, LinkedList<Sms>> smsByAddress = new HashMap<String, LinkedList<Sms>>();
+
+	RecentSmsCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity has to be greater than zero");
+		}
+		this.capacity = capacity;
+	}
+
+	synchronized void put(Sms sms) {
+		if (sms == null) {
+			return;
+		}
+		smsByTime.addLast(sms);
+		getOrCreateAddressIndex(sms.getNormalizedAddress()).addLast(sms);
+		if (smsByTime.size() > capacity) {
+			evict(smsByTime.removeFirst());
+		}
+	}
+
+	synchronized List<Sms> recent(int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Number of sms can't be negative");
+		}
+		List<Sms> result = new ArrayList<Sms>(Math.min(n, smsByTime.size()));
+		Iterator<Sms> iterator = smsByTime.descendingIterator();
+		while (iterator.hasNext() && result.size() < n) {
+			result.add(iterator.next());
+		}
+		return result;
+	}
+
+	synchronized List<Sms> byAddress(String address, long since) {
+		LinkedList<Sms> addressIndex = smsByAddress.get(SmsAddressPool.normalize(address));
+		if (addressIndex == null) {
+			return Collections.emptyList();
+		}
+		List<Sms> result = new ArrayList<Sms>();
+		Iterator<Sms> iterator = addressIndex.descendingIterator();
+		while (iterator.hasNext()) {
+			Sms sms = iterator.next();
+			if (sms.getTime() < since) {
+				break;
+			}
+			result.add(sms);
+		}
+		return result;
+	}
+
+	synchronized int size() {
+		return smsByTime.size();
+	}
+
+	synchronized void clear() {
+		smsByTime.clear();
+		smsByAddress.clear();
+	}
+
+	private LinkedList<Sms> getOrCreateAddressIndex(String address) {
+		LinkedList<Sms> addressIndex = smsByAddress.get(address);
+		if (addressIndex == null) {
+			addressIndex = new LinkedList<Sms>();
+			smsByAddress.put(address, addressIndex);
+		}
+		return addressIndex;
+	}
+
+	private void evict(Sms sms) {
+		LinkedList<Sms> addressIndex = smsByAddress.get(sms.getNormalizedAddress());
+		addressIndex.removeFirst();
+		if (addressIndex.isEmpty()) {
+			smsByAddress.remove(sms.getNormalizedAddress());
+		}
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * SmsHistoryStorage implementation based on a SQLite database created with SmsHistoryOpenHelper.
+ * <p/>
+ * The last sms intercepted for every subscription is kept in memory and written to the database with the sms stored.
+ * Everything written inside a batch is committed using only one transaction and the same prepared statements, so
+ * the sms stored and the last sms intercepted are always consistent. Writes outside a batch are committed
+ * immediately. If a transaction fails the data not written is kept in memory and written with the next commit.
+ * <p/>
+ * The last sms intercepted without subscription is stored using NO_SUBSCRIPTION as subscription id. Like
+ * SharedPreferencesSmsStorage, subscriptions without a stored value use the last sms intercepted from any
+ * subscription.
+ */
+class SQLiteSmsHistoryStorage implements SmsHistoryStorage {
+
+	private static final int DEFAULT_SMS_PARSED_VALUE = -1;
+	private static final String INSERT_SMS = "INSERT OR REPLACE INTO " + SmsHistoryOpenHelper.SMS_TABLE + " ("
+			+ SmsHistoryOpenHelper.ID_COLUMN + ", "
+			+ SmsHistoryOpenHelper.ADDRESS_COLUMN + ", "
+			+ SmsHistoryOpenHelper.NORMALIZED_ADDRESS_COLUMN + ", "
+			+ SmsHistoryOpenHelper.DATE_COLUMN + ", "
+			+ SmsHistoryOpenHelper.BODY_COLUMN + ", "
+			+ SmsHistoryOpenHelper.TYPE_COLUMN + ", "
+			+ SmsHistoryOpenHelper.SUB_ID_COLUMN + ", "
+			+ SmsHistoryOpenHelper.THREAD_ID_COLUMN + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String REPLACE_WATERMARK = "INSERT OR REPLACE INTO " + SmsHistoryOpenHelper.WATERMARK_TABLE
+			+ " (" + SmsHistoryOpenHelper.SUB_ID_COLUMN + ", " + SmsHistoryOpenHelper.LAST_SMS_ID_COLUMN
+			+ ") VALUES (?, ?)";
+	private static final String ADDRESS_SINCE_SELECTION = SmsHistoryOpenHelper.NORMALIZED_ADDRESS_COLUMN + " = ? AND "
+			+ SmsHistoryOpenHelper.DATE_COLUMN + " >= ?";
+	private static final String DATE_DESC_ORDER = SmsHistoryOpenHelper.DATE_COLUMN + " DESC";
+	private static final int ADDRESS_POOL_CAPACITY = 16;
+
+	private final SQLiteOpenHelper openHelper;
+	private final List<Sms> pendingSms = new ArrayList<Sms>();
+	private final Map<Integer, Integer> pendingWatermarks = new LinkedHashMap<Integer, Integer>();
+	private Map<Integer, Integer> watermarks;
+	private SQLiteStatement insertSmsStatement;
+	private SQLiteStatement replaceWatermarkStatement;
+	private int batchDepth;
+
+	SQLiteSmsHistoryStorage(SQLiteOpenHelper openHelper) {
+		if (openHelper == null) {
+			throw new IllegalArgumentException("SQLiteOpenHelper param can't be null");
+		}
+		this.openHelper = openHelper;
+	}
+
+	@Override
+	public synchronized void beginBatch() {
+		batchDepth++;
+	}
+
+	@Override
+	public synchronized void storeSms(Sms sms) {
+		pendingSms.add(sms);
+		commitIfNotInBatch();
+	}
+
+	@Override
+	public synchronized void endBatch() {
+		if (batchDepth > 0) {
+			batchDepth--;
+		}
+		commitIfNotInBatch();
+	}
+
+	@Override
+	public synchronized void updateLastSmsIntercepted(int smsId) {
+		updateWatermark(Sms.NO_SUBSCRIPTION, smsId);
+		commitIfNotInBatch();
+	}
+
+	@Override
+	public synchronized int getLastSmsIntercepted() {
+		Integer lastSmsIntercepted = getWatermarks().get(Sms.NO_SUBSCRIPTION);
+		return lastSmsIntercepted != null ? lastSmsIntercepted : DEFAULT_SMS_PARSED_VALUE;
+	}
+
+	@Override
+	public synchronized boolean isFirstSmsIntercepted() {
+		return getLastSmsIntercepted() == DEFAULT_SMS_PARSED_VALUE;
+	}
+
+	@Override
+	public synchronized void updateLastSmsIntercepted(int subscriptionId, int smsId) {
+		updateWatermark(subscriptionId, smsId);
+		if (smsId > getLastSmsIntercepted()) {
+			updateWatermark(Sms.NO_SUBSCRIPTION, smsId);
+		}
+		commitIfNotInBatch();
+	}
+
+	@Override
+	public synchronized int getLastSmsIntercepted(int subscriptionId) {
+		Integer lastSmsIntercepted = getWatermarks().get(subscriptionId);
+		return lastSmsIntercepted != null ? lastSmsIntercepted : getLastSmsIntercepted();
+	}
+
+	@Override
+	public synchronized boolean isFirstSmsIntercepted(int subscriptionId) {
+		return getLastSmsIntercepted(subscriptionId) == DEFAULT_SMS_PARSED_VALUE;
+	}
+
+	/**
+	 * Reads the sms stored with the normalized address passed as parameter. Sms not committed yet are not returned.
+	 *
+	 * @return sms sorted from the newest to the oldest one
+	 */
+	List<Sms> getSmsByAddress(String normalizedAddress, long since, int limit) {
+		SQLiteDatabase db = openHelper.getReadableDatabase();
+		String[] selectionArgs = {normalizedAddress, String.valueOf(since)};
+		Cursor cursor = db.query(SmsHistoryOpenHelper.SMS_TABLE, null, ADDRESS_SINCE_SELECTION, selectionArgs, null,
+				null, DATE_DESC_ORDER, String.valueOf(limit));
+		List<Sms> result = new ArrayList<Sms>();
+		if (cursor == null) {
+			return result;
+		}
+		try {
+			SmsRowReader smsRowReader = new SmsRowReader(new SmsAddressPool(ADDRESS_POOL_CAPACITY));
+			while (cursor.moveToNext()) {
+				result.add(smsRowReader.read(cursor));
+			}
+		} finally {
+			cursor.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Closes the database. Data not committed yet is discarded.
+	 */
+	synchronized void close() {
+		openHelper.close();
+	}
+
+	private void updateWatermark(int subscriptionId, int smsId) {
+		getWatermarks().put(subscriptionId, smsId);
+		pendingWatermarks.put(subscriptionId, smsId);
+	}
+
+	private Map<Integer, Integer> getWatermarks() {
+		if (watermarks == null) {
+			watermarks = readWatermarks();
+		}
+		return watermarks;
+	}
+
+	private Map<Integer, Integer> readWatermarks() {
+		Map<Integer, Integer> watermarks = new HashMap<Integer, Integer>();
+		Cursor cursor = openHelper.getReadableDatabase().query(SmsHistoryOpenHelper.WATERMARK_TABLE, null, null,
+				null, null, null, null, null);
+		if (cursor == null) {
+			return watermarks;
+		}
+		try {
+			int subIdColumnIndex = cursor.getColumnIndex(SmsHistoryOpenHelper.SUB_ID_COLUMN);
+			int lastSmsIdColumnIndex = cursor.getColumnIndex(SmsHistoryOpenHelper.LAST_SMS_ID_COLUMN);
+			while (cursor.moveToNext()) {
+				watermarks.put(cursor.getInt(subIdColumnIndex), cursor.getInt(lastSmsIdColumnIndex));
+			}
+		} finally {
+			cursor.close();
+		}
+		return watermarks;
+	}
+
+	private void commitIfNotInBatch() {
+		if (batchDepth == 0 && (!pendingSms.isEmpty() || !pendingWatermarks.isEmpty())) {
+			commit();
+		}
+	}
+
+	private void commit() {
+		SmsTracer smsTracer = SmsRadar.smsTracer;
+		smsTracer.begin(SmsTraceStage.STORAGE_COMMIT);
+		try {
+			SQLiteDatabase db = openHelper.getWritableDatabase();
+			db.beginTransaction();
+			try {
+				insertPendingSms(db);
+				replacePendingWatermarks(db);
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
+			pendingSms.clear();
+			pendingWatermarks.clear();
+		} catch (SQLiteException e) {
+			//The pending sms and watermarks are written again with the next commit
+		} finally {
+			smsTracer.end(SmsTraceStage.STORAGE_COMMIT);
+		}
+	}
+
+	private void insertPendingSms(SQLiteDatabase db) {
+		if (insertSmsStatement == null) {
+			insertSmsStatement = db.compileStatement(INSERT_SMS);
+		}
+		for (Sms sms : pendingSms) {
+			insertSmsStatement.clearBindings();
+			insertSmsStatement.bindLong(1, sms.getId());
+			bindString(insertSmsStatement, 2, sms.getAddress());
+			bindString(insertSmsStatement, 3, sms.getNormalizedAddress());
+			insertSmsStatement.bindLong(4, sms.getTime());
+			bindString(insertSmsStatement, 5, sms.getMsg());
+			insertSmsStatement.bindLong(6, sms.getType().getValue());
+			insertSmsStatement.bindLong(7, sms.getSubscriptionId());
+			bindThreadId(insertSmsStatement, 8, sms.getThreadId());
+			insertSmsStatement.executeInsert();
+		}
+	}
+
+	private void replacePendingWatermarks(SQLiteDatabase db) {
+		if (replaceWatermarkStatement == null) {
+			replaceWatermarkStatement = db.compileStatement(REPLACE_WATERMARK);
+		}
+		for (Map.Entry<Integer, Integer> watermark : pendingWatermarks.entrySet()) {
+			replaceWatermarkStatement.bindLong(1, watermark.getKey());
+			replaceWatermarkStatement.bindLong(2, watermark.getValue());
+			replaceWatermarkStatement.executeInsert();
+		}
+	}
+
+	private void bindThreadId(SQLiteStatement statement, int index, long threadId) {
+		if (threadId == Sms.NO_THREAD) {
+			statement.bindNull(index);
+		} else {
+			statement.bindLong(index, threadId);
+		}
+	}
+
+	private void bindString(SQLiteStatement statement, int index, String value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else {
+			statement.bindString(index, value);
+		}
+	}
+}
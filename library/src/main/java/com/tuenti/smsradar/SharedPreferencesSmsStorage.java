@@ -20,6 +20,10 @@ import android.content.SharedPreferences.Editor;
 
 /**
  * SmsStorage implementation based on shared preferences.
+ * <p/>
+ * The last sms intercepted for a subscription is stored using the subscription id as key suffix. Subscriptions
+ * without a stored value use the last sms intercepted from any subscription to avoid notifying old sms the first
+ * time a subscription is used.
  *
  * @author Pedro Vicente Gómez Sánchez <pgomez@tuenti.com>
  * @author Manuel Peinado <mpeinado@tuenti.com>
@@ -27,6 +31,7 @@ import android.content.SharedPreferences.Editor;
 class SharedPreferencesSmsStorage implements SmsStorage {
 
 	private static final String LAST_SMS_PARSED = "last_sms_parsed";
+	private static final String LAST_SMS_PARSED_BY_SUBSCRIPTION = "last_sms_parsed_";
 	private static final int DEFAULT_SMS_PARSED_VALUE = -1;
 
 	private SharedPreferences preferences;
@@ -42,7 +47,7 @@ class SharedPreferencesSmsStorage implements SmsStorage {
 	public void updateLastSmsIntercepted(int smsId) {
 		Editor editor = preferences.edit();
 		editor.putInt(LAST_SMS_PARSED, smsId);
-		editor.commit();
+		commit(editor);
 	}
 
 	@Override
@@ -54,4 +59,34 @@ class SharedPreferencesSmsStorage implements SmsStorage {
 	public boolean isFirstSmsIntercepted() {
 		return getLastSmsIntercepted() == DEFAULT_SMS_PARSED_VALUE;
 	}
+
+	@Override
+	public void updateLastSmsIntercepted(int subscriptionId, int smsId) {
+		Editor editor = preferences.edit();
+		editor.putInt(LAST_SMS_PARSED_BY_SUBSCRIPTION + subscriptionId, smsId);
+		if (smsId > getLastSmsIntercepted()) {
+			editor.putInt(LAST_SMS_PARSED, smsId);
+		}
+		commit(editor);
+	}
+
+	@Override
+	public int getLastSmsIntercepted(int subscriptionId) {
+		return preferences.getInt(LAST_SMS_PARSED_BY_SUBSCRIPTION + subscriptionId, getLastSmsIntercepted());
+	}
+
+	@Override
+	public boolean isFirstSmsIntercepted(int subscriptionId) {
+		return getLastSmsIntercepted(subscriptionId) == DEFAULT_SMS_PARSED_VALUE;
+	}
+
+	private void commit(Editor editor) {
+		SmsTracer smsTracer = SmsRadar.smsTracer;
+		smsTracer.begin(SmsTraceStage.STORAGE_COMMIT);
+		try {
+			editor.commit();
+		} finally {
+			smsTracer.end(SmsTraceStage.STORAGE_COMMIT);
+		}
+	}
 }
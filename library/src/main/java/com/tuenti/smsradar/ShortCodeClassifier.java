@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * SmsPriorityClassifier implementation which delivers using the high priority lane the sms sent by short codes,
+ * numeric addresses with a few digits usually used to send verification codes.
+ */
+public class ShortCodeClassifier implements SmsPriorityClassifier {
+
+	/**
+	 * Max number of digits of a short code used by default.
+	 */
+	public static final int DEFAULT_MAX_DIGITS = 6;
+
+	private final int maxDigits;
+
+	public ShortCodeClassifier() {
+		this(DEFAULT_MAX_DIGITS);
+	}
+
+	/**
+	 * @param maxDigits max number of digits of the addresses considered short codes
+	 */
+	public ShortCodeClassifier(int maxDigits) {
+		if (maxDigits <= 0) {
+			throw new IllegalArgumentException("Max digits has to be greater than zero");
+		}
+		this.maxDigits = maxDigits;
+	}
+
+	@Override
+	public boolean isHighPriority(Sms sms) {
+		String address = sms.getNormalizedAddress();
+		if (address == null || address.length() == 0 || address.length() > maxDigits) {
+			return false;
+		}
+		for (int i = 0; i < address.length(); i++) {
+			if (!Character.isDigit(address.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
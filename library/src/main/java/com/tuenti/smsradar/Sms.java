@@ -15,6 +15,9 @@
  */
 package com.tuenti.smsradar;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Represents a sms stored in Android sms Content Provider.
  * <p/>
@@ -27,27 +30,114 @@ package com.tuenti.smsradar;
  */
 public class Sms {
 
+	/**
+	 * Subscription id used when the device doesn't store the subscription the sms belongs to.
+	 */
+	public static final int NO_SUBSCRIPTION = -1;
+
+	/**
+	 * Id used when the sms has not been read from the sms content provider.
+	 */
+	public static final int NO_ID = -1;
+
+	/**
+	 * Thread id used when the sms content provider doesn't store the conversation the sms belongs to.
+	 */
+	public static final long NO_THREAD = -1;
+
+	private final int id;
+	private final long threadId;
 	private final String address;
+	private final String normalizedAddress;
 	private final String date;
 	private final String msg;
 	private final SmsType type;
+	private final int subscriptionId;
+	private final List<SmsKeywordMatch> keywordMatches;
+	private final boolean read;
 
 
 	public Sms(String address, String date, String msg, SmsType type) {
+		this(address, SmsAddressPool.normalize(address), date, msg, type, NO_SUBSCRIPTION);
+	}
+
+	Sms(String address, String normalizedAddress, String date, String msg, SmsType type, int subscriptionId) {
+		this(NO_ID, address, normalizedAddress, date, msg, type, subscriptionId);
+	}
+
+	Sms(int id, String address, String normalizedAddress, String date, String msg, SmsType type,
+			int subscriptionId) {
+		this(id, NO_THREAD, address, normalizedAddress, date, msg, type, subscriptionId);
+	}
+
+	Sms(int id, long threadId, String address, String normalizedAddress, String date, String msg, SmsType type,
+			int subscriptionId) {
+		this(id, threadId, address, normalizedAddress, date, msg, type, subscriptionId,
+				Collections.<SmsKeywordMatch>emptyList());
+	}
+
+	Sms(int id, long threadId, String address, String normalizedAddress, String date, String msg, SmsType type,
+			int subscriptionId, List<SmsKeywordMatch> keywordMatches) {
+		this(id, threadId, address, normalizedAddress, date, msg, type, subscriptionId, keywordMatches, false);
+	}
+
+	Sms(int id, long threadId, String address, String normalizedAddress, String date, String msg, SmsType type,
+			int subscriptionId, List<SmsKeywordMatch> keywordMatches, boolean read) {
+		this.id = id;
+		this.threadId = threadId;
 		this.address = address;
+		this.normalizedAddress = normalizedAddress;
 		this.date = date;
 		this.msg = msg;
 		this.type = type;
+		this.subscriptionId = subscriptionId;
+		this.keywordMatches = Collections.unmodifiableList(keywordMatches);
+		this.read = read;
+	}
+
+	/**
+	 * @return _id of the sms in the sms content provider or NO_ID if the sms has not been read from it. The id is not
+	 * used to compare sms.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return thread_id of the conversation the sms belongs to or NO_THREAD if it's unknown. The thread id is not used
+	 * to compare sms.
+	 */
+	public long getThreadId() {
+		return threadId;
 	}
 
 	public String getAddress() {
 		return address;
 	}
 
+	/**
+	 * @return address without formatting characters, with the international prefix as "+" or upper cased if the
+	 * sender is alphanumeric.
+	 */
+	public String getNormalizedAddress() {
+		return normalizedAddress;
+	}
+
 	public String getDate() {
 		return date;
 	}
 
+	/**
+	 * @return sms date in milliseconds or 0 if the date is not a number.
+	 */
+	long getTime() {
+		try {
+			return Long.parseLong(date);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
 	public String getMsg() {
 		return msg;
 	}
@@ -56,6 +146,34 @@ public class Sms {
 		return type;
 	}
 
+	/**
+	 * @return id of the SIM subscription used to send or receive the sms or NO_SUBSCRIPTION if the device doesn't
+	 * support multiple SIM cards.
+	 */
+	public int getSubscriptionId() {
+		return subscriptionId;
+	}
+
+	/**
+	 * @return occurrences of the keywords registered in SmsRadar found in the sms body.
+	 */
+	public List<SmsKeywordMatch> getKeywordMatches() {
+		return keywordMatches;
+	}
+
+	/**
+	 * @return true if the sms was already marked as read when it was read from the sms content provider. The read
+	 * flag is not used to compare sms.
+	 */
+	boolean isRead() {
+		return read;
+	}
+
+	Sms withKeywordMatches(List<SmsKeywordMatch> keywordMatches) {
+		return new Sms(id, threadId, address, normalizedAddress, date, msg, type, subscriptionId, keywordMatches,
+				read);
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -67,6 +185,7 @@ public class Sms {
 		if (date != null ? !date.equals(sms.date) : sms.date != null) return false;
 		if (msg != null ? !msg.equals(sms.msg) : sms.msg != null) return false;
 		if (type != sms.type) return false;
+		if (subscriptionId != sms.subscriptionId) return false;
 
 		return true;
 	}
@@ -77,16 +196,20 @@ public class Sms {
 		result = 31 * result + (date != null ? date.hashCode() : 0);
 		result = 31 * result + (msg != null ? msg.hashCode() : 0);
 		result = 31 * result + (type != null ? type.hashCode() : 0);
+		result = 31 * result + subscriptionId;
 		return result;
 	}
 
 	@Override
 	public String toString() {
 		return "Sms{" +
-				"address='" + address + '\'' +
+				"id=" + id +
+				", threadId=" + threadId +
+				", address='" + address + '\'' +
 				", date='" + date + '\'' +
 				", msg='" + msg + '\'' +
 				", type=" + type +
+				", subscriptionId=" + subscriptionId +
 				'}';
 	}
 }
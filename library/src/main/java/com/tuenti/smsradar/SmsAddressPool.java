@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Canonicalizes the sms addresses read from the sms content provider.
+ * <p/>
+ * The same senders tend to repeat once and again, so this pool keeps a bounded LRU cache of the last addresses seen.
+ * Repeated addresses share the same String instance and its normalized version is computed only once per distinct
+ * address.
+ * <p/>
+ * The normalized address removes the formatting characters used in phone numbers and translates the international
+ * "00" prefix into "+". Alphanumeric senders are upper cased. Country code is not added because it can't be known
+ * from the sms content provider information.
+ */
+class SmsAddressPool {
+
+	private static final String INTERNATIONAL_PREFIX = "00";
+	private static final char PLUS = '+';
+
+	private final Map<String, PooledAddress> addresses;
+
+	SmsAddressPool(final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity has to be greater than zero");
+		}
+		this.addresses = new LinkedHashMap<String, PooledAddress>(capacity, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PooledAddress> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	synchronized PooledAddress get(String address) {
+		if (address == null) {
+			return null;
+		}
+		PooledAddress pooledAddress = addresses.get(address);
+		if (pooledAddress == null) {
+			pooledAddress = new PooledAddress(address, normalize(address));
+			addresses.put(address, pooledAddress);
+		}
+		return pooledAddress;
+	}
+
+	synchronized int size() {
+		return addresses.size();
+	}
+
+	static String normalize(String address) {
+		if (address == null) {
+			return null;
+		}
+		StringBuilder normalized = new StringBuilder(address.length());
+		boolean alphanumeric = false;
+		for (int i = 0; i < address.length(); i++) {
+			char c = address.charAt(i);
+			if (Character.isDigit(c)) {
+				normalized.append(c);
+			} else if (c == PLUS && normalized.length() == 0) {
+				normalized.append(c);
+			} else if (Character.isLetter(c)) {
+				alphanumeric = true;
+				break;
+			}
+		}
+		if (alphanumeric) {
+			return address.trim().toUpperCase(Locale.US);
+		}
+		if (normalized.indexOf(INTERNATIONAL_PREFIX) == 0) {
+			normalized.replace(0, INTERNATIONAL_PREFIX.length(), String.valueOf(PLUS));
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * Address shared by all the sms with the same sender and its normalized version.
+	 */
+	static class PooledAddress {
+
+		private final String address;
+		private final String normalizedAddress;
+
+		PooledAddress(String address, String normalizedAddress) {
+			this.address = address;
+			this.normalizedAddress = normalizedAddress;
+		}
+
+		String getAddress() {
+			return address;
+		}
+
+		String getNormalizedAddress() {
+			return normalizedAddress;
+		}
+	}
+}
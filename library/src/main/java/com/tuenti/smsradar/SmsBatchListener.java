@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.List;
+
+/**
+ * Listener notified with the sms intercepted in batches instead of one by one. Used by consumers which don't need to
+ * be notified in real time, like analytics, to avoid waking up the device for every sms.
+ * <p/>
+ * The sms are buffered by SmsRadar and delivered according to the SmsBatchPolicy configured. The pending batch is
+ * stored in the application files directory, so the sms buffered are delivered even if the process is killed before
+ * the batch is ready. Each sms is delivered at most once: the batch is discarded as soon as this listener is notified.
+ */
+public interface SmsBatchListener {
+
+	/**
+	 * @param smsBatch sms intercepted since the previous batch, from the oldest to the newest one
+	 */
+	void onSmsBatch(List<Sms> smsBatch);
+}
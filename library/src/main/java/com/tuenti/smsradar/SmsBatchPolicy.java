@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Configures when the sms buffered for SmsBatchListeners are delivered.
+ * <p/>
+ * A batch is delivered when the batch interval has elapsed since the first sms was buffered, using an alarm which
+ * doesn't wake up the device, so the batch can be delayed until the device is awake for other reasons. If charging
+ * is required the delivery is postponed while the device is not charging until the max delay is reached. A batch is
+ * delivered immediately when the max batch size is reached.
+ */
+public class SmsBatchPolicy {
+
+	/**
+	 * Batch interval used by default.
+	 */
+	public static final long DEFAULT_BATCH_INTERVAL_MILLIS = 15 * 60 * 1000;
+
+	/**
+	 * Max delay used by default.
+	 */
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 60 * 60 * 1000;
+
+	/**
+	 * Max batch size used by default.
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+	static final SmsBatchPolicy DEFAULT = new SmsBatchPolicy(DEFAULT_BATCH_INTERVAL_MILLIS, DEFAULT_MAX_DELAY_MILLIS,
+			false, DEFAULT_MAX_BATCH_SIZE);
+
+	private final long batchIntervalMillis;
+	private final long maxDelayMillis;
+	private final boolean chargingRequired;
+	private final int maxBatchSize;
+
+	/**
+	 * @param batchIntervalMillis time waited since the first sms is buffered before delivering the batch
+	 * @param maxDelayMillis max time a sms can be buffered if charging is required
+	 * @param chargingRequired true to postpone the delivery while the device is not charging
+	 * @param maxBatchSize max number of sms buffered
+	 */
+	public SmsBatchPolicy(long batchIntervalMillis, long maxDelayMillis, boolean chargingRequired,
+			int maxBatchSize) {
+		if (batchIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Batch interval has to be greater than zero");
+		}
+		if (maxDelayMillis < batchIntervalMillis) {
+			throw new IllegalArgumentException("Max delay can't be lower than batch interval");
+		}
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("Max batch size has to be greater than zero");
+		}
+		this.batchIntervalMillis = batchIntervalMillis;
+		this.maxDelayMillis = maxDelayMillis;
+		this.chargingRequired = chargingRequired;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public long getBatchIntervalMillis() {
+		return batchIntervalMillis;
+	}
+
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	public boolean isChargingRequired() {
+		return chargingRequired;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	@Override
+	public String toString() {
+		return "SmsBatchPolicy{" +
+				"batchIntervalMillis=" + batchIntervalMillis +
+				", maxDelayMillis=" + maxDelayMillis +
+				", chargingRequired=" + chargingRequired +
+				", maxBatchSize=" + maxBatchSize +
+				'}';
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * File used by SmsDeferredDelivery to keep the pending batch across process restarts.
+ * <p/>
+ * Every sms buffered is appended to the file as soon as it's added and the file is deleted once the batch has been
+ * taken to be delivered. A sms partially written when the process was killed is discarded when the file is loaded.
+ * The keyword matches are not stored, they are found again if the sms is dispatched again.
+ */
+class SmsBatchStore {
+
+	private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+	private final File file;
+
+	SmsBatchStore(File file) {
+		if (file == null) {
+			throw new IllegalArgumentException("File param can't be null");
+		}
+		this.file = file;
+	}
+
+	/**
+	 * Reads the sms stored and rewrites the file without the last sms if it was partially written.
+	 *
+	 * @return sms stored in the same order they were added.
+	 */
+	synchronized List<Sms> load() {
+		List<Sms> smsStored = new ArrayList<Sms>();
+		if (!file.exists()) {
+			return smsStored;
+		}
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			while (true) {
+				smsStored.add(readSms(input));
+			}
+		} catch (EOFException e) {
+			//End of the file or last sms partially written
+		} catch (IOException e) {
+			//Sms read until now are kept
+		} catch (IllegalArgumentException e) {
+			//Unknown sms type, sms read until now are kept
+		} finally {
+			close(input);
+		}
+		rewrite(smsStored);
+		return smsStored;
+	}
+
+	/**
+	 * Appends the sms passed as parameter to the file.
+	 *
+	 * @return false if the sms could not be stored.
+	 */
+	synchronized boolean add(Sms sms) {
+		DataOutputStream output = null;
+		try {
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+			writeSms(output, sms);
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			close(output);
+		}
+	}
+
+	/**
+	 * Removes every sms stored.
+	 */
+	synchronized void clear() {
+		if (file.exists()) {
+			//If the file can't be deleted the sms will be delivered again after a process restart
+			file.delete();
+		}
+	}
+
+	private void rewrite(List<Sms> smsStored) {
+		if (smsStored.isEmpty()) {
+			clear();
+			return;
+		}
+		File temporaryFile = new File(file.getPath() + TEMPORARY_FILE_SUFFIX);
+		DataOutputStream output = null;
+		try {
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+			for (Sms sms : smsStored) {
+				writeSms(output, sms);
+			}
+			output.close();
+			output = null;
+			temporaryFile.renameTo(file);
+		} catch (IOException e) {
+			//The sms partially written will be discarded again the next time the file is loaded
+		} finally {
+			close(output);
+		}
+	}
+
+	private static void writeSms(DataOutputStream output, Sms sms) throws IOException {
+		output.writeInt(sms.getId());
+		output.writeLong(sms.getThreadId());
+		writeString(output, sms.getAddress());
+		writeString(output, sms.getNormalizedAddress());
+		writeString(output, sms.getDate());
+		writeString(output, sms.getMsg());
+		output.writeInt(sms.getType() != null ? sms.getType().getValue() : SmsType.UNKNOWN.getValue());
+		output.writeInt(sms.getSubscriptionId());
+		output.writeBoolean(sms.isRead());
+	}
+
+	private static Sms readSms(DataInputStream input) throws IOException {
+		int id = input.readInt();
+		long threadId = input.readLong();
+		String address = readString(input);
+		String normalizedAddress = readString(input);
+		String date = readString(input);
+		String msg = readString(input);
+		SmsType type = SmsType.fromValue(input.readInt());
+		int subscriptionId = input.readInt();
+		boolean read = input.readBoolean();
+		return new Sms(id, threadId, address, normalizedAddress, date, msg, type, subscriptionId,
+				Collections.<SmsKeywordMatch>emptyList(), read);
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream input) throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+
+	private static void close(DataInputStream input) {
+		if (input != null) {
+			try {
+				input.close();
+			} catch (IOException e) {
+				//Nothing to do
+			}
+		}
+	}
+
+	private static void close(DataOutputStream output) {
+		if (output != null) {
+			try {
+				output.close();
+			} catch (IOException e) {
+				//Nothing to do
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Event stored by SmsCaptureRecorder: a sms content provider change notified to SmsObserver or the rows returned by
+ * a sms content provider query, with the time elapsed since the capture was started.
+ */
+class SmsCaptureEvent {
+
+	enum Type {
+		NOTIFICATION, QUERY
+	}
+
+	private final Type type;
+	private final long elapsedNanos;
+	private final String uri;
+	private final String[] columns;
+	private final List<Object[]> rows;
+
+	static SmsCaptureEvent notification(long elapsedNanos, String uri) {
+		return new SmsCaptureEvent(Type.NOTIFICATION, elapsedNanos, uri, null, Collections.<Object[]>emptyList());
+	}
+
+	static SmsCaptureEvent query(long elapsedNanos, String uri, String[] columns, List<Object[]> rows) {
+		return new SmsCaptureEvent(Type.QUERY, elapsedNanos, uri, columns, rows);
+	}
+
+	private SmsCaptureEvent(Type type, long elapsedNanos, String uri, String[] columns, List<Object[]> rows) {
+		this.type = type;
+		this.elapsedNanos = elapsedNanos;
+		this.uri = uri;
+		this.columns = columns;
+		this.rows = rows;
+	}
+
+	Type getType() {
+		return type;
+	}
+
+	long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return uri notified or queried. Notifications without uri return null.
+	 */
+	String getUri() {
+		return uri;
+	}
+
+	/**
+	 * @return columns of the cursor returned by the query or null if the query returned a null cursor.
+	 */
+	String[] getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return values of every row returned by the query stored as Long, Double, String, byte[] or null.
+	 */
+	List<Object[]> getRows() {
+		return rows;
+	}
+}
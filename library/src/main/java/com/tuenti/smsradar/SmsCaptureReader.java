@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import android.database.Cursor;
+
+/**
+ * Reads the events written by SmsCaptureRecorder in the same order they were recorded.
+ */
+class SmsCaptureReader {
+
+	private final DataInputStream input;
+	private final long startDate;
+
+	SmsCaptureReader(File file) throws IOException {
+		this.input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+		if (input.readInt() != SmsCaptureRecorder.MAGIC || input.readInt() != SmsCaptureRecorder.VERSION) {
+			input.close();
+			throw new IOException("Unsupported sms capture format");
+		}
+		this.startDate = input.readLong();
+	}
+
+	/**
+	 * @return date in milliseconds when the capture was started.
+	 */
+	long getStartDate() {
+		return startDate;
+	}
+
+	/**
+	 * @return next event recorded or null if there are no more events.
+	 */
+	SmsCaptureEvent next() throws IOException {
+		int eventType;
+		try {
+			eventType = input.readByte();
+		} catch (EOFException e) {
+			return null;
+		}
+		long elapsedNanos = input.readLong();
+		if (eventType == SmsCaptureRecorder.NOTIFICATION_EVENT) {
+			return SmsCaptureEvent.notification(elapsedNanos, input.readBoolean() ? input.readUTF() : null);
+		} else if (eventType == SmsCaptureRecorder.QUERY_EVENT) {
+			return readQuery(elapsedNanos);
+		}
+		throw new IOException("Invalid sms capture event type: " + eventType);
+	}
+
+	/**
+	 * @return every event not read yet.
+	 */
+	List<SmsCaptureEvent> readAll() throws IOException {
+		List<SmsCaptureEvent> events = new ArrayList<SmsCaptureEvent>();
+		SmsCaptureEvent event;
+		while ((event = next()) != null) {
+			events.add(event);
+		}
+		return events;
+	}
+
+	void close() throws IOException {
+		input.close();
+	}
+
+	private SmsCaptureEvent readQuery(long elapsedNanos) throws IOException {
+		String uri = input.readUTF();
+		int columnCount = input.readInt();
+		if (columnCount == SmsCaptureRecorder.NULL_CURSOR) {
+			return SmsCaptureEvent.query(elapsedNanos, uri, null, new ArrayList<Object[]>());
+		}
+		String[] columns = new String[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			columns[i] = input.readUTF();
+		}
+		int rowCount = input.readInt();
+		List<Object[]> rows = new ArrayList<Object[]>(rowCount);
+		for (int i = 0; i < rowCount; i++) {
+			Object[] row = new Object[columnCount];
+			for (int j = 0; j < columnCount; j++) {
+				row[j] = readValue();
+			}
+			rows.add(row);
+		}
+		return SmsCaptureEvent.query(elapsedNanos, uri, columns, rows);
+	}
+
+	private Object readValue() throws IOException {
+		int type = input.readByte();
+		switch (type) {
+			case Cursor.FIELD_TYPE_NULL:
+				return null;
+			case Cursor.FIELD_TYPE_INTEGER:
+				return input.readLong();
+			case Cursor.FIELD_TYPE_FLOAT:
+				return input.readDouble();
+			case Cursor.FIELD_TYPE_STRING:
+				return input.readUTF();
+			case Cursor.FIELD_TYPE_BLOB:
+				byte[] bytes = new byte[input.readInt()];
+				input.readFully(bytes);
+				return bytes;
+			default:
+				throw new IOException("Invalid sms capture value type: " + type);
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+/**
+ * Records the sms content provider changes notified to SmsObserver and the rows returned by every sms content
+ * provider query into a file which can be replayed later to reproduce the exact sequence of notifications and
+ * cursors produced by a device.
+ * <p/>
+ * The file is a gzip compressed stream starting with a header with the capture start date followed by the events.
+ * Every event stores its type and the nanoseconds elapsed since the capture was started. Notifications store the
+ * uri notified and queries the uri queried, the cursor columns and the typed values of every row. SmsCaptureReader
+ * reads the files written.
+ * <p/>
+ * Cursors recorded are read completely and closed, and a copy is returned to the caller.
+ */
+class SmsCaptureRecorder {
+
+	static final int MAGIC = 0x534d5343;
+	static final int VERSION = 1;
+	static final byte NOTIFICATION_EVENT = 1;
+	static final byte QUERY_EVENT = 2;
+	static final int NULL_CURSOR = -1;
+
+	private final DataOutputStream output;
+	private final long startNanos;
+	private boolean closed;
+
+	SmsCaptureRecorder(File file, TimeProvider timeProvider) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("File param can't be null");
+		}
+		this.output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+		this.startNanos = System.nanoTime();
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeLong(timeProvider.getDate().getTime());
+	}
+
+	synchronized void recordNotification(Uri uri) {
+		if (closed) {
+			return;
+		}
+		try {
+			output.writeByte(NOTIFICATION_EVENT);
+			output.writeLong(getElapsedNanos());
+			output.writeBoolean(uri != null);
+			if (uri != null) {
+				output.writeUTF(uri.toString());
+			}
+		} catch (IOException e) {
+			close();
+		}
+	}
+
+	/**
+	 * Records the rows of the cursor passed as parameter. The cursor is closed once read.
+	 *
+	 * @return copy of the cursor recorded positioned before the first row or null if the cursor is null.
+	 */
+	synchronized Cursor recordQuery(Uri uri, Cursor cursor) {
+		if (closed) {
+			return cursor;
+		}
+		String[] columns = null;
+		List<Object[]> rows = Collections.emptyList();
+		MatrixCursor copy = null;
+		if (cursor != null) {
+			columns = cursor.getColumnNames();
+			rows = readRows(cursor);
+			copy = new MatrixCursor(columns, rows.size());
+			for (Object[] row : rows) {
+				copy.addRow(row);
+			}
+		}
+		try {
+			writeQuery(uri, columns, rows);
+		} catch (IOException e) {
+			close();
+		}
+		return copy;
+	}
+
+	synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			output.close();
+		} catch (IOException e) {
+			//The events recorded until now could not be written
+		}
+	}
+
+	private List<Object[]> readRows(Cursor cursor) {
+		try {
+			int columnCount = cursor.getColumnCount();
+			List<Object[]> rows = new ArrayList<Object[]>(cursor.getCount());
+			cursor.moveToPosition(-1);
+			while (cursor.moveToNext()) {
+				Object[] row = new Object[columnCount];
+				for (int i = 0; i < columnCount; i++) {
+					row[i] = readValue(cursor, i);
+				}
+				rows.add(row);
+			}
+			return rows;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	private Object readValue(Cursor cursor, int columnIndex) {
+		switch (cursor.getType(columnIndex)) {
+			case Cursor.FIELD_TYPE_INTEGER:
+				return cursor.getLong(columnIndex);
+			case Cursor.FIELD_TYPE_FLOAT:
+				return cursor.getDouble(columnIndex);
+			case Cursor.FIELD_TYPE_STRING:
+				return cursor.getString(columnIndex);
+			case Cursor.FIELD_TYPE_BLOB:
+				return cursor.getBlob(columnIndex);
+			default:
+				return null;
+		}
+	}
+
+	private void writeQuery(Uri uri, String[] columns, List<Object[]> rows) throws IOException {
+		output.writeByte(QUERY_EVENT);
+		output.writeLong(getElapsedNanos());
+		output.writeUTF(uri.toString());
+		if (columns == null) {
+			output.writeInt(NULL_CURSOR);
+			return;
+		}
+		output.writeInt(columns.length);
+		for (String column : columns) {
+			output.writeUTF(column);
+		}
+		output.writeInt(rows.size());
+		for (Object[] row : rows) {
+			for (Object value : row) {
+				writeValue(value);
+			}
+		}
+	}
+
+	private void writeValue(Object value) throws IOException {
+		if (value instanceof Long) {
+			output.writeByte(Cursor.FIELD_TYPE_INTEGER);
+			output.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			output.writeByte(Cursor.FIELD_TYPE_FLOAT);
+			output.writeDouble((Double) value);
+		} else if (value instanceof String) {
+			output.writeByte(Cursor.FIELD_TYPE_STRING);
+			output.writeUTF((String) value);
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			output.writeByte(Cursor.FIELD_TYPE_BLOB);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		} else {
+			output.writeByte(Cursor.FIELD_TYPE_NULL);
+		}
+	}
+
+	private long getElapsedNanos() {
+		return System.nanoTime() - startNanos;
+	}
+}
@@ -16,8 +16,6 @@
 package com.tuenti.smsradar;
 
 
-import java.util.Date;
-
 import android.database.Cursor;
 
 
@@ -32,69 +30,161 @@ import android.database.Cursor;
  * content provider receive a incoming or outgoing sms. SmsCursorParser keep a reference of the last sms id parsed
  * and use it to parse only the correct incoming or outgoing sms. This implementation is based on a
  * lastSmsIdProcessed var that is updated each time an sms it's parsed.
+ * <p/>
+ * On multi SIM devices the last sms id parsed is stored for every subscription, so the sms of one subscription can
+ * be processed without discarding the sms of other subscriptions with a lower id.
+ * <p/>
+ * The first sms is parsed only if SmsFreshnessEstimator considers it fresh using the SmsFreshnessPolicy configured.
+ * <p/>
+ * The values used to decide if a row has to be parsed are read without creating objects. If a SmsRowVisitor is
+ * registered it's invoked with every new row and the Sms is created only if the visitor requests it.
+ * <p/>
+ * If the SmsStorage is a SmsHistoryStorage the sms parsed are stored too. The sms parsed between beginBatch and
+ * endBatch are stored with the last sms id parsed at once.
  *
  * @author Pedro Vcente Gómez Sánchez <pgomez@tuenti.com>
  * @author Manuel Peinado <mpeinado@tuenti.com>
  */
 class SmsCursorParser {
 
-	private static final String ADDRESS_COLUMN_NAME = "address";
-	private static final String DATE_COLUMN_NAME = "date";
-	private static final String BODY_COLUMN_NAME = "body";
-	private static final String TYPE_COLUMN_NAME = "type";
-	private static final String ID_COLUMN_NAME = "_id";
-	private static final int SMS_MAX_AGE_MILLIS = 5000;
+	private static final int ADDRESS_POOL_CAPACITY = 256;
 
 	private SmsStorage smsStorage;
 	private TimeProvider timeProvider;
+	private SmsRowReader smsRowReader;
+	private CursorSmsRow smsRow = new CursorSmsRow();
+	private SmsFreshnessEstimator smsFreshnessEstimator;
 
 	SmsCursorParser(SmsStorage smsStorage, TimeProvider timeProvider) {
+		this(smsStorage, timeProvider, new SmsAddressPool(ADDRESS_POOL_CAPACITY),
+				new SmsFreshnessEstimator());
+	}
+
+	SmsCursorParser(SmsStorage smsStorage, TimeProvider timeProvider, SmsAddressPool smsAddressPool,
+			SmsFreshnessEstimator smsFreshnessEstimator) {
 		this.smsStorage = smsStorage;
 		this.timeProvider = timeProvider;
+		this.smsRowReader = new SmsRowReader(smsAddressPool);
+		this.smsFreshnessEstimator = smsFreshnessEstimator;
 	}
 
+	/**
+	 * Parses the first row of a cursor obtained after a sms content provider notification. If the row is accepted as
+	 * a new sms it's used to measure the notification latency.
+	 */
 	Sms parse(Cursor cursor) {
 
 		if (!canHandleCursor(cursor) || !cursor.moveToNext()) {
 			return null;
 		}
 
-		Sms smsParsed = extractSmsInfoFromCursor(cursor);
+		Sms smsParsed = parseCurrentRow(cursor, true);
+		smsRow.clear();
+		return smsParsed;
+	}
 
-		int smsId = cursor.getInt(cursor.getColumnIndex(ID_COLUMN_NAME));
-		String date = cursor.getString(cursor.getColumnIndex(DATE_COLUMN_NAME));
-		Date smsDate = new Date(Long.parseLong(date));
+	/**
+	 * Parses the row where the cursor is positioned without moving it. Used to parse cursors with more than one row.
+	 */
+	Sms parseCurrentRow(Cursor cursor) {
+		return parseCurrentRow(cursor, false);
+	}
 
-		if (shouldParseSms(smsId, smsDate)) {
-			updateLastSmsParsed(smsId);
-		} else {
-			smsParsed = null;
+	private Sms parseCurrentRow(Cursor cursor, boolean notified) {
+		SmsTracer smsTracer = SmsRadar.smsTracer;
+		smsTracer.begin(SmsTraceStage.PARSE);
+		try {
+			return parseCurrentRowInfo(cursor, notified);
+		} finally {
+			smsTracer.end(SmsTraceStage.PARSE);
 		}
+	}
+
+	private Sms parseCurrentRowInfo(Cursor cursor, boolean notified) {
+		smsRow.moveTo(cursor);
 
+		int smsId = smsRow.getId();
+		int subscriptionId = smsRow.getSubscriptionId();
+		long date = smsRow.getDate();
+
+		if (!shouldParseSms(smsId, subscriptionId, date)) {
+			return null;
+		}
+		if (notified) {
+			smsFreshnessEstimator.onSmsNotified(date, getNow());
+		}
+
+		Sms smsParsed = null;
+		if (visitSmsRow()) {
+			smsParsed = smsRowReader.read(cursor);
+			storeSms(smsParsed);
+		}
+		updateLastSmsParsed(subscriptionId, smsId);
 		return smsParsed;
 	}
 
-	private void updateLastSmsParsed(int smsId) {
-		smsStorage.updateLastSmsIntercepted(smsId);
+	private boolean visitSmsRow() {
+		SmsRowVisitor smsRowVisitor = SmsRadar.config.getSmsRowVisitor();
+		return smsRowVisitor == null || smsRowVisitor.visit(smsRow);
 	}
 
-	private boolean shouldParseSms(int smsId, Date smsDate) {
-		boolean isFirstSmsParsed = isFirstSmsParsed();
-		boolean isOld = isOld(smsDate);
-		boolean shouldParseId = shouldParseSmsId(smsId);
+	/**
+	 * Starts a group of sms parsed which will be stored together when endBatch is invoked.
+	 */
+	void beginBatch() {
+		if (smsStorage instanceof SmsHistoryStorage) {
+			((SmsHistoryStorage) smsStorage).beginBatch();
+		}
+	}
+
+	void endBatch() {
+		if (smsStorage instanceof SmsHistoryStorage) {
+			((SmsHistoryStorage) smsStorage).endBatch();
+		}
+	}
+
+	/**
+	 * @return id of the last sms parsed or -1 if no sms has been parsed yet.
+	 */
+	int getLastSmsIdParsed() {
+		return isFirstSmsParsed() ? -1 : smsStorage.getLastSmsIntercepted();
+	}
+
+	private void storeSms(Sms sms) {
+		if (smsStorage instanceof SmsHistoryStorage) {
+			((SmsHistoryStorage) smsStorage).storeSms(sms);
+		}
+	}
+
+	private void updateLastSmsParsed(int subscriptionId, int smsId) {
+		if (subscriptionId == Sms.NO_SUBSCRIPTION) {
+			smsStorage.updateLastSmsIntercepted(smsId);
+		} else {
+			smsStorage.updateLastSmsIntercepted(subscriptionId, smsId);
+		}
+	}
+
+	private boolean shouldParseSms(int smsId, int subscriptionId, long date) {
+		boolean isFirstSmsParsed = isFirstSmsParsed(subscriptionId);
+		boolean isOld = isOld(date);
+		boolean shouldParseId = shouldParseSmsId(smsId, subscriptionId);
 		return (isFirstSmsParsed && !isOld) || (!isFirstSmsParsed && shouldParseId);
 	}
 
-	private boolean isOld(Date smsDate) {
-		Date now = timeProvider.getDate();
-		return now.getTime() - smsDate.getTime() > SMS_MAX_AGE_MILLIS;
+	private boolean isOld(long date) {
+		return !smsFreshnessEstimator.isFresh(date, getNow());
+	}
+
+	private long getNow() {
+		return timeProvider.getDate().getTime();
 	}
 
-	private boolean shouldParseSmsId(int smsId) {
-		if (smsStorage.isFirstSmsIntercepted()) {
+	private boolean shouldParseSmsId(int smsId, int subscriptionId) {
+		if (isFirstSmsParsed(subscriptionId)) {
 			return false;
 		}
-		int lastSmsIdIntercepted = smsStorage.getLastSmsIntercepted();
+		int lastSmsIdIntercepted = subscriptionId == Sms.NO_SUBSCRIPTION ? smsStorage.getLastSmsIntercepted()
+				: smsStorage.getLastSmsIntercepted(subscriptionId);
 		return smsId > lastSmsIdIntercepted;
 	}
 
@@ -102,13 +192,9 @@ class SmsCursorParser {
 		return smsStorage.isFirstSmsIntercepted();
 	}
 
-	private Sms extractSmsInfoFromCursor(Cursor cursor) {
-		String address = cursor.getString(cursor.getColumnIndex(ADDRESS_COLUMN_NAME));
-		String date = cursor.getString(cursor.getColumnIndex(DATE_COLUMN_NAME));
-		String msg = cursor.getString(cursor.getColumnIndex(BODY_COLUMN_NAME));
-		String type = cursor.getString(cursor.getColumnIndex(TYPE_COLUMN_NAME));
-
-		return new Sms(address, date, msg, SmsType.fromValue(Integer.parseInt(type)));
+	private boolean isFirstSmsParsed(int subscriptionId) {
+		return subscriptionId == Sms.NO_SUBSCRIPTION ? isFirstSmsParsed()
+				: smsStorage.isFirstSmsIntercepted(subscriptionId);
 	}
 
 	private boolean canHandleCursor(Cursor cursor) {
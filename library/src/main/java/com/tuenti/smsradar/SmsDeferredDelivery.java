@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+/**
+ * Buffers the sms delivered by SmsDispatcher while there are SmsBatchListeners registered and delivers them in
+ * batches according to the SmsBatchPolicy.
+ * <p/>
+ * The delivery is scheduled using a non wakeup AlarmManager alarm which starts SmsRadarService with the
+ * ACTION_DELIVER_SMS_BATCH action, so the device is not woken up to deliver a batch and the alarm is postponed while
+ * the device is idle. When the alarm goes off and charging is required the battery status is read from the sticky
+ * battery changed broadcast and the delivery is postponed again until the device is charging or the max delay is
+ * reached.
+ * <p/>
+ * Sms buffered are kept in memory and, if a SmsBatchStore is provided, appended to it. The pending batch is loaded
+ * from the SmsBatchStore when the SmsDeferredDelivery is created and the alarm is scheduled again, so the sms
+ * buffered are not lost if the process is killed before the alarm goes off. Without a SmsBatchStore they are
+ * delivered at most once. The pending batch is delivered when SmsRadarService is stopped.
+ * <p/>
+ * If no SmsBatchPolicy is provided the policy of the SmsRadarConfig in use is read every time a sms is buffered or
+ * the alarm goes off, so a new policy is applied without losing the sms already buffered.
+ */
+class SmsDeferredDelivery {
+
+	static final String ACTION_DELIVER_SMS_BATCH = "com.tuenti.smsradar.action.DELIVER_SMS_BATCH";
+
+	private static final int NOT_PLUGGED = 0;
+
+	private final Context context;
+	private final AlarmManager alarmManager;
+	private final TimeProvider timeProvider;
+	private final SmsBatchPolicy smsBatchPolicy;
+	private final SmsBatchStore smsBatchStore;
+	private final List<Sms> pendingSms = new ArrayList<Sms>();
+	private long firstSmsBufferedAt;
+	private boolean alarmScheduled;
+
+	SmsDeferredDelivery(Context context, AlarmManager alarmManager, TimeProvider timeProvider) {
+		this(context, alarmManager, timeProvider, null);
+	}
+
+	SmsDeferredDelivery(Context context, AlarmManager alarmManager, TimeProvider timeProvider,
+			SmsBatchPolicy smsBatchPolicy) {
+		this(context, alarmManager, timeProvider, smsBatchPolicy, null);
+	}
+
+	SmsDeferredDelivery(Context context, AlarmManager alarmManager, TimeProvider timeProvider,
+			SmsBatchPolicy smsBatchPolicy, SmsBatchStore smsBatchStore) {
+		this.context = context;
+		this.alarmManager = alarmManager;
+		this.timeProvider = timeProvider;
+		this.smsBatchPolicy = smsBatchPolicy;
+		this.smsBatchStore = smsBatchStore;
+		loadPendingSms();
+	}
+
+	/**
+	 * Buffers the sms passed as parameter if there is any SmsBatchListener registered.
+	 */
+	void defer(Sms sms) {
+		SmsRadarConfig config = SmsRadar.config;
+		if (config.getBatchListeners().isEmpty()) {
+			return;
+		}
+		SmsBatchPolicy smsBatchPolicy = getSmsBatchPolicy(config);
+		List<Sms> batch = null;
+		synchronized (this) {
+			if (pendingSms.isEmpty()) {
+				firstSmsBufferedAt = getNow();
+			}
+			pendingSms.add(sms);
+			if (smsBatchStore != null) {
+				smsBatchStore.add(sms);
+			}
+			if (pendingSms.size() >= smsBatchPolicy.getMaxBatchSize()) {
+				cancelAlarm();
+				batch = takePendingSms();
+			} else if (!alarmScheduled) {
+				scheduleAlarm(smsBatchPolicy.getBatchIntervalMillis());
+			}
+		}
+		notifyBatchListeners(batch);
+	}
+
+	/**
+	 * Invoked when the alarm scheduled to deliver the pending batch goes off.
+	 */
+	void onAlarm() {
+		SmsBatchPolicy smsBatchPolicy = getSmsBatchPolicy(SmsRadar.config);
+		List<Sms> batch = null;
+		synchronized (this) {
+			alarmScheduled = false;
+			if (pendingSms.isEmpty()) {
+				return;
+			}
+			long waitedMillis = getNow() - firstSmsBufferedAt;
+			long remainingMillis = smsBatchPolicy.getMaxDelayMillis() - waitedMillis;
+			if (smsBatchPolicy.isChargingRequired() && remainingMillis > 0 && !isCharging()) {
+				scheduleAlarm(Math.min(smsBatchPolicy.getBatchIntervalMillis(), remainingMillis));
+			} else {
+				batch = takePendingSms();
+			}
+		}
+		notifyBatchListeners(batch);
+	}
+
+	/**
+	 * Delivers the pending batch immediately and cancels the alarm scheduled.
+	 */
+	void flush() {
+		List<Sms> batch;
+		synchronized (this) {
+			cancelAlarm();
+			batch = takePendingSms();
+		}
+		notifyBatchListeners(batch);
+	}
+
+	synchronized int getPendingSmsCount() {
+		return pendingSms.size();
+	}
+
+	/**
+	 * The batch loaded waits for the alarm again, the time it had been waiting before the process was killed is not
+	 * known.
+	 */
+	private void loadPendingSms() {
+		if (smsBatchStore == null) {
+			return;
+		}
+		pendingSms.addAll(smsBatchStore.load());
+		if (!pendingSms.isEmpty()) {
+			firstSmsBufferedAt = getNow();
+			scheduleAlarm(getSmsBatchPolicy(SmsRadar.config).getBatchIntervalMillis());
+		}
+	}
+
+	private List<Sms> takePendingSms() {
+		if (pendingSms.isEmpty()) {
+			return null;
+		}
+		List<Sms> batch = Collections.unmodifiableList(new ArrayList<Sms>(pendingSms));
+		pendingSms.clear();
+		if (smsBatchStore != null) {
+			smsBatchStore.clear();
+		}
+		return batch;
+	}
+
+	private void notifyBatchListeners(List<Sms> batch) {
+		if (batch == null) {
+			return;
+		}
+		for (SmsBatchListener smsBatchListener : SmsRadar.config.getBatchListeners()) {
+			smsBatchListener.onSmsBatch(batch);
+		}
+	}
+
+	private SmsBatchPolicy getSmsBatchPolicy(SmsRadarConfig config) {
+		return smsBatchPolicy != null ? smsBatchPolicy : config.getBatchPolicy();
+	}
+
+	private void scheduleAlarm(long delayMillis) {
+		alarmScheduled = true;
+		alarmManager.set(AlarmManager.RTC, getNow() + delayMillis, getPendingIntent());
+	}
+
+	private void cancelAlarm() {
+		if (alarmScheduled) {
+			alarmScheduled = false;
+			alarmManager.cancel(getPendingIntent());
+		}
+	}
+
+	private PendingIntent getPendingIntent() {
+		Intent intent = new Intent(context, SmsRadarService.class);
+		intent.setAction(ACTION_DELIVER_SMS_BATCH);
+		return PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+	}
+
+	private boolean isCharging() {
+		Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+		return batteryStatus != null && batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, NOT_PLUGGED)
+				!= NOT_PLUGGED;
+	}
+
+	private long getNow() {
+		return timeProvider.getDate().getTime();
+	}
+}
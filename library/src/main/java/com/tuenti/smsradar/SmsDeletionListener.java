@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * This interface can be implemented by the SmsListener used to initialize SmsRadar to be notified when a sms is
+ * deleted from the sms content provider.
+ * <p/>
+ * Deletions are detected comparing the ids of the sms stored in the sms content provider with the ids read the
+ * previous time, so sms deleted before initializing SmsRadar are not notified.
+ */
+public interface SmsDeletionListener {
+
+	/**
+	 * Invoked when a sms is deleted from the sms content provider.
+	 *
+	 * @param smsId of the sms deleted.
+	 */
+	public void onSmsDeleted(int smsId);
+
+}
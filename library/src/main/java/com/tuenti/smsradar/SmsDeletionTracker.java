@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+
+/**
+ * Detects the sms deleted from the sms content provider to notify SmsDeletionListener.
+ * <p/>
+ * The ids of every sms stored are read when the tracker starts and kept in a SmsIdBitmap. When the sms content
+ * provider notifies a change the new ids are appended and the number of sms stored is compared with the number of
+ * ids tracked. Only when it dropped the ids are read again using an id only projection and the bitmaps are compared
+ * to find the deleted sms. If the changed uri is notified and points to a new sms or to a sms which is still stored
+ * the sms stored are not counted.
+ * <p/>
+ * Reading every sms id means one query per page, so the initial ids should be read out of the main thread using
+ * loadKnownIds. If a tracker Handler is provided the changes are tracked from its thread and the sms deleted are
+ * dispatched from the thread of the dispatch Handler.
+ */
+class SmsDeletionTracker {
+
+	private static final Uri SMS_URI = Uri.parse("content://sms");
+	private static final String[] ID_PROJECTION = {SmsQueryPager.ID_COLUMN_NAME};
+
+	private final SmsQueryPager smsQueryPager;
+	private final SmsDispatcher smsDispatcher;
+	private final Handler trackerHandler;
+	private final Handler dispatchHandler;
+
+	private SmsIdBitmap knownIds;
+
+	SmsDeletionTracker(SmsQueryPager smsQueryPager, SmsDispatcher smsDispatcher) {
+		this(smsQueryPager, smsDispatcher, null, null);
+	}
+
+	SmsDeletionTracker(SmsQueryPager smsQueryPager, SmsDispatcher smsDispatcher, Handler trackerHandler,
+			Handler dispatchHandler) {
+		if (trackerHandler != null && dispatchHandler == null) {
+			throw new IllegalArgumentException("Handler param can't be null");
+		}
+		this.smsQueryPager = smsQueryPager;
+		this.smsDispatcher = smsDispatcher;
+		this.trackerHandler = trackerHandler;
+		this.dispatchHandler = dispatchHandler;
+	}
+
+	/**
+	 * Reads the ids of every sms stored if SmsListener implements SmsDeletionListener. Reads the sms content
+	 * provider, so it has to be invoked out of the main thread.
+	 *
+	 * @return the ids read or null if SmsListener doesn't implement SmsDeletionListener or the sms content provider
+	 * can't be read.
+	 */
+	static SmsIdBitmap loadKnownIds(SmsQueryPager smsQueryPager) {
+		if (!(SmsRadar.config.getSmsListener() instanceof SmsDeletionListener)) {
+			return null;
+		}
+		return readIds(smsQueryPager);
+	}
+
+	/**
+	 * Reads the ids of every sms stored to be able to notify the sms deleted from the first change.
+	 */
+	void start() {
+		start(loadKnownIds(smsQueryPager));
+	}
+
+	/**
+	 * Starts tracking the ids read using loadKnownIds.
+	 */
+	void start(final SmsIdBitmap knownIds) {
+		if (trackerHandler == null) {
+			this.knownIds = knownIds;
+			return;
+		}
+		trackerHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				SmsDeletionTracker.this.knownIds = knownIds;
+			}
+		});
+	}
+
+	/**
+	 * Looks for sms deleted since the last change and notifies them.
+	 *
+	 * @param changedUri notified by the sms content provider. Can be null on Android versions previous to 4.1.
+	 */
+	void onChange(final Uri changedUri) {
+		if (trackerHandler == null) {
+			trackChange(changedUri);
+			return;
+		}
+		trackerHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				trackChange(changedUri);
+			}
+		});
+	}
+
+	/**
+	 * @return number of sms ids tracked.
+	 */
+	int size() {
+		return knownIds != null ? knownIds.size() : 0;
+	}
+
+	void clear() {
+		knownIds = null;
+	}
+
+	private void trackChange(Uri changedUri) {
+		if (!(SmsRadar.config.getSmsListener() instanceof SmsDeletionListener)) {
+			clear();
+			return;
+		}
+		if (knownIds == null) {
+			//The tracker was started without a SmsDeletionListener, the previous deletions can't be known
+			knownIds = readIds(smsQueryPager);
+			return;
+		}
+		int changedId = getId(changedUri);
+		if (changedId > knownIds.getLastId()) {
+			appendNewIds();
+		} else if (changedId == -1 || !exists(changedId)) {
+			trackDeletions();
+		}
+	}
+
+	private void trackDeletions() {
+		appendNewIds();
+		int count = smsQueryPager.count(SMS_URI);
+		if (count == -1 || count >= knownIds.size()) {
+			return;
+		}
+		SmsIdBitmap currentIds = readIds(smsQueryPager);
+		if (currentIds == null) {
+			return;
+		}
+		final List<Integer> deletedIds = new ArrayList<Integer>();
+		knownIds.forEachIdNotIn(currentIds, new SmsIdBitmap.IdCallback() {
+			@Override
+			public void onId(int id) {
+				deletedIds.add(id);
+			}
+		});
+		knownIds = currentIds;
+		dispatchDeletions(deletedIds);
+	}
+
+	private void dispatchDeletions(final List<Integer> deletedIds) {
+		if (deletedIds.isEmpty()) {
+			return;
+		}
+		if (trackerHandler == null) {
+			dispatchEachDeletion(deletedIds);
+			return;
+		}
+		dispatchHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				dispatchEachDeletion(deletedIds);
+			}
+		});
+	}
+
+	private void dispatchEachDeletion(List<Integer> deletedIds) {
+		for (int smsId : deletedIds) {
+			smsDispatcher.dispatchDeletion(smsId);
+		}
+	}
+
+	/**
+	 * @return the ids of every sms stored or null if the sms content provider can't be read.
+	 */
+	private static SmsIdBitmap readIds(SmsQueryPager smsQueryPager) {
+		final SmsIdBitmap ids = new SmsIdBitmap();
+		//An unreadable content provider would look like an empty mailbox and every sms would be notified as deleted
+		Cursor probe = smsQueryPager.queryNewest(SMS_URI, ID_PROJECTION, 1);
+		if (probe == null) {
+			return null;
+		}
+		close(probe);
+		smsQueryPager.forEachRowAfter(SMS_URI, ID_PROJECTION, -1, new IdAppender(ids));
+		return ids;
+	}
+
+	private void appendNewIds() {
+		smsQueryPager.forEachRowAfter(SMS_URI, ID_PROJECTION, knownIds.getLastId(), new IdAppender(knownIds));
+	}
+
+	private boolean exists(int smsId) {
+		Cursor cursor = null;
+		try {
+			cursor = smsQueryPager.queryNewest(Uri.withAppendedPath(SMS_URI, String.valueOf(smsId)), ID_PROJECTION,
+					1);
+			return cursor != null && cursor.getCount() > 0;
+		} finally {
+			close(cursor);
+		}
+	}
+
+	private int getId(Uri uri) {
+		if (uri == null) {
+			return -1;
+		}
+		try {
+			String lastPathSegment = uri.getLastPathSegment();
+			return lastPathSegment != null ? Integer.parseInt(lastPathSegment) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static void close(Cursor cursor) {
+		if (cursor != null) {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Appends the id of every row read to a SmsIdBitmap.
+	 */
+	private static class IdAppender implements SmsQueryPager.RowCallback {
+
+		private final SmsIdBitmap ids;
+		private int idColumnIndex = -1;
+
+		IdAppender(SmsIdBitmap ids) {
+			this.ids = ids;
+		}
+
+		@Override
+		public boolean onRow(Cursor cursor) {
+			if (idColumnIndex == -1) {
+				idColumnIndex = cursor.getColumnIndex(SmsQueryPager.ID_COLUMN_NAME);
+			}
+			int id = cursor.getInt(idColumnIndex);
+			if (id > ids.getLastId()) {
+				ids.append(id);
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Represents the delivery status of an outgoing sms reported by the network.
+ * <p/>
+ * The sms content provider stores the TP-Status value received in the sms status report. Values lower than 32
+ * mean the sms has been delivered, values lower than 64 mean the network is still trying to deliver it and higher
+ * values mean the delivery failed. NONE is used when there is no status report.
+ */
+public enum SmsDeliveryStatus {
+
+	NONE(-1),
+	COMPLETE(0),
+	PENDING(32),
+	FAILED(64),;
+
+	private final int value;
+
+	private SmsDeliveryStatus(int value) {
+		this.value = value;
+	}
+
+	/**
+	 * Create a new SmsDeliveryStatus using the status value stored in the Sms content provider.
+	 *
+	 * @param value used to translate into SmsDeliveryStatus
+	 * @return new SmsDeliveryStatus associated to the value passed as parameter
+	 */
+	public static SmsDeliveryStatus fromValue(int value) {
+		if (value >= FAILED.value) {
+			return FAILED;
+		} else if (value >= PENDING.value) {
+			return PENDING;
+		} else if (value >= COMPLETE.value) {
+			return COMPLETE;
+		}
+		return NONE;
+	}
+
+}
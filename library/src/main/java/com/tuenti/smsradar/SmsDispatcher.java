@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import android.os.Handler;
+
+/**
+ * Delivers the sms intercepted by SmsObserver or SmsPollingWatchdog to SmsRadar consumers.
+ * <p/>
+ * Before being delivered the registered keywords are searched in the sms body, the sms is indexed if a SmsIndexer
+ * is provided and the registered SmsPriorityClassifiers choose the SmsLane used. The sms is counted by
+ * SmsFloodDetector and the FloodPolicy configured is applied if the sender is flooding the device. Then the sms is
+ * added to the recent sms cache and to the state of its conversation, SmsListener and every SmsSubscriber are
+ * notified and the sms is buffered for the SmsBatchListeners if a SmsDeferredDelivery is provided. Sms status
+ * changes, deletions and conversation updates are notified only if SmsListener implements SmsStatusListener,
+ * SmsDeletionListener or SmsThreadListener.
+ * <p/>
+ * If a Handler is provided the sms are queued and delivered from the Handler thread in rounds. Every round delivers
+ * first all the high priority sms and then one normal sms of every SIM subscription with pending sms, so a burst of
+ * sms received in one subscription doesn't delay the verification codes or the sms received in the other ones.
+ * Every round is posted as a different message to let the Handler process other messages between rounds.
+ * <p/>
+ * The SmsRadarConfig in use is read once per sms dispatched and once per sms delivered, so a configuration replaced
+ * while the sms are being delivered is applied from the next sms without losing any of them.
+ * <p/>
+ * The latency between the dispatch and the SmsListener notification is measured for every lane.
+ */
+class SmsDispatcher {
+
+	private static final long NANOS_PER_MICRO = 1000;
+
+	private final Handler handler;
+	private final SmsIndexer smsIndexer;
+	private final SmsDeferredDelivery smsDeferredDelivery;
+	private final LinkedList<PendingSms> pendingHighPrioritySms = new LinkedList<PendingSms>();
+	private final Map<Integer, LinkedList<PendingSms>> pendingSmsBySubscription =
+			new LinkedHashMap<Integer, LinkedList<PendingSms>>();
+	private final Runnable deliverRound = new Runnable() {
+		@Override
+		public void run() {
+			deliverPendingSmsRound();
+		}
+	};
+	private boolean roundScheduled;
+
+	SmsDispatcher() {
+		this(null);
+	}
+
+	SmsDispatcher(Handler handler) {
+		this(handler, null);
+	}
+
+	SmsDispatcher(Handler handler, SmsIndexer smsIndexer) {
+		this(handler, smsIndexer, null);
+	}
+
+	SmsDispatcher(Handler handler, SmsIndexer smsIndexer, SmsDeferredDelivery smsDeferredDelivery) {
+		this.handler = handler;
+		this.smsIndexer = smsIndexer;
+		this.smsDeferredDelivery = smsDeferredDelivery;
+	}
+
+	void dispatch(Sms sms) {
+		if (sms == null) {
+			return;
+		}
+		Sms smsWithKeywords = extractKeywords(sms);
+		indexSms(smsWithKeywords);
+		SmsRadarConfig config = SmsRadar.config;
+		PendingSms pendingSms = new PendingSms(smsWithKeywords, classify(smsWithKeywords, config), System.nanoTime());
+		FloodPolicy floodPolicy = getFloodPolicy(smsWithKeywords, config);
+		if (floodPolicy == FloodPolicy.THROTTLE) {
+			cacheSms(smsWithKeywords);
+		} else if (handler == null) {
+			deliver(pendingSms);
+		} else if (floodPolicy != FloodPolicy.COALESCE || !coalesce(pendingSms)) {
+			enqueue(pendingSms);
+		}
+	}
+
+	void dispatchStatusChange(SmsStatusChange smsStatusChange) {
+		SmsListener smsListener = SmsRadar.config.getSmsListener();
+		if (smsListener instanceof SmsStatusListener) {
+			((SmsStatusListener) smsListener).onSmsStatusChanged(smsStatusChange);
+		}
+		if (smsStatusChange.isRead() && !smsStatusChange.wasPreviouslyRead()) {
+			notifyThreadUpdated(SmsRadar.smsThreadCache.markAsRead(smsStatusChange.getSmsId()), smsListener);
+		}
+	}
+
+	void dispatchDeletion(int smsId) {
+		if (smsIndexer != null) {
+			smsIndexer.remove(smsId);
+		}
+		SmsListener smsListener = SmsRadar.config.getSmsListener();
+		if (smsListener instanceof SmsDeletionListener) {
+			((SmsDeletionListener) smsListener).onSmsDeleted(smsId);
+		}
+		dispatchThreadSmsDeleted(smsId);
+	}
+
+	/**
+	 * Removes the deleted sms from the unread sms of its conversation. Used also when the deletion is found by
+	 * SmsStatusTracker, which doesn't notify SmsDeletionListener.
+	 */
+	void dispatchThreadSmsDeleted(int smsId) {
+		notifyThreadUpdated(SmsRadar.smsThreadCache.remove(smsId), SmsRadar.config.getSmsListener());
+	}
+
+	/**
+	 * @return number of normal sms queued and not delivered yet for the subscription passed as parameter.
+	 */
+	synchronized int getPendingSmsCount(int subscriptionId) {
+		LinkedList<PendingSms> pendingSms = pendingSmsBySubscription.get(subscriptionId);
+		return pendingSms != null ? pendingSms.size() : 0;
+	}
+
+	/**
+	 * @return number of high priority sms queued and not delivered yet.
+	 */
+	synchronized int getPendingHighPrioritySmsCount() {
+		return pendingHighPrioritySms.size();
+	}
+
+	/**
+	 * Only received sms are counted by the flood detector, the sms sent by the user are always notified.
+	 */
+	private FloodPolicy getFloodPolicy(Sms sms, SmsRadarConfig config) {
+		if (sms.getType() != SmsType.RECEIVED) {
+			return FloodPolicy.NONE;
+		}
+		boolean flooding = SmsRadar.smsFloodDetector.record(sms.getNormalizedAddress());
+		return flooding ? config.getFloodPolicy() : FloodPolicy.NONE;
+	}
+
+	private SmsLane classify(Sms sms, SmsRadarConfig config) {
+		for (SmsPriorityClassifier classifier : config.getPriorityClassifiers()) {
+			if (classifier.isHighPriority(sms)) {
+				return SmsLane.HIGH_PRIORITY;
+			}
+		}
+		return SmsLane.NORMAL;
+	}
+
+	private void enqueue(PendingSms pendingSms) {
+		boolean scheduleRound;
+		synchronized (this) {
+			if (pendingSms.lane == SmsLane.HIGH_PRIORITY) {
+				pendingHighPrioritySms.addLast(pendingSms);
+			} else {
+				getOrCreateSubscriptionQueue(pendingSms.sms.getSubscriptionId()).addLast(pendingSms);
+			}
+			scheduleRound = !roundScheduled;
+			roundScheduled = true;
+		}
+		if (scheduleRound) {
+			handler.post(deliverRound);
+		}
+	}
+
+	/**
+	 * Replaces the newest pending sms with the same address with the one passed as parameter keeping its position.
+	 *
+	 * @return true if a pending sms has been replaced.
+	 */
+	private synchronized boolean coalesce(PendingSms pendingSms) {
+		LinkedList<PendingSms> lane = pendingSms.lane == SmsLane.HIGH_PRIORITY ? pendingHighPrioritySms
+				: pendingSmsBySubscription.get(pendingSms.sms.getSubscriptionId());
+		if (lane == null) {
+			return false;
+		}
+		String address = pendingSms.sms.getNormalizedAddress();
+		ListIterator<PendingSms> iterator = lane.listIterator(lane.size());
+		while (iterator.hasPrevious()) {
+			PendingSms queuedSms = iterator.previous();
+			if (address.equals(queuedSms.sms.getNormalizedAddress())) {
+				cacheSms(queuedSms.sms);
+				iterator.set(new PendingSms(pendingSms.sms, pendingSms.lane, queuedSms.dispatchedAtNanos));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private LinkedList<PendingSms> getOrCreateSubscriptionQueue(int subscriptionId) {
+		LinkedList<PendingSms> pendingSms = pendingSmsBySubscription.get(subscriptionId);
+		if (pendingSms == null) {
+			pendingSms = new LinkedList<PendingSms>();
+			pendingSmsBySubscription.put(subscriptionId, pendingSms);
+		}
+		return pendingSms;
+	}
+
+	private void deliverPendingSmsRound() {
+		List<PendingSms> round = new LinkedList<PendingSms>();
+		boolean scheduleRound;
+		synchronized (this) {
+			round.addAll(pendingHighPrioritySms);
+			pendingHighPrioritySms.clear();
+			Iterator<LinkedList<PendingSms>> iterator = pendingSmsBySubscription.values().iterator();
+			while (iterator.hasNext()) {
+				LinkedList<PendingSms> pendingSms = iterator.next();
+				round.add(pendingSms.removeFirst());
+				if (pendingSms.isEmpty()) {
+					iterator.remove();
+				}
+			}
+			scheduleRound = !pendingSmsBySubscription.isEmpty();
+			roundScheduled = scheduleRound;
+		}
+		for (PendingSms pendingSms : round) {
+			deliver(pendingSms);
+		}
+		if (scheduleRound) {
+			handler.post(deliverRound);
+		}
+	}
+
+	private void deliver(PendingSms pendingSms) {
+		SmsTracer smsTracer = SmsRadar.smsTracer;
+		SmsListener smsListener = SmsRadar.config.getSmsListener();
+		smsTracer.begin(SmsTraceStage.DISPATCH);
+		try {
+			cacheSms(pendingSms.sms);
+			SmsThread smsThread = updateThread(pendingSms.sms);
+			recordLatency(pendingSms);
+			notifySmsListener(pendingSms.sms, smsListener, smsTracer);
+			notifyThreadUpdated(smsThread, smsListener);
+			publishSms(pendingSms.sms);
+			deferSms(pendingSms.sms);
+		} finally {
+			smsTracer.end(SmsTraceStage.DISPATCH);
+		}
+	}
+
+	private Sms extractKeywords(Sms sms) {
+		return SmsRadar.smsKeywordExtractor.extract(sms);
+	}
+
+	private void indexSms(Sms sms) {
+		if (smsIndexer != null) {
+			smsIndexer.index(sms);
+		}
+	}
+
+	private void cacheSms(Sms sms) {
+		SmsRadar.recentSmsCache.put(sms);
+	}
+
+	private SmsThread updateThread(Sms sms) {
+		return SmsRadar.smsThreadCache.update(sms);
+	}
+
+	private void notifyThreadUpdated(SmsThread smsThread, SmsListener smsListener) {
+		if (smsThread != null && smsListener instanceof SmsThreadListener) {
+			((SmsThreadListener) smsListener).onThreadUpdated(smsThread);
+		}
+	}
+
+	private void recordLatency(PendingSms pendingSms) {
+		long latencyMicros = (System.nanoTime() - pendingSms.dispatchedAtNanos) / NANOS_PER_MICRO;
+		SmsRadar.getLaneLatencyHistogram(pendingSms.lane).record(latencyMicros);
+	}
+
+	private void notifySmsListener(Sms sms, SmsListener smsListener, SmsTracer smsTracer) {
+		if (smsListener != null) {
+			smsTracer.begin(SmsTraceStage.LISTENER);
+			try {
+				if (SmsType.SENT == sms.getType()) {
+					smsListener.onSmsSent(sms);
+				} else {
+					smsListener.onSmsReceived(sms);
+				}
+			} finally {
+				smsTracer.end(SmsTraceStage.LISTENER);
+			}
+		}
+	}
+
+	private void publishSms(Sms sms) {
+		SmsRadar.smsPublisher.publish(sms);
+	}
+
+	private void deferSms(Sms sms) {
+		if (smsDeferredDelivery != null) {
+			smsDeferredDelivery.defer(sms);
+		}
+	}
+
+	/**
+	 * Sms waiting to be delivered with the lane chosen and the time it was dispatched.
+	 */
+	private static class PendingSms {
+
+		private final Sms sms;
+		private final SmsLane lane;
+		private final long dispatchedAtNanos;
+
+		PendingSms(Sms sms, SmsLane lane, long dispatchedAtNanos) {
+			this.sms = sms;
+			this.lane = lane;
+			this.dispatchedAtNanos = dispatchedAtNanos;
+		}
+	}
+}
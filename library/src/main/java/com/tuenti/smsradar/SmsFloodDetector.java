@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the sms received from every sender inside a sliding time window using fixed memory to detect the senders
+ * flooding the device.
+ * <p/>
+ * Counts are stored in a count-min sketch split in time slots. Every slot covers a fraction of the window and is
+ * cleared when it's reused, so the estimation for a sender is the minimum, over the sketch rows, of the counters
+ * summed in the slots inside the window. Estimations can be greater than the real counts because of hash collisions
+ * but never lower.
+ * <p/>
+ * A small set of candidates with the greatest estimations is kept to be able to return the heavy hitters without
+ * storing every sender.
+ */
+class SmsFloodDetector {
+
+	static final int DEFAULT_MAX_SMS_PER_WINDOW = 30;
+	static final long DEFAULT_WINDOW_MILLIS = 60000;
+
+	private static final int DEPTH = 4;
+	private static final int WIDTH = 256;
+	private static final int SLOTS = 6;
+	private static final int MAX_HEAVY_HITTERS = 16;
+
+	private final int maxSmsPerWindow;
+	private final long slotMillis;
+	private final TimeProvider timeProvider;
+	private final int[][] counters = new int[SLOTS][DEPTH * WIDTH];
+	private final long[] slotEpochs = new long[SLOTS];
+	private final Map<String, Integer> heavyHitters = new HashMap<String, Integer>();
+
+	SmsFloodDetector(int maxSmsPerWindow, long windowMillis, TimeProvider timeProvider) {
+		if (maxSmsPerWindow <= 0) {
+			throw new IllegalArgumentException("Max sms per window has to be greater than zero");
+		}
+		if (windowMillis < SLOTS) {
+			throw new IllegalArgumentException("Window has to be at least " + SLOTS + " milliseconds");
+		}
+		this.maxSmsPerWindow = maxSmsPerWindow;
+		this.slotMillis = windowMillis / SLOTS;
+		this.timeProvider = timeProvider;
+		Arrays.fill(slotEpochs, -1);
+	}
+
+	/**
+	 * Counts a sms of the sender passed as parameter.
+	 *
+	 * @param address normalized address of the sender
+	 * @return true if the sender has sent more sms than the max configured inside the window.
+	 */
+	synchronized boolean record(String address) {
+		if (address == null) {
+			return false;
+		}
+		long epoch = getCurrentEpoch();
+		int slot = (int) (epoch % SLOTS);
+		if (slotEpochs[slot] != epoch) {
+			Arrays.fill(counters[slot], 0);
+			slotEpochs[slot] = epoch;
+		}
+		int hash1 = hash(address.hashCode());
+		int hash2 = hash(hash1) | 1;
+		for (int row = 0; row < DEPTH; row++) {
+			counters[slot][getColumn(row, hash1, hash2)]++;
+		}
+		int estimation = estimate(hash1, hash2, epoch);
+		updateHeavyHitters(address, estimation);
+		return estimation > maxSmsPerWindow;
+	}
+
+	synchronized int estimate(String address) {
+		if (address == null) {
+			return 0;
+		}
+		int hash1 = hash(address.hashCode());
+		return estimate(hash1, hash(hash1) | 1, getCurrentEpoch());
+	}
+
+	synchronized boolean isFlooding(String address) {
+		return estimate(address) > maxSmsPerWindow;
+	}
+
+	/**
+	 * @return senders with the greatest number of sms inside the window sorted from the greatest to the lowest one.
+	 */
+	synchronized List<SmsSenderRate> getHeavyHitters(int n) {
+		long epoch = getCurrentEpoch();
+		List<SmsSenderRate> senderRates = new ArrayList<SmsSenderRate>();
+		Iterator<Map.Entry<String, Integer>> iterator = heavyHitters.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Integer> heavyHitter = iterator.next();
+			int hash1 = hash(heavyHitter.getKey().hashCode());
+			int estimation = estimate(hash1, hash(hash1) | 1, epoch);
+			if (estimation == 0) {
+				iterator.remove();
+			} else {
+				heavyHitter.setValue(estimation);
+				senderRates.add(new SmsSenderRate(heavyHitter.getKey(), estimation));
+			}
+		}
+		Collections.sort(senderRates, new Comparator<SmsSenderRate>() {
+			@Override
+			public int compare(SmsSenderRate lhs, SmsSenderRate rhs) {
+				return rhs.getCount() < lhs.getCount() ? -1 : (rhs.getCount() == lhs.getCount() ? 0 : 1);
+			}
+		});
+		return senderRates.size() > n ? new ArrayList<SmsSenderRate>(senderRates.subList(0, n)) : senderRates;
+	}
+
+	private int estimate(int hash1, int hash2, long epoch) {
+		int estimation = Integer.MAX_VALUE;
+		for (int row = 0; row < DEPTH; row++) {
+			int column = getColumn(row, hash1, hash2);
+			int count = 0;
+			for (int slot = 0; slot < SLOTS; slot++) {
+				if (epoch - slotEpochs[slot] < SLOTS) {
+					count += counters[slot][column];
+				}
+			}
+			estimation = Math.min(estimation, count);
+		}
+		return estimation;
+	}
+
+	private void updateHeavyHitters(String address, int estimation) {
+		if (heavyHitters.containsKey(address) || heavyHitters.size() < MAX_HEAVY_HITTERS) {
+			heavyHitters.put(address, estimation);
+			return;
+		}
+		String minAddress = null;
+		int minEstimation = Integer.MAX_VALUE;
+		for (Map.Entry<String, Integer> heavyHitter : heavyHitters.entrySet()) {
+			if (heavyHitter.getValue() < minEstimation) {
+				minAddress = heavyHitter.getKey();
+				minEstimation = heavyHitter.getValue();
+			}
+		}
+		if (estimation > minEstimation) {
+			heavyHitters.remove(minAddress);
+			heavyHitters.put(address, estimation);
+		}
+	}
+
+	private long getCurrentEpoch() {
+		return timeProvider.getDate().getTime() / slotMillis;
+	}
+
+	private int getColumn(int row, int hash1, int hash2) {
+		return row * WIDTH + ((hash1 + row * hash2) & (WIDTH - 1));
+	}
+
+	private static int hash(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Durable FIFO queue used by SmsForwardingSink to keep the sms not forwarded yet across process restarts.
+ * <p/>
+ * Records are kept in memory and appended to a file as soon as they are added. Once a batch has been forwarded the
+ * remaining records are written to a temporary file which replaces the previous one, so a process killed while
+ * removing records doesn't lose them. A record partially written when the process was killed is discarded when the
+ * queue is loaded.
+ */
+class SmsForwardingQueue {
+
+	private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+	private final File file;
+	private final LinkedList<String> records = new LinkedList<String>();
+
+	SmsForwardingQueue(File file) {
+		if (file == null) {
+			throw new IllegalArgumentException("File param can't be null");
+		}
+		this.file = file;
+		load();
+	}
+
+	/**
+	 * Adds the record passed as parameter to the end of the queue.
+	 *
+	 * @return false if the record could only be kept in memory.
+	 */
+	synchronized boolean add(String record) {
+		records.addLast(record);
+		DataOutputStream output = null;
+		try {
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+			output.writeUTF(record);
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			close(output);
+		}
+	}
+
+	/**
+	 * @return the first records of the queue without removing them.
+	 */
+	synchronized List<String> peek(int maxRecords) {
+		List<String> firstRecords = new ArrayList<String>(Math.min(maxRecords, records.size()));
+		for (String record : records) {
+			if (firstRecords.size() == maxRecords) {
+				break;
+			}
+			firstRecords.add(record);
+		}
+		return firstRecords;
+	}
+
+	/**
+	 * Removes the first records of the queue.
+	 *
+	 * @return false if the records removed could not be removed from the file.
+	 */
+	synchronized boolean remove(int recordCount) {
+		for (int i = 0; i < recordCount && !records.isEmpty(); i++) {
+			records.removeFirst();
+		}
+		try {
+			save();
+			return true;
+		} catch (IOException e) {
+			//The records removed will be forwarded again if the process is restarted
+			return false;
+		}
+	}
+
+	synchronized int size() {
+		return records.size();
+	}
+
+	private void load() {
+		if (!file.exists()) {
+			return;
+		}
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			while (true) {
+				records.add(input.readUTF());
+			}
+		} catch (EOFException e) {
+			//End of the queue or last record partially written
+		} catch (IOException e) {
+			//Records read until now are kept
+		} finally {
+			close(input);
+		}
+		discardRecordsNotRead();
+	}
+
+	/**
+	 * Rewrites the file with the records read to avoid appending new records after a record partially written.
+	 */
+	private void discardRecordsNotRead() {
+		try {
+			save();
+		} catch (IOException e) {
+			//The records not read will be discarded again the next time the queue is loaded
+		}
+	}
+
+	private void save() throws IOException {
+		if (records.isEmpty()) {
+			if (file.exists() && !file.delete()) {
+				throw new IOException("Can't delete " + file);
+			}
+			return;
+		}
+		File temporaryFile = new File(file.getPath() + TEMPORARY_FILE_SUFFIX);
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+		try {
+			for (String record : records) {
+				output.writeUTF(record);
+			}
+		} finally {
+			output.close();
+		}
+		if (!temporaryFile.renameTo(file)) {
+			throw new IOException("Can't replace " + file);
+		}
+	}
+
+	private static void close(DataInputStream input) {
+		if (input != null) {
+			try {
+				input.close();
+			} catch (IOException e) {
+				//Nothing to do
+			}
+		}
+	}
+
+	private static void close(DataOutputStream output) {
+		if (output != null) {
+			try {
+				output.close();
+			} catch (IOException e) {
+				//Nothing to do
+			}
+		}
+	}
+}
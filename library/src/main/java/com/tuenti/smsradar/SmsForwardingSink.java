@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+/**
+ * SmsListener implementation which forwards the sms intercepted to an HTTP endpoint in batches.
+ * <p/>
+ * Every sms notified is serialized as a JSON object and added to a SmsForwardingQueue, so the sms not forwarded yet
+ * are not lost if the process is killed. A batch is sent as soon as the batch size is reached or when the max batch
+ * delay has elapsed since the first sms queued. Batches are sent as a POST request with a gzip compressed JSON body:
+ * <p/>
+ * {"sms":[{"id":1,"address":"+34666666666","normalizedAddress":"+34666666666","date":"1000","msg":"Hello",
+ * "type":"RECEIVED","subscriptionId":-1,"threadId":1}]}
+ * <p/>
+ * Requests are sent from a background thread reusing the HTTP connection between batches. If a batch can't be sent
+ * or the endpoint returns a server error it's sent again after a delay which is doubled on every failure. Batches
+ * rejected by the endpoint with a client error are discarded to avoid blocking the queue.
+ */
+public class SmsForwardingSink implements SmsListener {
+
+	public static final int DEFAULT_BATCH_SIZE = 50;
+	public static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 30 * 1000;
+
+	static final long MIN_RETRY_DELAY_MILLIS = 1000;
+	static final long MAX_RETRY_DELAY_MILLIS = 5 * 60 * 1000;
+
+	private static final String QUEUE_FILE_NAME = "sms_radar_forwarding_queue";
+	private static final String THREAD_NAME = "SmsForwardingSink";
+	private static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+	private static final int READ_TIMEOUT_MILLIS = 30 * 1000;
+	private static final int BUFFER_SIZE = 4096;
+	private static final String CHARSET = "UTF-8";
+
+	private final URL endpoint;
+	private final SmsForwardingQueue smsForwardingQueue;
+	private final Handler handler;
+	private final HandlerThread handlerThread;
+	private final int batchSize;
+	private final long maxBatchDelayMillis;
+
+	private boolean sendScheduled;
+	private boolean retrying;
+	private long retryDelay = MIN_RETRY_DELAY_MILLIS;
+
+	private final Runnable sendTask = new Runnable() {
+		@Override
+		public void run() {
+			sendScheduled = false;
+			retrying = false;
+			flush();
+		}
+	};
+
+	public SmsForwardingSink(Context context, URL endpoint) {
+		this(context, endpoint, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY_MILLIS);
+	}
+
+	public SmsForwardingSink(Context context, URL endpoint, int batchSize, long maxBatchDelayMillis) {
+		this(endpoint, new SmsForwardingQueue(new File(getFilesDir(context), QUEUE_FILE_NAME)),
+				startHandlerThread(), batchSize, maxBatchDelayMillis);
+	}
+
+	private SmsForwardingSink(URL endpoint, SmsForwardingQueue smsForwardingQueue, HandlerThread handlerThread,
+			int batchSize, long maxBatchDelayMillis) {
+		this(endpoint, smsForwardingQueue, new Handler(handlerThread.getLooper()), handlerThread, batchSize,
+				maxBatchDelayMillis);
+	}
+
+	SmsForwardingSink(URL endpoint, SmsForwardingQueue smsForwardingQueue, Handler handler, int batchSize,
+			long maxBatchDelayMillis) {
+		this(endpoint, smsForwardingQueue, handler, null, batchSize, maxBatchDelayMillis);
+	}
+
+	private SmsForwardingSink(URL endpoint, SmsForwardingQueue smsForwardingQueue, Handler handler,
+			HandlerThread handlerThread, int batchSize, long maxBatchDelayMillis) {
+		if (endpoint == null) {
+			throw new IllegalArgumentException("Endpoint param can't be null");
+		}
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size has to be greater than zero");
+		}
+		if (maxBatchDelayMillis < 0) {
+			throw new IllegalArgumentException("Max batch delay can't be negative");
+		}
+		this.endpoint = endpoint;
+		this.smsForwardingQueue = smsForwardingQueue;
+		this.handler = handler;
+		this.handlerThread = handlerThread;
+		this.batchSize = batchSize;
+		this.maxBatchDelayMillis = maxBatchDelayMillis;
+		handler.post(sendTask);
+	}
+
+	@Override
+	public void onSmsSent(Sms sms) {
+		forward(sms);
+	}
+
+	@Override
+	public void onSmsReceived(Sms sms) {
+		forward(sms);
+	}
+
+	/**
+	 * Stops the background thread used to send the batches. Sms queued and not forwarded yet will be forwarded the
+	 * next time a SmsForwardingSink is created.
+	 */
+	public void close() {
+		handler.removeCallbacks(sendTask);
+		if (handlerThread != null) {
+			handlerThread.quit();
+		}
+	}
+
+	/**
+	 * @return number of sms queued and not forwarded yet.
+	 */
+	public int getPendingSmsCount() {
+		return smsForwardingQueue.size();
+	}
+
+	private void forward(final Sms sms) {
+		if (sms == null) {
+			return;
+		}
+		final String record = toJson(sms);
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				enqueue(record);
+			}
+		});
+	}
+
+	private void enqueue(String record) {
+		smsForwardingQueue.add(record);
+		if (retrying) {
+			return;
+		}
+		if (smsForwardingQueue.size() >= batchSize) {
+			handler.removeCallbacks(sendTask);
+			sendScheduled = false;
+			flush();
+		} else if (!sendScheduled) {
+			sendScheduled = true;
+			handler.postDelayed(sendTask, maxBatchDelayMillis);
+		}
+	}
+
+	/**
+	 * Sends every sms queued in batches. Stops and schedules a retry if any batch can't be sent.
+	 *
+	 * @return false if there are sms which could not be sent.
+	 */
+	boolean flush() {
+		while (smsForwardingQueue.size() > 0) {
+			List<String> batch = smsForwardingQueue.peek(batchSize);
+			int responseCode = send(batch);
+			if (isSuccessful(responseCode) || isRejected(responseCode)) {
+				smsForwardingQueue.remove(batch.size());
+				retryDelay = MIN_RETRY_DELAY_MILLIS;
+			} else {
+				scheduleRetry();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void scheduleRetry() {
+		handler.removeCallbacks(sendTask);
+		retrying = true;
+		sendScheduled = true;
+		handler.postDelayed(sendTask, retryDelay);
+		retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+	}
+
+	/**
+	 * @return HTTP response code or -1 if the request could not be sent.
+	 */
+	private int send(List<String> batch) {
+		HttpURLConnection connection = null;
+		try {
+			byte[] body = compress(batch);
+			connection = (HttpURLConnection) endpoint.openConnection();
+			connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+			connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(body.length);
+			connection.setRequestProperty("Content-Type", "application/json; charset=" + CHARSET);
+			connection.setRequestProperty("Content-Encoding", "gzip");
+			OutputStream output = connection.getOutputStream();
+			try {
+				output.write(body);
+			} finally {
+				output.close();
+			}
+			int responseCode = connection.getResponseCode();
+			consumeResponse(connection, responseCode);
+			return responseCode;
+		} catch (IOException e) {
+			if (connection != null) {
+				connection.disconnect();
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Reads the response body completely. The connection is kept alive to be reused by the next batch only if the
+	 * response has been read.
+	 */
+	private void consumeResponse(HttpURLConnection connection, int responseCode) throws IOException {
+		InputStream input = isSuccessful(responseCode) ? connection.getInputStream() : connection.getErrorStream();
+		if (input == null) {
+			return;
+		}
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (input.read(buffer) != -1) {
+				//Response body ignored
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	private boolean isSuccessful(int responseCode) {
+		return responseCode >= 200 && responseCode < 300;
+	}
+
+	private boolean isRejected(int responseCode) {
+		return responseCode >= 400 && responseCode < 500 && responseCode != HttpURLConnection.HTTP_CLIENT_TIMEOUT
+				&& responseCode != 429;
+	}
+
+	static byte[] compress(List<String> batch) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		Writer writer = new OutputStreamWriter(new GZIPOutputStream(body), CHARSET);
+		try {
+			writer.write("{\"sms\":[");
+			for (int i = 0; i < batch.size(); i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writer.write(batch.get(i));
+			}
+			writer.write("]}");
+		} finally {
+			writer.close();
+		}
+		return body.toByteArray();
+	}
+
+	static String toJson(Sms sms) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"id\":").append(sms.getId());
+		json.append(",\"address\":");
+		appendString(json, sms.getAddress());
+		json.append(",\"normalizedAddress\":");
+		appendString(json, sms.getNormalizedAddress());
+		json.append(",\"date\":");
+		appendString(json, sms.getDate());
+		json.append(",\"msg\":");
+		appendString(json, sms.getMsg());
+		json.append(",\"type\":");
+		appendString(json, sms.getType() != null ? sms.getType().name() : null);
+		json.append(",\"subscriptionId\":").append(sms.getSubscriptionId());
+		json.append(",\"threadId\":").append(sms.getThreadId());
+		json.append('}');
+		return json.toString();
+	}
+
+	private static void appendString(StringBuilder json, String value) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					json.append("\\\"");
+					break;
+				case '\\':
+					json.append("\\\\");
+					break;
+				case '\n':
+					json.append("\\n");
+					break;
+				case '\r':
+					json.append("\\r");
+					break;
+				case '\t':
+					json.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						json.append(String.format("\\u%04x", (int) c));
+					} else {
+						json.append(c);
+					}
+			}
+		}
+		json.append('"');
+	}
+
+	private static File getFilesDir(Context context) {
+		if (context == null) {
+			throw new IllegalArgumentException("Context param can't be null");
+		}
+		return context.getFilesDir();
+	}
+
+	private static HandlerThread startHandlerThread() {
+		HandlerThread handlerThread = new HandlerThread(THREAD_NAME);
+		handlerThread.start();
+		return handlerThread;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Applies a SmsFreshnessPolicy measuring the latency between the sms insertion in the sms content provider and the
+ * notification received by SmsObserver.
+ * <p/>
+ * The latency is smoothed using an exponentially weighted moving average. The adaptive max age is calculated like a
+ * TCP retransmission timeout: the smoothed latency plus four times its mean deviation, bounded by the policy.
+ * <p/>
+ * If no SmsFreshnessPolicy is provided the policy of the SmsRadarConfig in use is read in every call, keeping the
+ * latency measured when the policy is replaced.
+ */
+class SmsFreshnessEstimator {
+
+	private static final int SMOOTHING_SHIFT = 3;
+	private static final int DEVIATION_SHIFT = 2;
+	private static final int DEVIATION_FACTOR = 4;
+
+	private final SmsFreshnessPolicy policy;
+
+	private boolean latencyMeasured;
+	private long smoothedLatencyMillis;
+	private long latencyDeviationMillis;
+
+	SmsFreshnessEstimator() {
+		this.policy = null;
+	}
+
+	SmsFreshnessEstimator(SmsFreshnessPolicy policy) {
+		if (policy == null) {
+			throw new IllegalArgumentException("SmsFreshnessPolicy param can't be null");
+		}
+		this.policy = policy;
+	}
+
+	/**
+	 * @param date sms date in milliseconds
+	 * @param now current date in milliseconds
+	 * @return true if the sms age is not greater than the max age
+	 */
+	synchronized boolean isFresh(long date, long now) {
+		return now - date <= getMaxAgeMillis(getPolicy());
+	}
+
+	/**
+	 * Measures the latency using a new sms notified by the sms content provider.
+	 *
+	 * @param date sms date in milliseconds
+	 * @param now current date in milliseconds
+	 */
+	synchronized void onSmsNotified(long date, long now) {
+		SmsFreshnessPolicy policy = getPolicy();
+		long latency = now - date;
+		if (policy.isAdaptive() && latency >= 0 && latency <= policy.getMaxAdaptiveAgeMillis()) {
+			measureLatency(latency);
+		}
+	}
+
+	synchronized long getMaxAgeMillis() {
+		return getMaxAgeMillis(getPolicy());
+	}
+
+	private long getMaxAgeMillis(SmsFreshnessPolicy policy) {
+		if (!latencyMeasured) {
+			return policy.getMaxAgeMillis();
+		}
+		long maxAge = smoothedLatencyMillis + DEVIATION_FACTOR * latencyDeviationMillis;
+		return Math.min(Math.max(maxAge, policy.getMaxAgeMillis()), policy.getMaxAdaptiveAgeMillis());
+	}
+
+	private SmsFreshnessPolicy getPolicy() {
+		return policy != null ? policy : SmsRadar.config.getFreshnessPolicy();
+	}
+
+	private void measureLatency(long latency) {
+		if (latencyMeasured) {
+			long error = latency - smoothedLatencyMillis;
+			smoothedLatencyMillis += error >> SMOOTHING_SHIFT;
+			latencyDeviationMillis += (Math.abs(error) - latencyDeviationMillis) >> DEVIATION_SHIFT;
+		} else {
+			smoothedLatencyMillis = latency;
+			latencyDeviationMillis = latency / 2;
+			latencyMeasured = true;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Configures how old can be the first sms found by SmsRadar to be notified. Sms stored before initializing SmsRadar
+ * for the first time are not notified, and this policy is used to decide if the first sms read from the sms content
+ * provider has just been received or sent.
+ * <p/>
+ * The sms age is calculated using the sms date, set by the device when the sms is stored. If an adaptive max age is
+ * configured the max age grows with the latency observed between the sms insertion and the content provider
+ * notification, up to the adaptive max age.
+ */
+public class SmsFreshnessPolicy {
+
+	/**
+	 * Max age used by default. Sms older than five seconds are considered old if no latency has been measured.
+	 */
+	public static final long DEFAULT_MAX_AGE_MILLIS = 5000;
+
+	/**
+	 * Adaptive max age used by default.
+	 */
+	public static final long DEFAULT_MAX_ADAPTIVE_AGE_MILLIS = 30000;
+
+	static final SmsFreshnessPolicy DEFAULT = new SmsFreshnessPolicy(DEFAULT_MAX_AGE_MILLIS,
+			DEFAULT_MAX_ADAPTIVE_AGE_MILLIS);
+
+	private final long maxAgeMillis;
+	private final long maxAdaptiveAgeMillis;
+
+	/**
+	 * Creates a policy with a fixed max age using the sms date.
+	 *
+	 * @param maxAgeMillis max age of the first sms notified
+	 */
+	public SmsFreshnessPolicy(long maxAgeMillis) {
+		this(maxAgeMillis, maxAgeMillis);
+	}
+
+	/**
+	 * @param maxAgeMillis min value of the max age of the first sms notified
+	 * @param maxAdaptiveAgeMillis max value of the max age when it's adapted to the notification latency observed.
+	 * Use the maxAgeMillis value to disable the adaptation
+	 */
+	public SmsFreshnessPolicy(long maxAgeMillis, long maxAdaptiveAgeMillis) {
+		if (maxAgeMillis <= 0) {
+			throw new IllegalArgumentException("Max age has to be greater than zero");
+		}
+		if (maxAdaptiveAgeMillis < maxAgeMillis) {
+			throw new IllegalArgumentException("Max adaptive age can't be lower than max age");
+		}
+		this.maxAgeMillis = maxAgeMillis;
+		this.maxAdaptiveAgeMillis = maxAdaptiveAgeMillis;
+	}
+
+	public long getMaxAgeMillis() {
+		return maxAgeMillis;
+	}
+
+	public long getMaxAdaptiveAgeMillis() {
+		return maxAdaptiveAgeMillis;
+	}
+
+	public boolean isAdaptive() {
+		return maxAdaptiveAgeMillis > maxAgeMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "SmsFreshnessPolicy{" +
+				"maxAgeMillis=" + maxAgeMillis +
+				", maxAdaptiveAgeMillis=" + maxAdaptiveAgeMillis +
+				'}';
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * SQLiteOpenHelper used to create the database where SQLiteSmsHistoryStorage stores the sms intercepted and the last
+ * sms intercepted for every subscription.
+ * <p/>
+ * The database uses write ahead logging, so the sms stored can be read while new sms are being written. Sms columns
+ * use the sms content provider names to be read using SmsRowReader and are indexed by normalized address and date.
+ */
+class SmsHistoryOpenHelper extends SQLiteOpenHelper {
+
+	static final String DATABASE_NAME = "sms_radar_history.db";
+	static final String SMS_TABLE = "sms";
+	static final String ID_COLUMN = "_id";
+	static final String ADDRESS_COLUMN = "address";
+	static final String NORMALIZED_ADDRESS_COLUMN = "normalized_address";
+	static final String DATE_COLUMN = "date";
+	static final String BODY_COLUMN = "body";
+	static final String TYPE_COLUMN = "type";
+	static final String SUB_ID_COLUMN = "sub_id";
+	static final String THREAD_ID_COLUMN = "thread_id";
+	static final String WATERMARK_TABLE = "watermark";
+	static final String LAST_SMS_ID_COLUMN = "last_sms_id";
+
+	private static final int DATABASE_VERSION = 1;
+
+	SmsHistoryOpenHelper(Context context) {
+		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+		setWriteAheadLoggingEnabled(true);
+	}
+
+	@Override
+	public void onCreate(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE " + SMS_TABLE + " ("
+				+ ID_COLUMN + " INTEGER PRIMARY KEY, "
+				+ ADDRESS_COLUMN + " TEXT, "
+				+ NORMALIZED_ADDRESS_COLUMN + " TEXT, "
+				+ DATE_COLUMN + " INTEGER, "
+				+ BODY_COLUMN + " TEXT, "
+				+ TYPE_COLUMN + " INTEGER, "
+				+ SUB_ID_COLUMN + " INTEGER, "
+				+ THREAD_ID_COLUMN + " INTEGER)");
+		db.execSQL("CREATE INDEX sms_address_date ON " + SMS_TABLE + " (" + NORMALIZED_ADDRESS_COLUMN + ", "
+				+ DATE_COLUMN + ")");
+		db.execSQL("CREATE INDEX sms_date ON " + SMS_TABLE + " (" + DATE_COLUMN + ")");
+		db.execSQL("CREATE TABLE " + WATERMARK_TABLE + " ("
+				+ SUB_ID_COLUMN + " INTEGER PRIMARY KEY, "
+				+ LAST_SMS_ID_COLUMN + " INTEGER)");
+	}
+
+	@Override
+	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+		//There is only one database version
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of sms ids used to know which sms are stored in the sms content provider using a few KB even for
+ * mailboxes with thousands of sms.
+ * <p/>
+ * Ids are split in chunks of 65536 values using the 16 high bits as key. Every chunk stores the 16 low bits as runs
+ * of consecutive ids, because sms ids are assigned sequentially and only the deleted sms break the runs. When a
+ * chunk has so many runs that a plain bitmap uses less memory it is converted to a bitmap of 8 KB, so the memory
+ * used by a chunk is never greater than 8 KB.
+ * <p/>
+ * Ids have to be added in ascending order, this is the order used to read the sms content provider.
+ */
+class SmsIdBitmap {
+
+	private static final int CHUNK_BITS = 16;
+	private static final int LOW_BITS_MASK = 0xFFFF;
+	private static final int INITIAL_CHUNKS_CAPACITY = 2;
+
+	private int[] keys = new int[INITIAL_CHUNKS_CAPACITY];
+	private Chunk[] chunks = new Chunk[INITIAL_CHUNKS_CAPACITY];
+	private int chunkCount;
+	private int size;
+	private int lastId = -1;
+
+	/**
+	 * Adds an id greater than the last one added.
+	 */
+	void append(int id) {
+		if (id <= lastId) {
+			throw new IllegalArgumentException("Ids have to be appended in ascending order");
+		}
+		int key = id >>> CHUNK_BITS;
+		if (chunkCount == 0 || keys[chunkCount - 1] != key) {
+			addChunk(key);
+		}
+		Chunk chunk = chunks[chunkCount - 1].append(id & LOW_BITS_MASK);
+		chunks[chunkCount - 1] = chunk;
+		lastId = id;
+		size++;
+	}
+
+	boolean contains(int id) {
+		if (id < 0 || id > lastId) {
+			return false;
+		}
+		int index = Arrays.binarySearch(keys, 0, chunkCount, id >>> CHUNK_BITS);
+		return index >= 0 && chunks[index].contains(id & LOW_BITS_MASK);
+	}
+
+	/**
+	 * @return the greatest id added or -1 if the bitmap is empty.
+	 */
+	int getLastId() {
+		return lastId;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return approximated number of bytes used to store the ids.
+	 */
+	int getSizeInBytes() {
+		int bytes = keys.length * 4;
+		for (int i = 0; i < chunkCount; i++) {
+			bytes += chunks[i].getSizeInBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Invokes the callback for every id of this bitmap not contained in the bitmap passed as parameter, in
+	 * ascending order.
+	 *
+	 * @return number of ids notified.
+	 */
+	int forEachIdNotIn(SmsIdBitmap other, IdCallback idCallback) {
+		int idsNotified = 0;
+		for (int i = 0; i < chunkCount; i++) {
+			int high = keys[i] << CHUNK_BITS;
+			int otherIndex = Arrays.binarySearch(other.keys, 0, other.chunkCount, keys[i]);
+			Chunk otherChunk = otherIndex >= 0 ? other.chunks[otherIndex] : null;
+			idsNotified += chunks[i].forEachLowNotIn(otherChunk, high, idCallback);
+		}
+		return idsNotified;
+	}
+
+	private void addChunk(int key) {
+		if (chunkCount == keys.length) {
+			keys = Arrays.copyOf(keys, chunkCount * 2);
+			chunks = Arrays.copyOf(chunks, chunkCount * 2);
+		}
+		keys[chunkCount] = key;
+		chunks[chunkCount] = new RunChunk();
+		chunkCount++;
+	}
+
+	/**
+	 * Invoked for every id found.
+	 */
+	interface IdCallback {
+
+		void onId(int id);
+	}
+
+	/**
+	 * Stores the 16 low bits of the ids with the same 16 high bits.
+	 */
+	private abstract static class Chunk {
+
+		/**
+		 * @return the chunk where the value has been added. Can be a different chunk if the representation changes.
+		 */
+		abstract Chunk append(int low);
+
+		abstract boolean contains(int low);
+
+		abstract int getSizeInBytes();
+
+		abstract int forEachLowNotIn(Chunk other, int high, IdCallback idCallback);
+
+		int notifyIfMissing(Chunk other, int high, int low, IdCallback idCallback) {
+			if (other == null || !other.contains(low)) {
+				idCallback.onId(high | low);
+				return 1;
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Chunk storing runs of consecutive values as start and length - 1 pairs.
+	 */
+	private static class RunChunk extends Chunk {
+
+		private static final int INITIAL_RUNS_CAPACITY = 4;
+		private static final int MAX_RUNS = BitmapChunk.SIZE_IN_BYTES / 4;
+
+		private char[] starts = new char[INITIAL_RUNS_CAPACITY];
+		private char[] lengths = new char[INITIAL_RUNS_CAPACITY];
+		private int runCount;
+
+		@Override
+		Chunk append(int low) {
+			if (runCount > 0 && starts[runCount - 1] + lengths[runCount - 1] + 1 == low) {
+				lengths[runCount - 1]++;
+				return this;
+			}
+			if (runCount == MAX_RUNS) {
+				return toBitmapChunk().append(low);
+			}
+			if (runCount == starts.length) {
+				starts = Arrays.copyOf(starts, Math.min(runCount * 2, MAX_RUNS));
+				lengths = Arrays.copyOf(lengths, Math.min(runCount * 2, MAX_RUNS));
+			}
+			starts[runCount] = (char) low;
+			lengths[runCount] = 0;
+			runCount++;
+			return this;
+		}
+
+		@Override
+		boolean contains(int low) {
+			int index = Arrays.binarySearch(starts, 0, runCount, (char) low);
+			if (index >= 0) {
+				return true;
+			}
+			int runIndex = -index - 2;
+			return runIndex >= 0 && low <= starts[runIndex] + lengths[runIndex];
+		}
+
+		@Override
+		int getSizeInBytes() {
+			return starts.length * 4;
+		}
+
+		@Override
+		int forEachLowNotIn(Chunk other, int high, IdCallback idCallback) {
+			int idsNotified = 0;
+			for (int i = 0; i < runCount; i++) {
+				int end = starts[i] + lengths[i];
+				for (int low = starts[i]; low <= end; low++) {
+					idsNotified += notifyIfMissing(other, high, low, idCallback);
+				}
+			}
+			return idsNotified;
+		}
+
+		private BitmapChunk toBitmapChunk() {
+			BitmapChunk bitmapChunk = new BitmapChunk();
+			for (int i = 0; i < runCount; i++) {
+				int end = starts[i] + lengths[i];
+				for (int low = starts[i]; low <= end; low++) {
+					bitmapChunk.append(low);
+				}
+			}
+			return bitmapChunk;
+		}
+	}
+
+	/**
+	 * Chunk storing one bit per value.
+	 */
+	private static class BitmapChunk extends Chunk {
+
+		private static final int SIZE_IN_BYTES = 8192;
+
+		private final long[] words = new long[SIZE_IN_BYTES / 8];
+
+		@Override
+		Chunk append(int low) {
+			words[low >>> 6] |= 1L << low;
+			return this;
+		}
+
+		@Override
+		boolean contains(int low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		int getSizeInBytes() {
+			return SIZE_IN_BYTES;
+		}
+
+		@Override
+		int forEachLowNotIn(Chunk other, int high, IdCallback idCallback) {
+			int idsNotified = 0;
+			for (int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while (word != 0) {
+					int low = (i << 6) + Long.numberOfTrailingZeros(word);
+					idsNotified += notifyIfMissing(other, high, low, idCallback);
+					word &= word - 1;
+				}
+			}
+			return idsNotified;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+
+/**
+ * Indexing stage fed with the sms parsed by SmsCursorParser before being dispatched. Adds every sms to a
+ * SmsSearchIndex, removes the sms deleted and persists the index in a file every time a number of sms have been
+ * indexed or removed and when the SmsRadar service is stopped.
+ * <p/>
+ * The index is copied in memory and written from the thread of the save Handler, if any, to a temporary file which
+ * is synced and replaces the previous one once completely written, so a process killed while saving the index
+ * doesn't corrupt it. If the index file can't be read a new index is created.
+ * <p/>
+ * The sms intercepted after the last save are lost if the process is killed, so once loaded the sms stored in the sms
+ * content provider between the last sms indexed and the last sms intercepted are indexed again.
+ */
+class SmsIndexer {
+
+	static final int DEFAULT_SAVE_INTERVAL = 16;
+
+	private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+	private static final Uri SMS_URI = Uri.parse("content://sms");
+	private static final String DATE_COLUMN_NAME = "date";
+	private static final String BODY_COLUMN_NAME = "body";
+	private static final String[] PROJECTION = {SmsQueryPager.ID_COLUMN_NAME, DATE_COLUMN_NAME, BODY_COLUMN_NAME};
+	private static final String TYPE_SELECTION = "type IN (?, ?)";
+	private static final String[] TYPE_SELECTION_ARGS = {String.valueOf(SmsType.RECEIVED.getValue()),
+			String.valueOf(SmsType.SENT.getValue())};
+
+	private final SmsSearchIndex smsSearchIndex;
+	private final File file;
+	private final int saveInterval;
+	private final Handler saveHandler;
+	private final Object saveLock = new Object();
+	private final Runnable saveTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+	private int smsNotSaved;
+	private boolean saveScheduled;
+
+	SmsIndexer(SmsSearchIndex smsSearchIndex, File file, int saveInterval) {
+		this(smsSearchIndex, file, saveInterval, null);
+	}
+
+	/**
+	 * @param saveHandler used to save the index out of the thread indexing the sms. If null the index is saved in
+	 * the thread indexing the sms
+	 */
+	SmsIndexer(SmsSearchIndex smsSearchIndex, File file, int saveInterval, Handler saveHandler) {
+		if (smsSearchIndex == null) {
+			throw new IllegalArgumentException("SmsSearchIndex param can't be null");
+		}
+		if (file == null) {
+			throw new IllegalArgumentException("File param can't be null");
+		}
+		if (saveInterval <= 0) {
+			throw new IllegalArgumentException("Save interval has to be greater than zero");
+		}
+		this.smsSearchIndex = smsSearchIndex;
+		this.file = file;
+		this.saveInterval = saveInterval;
+		this.saveHandler = saveHandler;
+	}
+
+	/**
+	 * Reads the index stored in the file passed as parameter.
+	 *
+	 * @return index read or an empty index if the file doesn't exist or can't be read.
+	 */
+	static SmsSearchIndex load(File file) {
+		if (!file.exists()) {
+			return new SmsSearchIndex();
+		}
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			return SmsSearchIndex.readFrom(input);
+		} catch (IOException e) {
+			return new SmsSearchIndex();
+		} finally {
+			close(input);
+		}
+	}
+
+	SmsSearchIndex getSmsSearchIndex() {
+		return smsSearchIndex;
+	}
+
+	void index(Sms sms) {
+		onIndexChanged(smsSearchIndex.add(sms.getId(), sms.getTime(), sms.getMsg()));
+	}
+
+	void remove(int smsId) {
+		onIndexChanged(smsSearchIndex.remove(smsId));
+	}
+
+	/**
+	 * Indexes the sms received or sent stored in the sms content provider after the last sms indexed up to the last
+	 * sms intercepted, lost if the process was killed before saving them, and saves the index. If the index file
+	 * doesn't exist the index starts from the last sms intercepted without indexing the previous ones. Reads the sms
+	 * content provider, so it has to be invoked out of the main thread before indexing new sms.
+	 *
+	 * @param lastSmsIdParsed id of the last sms intercepted or -1 if no sms has been intercepted yet.
+	 */
+	void catchUp(SmsQueryPager smsQueryPager, final int lastSmsIdParsed) {
+		int lastSmsIdIndexed = smsSearchIndex.getLastSmsId();
+		boolean newIndex = !file.exists();
+		if (!newIndex && lastSmsIdIndexed >= lastSmsIdParsed) {
+			return;
+		}
+		if (!newIndex) {
+			smsQueryPager.forEachRowAfter(SMS_URI, PROJECTION, TYPE_SELECTION, TYPE_SELECTION_ARGS, lastSmsIdIndexed,
+					new SmsQueryPager.RowCallback() {
+						@Override
+						public boolean onRow(Cursor cursor) {
+							int smsId = cursor.getInt(cursor.getColumnIndex(SmsQueryPager.ID_COLUMN_NAME));
+							if (smsId > lastSmsIdParsed) {
+								return false;
+							}
+							long date = cursor.getLong(cursor.getColumnIndex(DATE_COLUMN_NAME));
+							smsSearchIndex.add(smsId, date, cursor.getString(cursor.getColumnIndex(BODY_COLUMN_NAME)));
+							return true;
+						}
+					});
+		}
+		smsSearchIndex.skipTo(lastSmsIdParsed);
+		synchronized (this) {
+			//The last sms id indexed is saved even if no sms has been indexed
+			smsNotSaved++;
+		}
+		flush();
+	}
+
+	/**
+	 * Saves the index if there are sms indexed or removed not saved yet.
+	 *
+	 * @return false if the index can't be saved.
+	 */
+	boolean flush() {
+		synchronized (saveLock) {
+			int smsSaved;
+			synchronized (this) {
+				saveScheduled = false;
+				if (smsNotSaved == 0) {
+					return true;
+				}
+				smsSaved = smsNotSaved;
+				smsNotSaved = 0;
+			}
+			try {
+				save(copyIndex());
+				return true;
+			} catch (IOException e) {
+				//The index is kept in memory and saved again after indexing the next sms
+				synchronized (this) {
+					smsNotSaved += smsSaved;
+				}
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Saves the sms not saved yet and stops the thread of the save Handler once saved.
+	 */
+	void close() {
+		if (saveHandler == null) {
+			flush();
+			return;
+		}
+		saveHandler.removeCallbacks(saveTask);
+		saveHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+				saveHandler.getLooper().quit();
+			}
+		});
+	}
+
+	private void onIndexChanged(boolean changed) {
+		boolean save;
+		synchronized (this) {
+			if (changed) {
+				smsNotSaved++;
+			}
+			save = smsNotSaved >= saveInterval && !saveScheduled;
+			saveScheduled = save && saveHandler != null;
+		}
+		if (!save) {
+			return;
+		}
+		if (saveHandler != null) {
+			saveHandler.post(saveTask);
+		} else {
+			flush();
+		}
+	}
+
+	private byte[] copyIndex() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		smsSearchIndex.writeTo(output);
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	private void save(byte[] index) throws IOException {
+		File temporaryFile = new File(file.getPath() + TEMPORARY_FILE_SUFFIX);
+		FileOutputStream output = new FileOutputStream(temporaryFile);
+		try {
+			output.write(index);
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+		if (!temporaryFile.renameTo(file)) {
+			throw new IOException("Can't replace " + file);
+		}
+	}
+
+	private static void close(DataInputStream input) {
+		if (input != null) {
+			try {
+				input.close();
+			} catch (IOException e) {
+				//Nothing to do, the index has already been read
+			}
+		}
+	}
+}
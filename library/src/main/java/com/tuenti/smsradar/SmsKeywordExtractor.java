@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Extraction stage executed after SmsCursorParser to find the keywords registered in SmsRadar inside the sms body.
+ * <p/>
+ * Every time a keyword is registered or unregistered a new SmsKeywordMatcher is compiled and published. Sms bodies
+ * are scanned using the last matcher published without synchronization.
+ */
+class SmsKeywordExtractor {
+
+	private final Set<String> keywords = new LinkedHashSet<String>();
+	private volatile SmsKeywordMatcher smsKeywordMatcher = new SmsKeywordMatcher(keywords);
+
+	synchronized void registerKeyword(String keyword) {
+		if (keyword == null || keyword.length() == 0) {
+			throw new IllegalArgumentException("Keyword param can't be null or empty");
+		}
+		if (keywords.add(keyword)) {
+			smsKeywordMatcher = new SmsKeywordMatcher(keywords);
+		}
+	}
+
+	synchronized void unregisterKeyword(String keyword) {
+		if (keywords.remove(keyword)) {
+			smsKeywordMatcher = new SmsKeywordMatcher(keywords);
+		}
+	}
+
+	Sms extract(Sms sms) {
+		SmsKeywordMatcher matcher = smsKeywordMatcher;
+		if (sms == null || matcher.isEmpty()) {
+			return sms;
+		}
+		List<SmsKeywordMatch> matches = matcher.match(sms.getMsg());
+		return matches.isEmpty() ? sms : sms.withKeywordMatches(matches);
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Represents one occurrence of a keyword registered in SmsRadar inside the intercepted sms body.
+ * <p/>
+ * Start and end values are the indexes of the sms body where the keyword has been found. End index is exclusive, so
+ * the keyword occurrence can be obtained using sms.getMsg().substring(start, end).
+ */
+public class SmsKeywordMatch {
+
+	private final String keyword;
+	private final int start;
+	private final int end;
+
+	public SmsKeywordMatch(String keyword, int start, int end) {
+		this.keyword = keyword;
+		this.start = start;
+		this.end = end;
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getEnd() {
+		return end;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof SmsKeywordMatch)) return false;
+
+		SmsKeywordMatch that = (SmsKeywordMatch) o;
+
+		if (start != that.start) return false;
+		if (end != that.end) return false;
+		if (keyword != null ? !keyword.equals(that.keyword) : that.keyword != null) return false;
+
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = keyword != null ? keyword.hashCode() : 0;
+		result = 31 * result + start;
+		result = 31 * result + end;
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "SmsKeywordMatch{" +
+				"keyword='" + keyword + '\'' +
+				", start=" + start +
+				", end=" + end +
+				'}';
+	}
+}
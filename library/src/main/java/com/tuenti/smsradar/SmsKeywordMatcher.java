@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Multi keyword matcher based on the Aho-Corasick algorithm. All the keywords are compiled into a single automaton
+ * and every text is scanned only once, so the scan cost doesn't depend on the number of keywords registered.
+ * <p/>
+ * Keywords are matched ignoring case. The automaton is immutable once created and can be shared between threads.
+ */
+class SmsKeywordMatcher {
+
+	private static final int ROOT = 0;
+	private static final int[] NO_OUTPUT = new int[0];
+
+	private final String[] keywords;
+	private final char[][] transitionChars;
+	private final int[][] transitionTargets;
+	private final int[] failures;
+	private final int[][] outputs;
+
+	SmsKeywordMatcher(Collection<String> keywords) {
+		this.keywords = keywords.toArray(new String[keywords.size()]);
+		TrieNode root = buildTrie(this.keywords);
+		List<TrieNode> nodes = sortNodesByDepth(root);
+		int nodeCount = nodes.size();
+		this.transitionChars = new char[nodeCount][];
+		this.transitionTargets = new int[nodeCount][];
+		this.failures = new int[nodeCount];
+		this.outputs = new int[nodeCount][];
+		compile(nodes);
+	}
+
+	List<SmsKeywordMatch> match(String text) {
+		if (text == null || keywords.length == 0) {
+			return Collections.emptyList();
+		}
+		List<SmsKeywordMatch> matches = null;
+		int state = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			state = nextState(state, Character.toLowerCase(text.charAt(i)));
+			int[] output = outputs[state];
+			for (int keywordIndex : output) {
+				if (matches == null) {
+					matches = new LinkedList<SmsKeywordMatch>();
+				}
+				String keyword = keywords[keywordIndex];
+				matches.add(new SmsKeywordMatch(keyword, i + 1 - keyword.length(), i + 1));
+			}
+		}
+		return matches != null ? matches : Collections.<SmsKeywordMatch>emptyList();
+	}
+
+	boolean isEmpty() {
+		return keywords.length == 0;
+	}
+
+	private int nextState(int state, char c) {
+		while (true) {
+			int target = findTransition(state, c);
+			if (target != -1) {
+				return target;
+			}
+			if (state == ROOT) {
+				return ROOT;
+			}
+			state = failures[state];
+		}
+	}
+
+	private int findTransition(int state, char c) {
+		int index = Arrays.binarySearch(transitionChars[state], c);
+		return index >= 0 ? transitionTargets[state][index] : -1;
+	}
+
+	private TrieNode buildTrie(String[] keywords) {
+		TrieNode root = new TrieNode(0);
+		for (int keywordIndex = 0; keywordIndex < keywords.length; keywordIndex++) {
+			String keyword = keywords[keywordIndex];
+			TrieNode node = root;
+			for (int i = 0; i < keyword.length(); i++) {
+				char c = Character.toLowerCase(keyword.charAt(i));
+				TrieNode child = node.children.get(c);
+				if (child == null) {
+					child = new TrieNode(node.depth + 1);
+					node.children.put(c, child);
+				}
+				node = child;
+			}
+			node.keywordIndexes.add(keywordIndex);
+		}
+		return root;
+	}
+
+	private List<TrieNode> sortNodesByDepth(TrieNode root) {
+		List<TrieNode> nodes = new ArrayList<TrieNode>();
+		nodes.add(root);
+		for (int i = 0; i < nodes.size(); i++) {
+			TrieNode node = nodes.get(i);
+			node.id = i;
+			nodes.addAll(node.children.values());
+		}
+		return nodes;
+	}
+
+	private void compile(List<TrieNode> nodes) {
+		for (TrieNode node : nodes) {
+			compileTransitions(node);
+		}
+		for (TrieNode node : nodes) {
+			for (Map.Entry<Character, TrieNode> transition : node.children.entrySet()) {
+				TrieNode child = transition.getValue();
+				failures[child.id] = node.id == ROOT ? ROOT : nextState(failures[node.id], transition.getKey());
+			}
+			outputs[node.id] = mergeOutputs(node);
+		}
+	}
+
+	private void compileTransitions(TrieNode node) {
+		int size = node.children.size();
+		char[] chars = new char[size];
+		int[] targets = new int[size];
+		int i = 0;
+		for (Map.Entry<Character, TrieNode> transition : node.children.entrySet()) {
+			chars[i] = transition.getKey();
+			targets[i] = transition.getValue().id;
+			i++;
+		}
+		transitionChars[node.id] = chars;
+		transitionTargets[node.id] = targets;
+	}
+
+	private int[] mergeOutputs(TrieNode node) {
+		int[] failureOutput = node.id == ROOT ? NO_OUTPUT : outputs[failures[node.id]];
+		if (node.keywordIndexes.isEmpty()) {
+			return failureOutput;
+		}
+		int[] output = new int[node.keywordIndexes.size() + failureOutput.length];
+		int i = 0;
+		for (int keywordIndex : node.keywordIndexes) {
+			output[i++] = keywordIndex;
+		}
+		System.arraycopy(failureOutput, 0, output, i, failureOutput.length);
+		return output;
+	}
+
+	private static class TrieNode {
+
+		private final int depth;
+		private final Map<Character, TrieNode> children = new TreeMap<Character, TrieNode>();
+		private final List<Integer> keywordIndexes = new ArrayList<Integer>(1);
+		private int id;
+
+		TrieNode(int depth) {
+			this.depth = depth;
+		}
+	}
+}
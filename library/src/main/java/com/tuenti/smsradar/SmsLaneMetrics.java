@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Latency measured in a SmsLane from the moment a sms is intercepted until the SmsListener is notified.
+ */
+public class SmsLaneMetrics {
+
+	private final SmsLane lane;
+	private final long count;
+	private final long p50Micros;
+	private final long p99Micros;
+	private final long maxMicros;
+
+	SmsLaneMetrics(SmsLane lane, long count, long p50Micros, long p99Micros, long maxMicros) {
+		this.lane = lane;
+		this.count = count;
+		this.p50Micros = p50Micros;
+		this.p99Micros = p99Micros;
+		this.maxMicros = maxMicros;
+	}
+
+	public SmsLane getLane() {
+		return lane;
+	}
+
+	/**
+	 * @return number of sms delivered using the lane.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public long getP50Micros() {
+		return p50Micros;
+	}
+
+	public long getP99Micros() {
+		return p99Micros;
+	}
+
+	public long getMaxMicros() {
+		return maxMicros;
+	}
+
+	@Override
+	public String toString() {
+		return "SmsLaneMetrics{" +
+				"lane=" + lane +
+				", count=" + count +
+				", p50Micros=" + p50Micros +
+				", p99Micros=" + p99Micros +
+				", maxMicros=" + maxMicros +
+				'}';
+	}
+}
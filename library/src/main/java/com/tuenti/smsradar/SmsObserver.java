@@ -34,7 +34,8 @@ import android.os.Handler;
  * SmsListener.
  * <p/>
  * The content observer will be called each time the sms content provider be updated. This means that all
- * the sms state changes will be notified. For example, when the sms state change from SENDING to SENT state.
+ * the sms state changes will be notified. For example, when the sms state change from SENDING to SENT state. Those
+ * changes are analyzed by SmsStatusTracker and the deleted sms are detected by SmsDeletionTracker.
  *
  * @author Pedro Vcente Gómez Sánchez <pgomez@tuenti.com>
  * @author Manuel Peinado <mpeinado@tuenti.com>
@@ -45,15 +46,36 @@ class SmsObserver extends ContentObserver {
 	private static final Uri SMS_SENT_URI = Uri.parse("content://sms/sent");
 	private static final Uri SMS_INBOX_URI = Uri.parse("content://sms/inbox");
 	private static final String PROTOCOL_COLUM_NAME = "protocol";
-	private static final String SMS_ORDER = "date DESC";
+	private static final String[] PROTOCOL_PROJECTION = {PROTOCOL_COLUM_NAME};
+	private static final int NEWEST_SMS_LIMIT = 1;
 
-	private ContentResolver contentResolver;
 	private SmsCursorParser smsCursorParser;
+	private SmsQueryPager smsQueryPager;
+	private SmsDispatcher smsDispatcher;
+	private SmsStatusTracker smsStatusTracker;
+	private SmsDeletionTracker smsDeletionTracker;
+	private volatile int changeCount;
+	private Uri changedUri;
 
 	SmsObserver(ContentResolver contentResolver, Handler handler, SmsCursorParser smsCursorParser) {
+		this(handler, smsCursorParser, new SmsQueryPager(contentResolver), new SmsDispatcher());
+	}
+
+	SmsObserver(Handler handler, SmsCursorParser smsCursorParser, SmsQueryPager smsQueryPager,
+			SmsDispatcher smsDispatcher) {
+		this(handler, smsCursorParser, smsQueryPager, smsDispatcher,
+				new SmsStatusTracker(smsQueryPager, smsDispatcher, SmsStatusTracker.DEFAULT_WINDOW_SIZE),
+				new SmsDeletionTracker(smsQueryPager, smsDispatcher));
+	}
+
+	SmsObserver(Handler handler, SmsCursorParser smsCursorParser, SmsQueryPager smsQueryPager,
+			SmsDispatcher smsDispatcher, SmsStatusTracker smsStatusTracker, SmsDeletionTracker smsDeletionTracker) {
 		super(handler);
-		this.contentResolver = contentResolver;
 		this.smsCursorParser = smsCursorParser;
+		this.smsQueryPager = smsQueryPager;
+		this.smsDispatcher = smsDispatcher;
+		this.smsStatusTracker = smsStatusTracker;
+		this.smsDeletionTracker = smsDeletionTracker;
 	}
 
 	@Override
@@ -61,18 +83,44 @@ class SmsObserver extends ContentObserver {
 		return true;
 	}
 
+	@Override
+	public void onChange(boolean selfChange, Uri uri) {
+		changedUri = uri;
+		super.onChange(selfChange, uri);
+	}
+
 	@Override
 	public void onChange(boolean selfChange) {
 		super.onChange(selfChange);
+		changeCount++;
+		recordNotification();
 		Cursor cursor = null;
+		smsCursorParser.beginBatch();
 		try {
 			cursor = getSmsContentObserverCursor();
 			if (cursor != null && cursor.moveToFirst()) {
 				processSms(cursor);
 			}
 		} finally {
+			smsCursorParser.endBatch();
 			close(cursor);
 		}
+		trackChanges();
+	}
+
+	/**
+	 * Starts tracking the deletions using the sms ids read with SmsDeletionTracker loadKnownIds, so the deletions
+	 * are notified from the first change.
+	 */
+	void startTracking(SmsIdBitmap knownSmsIds) {
+		smsDeletionTracker.start(knownSmsIds);
+	}
+
+	/**
+	 * @return number of times the sms content provider has notified a change to this observer.
+	 */
+	int getChangeCount() {
+		return changeCount;
 	}
 
 	private void processSms(Cursor cursor) {
@@ -81,22 +129,26 @@ class SmsObserver extends ContentObserver {
 			String protocol = cursor.getString(cursor.getColumnIndex(PROTOCOL_COLUM_NAME));
 			smsCursor = getSmsCursor(protocol);
 			Sms sms = parseSms(smsCursor);
-			notifySmsListener(sms);
+			smsDispatcher.dispatch(sms);
 		} finally {
 			close(smsCursor);
 		}
 	}
 
-	private void notifySmsListener(Sms sms) {
-		if (sms != null && SmsRadar.smsListener != null) {
-			if (SmsType.SENT == sms.getType()) {
-				SmsRadar.smsListener.onSmsSent(sms);
-			} else {
-				SmsRadar.smsListener.onSmsReceived(sms);
-			}
+	private void recordNotification() {
+		SmsCaptureRecorder smsCaptureRecorder = SmsRadar.smsCaptureRecorder;
+		if (smsCaptureRecorder != null) {
+			smsCaptureRecorder.recordNotification(changedUri);
 		}
 	}
 
+	private void trackChanges() {
+		Uri uri = changedUri;
+		changedUri = null;
+		smsStatusTracker.onChange(uri);
+		smsDeletionTracker.onChange(uri);
+	}
+
 	private Cursor getSmsCursor(String protocol) {
 		return getSmsDetailsCursor(protocol);
 	}
@@ -114,11 +166,7 @@ class SmsObserver extends ContentObserver {
 	}
 
 	private Cursor getSmsContentObserverCursor() {
-		String[] projection = null;
-		String selection = null;
-		String[] selectionArgs = null;
-		String sortOrder = null;
-		return contentResolver.query(SMS_URI, projection, selection, selectionArgs, sortOrder);
+		return queryNewest(SMS_URI, PROTOCOL_PROJECTION);
 	}
 
 	private boolean isProtocolForOutgoingSms(String protocol) {
@@ -127,7 +175,17 @@ class SmsObserver extends ContentObserver {
 
 	private Cursor getSmsDetailsCursor(Uri smsUri) {
 
-		return smsUri != null ? this.contentResolver.query(smsUri, null, null, null, SMS_ORDER) : null;
+		return smsUri != null ? queryNewest(smsUri, null) : null;
+	}
+
+	private Cursor queryNewest(Uri uri, String[] projection) {
+		SmsTracer smsTracer = SmsRadar.smsTracer;
+		smsTracer.begin(SmsTraceStage.PROVIDER_QUERY);
+		try {
+			return smsQueryPager.queryNewest(uri, projection, NEWEST_SMS_LIMIT);
+		} finally {
+			smsTracer.end(SmsTraceStage.PROVIDER_QUERY);
+		}
 	}
 
 	private Sms parseSms(Cursor cursor) {
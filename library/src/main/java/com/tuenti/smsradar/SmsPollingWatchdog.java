@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+
+/**
+ * Detects when SmsObserver is not being notified by the sms content provider and intercepts the new sms polling the
+ * content provider until the notifications come back.
+ * <p/>
+ * Some OEM ROMs or default sms application changes can stop the sms content provider notifications. While the
+ * observer works this watchdog only checks periodically if there is any sms newer than the last one intercepted.
+ * If that happens in two consecutive checks without any notification received between them the watchdog moves to
+ * polling mode.
+ * <p/>
+ * In polling mode the sms newer than the last one intercepted are read incrementally using the _id column as
+ * watermark. The polling interval is reduced to the minimum after intercepting any sms and is doubled each time
+ * there is nothing new. As soon as the observer is notified again the watchdog goes back to the observer mode.
+ */
+class SmsPollingWatchdog {
+
+	static final long CHECK_INTERVAL_MILLIS = 60 * 1000;
+	static final long MIN_POLLING_INTERVAL_MILLIS = 2 * 1000;
+	static final long MAX_POLLING_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+	private static final Uri SMS_URI = Uri.parse("content://sms");
+	private static final String[] ID_PROJECTION = {SmsQueryPager.ID_COLUMN_NAME};
+	private static final String RECEIVED_OR_SENT_SELECTION = "type >= ? AND type <= ?";
+	private static final String[] RECEIVED_OR_SENT_SELECTION_ARGS = {"1", "2"};
+	private static final int NEWEST_SMS_LIMIT = 1;
+
+	private final Handler handler;
+	private final SmsObserver smsObserver;
+	private final SmsCursorParser smsCursorParser;
+	private final SmsQueryPager smsQueryPager;
+	private final SmsDispatcher smsDispatcher;
+
+	private boolean started;
+	private boolean polling;
+	private boolean missedNotificationSuspected;
+	private int lastChangeCount;
+	private long pollingInterval = MIN_POLLING_INTERVAL_MILLIS;
+
+	private final Runnable checkTask = new Runnable() {
+		@Override
+		public void run() {
+			check();
+		}
+	};
+
+	private final Runnable pollTask = new Runnable() {
+		@Override
+		public void run() {
+			poll();
+		}
+	};
+
+	SmsPollingWatchdog(Handler handler, SmsObserver smsObserver, SmsCursorParser smsCursorParser,
+			SmsQueryPager smsQueryPager, SmsDispatcher smsDispatcher) {
+		this.handler = handler;
+		this.smsObserver = smsObserver;
+		this.smsCursorParser = smsCursorParser;
+		this.smsQueryPager = smsQueryPager;
+		this.smsDispatcher = smsDispatcher;
+	}
+
+	void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		lastChangeCount = smsObserver.getChangeCount();
+		handler.postDelayed(checkTask, CHECK_INTERVAL_MILLIS);
+	}
+
+	void stop() {
+		started = false;
+		polling = false;
+		missedNotificationSuspected = false;
+		handler.removeCallbacks(checkTask);
+		handler.removeCallbacks(pollTask);
+	}
+
+	boolean isPolling() {
+		return polling;
+	}
+
+	long getPollingInterval() {
+		return pollingInterval;
+	}
+
+	void check() {
+		if (!started || polling) {
+			return;
+		}
+		boolean notified = consumeNotifications();
+		if (!notified && hasSmsNotIntercepted()) {
+			if (missedNotificationSuspected) {
+				startPolling();
+				return;
+			}
+			missedNotificationSuspected = true;
+		} else {
+			missedNotificationSuspected = false;
+		}
+		handler.postDelayed(checkTask, CHECK_INTERVAL_MILLIS);
+	}
+
+	void poll() {
+		if (!started || !polling) {
+			return;
+		}
+		if (consumeNotifications()) {
+			stopPolling();
+			return;
+		}
+		int smsIntercepted = interceptNewSms();
+		if (smsIntercepted > 0) {
+			pollingInterval = MIN_POLLING_INTERVAL_MILLIS;
+		} else {
+			pollingInterval = Math.min(pollingInterval * 2, MAX_POLLING_INTERVAL_MILLIS);
+		}
+		handler.postDelayed(pollTask, pollingInterval);
+	}
+
+	private void startPolling() {
+		polling = true;
+		missedNotificationSuspected = false;
+		pollingInterval = MIN_POLLING_INTERVAL_MILLIS;
+		handler.removeCallbacks(checkTask);
+		poll();
+	}
+
+	private void stopPolling() {
+		polling = false;
+		handler.removeCallbacks(pollTask);
+		handler.postDelayed(checkTask, CHECK_INTERVAL_MILLIS);
+	}
+
+	private boolean consumeNotifications() {
+		int changeCount = smsObserver.getChangeCount();
+		boolean notified = changeCount != lastChangeCount;
+		lastChangeCount = changeCount;
+		return notified;
+	}
+
+	private boolean hasSmsNotIntercepted() {
+		int lastSmsIdParsed = smsCursorParser.getLastSmsIdParsed();
+		if (lastSmsIdParsed == -1) {
+			return false;
+		}
+		Cursor cursor = null;
+		try {
+			cursor = smsQueryPager.queryNewest(SMS_URI, ID_PROJECTION, RECEIVED_OR_SENT_SELECTION,
+					RECEIVED_OR_SENT_SELECTION_ARGS, NEWEST_SMS_LIMIT);
+			return cursor != null && cursor.moveToFirst()
+					&& cursor.getLong(cursor.getColumnIndex(SmsQueryPager.ID_COLUMN_NAME)) > lastSmsIdParsed;
+		} finally {
+			close(cursor);
+		}
+	}
+
+	/**
+	 * Dispatches every sms newer than the last sms intercepted. Nothing is dispatched if no sms has been intercepted
+	 * yet.
+	 *
+	 * @return number of sms dispatched
+	 */
+	int interceptNewSms() {
+		int lastSmsIdParsed = smsCursorParser.getLastSmsIdParsed();
+		if (lastSmsIdParsed == -1) {
+			return 0;
+		}
+		final int[] smsIntercepted = {0};
+		smsCursorParser.beginBatch();
+		try {
+			smsQueryPager.forEachRowAfter(SMS_URI, null, RECEIVED_OR_SENT_SELECTION, RECEIVED_OR_SENT_SELECTION_ARGS,
+					lastSmsIdParsed, new SmsQueryPager.RowCallback() {
+						@Override
+						public boolean onRow(Cursor cursor) {
+							Sms sms = smsCursorParser.parseCurrentRow(cursor);
+							if (sms != null) {
+								smsIntercepted[0]++;
+								smsDispatcher.dispatch(sms);
+							}
+							return true;
+						}
+					});
+		} finally {
+			smsCursorParser.endBatch();
+		}
+		return smsIntercepted[0];
+	}
+
+	private void close(Cursor cursor) {
+		if (cursor != null) {
+			cursor.close();
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Decides if an intercepted sms has to be delivered using the high priority lane, like the verification codes sent
+ * from short codes. Classifiers are invoked from the thread used to intercept sms, so they have to be fast.
+ */
+public interface SmsPriorityClassifier {
+
+	/**
+	 * @param sms intercepted, with the registered keywords already extracted
+	 * @return true if the sms has to be delivered using the high priority lane
+	 */
+	public boolean isHighPriority(Sms sms);
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.os.Looper;
+
+/**
+ * Publishes the intercepted sms to every SmsSubscriber registered in SmsRadar honoring the demand signaled by each
+ * subscriber.
+ * <p/>
+ * Each subscription has a bounded buffer where the sms not requested yet are stored. When the buffer is full the
+ * OverflowPolicy configured for the subscription decides what to do with the new sms.
+ * <p/>
+ * Sms are delivered from the thread publishing them or from the thread requesting them, but never concurrently to
+ * the same subscriber.
+ * <p/>
+ * The BLOCK OverflowPolicy never blocks the main thread. If the buffer of a BLOCK subscription is full when a sms is
+ * published from the main thread the subscription is cancelled and the subscriber is notified with an
+ * IllegalStateException.
+ */
+class SmsPublisher {
+
+	private final List<BufferedSmsSubscription> subscriptions = new CopyOnWriteArrayList<BufferedSmsSubscription>();
+
+	void subscribe(SmsSubscriber subscriber, int bufferSize, OverflowPolicy overflowPolicy) {
+		if (subscriber == null) {
+			throw new IllegalArgumentException("SmsSubscriber param can't be null");
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size has to be greater than zero");
+		}
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("OverflowPolicy param can't be null");
+		}
+		BufferedSmsSubscription subscription = new BufferedSmsSubscription(subscriber, bufferSize, overflowPolicy);
+		subscriptions.add(subscription);
+		subscriber.onSubscribe(subscription);
+	}
+
+	void publish(Sms sms) {
+		if (sms == null) {
+			return;
+		}
+		for (BufferedSmsSubscription subscription : subscriptions) {
+			subscription.offer(sms);
+		}
+	}
+
+	void complete() {
+		for (BufferedSmsSubscription subscription : subscriptions) {
+			subscription.complete();
+		}
+	}
+
+	private void remove(BufferedSmsSubscription subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	private class BufferedSmsSubscription implements SmsSubscription {
+
+		private final SmsSubscriber subscriber;
+		private final int bufferSize;
+		private final OverflowPolicy overflowPolicy;
+		private final LinkedList<Sms> buffer = new LinkedList<Sms>();
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger pendingDrains = new AtomicInteger();
+
+		private volatile boolean cancelled;
+		private volatile boolean completed;
+
+		BufferedSmsSubscription(SmsSubscriber subscriber, int bufferSize, OverflowPolicy overflowPolicy) {
+			this.subscriber = subscriber;
+			this.bufferSize = bufferSize;
+			this.overflowPolicy = overflowPolicy;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				cancel();
+				subscriber.onError(new IllegalArgumentException("Requested sms has to be greater than zero: " + n));
+				return;
+			}
+			addRequested(n);
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			remove(this);
+			synchronized (buffer) {
+				buffer.clear();
+				buffer.notifyAll();
+			}
+		}
+
+		void offer(Sms sms) {
+			if (cancelled || completed) {
+				return;
+			}
+			boolean rejected = false;
+			synchronized (buffer) {
+				if (buffer.size() < bufferSize) {
+					buffer.addLast(sms);
+				} else if (overflowPolicy == OverflowPolicy.BLOCK && isMainThread()) {
+					rejected = true;
+				} else {
+					applyOverflowPolicy(sms);
+				}
+			}
+			if (rejected) {
+				cancel();
+				subscriber.onError(new IllegalStateException("BLOCK OverflowPolicy can't block the main thread"));
+				return;
+			}
+			drain();
+		}
+
+		private boolean isMainThread() {
+			return Looper.myLooper() == Looper.getMainLooper();
+		}
+
+		void complete() {
+			completed = true;
+			remove(this);
+			drain();
+		}
+
+		private void applyOverflowPolicy(Sms sms) {
+			switch (overflowPolicy) {
+				case DROP_OLDEST:
+					buffer.removeFirst();
+					buffer.addLast(sms);
+					break;
+				case DROP_NEWEST:
+					break;
+				case COALESCE_BY_ADDRESS:
+					coalesce(sms);
+					break;
+				case BLOCK:
+					waitForSpace();
+					if (!cancelled) {
+						buffer.addLast(sms);
+					}
+					break;
+			}
+		}
+
+		private void coalesce(Sms sms) {
+			Iterator<Sms> iterator = buffer.iterator();
+			while (iterator.hasNext()) {
+				Sms bufferedSms = iterator.next();
+				if (haveSameAddress(bufferedSms, sms)) {
+					iterator.remove();
+					buffer.addLast(sms);
+					return;
+				}
+			}
+			buffer.removeFirst();
+			buffer.addLast(sms);
+		}
+
+		private boolean haveSameAddress(Sms bufferedSms, Sms sms) {
+			String address = sms.getNormalizedAddress();
+			return address != null ? address.equals(bufferedSms.getNormalizedAddress())
+					: bufferedSms.getNormalizedAddress() == null;
+		}
+
+		private void waitForSpace() {
+			boolean interrupted = false;
+			while (buffer.size() >= bufferSize && !cancelled) {
+				try {
+					buffer.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private Sms poll() {
+			synchronized (buffer) {
+				Sms sms = buffer.poll();
+				if (sms != null) {
+					buffer.notifyAll();
+				}
+				return sms;
+			}
+		}
+
+		private boolean isBufferEmpty() {
+			synchronized (buffer) {
+				return buffer.isEmpty();
+			}
+		}
+
+		private void drain() {
+			if (pendingDrains.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				long delivered = 0;
+				long demand = requested.get();
+				while (delivered != demand && !cancelled) {
+					Sms sms = poll();
+					if (sms == null) {
+						break;
+					}
+					subscriber.onNext(sms);
+					delivered++;
+				}
+				if (cancelled) {
+					return;
+				}
+				if (completed && isBufferEmpty()) {
+					cancelled = true;
+					subscriber.onComplete();
+					return;
+				}
+				if (delivered != 0) {
+					addRequested(-delivered);
+				}
+				missed = pendingDrains.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void addRequested(long n) {
+			for (; ; ) {
+				long current = requested.get();
+				if (current == Long.MAX_VALUE) {
+					return;
+				}
+				long next = current + n;
+				if (n > 0 && next < 0) {
+					next = Long.MAX_VALUE;
+				}
+				if (requested.compareAndSet(current, next)) {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * Reads the sms content provider using pages with a bounded number of rows to keep constant the memory and binder
+ * transfer used by each query, even for mailboxes with thousands of sms.
+ * <p/>
+ * Pages are sorted and paginated using the _id column. The page size is added to the sort order as a LIMIT clause
+ * and the next page is requested using the last _id read as key.
+ * <p/>
+ * If no page size is provided the page size of the SmsRadarConfig in use is read before querying every page.
+ * <p/>
+ * If a capture has been started using SmsRadar the rows returned by every query are recorded.
+ */
+class SmsQueryPager {
+
+	static final int DEFAULT_PAGE_SIZE = 100;
+	static final String ID_COLUMN_NAME = "_id";
+
+	private static final String ID_ASC_ORDER = ID_COLUMN_NAME + " ASC LIMIT ";
+	private static final String ID_DESC_ORDER = ID_COLUMN_NAME + " DESC LIMIT ";
+	private static final String ID_AFTER_SELECTION = ID_COLUMN_NAME + " > ?";
+	private static final String ID_BEFORE_SELECTION = ID_COLUMN_NAME + " < ?";
+	private static final String[] COUNT_PROJECTION = {"COUNT(*)"};
+
+	private static final int CONFIGURED_PAGE_SIZE = 0;
+
+	private final ContentResolver contentResolver;
+	private final int pageSize;
+
+	SmsQueryPager(ContentResolver contentResolver) {
+		this.contentResolver = contentResolver;
+		this.pageSize = CONFIGURED_PAGE_SIZE;
+	}
+
+	SmsQueryPager(ContentResolver contentResolver, int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("Page size has to be greater than zero");
+		}
+		this.contentResolver = contentResolver;
+		this.pageSize = pageSize;
+	}
+
+	int getPageSize() {
+		return pageSize != CONFIGURED_PAGE_SIZE ? pageSize : SmsRadar.config.getPageSize();
+	}
+
+	/**
+	 * @return number of rows stored or -1 if the content provider can't be read.
+	 */
+	int count(Uri uri) {
+		Cursor cursor = null;
+		try {
+			cursor = query(uri, COUNT_PROJECTION, null, null, null);
+			return cursor != null && cursor.moveToFirst() ? cursor.getInt(0) : -1;
+		} finally {
+			close(cursor);
+		}
+	}
+
+	Cursor queryNewest(Uri uri, String[] projection, int limit) {
+		return queryNewest(uri, projection, null, null, limit);
+	}
+
+	Cursor queryNewest(Uri uri, String[] projection, String selection, String[] selectionArgs, int limit) {
+		return query(uri, projection, selection, selectionArgs, ID_DESC_ORDER + limit);
+	}
+
+	Cursor queryPageAfter(Uri uri, String[] projection, long id) {
+		return queryPageAfter(uri, projection, null, null, id);
+	}
+
+	Cursor queryPageAfter(Uri uri, String[] projection, String selection, String[] selectionArgs, long id) {
+		return queryPageAfter(uri, projection, selection, selectionArgs, id, getPageSize());
+	}
+
+	Cursor queryPageBefore(Uri uri, String[] projection, long id) {
+		return queryPageBefore(uri, projection, null, null, id);
+	}
+
+	Cursor queryPageBefore(Uri uri, String[] projection, String selection, String[] selectionArgs, long id) {
+		return queryPageBefore(uri, projection, selection, selectionArgs, id, getPageSize());
+	}
+
+	/**
+	 * Iterates over every row with an _id greater than the id passed as parameter from the oldest to the newest one.
+	 *
+	 * @return number of rows read
+	 */
+	int forEachRowAfter(Uri uri, String[] projection, long id, RowCallback rowCallback) {
+		return forEachRow(uri, projection, null, null, id, true, rowCallback);
+	}
+
+	/**
+	 * Iterates over every row matching the selection with an _id greater than the id passed as parameter from the
+	 * oldest to the newest one.
+	 *
+	 * @return number of rows read
+	 */
+	int forEachRowAfter(Uri uri, String[] projection, String selection, String[] selectionArgs, long id,
+			RowCallback rowCallback) {
+		return forEachRow(uri, projection, selection, selectionArgs, id, true, rowCallback);
+	}
+
+	/**
+	 * Iterates over every row with an _id lower than the id passed as parameter from the newest to the oldest one.
+	 *
+	 * @return number of rows read
+	 */
+	int forEachRowBefore(Uri uri, String[] projection, long id, RowCallback rowCallback) {
+		return forEachRow(uri, projection, null, null, id, false, rowCallback);
+	}
+
+	private int forEachRow(Uri uri, String[] projection, String selection, String[] selectionArgs, long id,
+			boolean ascending, RowCallback rowCallback) {
+		int rowsRead = 0;
+		long lastId = id;
+		boolean hasMorePages = true;
+		while (hasMorePages) {
+			int pageSize = getPageSize();
+			Cursor cursor = null;
+			try {
+				cursor = ascending ? queryPageAfter(uri, projection, selection, selectionArgs, lastId, pageSize)
+						: queryPageBefore(uri, projection, selection, selectionArgs, lastId, pageSize);
+				if (cursor == null) {
+					return rowsRead;
+				}
+				int idColumnIndex = cursor.getColumnIndex(ID_COLUMN_NAME);
+				int pageRows = 0;
+				while (cursor.moveToNext()) {
+					pageRows++;
+					rowsRead++;
+					lastId = cursor.getLong(idColumnIndex);
+					if (!rowCallback.onRow(cursor)) {
+						return rowsRead;
+					}
+				}
+				hasMorePages = pageRows == pageSize;
+			} finally {
+				close(cursor);
+			}
+		}
+		return rowsRead;
+	}
+
+	private Cursor queryPageAfter(Uri uri, String[] projection, String selection, String[] selectionArgs, long id,
+			int pageSize) {
+		return query(uri, projection, and(ID_AFTER_SELECTION, selection),
+				withId(id, selectionArgs), ID_ASC_ORDER + pageSize);
+	}
+
+	private Cursor queryPageBefore(Uri uri, String[] projection, String selection, String[] selectionArgs, long id,
+			int pageSize) {
+		return query(uri, projection, and(ID_BEFORE_SELECTION, selection),
+				withId(id, selectionArgs), ID_DESC_ORDER + pageSize);
+	}
+
+	private Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+		Cursor cursor = contentResolver.query(uri, projection, selection, selectionArgs, sortOrder);
+		SmsCaptureRecorder smsCaptureRecorder = SmsRadar.smsCaptureRecorder;
+		return smsCaptureRecorder != null ? smsCaptureRecorder.recordQuery(uri, cursor) : cursor;
+	}
+
+	private String and(String idSelection, String selection) {
+		return selection != null ? idSelection + " AND (" + selection + ")" : idSelection;
+	}
+
+	private String[] withId(long id, String[] selectionArgs) {
+		int argsLength = selectionArgs != null ? selectionArgs.length : 0;
+		String[] args = new String[argsLength + 1];
+		args[0] = String.valueOf(id);
+		if (argsLength > 0) {
+			System.arraycopy(selectionArgs, 0, args, 1, argsLength);
+		}
+		return args;
+	}
+
+	private void close(Cursor cursor) {
+		if (cursor != null) {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Invoked for every row read. The cursor is positioned on the row and can't be moved.
+	 */
+	interface RowCallback {
+
+		/**
+		 * @return true to continue reading rows or false to stop.
+		 */
+		boolean onRow(Cursor cursor);
+	}
+}
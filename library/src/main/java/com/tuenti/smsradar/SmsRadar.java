@@ -15,8 +15,22 @@
  */
 package com.tuenti.smsradar;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
 
 /**
  * Main library class. This class has to be used to initialize or stop the sms interceptor service.
@@ -26,8 +40,32 @@ import android.content.Intent;
  */
 public class SmsRadar {
 
-	static SmsListener smsListener;
+	private static final int DEFAULT_SUBSCRIBER_BUFFER_SIZE = 16;
+	private static final int RECENT_SMS_CACHE_CAPACITY = 200;
+	private static final int THREAD_CACHE_CAPACITY = 64;
+	private static final String CONTENT_SMS_URI = "content://sms";
+	private static final String ID_IN_SELECTION = SmsQueryPager.ID_COLUMN_NAME + " IN (";
+	private static final int SEARCH_BATCH_SIZE = 100;
+	private static final int SEARCH_ADDRESS_POOL_CAPACITY = 16;
 
+	static volatile SmsRadarConfig config = SmsRadarConfig.DEFAULT;
+	static SmsPublisher smsPublisher = new SmsPublisher();
+	static RecentSmsCache recentSmsCache = new RecentSmsCache(RECENT_SMS_CACHE_CAPACITY);
+	static SmsThreadCache smsThreadCache = new SmsThreadCache(THREAD_CACHE_CAPACITY);
+	static SmsKeywordExtractor smsKeywordExtractor = new SmsKeywordExtractor();
+	static volatile SmsTracer smsTracer = SmsTracer.DISABLED;
+	static boolean multiProcessStorageEnabled;
+	static SmsLatencyHistogram highPriorityLaneLatency = new SmsLatencyHistogram();
+	static SmsLatencyHistogram normalLaneLatency = new SmsLatencyHistogram();
+	static volatile SmsFloodDetector smsFloodDetector = new SmsFloodDetector(
+			SmsFloodDetector.DEFAULT_MAX_SMS_PER_WINDOW, SmsFloodDetector.DEFAULT_WINDOW_MILLIS, new TimeProvider());
+	static boolean searchIndexEnabled;
+	static volatile SmsSearchIndex smsSearchIndex;
+	static boolean historyStorageEnabled;
+	static volatile SQLiteSmsHistoryStorage smsHistoryStorage;
+	static volatile long timeToReadyMillis = -1;
+	static volatile SmsCaptureRecorder smsCaptureRecorder;
+	static volatile SmsRadarConfigObserver configObserver;
 
 	/**
 	 * Starts the service and store the listener to be notified when a new incoming or outgoing sms be processed
@@ -37,19 +75,536 @@ public class SmsRadar {
 	 * @param smsListener to notify when the sms content provider gets a new sms
 	 */
 	public static void initializeSmsRadarService(Context context, SmsListener smsListener) {
-		SmsRadar.smsListener = smsListener;
+		setSmsListener(smsListener);
 		Intent intent = new Intent(context, SmsRadarService.class);
 		context.startService(intent);
 	}
 
+	/**
+	 * Returns the time the SmsRadar service needed to start intercepting sms the last time it was started. The
+	 * service is initialized in background, so this time doesn't delay the application startup.
+	 *
+	 * @return milliseconds elapsed since the service was started until it was ready or -1 if it's not ready yet
+	 */
+	public static long getTimeToReadyMillis() {
+		return timeToReadyMillis;
+	}
+
 	/**
 	 * Stops the service and remove the SmsListener added when the SmsRadar was initialized
 	 *
 	 * @param context used to stop the service
 	 */
 	public static void stopSmsRadarService(Context context) {
-		SmsRadar.smsListener = null;
+		setSmsListener(null);
+		SmsRadar.smsPublisher.complete();
 		Intent intent = new Intent(context, SmsRadarService.class);
 		context.stopService(intent);
 	}
+
+	/**
+	 * Returns the configuration in use. The configuration is immutable, use the with methods to create a modified
+	 * copy and setConfig to apply it.
+	 *
+	 * @return configuration in use
+	 */
+	public static SmsRadarConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * Replaces the configuration in use. Every component of the running SmsRadar service reads the new configuration
+	 * the next time it needs a value, without restarting the service, so no sms is lost while the configuration is
+	 * changed. A sms content provider change being processed can use values of both configurations. If the new
+	 * SmsListener implements MmsListener and the previous one didn't, the mms content provider starts being
+	 * observed, and it stops being observed in the opposite case.
+	 *
+	 * @param config to apply
+	 */
+	public static synchronized void setConfig(SmsRadarConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("SmsRadarConfig param can't be null");
+		}
+		SmsListener previousSmsListener = SmsRadar.config.getSmsListener();
+		SmsRadar.config = config;
+		notifySmsListenerChanged(previousSmsListener);
+	}
+
+	static synchronized void setSmsListener(SmsListener smsListener) {
+		SmsListener previousSmsListener = config.getSmsListener();
+		config = config.withSmsListener(smsListener);
+		notifySmsListenerChanged(previousSmsListener);
+	}
+
+	private static void notifySmsListenerChanged(SmsListener previousSmsListener) {
+		SmsRadarConfigObserver configObserver = SmsRadar.configObserver;
+		SmsListener smsListener = config.getSmsListener();
+		if (configObserver != null && smsListener != previousSmsListener) {
+			configObserver.onSmsListenerChanged(smsListener);
+		}
+	}
+
+	/**
+	 * Registers a SmsSubscriber to receive the intercepted sms only when requested. Sms intercepted and not requested
+	 * yet are buffered using a buffer of 16 sms and the DROP_OLDEST OverflowPolicy.
+	 *
+	 * @param smsSubscriber to notify when the subscriber requests sms
+	 */
+	public static void subscribe(SmsSubscriber smsSubscriber) {
+		subscribe(smsSubscriber, DEFAULT_SUBSCRIBER_BUFFER_SIZE, OverflowPolicy.DROP_OLDEST);
+	}
+
+	/**
+	 * Registers a SmsSubscriber to receive the intercepted sms only when requested. Sms intercepted and not requested
+	 * yet are buffered and the OverflowPolicy passed as parameter is applied when the buffer is full.
+	 * <p/>
+	 * The subscription will be completed when the SmsRadar service is stopped.
+	 *
+	 * @param smsSubscriber to notify when the subscriber requests sms
+	 * @param bufferSize max number of sms buffered for this subscriber
+	 * @param overflowPolicy applied when the buffer is full
+	 */
+	public static void subscribe(SmsSubscriber smsSubscriber, int bufferSize, OverflowPolicy overflowPolicy) {
+		smsPublisher.subscribe(smsSubscriber, bufferSize, overflowPolicy);
+	}
+
+	/**
+	 * Registers a SmsBatchListener to receive the intercepted sms in batches delivered according to the
+	 * SmsBatchPolicy configured instead of one by one. The SmsListener used to initialize SmsRadar is still notified
+	 * in real time.
+	 *
+	 * @param smsBatchListener to register
+	 */
+	public static synchronized void addBatchListener(SmsBatchListener smsBatchListener) {
+		config = config.withBatchListener(smsBatchListener);
+	}
+
+	/**
+	 * Removes a SmsBatchListener previously registered.
+	 *
+	 * @param smsBatchListener to remove
+	 */
+	public static synchronized void removeBatchListener(SmsBatchListener smsBatchListener) {
+		config = config.withoutBatchListener(smsBatchListener);
+	}
+
+	/**
+	 * Configures when the sms buffered for the SmsBatchListeners are delivered. By default a batch is delivered
+	 * fifteen minutes after buffering the first sms or once 500 sms have been buffered, without waiting for the
+	 * device to be charging. The policy configured is applied from the next sms buffered.
+	 *
+	 * @param batchPolicy to apply
+	 */
+	public static synchronized void setBatchPolicy(SmsBatchPolicy batchPolicy) {
+		config = config.withBatchPolicy(batchPolicy);
+	}
+
+	/**
+	 * Returns the last sms intercepted by SmsRadar without querying the sms content provider. Only the last 200 sms
+	 * intercepted are kept in memory.
+	 *
+	 * @param n max number of sms to return
+	 * @return intercepted sms sorted from the newest to the oldest one
+	 */
+	public static List<Sms> getRecentSms(int n) {
+		return recentSmsCache.recent(n);
+	}
+
+	/**
+	 * Returns the last sms intercepted by SmsRadar with the address passed as parameter and created after the date
+	 * passed as parameter. This method doesn't query the sms content provider, only the last 200 sms intercepted are
+	 * kept in memory.
+	 *
+	 * @param address used to filter the sms
+	 * @param since min sms date in milliseconds
+	 * @return intercepted sms sorted from the newest to the oldest one
+	 */
+	public static List<Sms> getRecentSmsByAddress(String address, long since) {
+		return recentSmsCache.byAddress(address, since);
+	}
+
+	/**
+	 * Returns the state of a conversation built from the sms intercepted by SmsRadar without querying the sms content
+	 * provider. Only the last 64 conversations used are kept in memory.
+	 *
+	 * @param threadId thread_id of the conversation
+	 * @return state of the conversation or null if no sms of the conversation has been intercepted
+	 */
+	public static SmsThread getThread(long threadId) {
+		return smsThreadCache.get(threadId);
+	}
+
+	/**
+	 * Returns the conversations with sms intercepted by SmsRadar without querying the sms content provider. Only the
+	 * last 64 conversations used are kept in memory.
+	 *
+	 * @param n max number of conversations to return
+	 * @return conversations sorted from the one with the newest sms to the oldest one
+	 */
+	public static List<SmsThread> getRecentThreads(int n) {
+		return smsThreadCache.recent(n);
+	}
+
+	/**
+	 * Registers a keyword to be searched in every sms intercepted. Keywords are matched ignoring case and the
+	 * occurrences found are available in Sms getKeywordMatches method.
+	 * <p/>
+	 * All the keywords registered are searched scanning the sms body only once.
+	 *
+	 * @param keyword to search in the sms body
+	 */
+	public static void registerKeyword(String keyword) {
+		smsKeywordExtractor.registerKeyword(keyword);
+	}
+
+	/**
+	 * Removes a keyword previously registered.
+	 *
+	 * @param keyword to remove
+	 */
+	public static void unregisterKeyword(String keyword) {
+		smsKeywordExtractor.unregisterKeyword(keyword);
+	}
+
+	/**
+	 * Registers a visitor invoked with every new sms found before creating the Sms delivered to SmsListener and
+	 * SmsSubscribers. The visitor reads the sms values using a reused SmsRow, so consumers which only need counts,
+	 * addresses or searching the body can process every sms without creating objects. The Sms is created and
+	 * delivered only if the visitor returns true.
+	 *
+	 * @param smsRowVisitor to register or null to remove the visitor registered
+	 */
+	public static synchronized void setSmsRowVisitor(SmsRowVisitor smsRowVisitor) {
+		config = config.withSmsRowVisitor(smsRowVisitor);
+	}
+
+	/**
+	 * Registers a classifier used to deliver some sms, like verification codes, before the rest of sms waiting to be
+	 * delivered. A sms is delivered using the high priority lane if any of the classifiers registered returns true.
+	 *
+	 * @param classifier to register
+	 */
+	public static synchronized void addPriorityClassifier(SmsPriorityClassifier classifier) {
+		config = config.withPriorityClassifier(classifier);
+	}
+
+	/**
+	 * Removes a classifier previously registered.
+	 *
+	 * @param classifier to remove
+	 */
+	public static synchronized void removePriorityClassifier(SmsPriorityClassifier classifier) {
+		config = config.withoutPriorityClassifier(classifier);
+	}
+
+	/**
+	 * Returns the latency measured in a lane from the moment the sms are intercepted until the SmsListener is
+	 * notified.
+	 *
+	 * @param lane to measure
+	 * @return latency percentiles of the sms delivered using the lane
+	 */
+	public static SmsLaneMetrics getLaneMetrics(SmsLane lane) {
+		if (lane == null) {
+			throw new IllegalArgumentException("SmsLane param can't be null");
+		}
+		SmsLatencyHistogram histogram = getLaneLatencyHistogram(lane);
+		return new SmsLaneMetrics(lane, histogram.getCount(), histogram.getPercentile(50),
+				histogram.getPercentile(99), histogram.getMax());
+	}
+
+	static SmsLatencyHistogram getLaneLatencyHistogram(SmsLane lane) {
+		return lane == SmsLane.HIGH_PRIORITY ? highPriorityLaneLatency : normalLaneLatency;
+	}
+
+	/**
+	 * Configures how many sms a sender can send inside a time window before being considered a flooding sender and
+	 * the policy applied to the sms sent by flooding senders. By default senders sending more than 30 sms per minute
+	 * are detected and no policy is applied. Counts are reset when this method is invoked.
+	 *
+	 * @param floodPolicy applied to the sms of the flooding senders
+	 * @param maxSmsPerWindow max number of sms a sender can send inside the window
+	 * @param windowMillis duration of the window in milliseconds
+	 */
+	public static synchronized void setFloodPolicy(FloodPolicy floodPolicy, int maxSmsPerWindow, long windowMillis) {
+		SmsRadarConfig newConfig = config.withFloodPolicy(floodPolicy);
+		smsFloodDetector = new SmsFloodDetector(maxSmsPerWindow, windowMillis, new TimeProvider());
+		config = newConfig;
+	}
+
+	/**
+	 * Returns the senders which have sent more sms inside the flood window. Counts are estimated using fixed memory,
+	 * so they can be greater than the real ones.
+	 *
+	 * @param n max number of senders to return
+	 * @return senders sorted from the one with the greatest count to the lowest one
+	 */
+	public static List<SmsSenderRate> getHeavyHitters(int n) {
+		return smsFloodDetector.getHeavyHitters(n);
+	}
+
+	/**
+	 * Configures the max number of rows read from the sms content provider in every query. Big mailboxes are read
+	 * using more than one page to keep the memory used constant. The page size configured is applied from the next
+	 * sms content provider query.
+	 *
+	 * @param pageSize max number of rows read per query. Default value is 100
+	 */
+	public static synchronized void setPageSize(int pageSize) {
+		config = config.withPageSize(pageSize);
+	}
+
+	/**
+	 * Configures the policy used to decide if the first sms found the first time SmsRadar is initialized has to be
+	 * notified. By default sms up to five seconds old are notified, using the date set by the device when the sms is
+	 * stored and extending the max age up to thirty seconds when the sms content provider notifies new sms slowly.
+	 * The policy configured is applied from the next sms parsed.
+	 *
+	 * @param freshnessPolicy to apply
+	 */
+	public static synchronized void setFreshnessPolicy(SmsFreshnessPolicy freshnessPolicy) {
+		config = config.withFreshnessPolicy(freshnessPolicy);
+	}
+
+	/**
+	 * Configures SmsRadar to store the last sms intercepted in a file which can be shared by different processes
+	 * instead of using shared preferences. Has to be enabled if SmsRadarService is declared in a different process
+	 * than the one used by the application to avoid duplicated sms. The storage configured is applied the next time
+	 * the SmsRadar service is started.
+	 * <p/>
+	 * This storage is ignored if the history storage is enabled too: the history database is not shared between
+	 * processes, so both storages can't be used when SmsRadarService is declared in a different process.
+	 *
+	 * @param enabled true to use a storage shared between processes. Default value is false
+	 */
+	public static void setMultiProcessStorageEnabled(boolean enabled) {
+		SmsRadar.multiProcessStorageEnabled = enabled;
+	}
+
+	/**
+	 * Configures SmsRadar to store the sms intercepted and the last sms intercepted in a SQLite database owned by the
+	 * application, keeping a history of sms which doesn't depend on the sms content provider. The sms intercepted
+	 * processing one sms content provider change are written using only one transaction. The storage configured is
+	 * applied the next time the SmsRadar service is started.
+	 * <p/>
+	 * The history storage replaces the multi process storage if both are enabled, and the history database can't be
+	 * shared between processes, so don't enable it if SmsRadarService is declared in a different process.
+	 *
+	 * @param enabled true to store the sms intercepted. Default value is false
+	 */
+	public static void setHistoryStorageEnabled(boolean enabled) {
+		SmsRadar.historyStorageEnabled = enabled;
+	}
+
+	/**
+	 * Reads the sms stored in the history with the address passed as parameter and created after the date passed as
+	 * parameter.
+	 *
+	 * @param address used to filter the sms
+	 * @param since min sms date in milliseconds
+	 * @param limit max number of sms to return
+	 * @return sms sorted from the newest to the oldest one or an empty list if the history storage is not enabled or
+	 * the SmsRadar service is not running
+	 */
+	public static List<Sms> getSmsHistoryByAddress(String address, long since, int limit) {
+		if (address == null) {
+			throw new IllegalArgumentException("Address param can't be null");
+		}
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Limit has to be greater than zero");
+		}
+		SQLiteSmsHistoryStorage smsHistoryStorage = SmsRadar.smsHistoryStorage;
+		if (smsHistoryStorage == null) {
+			return Collections.emptyList();
+		}
+		return smsHistoryStorage.getSmsByAddress(SmsAddressPool.normalize(address), since, limit);
+	}
+
+	/**
+	 * Configures SmsRadar to keep an inverted index of the bodies of the sms intercepted, stored in a file next to
+	 * the last sms intercepted, to be able to search them using the search method. The index is loaded the next
+	 * time the SmsRadar service is started.
+	 *
+	 * @param enabled true to index the sms intercepted. Default value is false
+	 */
+	public static void setSearchIndexEnabled(boolean enabled) {
+		SmsRadar.searchIndexEnabled = enabled;
+	}
+
+	/**
+	 * Searches the sms intercepted since the search index was enabled containing every term of the query. Terms are
+	 * formed by letters and digits and matched ignoring case. Terms ending with "*" match every term starting with
+	 * them. Only the sms found are read from the sms content provider, the sms deleted are not returned.
+	 *
+	 * @param context used to read the sms found
+	 * @param query terms to search separated by spaces, like "verification cod*"
+	 * @param since min sms date in milliseconds
+	 * @param limit max number of sms to return
+	 * @return sms found sorted from the newest intercepted to the oldest one or an empty list if the search index is
+	 * not enabled or the SmsRadar service is not running
+	 */
+	public static List<Sms> search(Context context, String query, long since, int limit) {
+		if (context == null) {
+			throw new IllegalArgumentException("Context param can't be null");
+		}
+		if (query == null) {
+			throw new IllegalArgumentException("Query param can't be null");
+		}
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Limit has to be greater than zero");
+		}
+		SmsSearchIndex smsSearchIndex = SmsRadar.smsSearchIndex;
+		if (smsSearchIndex == null) {
+			return Collections.emptyList();
+		}
+		return readSms(context.getContentResolver(), smsSearchIndex.search(query, since, limit));
+	}
+
+	/**
+	 * Opens the content of a mms part notified to a MmsListener. The content is streamed from the mms content provider
+	 * without loading it in memory, so it can be used to read big attachments. The stream returned has to be closed.
+	 *
+	 * @param context used to read the mms content provider
+	 * @param mmsPart to open
+	 * @return stream with the content of the part
+	 * @throws IOException if the part doesn't exist anymore or can't be read
+	 */
+	public static InputStream openMmsPart(Context context, MmsPart mmsPart) throws IOException {
+		return getMmsPartLoader(context, mmsPart).openInputStream(mmsPart);
+	}
+
+	/**
+	 * Reads the content of a text mms part notified to a MmsListener decoded using the part charset.
+	 *
+	 * @param context used to read the mms content provider
+	 * @param mmsPart to read
+	 * @return text of the part
+	 * @throws IOException if the part doesn't exist anymore or can't be read
+	 */
+	public static String getMmsPartText(Context context, MmsPart mmsPart) throws IOException {
+		return getMmsPartLoader(context, mmsPart).loadText(mmsPart);
+	}
+
+	private static MmsPartLoader getMmsPartLoader(Context context, MmsPart mmsPart) {
+		if (context == null) {
+			throw new IllegalArgumentException("Context param can't be null");
+		}
+		if (mmsPart == null) {
+			throw new IllegalArgumentException("MmsPart param can't be null");
+		}
+		return new MmsPartLoader(context.getContentResolver());
+	}
+
+	/**
+	 * Reads the sms passed as parameter in batches of SEARCH_BATCH_SIZE sms, keeping the order of the ids.
+	 */
+	private static List<Sms> readSms(ContentResolver contentResolver, int[] smsIds) {
+		Uri smsUri = Uri.parse(CONTENT_SMS_URI);
+		SmsRowReader smsRowReader = new SmsRowReader(new SmsAddressPool(SEARCH_ADDRESS_POOL_CAPACITY));
+		Map<Integer, Sms> smsRead = new HashMap<Integer, Sms>();
+		for (int offset = 0; offset < smsIds.length; offset += SEARCH_BATCH_SIZE) {
+			int batchSize = Math.min(SEARCH_BATCH_SIZE, smsIds.length - offset);
+			Cursor cursor = contentResolver.query(smsUri, null, getIdInSelection(batchSize),
+					getIdInSelectionArgs(smsIds, offset, batchSize), null);
+			if (cursor == null) {
+				continue;
+			}
+			try {
+				while (cursor.moveToNext()) {
+					Sms sms = smsRowReader.read(cursor);
+					smsRead.put(sms.getId(), sms);
+				}
+			} finally {
+				cursor.close();
+			}
+		}
+		List<Sms> result = new ArrayList<Sms>(smsRead.size());
+		for (int smsId : smsIds) {
+			Sms sms = smsRead.get(smsId);
+			if (sms != null) {
+				result.add(sms);
+			}
+		}
+		return result;
+	}
+
+	private static String getIdInSelection(int ids) {
+		StringBuilder selection = new StringBuilder(ID_IN_SELECTION);
+		for (int i = 0; i < ids; i++) {
+			selection.append(i == 0 ? "?" : ", ?");
+		}
+		return selection.append(')').toString();
+	}
+
+	private static String[] getIdInSelectionArgs(int[] smsIds, int offset, int ids) {
+		String[] selectionArgs = new String[ids];
+		for (int i = 0; i < ids; i++) {
+			selectionArgs[i] = String.valueOf(smsIds[offset + i]);
+		}
+		return selectionArgs;
+	}
+
+	/**
+	 * Starts recording the time spent querying the sms content provider, parsing the sms, storing the last sms
+	 * intercepted, dispatching the sms and notifying the listener. Events are kept in memory in a buffer allocated
+	 * when this method is invoked and the oldest ones are discarded when the buffer is full.
+	 *
+	 * @param capacity max number of events kept. Every stage traced records two events
+	 */
+	public static void startTracing(int capacity) {
+		smsTracer = new SmsTracer(capacity);
+	}
+
+	/**
+	 * Stops recording events and discards the events recorded.
+	 */
+	public static void stopTracing() {
+		smsTracer = SmsTracer.DISABLED;
+	}
+
+	/**
+	 * Starts recording the sms content provider changes notified and the rows returned by every sms content provider
+	 * query into a compressed file. The file can be replayed later to reproduce the behavior of the sms content
+	 * provider of a device. Rows are recorded with the sms bodies, so the file has to be handled like the sms.
+	 *
+	 * @param file where the capture will be written. If a capture was being recorded it's stopped
+	 * @throws IOException if the file can't be created
+	 */
+	public static void startCapture(File file) throws IOException {
+		SmsCaptureRecorder previousSmsCaptureRecorder = smsCaptureRecorder;
+		smsCaptureRecorder = new SmsCaptureRecorder(file, new TimeProvider());
+		if (previousSmsCaptureRecorder != null) {
+			previousSmsCaptureRecorder.close();
+		}
+	}
+
+	/**
+	 * Stops recording and closes the capture file.
+	 */
+	public static void stopCapture() {
+		SmsCaptureRecorder smsCaptureRecorder = SmsRadar.smsCaptureRecorder;
+		SmsRadar.smsCaptureRecorder = null;
+		if (smsCaptureRecorder != null) {
+			smsCaptureRecorder.close();
+		}
+	}
+
+	/**
+	 * Writes the events recorded since the tracing was started using the Chrome trace event format. The file can be
+	 * opened with chrome://tracing or Perfetto.
+	 *
+	 * @param file where the events will be written
+	 * @throws IOException if the file can't be written
+	 */
+	public static void dumpTrace(File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("File param can't be null");
+		}
+		Writer writer = new FileWriter(file);
+		try {
+			smsTracer.writeTo(writer);
+		} finally {
+			writer.close();
+		}
+	}
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable SmsRadar runtime configuration. Every with method returns a new configuration with one value changed.
+ * <p/>
+ * The configuration in use is replaced atomically using SmsRadar setConfig method, so it can be changed without
+ * restarting the service and without missing any sms. There is no snapshot per sms content provider change: every
+ * component of the running SmsRadarService reads the configuration in use independently when it needs a value.
+ * SmsQueryPager reads the page size for every query, SmsCursorParser reads the SmsRowVisitor for every row,
+ * SmsDispatcher reads the classifiers and the flood policy once per sms dispatched and the listener once per sms
+ * delivered, and SmsStatusTracker and SmsDeletionTracker check the listener for every change. A configuration
+ * replaced while a change is being processed is applied to the rest of that change, so the values read for one
+ * change can come from both configurations, but every value read belongs to a complete configuration.
+ */
+public class SmsRadarConfig {
+
+	static final SmsRadarConfig DEFAULT = new SmsRadarConfig(null, SmsQueryPager.DEFAULT_PAGE_SIZE,
+			SmsFreshnessPolicy.DEFAULT, FloodPolicy.NONE, Collections.<SmsPriorityClassifier>emptyList(), null,
+			SmsBatchPolicy.DEFAULT, Collections.<SmsBatchListener>emptyList());
+
+	private final SmsListener smsListener;
+	private final int pageSize;
+	private final SmsFreshnessPolicy freshnessPolicy;
+	private final FloodPolicy floodPolicy;
+	private final List<SmsPriorityClassifier> priorityClassifiers;
+	private final SmsRowVisitor smsRowVisitor;
+	private final SmsBatchPolicy batchPolicy;
+	private final List<SmsBatchListener> batchListeners;
+
+	private SmsRadarConfig(SmsListener smsListener, int pageSize, SmsFreshnessPolicy freshnessPolicy,
+			FloodPolicy floodPolicy, List<SmsPriorityClassifier> priorityClassifiers, SmsRowVisitor smsRowVisitor,
+			SmsBatchPolicy batchPolicy, List<SmsBatchListener> batchListeners) {
+		this.smsListener = smsListener;
+		this.pageSize = pageSize;
+		this.freshnessPolicy = freshnessPolicy;
+		this.floodPolicy = floodPolicy;
+		this.priorityClassifiers = priorityClassifiers;
+		this.smsRowVisitor = smsRowVisitor;
+		this.batchPolicy = batchPolicy;
+		this.batchListeners = batchListeners;
+	}
+
+	public SmsListener getSmsListener() {
+		return smsListener;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public SmsFreshnessPolicy getFreshnessPolicy() {
+		return freshnessPolicy;
+	}
+
+	public FloodPolicy getFloodPolicy() {
+		return floodPolicy;
+	}
+
+	public List<SmsPriorityClassifier> getPriorityClassifiers() {
+		return priorityClassifiers;
+	}
+
+	public SmsRowVisitor getSmsRowVisitor() {
+		return smsRowVisitor;
+	}
+
+	public SmsBatchPolicy getBatchPolicy() {
+		return batchPolicy;
+	}
+
+	public List<SmsBatchListener> getBatchListeners() {
+		return batchListeners;
+	}
+
+	/**
+	 * @param smsListener to notify with every sms intercepted or null to stop notifying them
+	 */
+	public SmsRadarConfig withSmsListener(SmsListener smsListener) {
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy, priorityClassifiers,
+				smsRowVisitor, batchPolicy, batchListeners);
+	}
+
+	/**
+	 * @param pageSize max number of rows read per sms content provider query
+	 */
+	public SmsRadarConfig withPageSize(int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("Page size has to be greater than zero");
+		}
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy, priorityClassifiers,
+				smsRowVisitor, batchPolicy, batchListeners);
+	}
+
+	public SmsRadarConfig withFreshnessPolicy(SmsFreshnessPolicy freshnessPolicy) {
+		if (freshnessPolicy == null) {
+			throw new IllegalArgumentException("SmsFreshnessPolicy param can't be null");
+		}
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy, priorityClassifiers,
+				smsRowVisitor, batchPolicy, batchListeners);
+	}
+
+	public SmsRadarConfig withFloodPolicy(FloodPolicy floodPolicy) {
+		if (floodPolicy == null) {
+			throw new IllegalArgumentException("FloodPolicy param can't be null");
+		}
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy, priorityClassifiers,
+				smsRowVisitor, batchPolicy, batchListeners);
+	}
+
+	public SmsRadarConfig withPriorityClassifier(SmsPriorityClassifier classifier) {
+		if (classifier == null) {
+			throw new IllegalArgumentException("SmsPriorityClassifier param can't be null");
+		}
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy,
+				add(priorityClassifiers, classifier), smsRowVisitor, batchPolicy, batchListeners);
+	}
+
+	public SmsRadarConfig withoutPriorityClassifier(SmsPriorityClassifier classifier) {
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy,
+				remove(priorityClassifiers, classifier), smsRowVisitor, batchPolicy, batchListeners);
+	}
+
+	/**
+	 * @param smsRowVisitor to invoke with every new sms or null to remove the visitor
+	 */
+	public SmsRadarConfig withSmsRowVisitor(SmsRowVisitor smsRowVisitor) {
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy, priorityClassifiers,
+				smsRowVisitor, batchPolicy, batchListeners);
+	}
+
+	public SmsRadarConfig withBatchPolicy(SmsBatchPolicy batchPolicy) {
+		if (batchPolicy == null) {
+			throw new IllegalArgumentException("SmsBatchPolicy param can't be null");
+		}
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy, priorityClassifiers,
+				smsRowVisitor, batchPolicy, batchListeners);
+	}
+
+	public SmsRadarConfig withBatchListener(SmsBatchListener smsBatchListener) {
+		if (smsBatchListener == null) {
+			throw new IllegalArgumentException("SmsBatchListener param can't be null");
+		}
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy, priorityClassifiers,
+				smsRowVisitor, batchPolicy, add(batchListeners, smsBatchListener));
+	}
+
+	public SmsRadarConfig withoutBatchListener(SmsBatchListener smsBatchListener) {
+		return new SmsRadarConfig(smsListener, pageSize, freshnessPolicy, floodPolicy, priorityClassifiers,
+				smsRowVisitor, batchPolicy, remove(batchListeners, smsBatchListener));
+	}
+
+	private static <T> List<T> add(List<T> values, T value) {
+		List<T> result = new ArrayList<T>(values);
+		result.add(value);
+		return Collections.unmodifiableList(result);
+	}
+
+	private static <T> List<T> remove(List<T> values, T value) {
+		List<T> result = new ArrayList<T>(values);
+		result.remove(value);
+		return Collections.unmodifiableList(result);
+	}
+
+	@Override
+	public String toString() {
+		return "SmsRadarConfig{" +
+				"smsListener=" + smsListener +
+				", pageSize=" + pageSize +
+				", freshnessPolicy=" + freshnessPolicy +
+				", floodPolicy=" + floodPolicy +
+				", priorityClassifiers=" + priorityClassifiers +
+				", smsRowVisitor=" + smsRowVisitor +
+				", batchPolicy=" + batchPolicy +
+				", batchListeners=" + batchListeners +
+				'}';
+	}
+}
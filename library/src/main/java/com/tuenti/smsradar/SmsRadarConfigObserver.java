@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Notified when the SmsListener of the SmsRadarConfig in use is replaced, to start or stop the parts of the running
+ * service needed only by some SmsListener capabilities. It's invoked from the thread replacing the configuration.
+ */
+interface SmsRadarConfigObserver {
+
+	void onSmsListenerChanged(SmsListener smsListener);
+}
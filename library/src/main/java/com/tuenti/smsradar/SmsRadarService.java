@@ -15,6 +15,8 @@
  */
 package com.tuenti.smsradar;
 
+import java.io.File;
+import java.io.IOException;
 
 import android.app.AlarmManager;
 import android.app.PendingIntent;
@@ -25,6 +27,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 
 
@@ -33,7 +36,31 @@ import android.os.IBinder;
  * unregister the content observer in sms content provider when it's created and destroyed.
  * <p/>
  * The SmsContentObserver will be registered over the CONTENT_SMS_URI to be notified each time the system update the
- * sms content provider.
+ * sms content provider. A SmsPollingWatchdog is started with the observer to poll the sms content provider if the
+ * system stops notifying the observer.
+ * <p/>
+ * The service starts in stages to return quickly from onStartCommand. A SmsStartupObserver is registered
+ * immediately to count the changes notified while the sms storage, the sms search index and the SmsCursorParser are
+ * loaded in a background thread. That thread only creates the dependencies, which are handed to the main thread in
+ * one Handler post and assigned there, or closed if the service was destroyed meanwhile. Once loaded, SmsObserver
+ * replaces SmsStartupObserver in the main thread, processes the sms notified during the startup and the
+ * SmsPollingWatchdog is started. The time elapsed until then is available using SmsRadar getTimeToReadyMillis
+ * method.
+ * <p/>
+ * If the SmsListener implements SmsDeletionListener the ids of every sms stored are read from the startup thread.
+ * The deletions are tracked from another background thread, so the sms content provider is never read again from
+ * the main thread to find the sms deleted.
+ * <p/>
+ * If the sms search index is enabled it's saved from its own background thread, which is stopped once the index is
+ * saved when the service is destroyed.
+ * <p/>
+ * If the SmsListener implements MmsListener a MmsObserver is registered over the CONTENT_MMS_URI with the
+ * SmsObserver. It reads the mms content provider from its own background thread and the mms stored while the service
+ * was stopped are notified once the service is ready. The MmsObserver is registered or unregistered from the main
+ * thread when SmsRadar setConfig replaces the SmsListener with one that does or doesn't implement MmsListener.
+ * <p/>
+ * The service is started with the SmsDeferredDelivery ACTION_DELIVER_SMS_BATCH action when the batch of sms
+ * buffered for the SmsBatchListeners has to be delivered.
  *
  * @author Pedro Vcente Gómez Sánchez <pgomez@tuenti.com>
  * @author Manuel Peinado <mpeinado@tuenti.com>
@@ -41,14 +68,55 @@ import android.os.IBinder;
 public class SmsRadarService extends Service {
 
 	private static final String CONTENT_SMS_URI = "content://sms";
+	private static final String CONTENT_MMS_URI = "content://mms";
 	private static final int ONE_SECOND = 1000;
+	private static final String SMS_PREFERENCES = "sms_preferences";
+	private static final String MMS_PREFERENCES = "mms_preferences";
+	private static final String SMS_STORAGE_FILE = "sms_radar_storage";
+	private static final String SMS_SEARCH_INDEX_FILE = "sms_radar_index";
+	private static final String SMS_BATCH_FILE = "sms_radar_batch";
+	private static final String STARTUP_THREAD_NAME = "SmsRadarStartup";
+	private static final String INDEXER_THREAD_NAME = "SmsRadarIndexer";
+	private static final String MMS_THREAD_NAME = "SmsRadarMms";
+	private static final String TRACKER_THREAD_NAME = "SmsRadarTracker";
+	private static final long NANOS_PER_MILLI = 1000000;
 
 
 	private ContentResolver contentResolver;
 	private SmsObserver smsObserver;
+	private MmsObserver mmsObserver;
+	private Handler mmsHandler;
+	private boolean mmsObserverRegistered;
+	private Handler trackerHandler;
+	private SmsStartupObserver smsStartupObserver;
+	private SmsPollingWatchdog smsPollingWatchdog;
+	private SmsCursorParser smsCursorParser;
+	private MappedFileSmsStorage mappedFileSmsStorage;
+	private SQLiteSmsHistoryStorage smsHistoryStorage;
+	private SmsQueryPager smsQueryPager;
+	private SmsDispatcher smsDispatcher;
+	private SmsIndexer smsIndexer;
+	private SmsDeferredDelivery smsDeferredDelivery;
+	private Handler handler;
 	private AlarmManager alarmManager;
 	private TimeProvider timeProvider;
+	private final SmsRadarConfigObserver configObserver = new SmsRadarConfigObserver() {
+		@Override
+		public void onSmsListenerChanged(SmsListener smsListener) {
+			handler.post(new Runnable() {
+				@Override
+				public void run() {
+					//Ignored if the service stopped intercepting sms after the change was notified
+					if (SmsRadar.configObserver == configObserver) {
+						updateMmsObserver();
+					}
+				}
+			});
+		}
+	};
 	private boolean initialized;
+	private int startupGeneration;
+	private long startupStartedAtNanos;
 
 
 	@Override
@@ -62,6 +130,9 @@ public class SmsRadarService extends Service {
 		if (!initialized) {
 			initializeService();
 		}
+		if (intent != null && SmsDeferredDelivery.ACTION_DELIVER_SMS_BATCH.equals(intent.getAction())) {
+			getSmsDeferredDelivery().onAlarm();
+		}
 		return START_STICKY;
 	}
 
@@ -79,31 +150,190 @@ public class SmsRadarService extends Service {
 
 	private void initializeService() {
 		initialized = true;
-		initializeDependencies();
-		registerSmsContentObserver();
+		startupStartedAtNanos = System.nanoTime();
+		SmsRadar.timeToReadyMillis = -1;
+		if (areDependenciesInitialized()) {
+			assignDependencies(loadDependencies(contentResolver, getHandler(), getSmsDeferredDelivery(),
+					getTimeProvider()));
+			startInterceptingSms();
+		} else {
+			startStagedStartup();
+		}
+	}
+
+	private void startStagedStartup() {
+		initializeContentResolver();
+		registerSmsStartupObserver();
+		final ContentResolver contentResolver = this.contentResolver;
+		final Handler handler = getHandler();
+		final SmsDeferredDelivery smsDeferredDelivery = getSmsDeferredDelivery();
+		final TimeProvider timeProvider = getTimeProvider();
+		final int generation = startupGeneration;
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final StartupDependencies dependencies = loadDependencies(contentResolver, handler,
+						smsDeferredDelivery, timeProvider);
+				handler.post(new Runnable() {
+					@Override
+					public void run() {
+						if (initialized && generation == startupGeneration) {
+							onDependenciesLoaded(dependencies);
+						} else {
+							dependencies.close();
+						}
+					}
+				});
+			}
+		}, STARTUP_THREAD_NAME).start();
+	}
+
+	/**
+	 * Invoked from the startup thread to create the dependencies which read from disk. Service fields are not
+	 * modified here, the dependencies are assigned from the main thread.
+	 */
+	private StartupDependencies loadDependencies(ContentResolver contentResolver, Handler handler,
+			SmsDeferredDelivery smsDeferredDelivery, TimeProvider timeProvider) {
+		StartupDependencies dependencies = new StartupDependencies();
+		dependencies.smsQueryPager = new SmsQueryPager(contentResolver);
+		SmsStorage smsStorage = initializeSmsStorage(dependencies);
+		dependencies.smsCursorParser = new SmsCursorParser(smsStorage, timeProvider);
+		int lastSmsIdParsed = dependencies.smsCursorParser.getLastSmsIdParsed();
+		if (SmsRadar.searchIndexEnabled) {
+			dependencies.smsIndexer = initializeSmsIndexer(dependencies.smsQueryPager, lastSmsIdParsed);
+		}
+		dependencies.smsDispatcher = new SmsDispatcher(handler, dependencies.smsIndexer, smsDeferredDelivery);
+		dependencies.knownSmsIds = SmsDeletionTracker.loadKnownIds(dependencies.smsQueryPager);
+		dependencies.trackerHandler = startHandlerThread(TRACKER_THREAD_NAME);
+		if (isMmsListenerSet()) {
+			dependencies.mmsHandler = startHandlerThread(MMS_THREAD_NAME);
+			SharedPreferences preferences = getSharedPreferences(MMS_PREFERENCES, MODE_PRIVATE);
+			dependencies.mmsObserver = new MmsObserver(dependencies.mmsHandler, handler, contentResolver,
+					dependencies.smsQueryPager, preferences);
+			dependencies.mmsObserver.getLastMmsIdParsed();
+		}
+		return dependencies;
 	}
 
-	private void initializeDependencies() {
-		if (!areDependenciesInitialized()) {
-			initializeContentResolver();
-			initializeSmsObserver();
+	private void onDependenciesLoaded(StartupDependencies dependencies) {
+		assignDependencies(dependencies);
+		initializeSmsObserver(dependencies.knownSmsIds);
+		startInterceptingSms();
+		int changesNotifiedDuringStartup = smsStartupObserver.getChangeCount();
+		unregisterSmsStartupObserver();
+		if (changesNotifiedDuringStartup > 0) {
+			getSmsPollingWatchdog().interceptNewSms();
+			smsObserver.onChange(false);
 		}
 	}
 
+	private void assignDependencies(StartupDependencies dependencies) {
+		smsQueryPager = dependencies.smsQueryPager;
+		mappedFileSmsStorage = dependencies.mappedFileSmsStorage;
+		smsCursorParser = dependencies.smsCursorParser;
+		smsIndexer = dependencies.smsIndexer;
+		smsDispatcher = dependencies.smsDispatcher;
+		mmsObserver = dependencies.mmsObserver;
+		mmsHandler = dependencies.mmsHandler;
+		trackerHandler = dependencies.trackerHandler;
+		smsHistoryStorage = dependencies.smsHistoryStorage;
+		SmsRadar.smsHistoryStorage = smsHistoryStorage;
+		SmsRadar.smsSearchIndex = smsIndexer != null ? smsIndexer.getSmsSearchIndex() : null;
+	}
+
+	private void startInterceptingSms() {
+		registerSmsContentObserver();
+		SmsRadar.configObserver = configObserver;
+		updateMmsObserver();
+		startSmsPollingWatchdog();
+		SmsRadar.timeToReadyMillis = (System.nanoTime() - startupStartedAtNanos) / NANOS_PER_MILLI;
+	}
+
 	private boolean areDependenciesInitialized() {
 		return contentResolver != null && smsObserver != null;
 	}
 
-	private void initializeSmsObserver() {
-		Handler handler = new Handler();
-		SmsCursorParser smsCursorParser = initializeSmsCursorParser();
-		this.smsObserver = new SmsObserver(contentResolver, handler, smsCursorParser);
+	private void initializeSmsObserver(SmsIdBitmap knownSmsIds) {
+		SmsStatusTracker smsStatusTracker = new SmsStatusTracker(smsQueryPager, smsDispatcher,
+				SmsStatusTracker.DEFAULT_WINDOW_SIZE);
+		SmsDeletionTracker smsDeletionTracker = new SmsDeletionTracker(smsQueryPager, smsDispatcher, trackerHandler,
+				getHandler());
+		this.smsObserver = new SmsObserver(getHandler(), smsCursorParser, smsQueryPager, smsDispatcher,
+				smsStatusTracker, smsDeletionTracker);
+		smsObserver.startTracking(knownSmsIds);
 	}
 
-	private SmsCursorParser initializeSmsCursorParser() {
-		SharedPreferences preferences = getSharedPreferences("sms_preferences", MODE_PRIVATE);
-		SmsStorage smsStorage = new SharedPreferencesSmsStorage(preferences);
-		return new SmsCursorParser(smsStorage, getTimeProvider());
+	private SmsStorage initializeSmsStorage(StartupDependencies dependencies) {
+		SharedPreferences preferences = getSharedPreferences(SMS_PREFERENCES, MODE_PRIVATE);
+		SmsStorage sharedPreferencesSmsStorage = new SharedPreferencesSmsStorage(preferences);
+		if (SmsRadar.historyStorageEnabled) {
+			dependencies.smsHistoryStorage = initializeSmsHistoryStorage(sharedPreferencesSmsStorage);
+			return dependencies.smsHistoryStorage;
+		}
+		if (!SmsRadar.multiProcessStorageEnabled) {
+			return sharedPreferencesSmsStorage;
+		}
+		try {
+			MappedFileSmsStorage mappedFileSmsStorage = new MappedFileSmsStorage(new File(getFilesDir(),
+					SMS_STORAGE_FILE));
+			if (!sharedPreferencesSmsStorage.isFirstSmsIntercepted()) {
+				mappedFileSmsStorage.updateLastSmsIntercepted(sharedPreferencesSmsStorage.getLastSmsIntercepted());
+			}
+			dependencies.mappedFileSmsStorage = mappedFileSmsStorage;
+			return mappedFileSmsStorage;
+		} catch (IOException e) {
+			//The sms intercepted are still stored if the file can't be opened, but only for this process
+			return sharedPreferencesSmsStorage;
+		}
+	}
+
+	private SQLiteSmsHistoryStorage initializeSmsHistoryStorage(SmsStorage sharedPreferencesSmsStorage) {
+		SQLiteSmsHistoryStorage smsHistoryStorage = new SQLiteSmsHistoryStorage(new SmsHistoryOpenHelper(this));
+		if (smsHistoryStorage.isFirstSmsIntercepted() && !sharedPreferencesSmsStorage.isFirstSmsIntercepted()) {
+			smsHistoryStorage.updateLastSmsIntercepted(sharedPreferencesSmsStorage.getLastSmsIntercepted());
+		}
+		return smsHistoryStorage;
+	}
+
+	private SmsIndexer initializeSmsIndexer(SmsQueryPager smsQueryPager, int lastSmsIdParsed) {
+		File indexFile = new File(getFilesDir(), SMS_SEARCH_INDEX_FILE);
+		SmsIndexer smsIndexer = new SmsIndexer(SmsIndexer.load(indexFile), indexFile,
+				SmsIndexer.DEFAULT_SAVE_INTERVAL, startHandlerThread(INDEXER_THREAD_NAME));
+		smsIndexer.catchUp(smsQueryPager, lastSmsIdParsed);
+		return smsIndexer;
+	}
+
+	private static boolean isMmsListenerSet() {
+		return SmsRadar.config.getSmsListener() instanceof MmsListener;
+	}
+
+	private Handler startHandlerThread(String name) {
+		HandlerThread handlerThread = new HandlerThread(name);
+		handlerThread.start();
+		return new Handler(handlerThread.getLooper());
+	}
+
+	private SmsDeferredDelivery getSmsDeferredDelivery() {
+		if (smsDeferredDelivery == null) {
+			smsDeferredDelivery = new SmsDeferredDelivery(this, getAlarmManager(), getTimeProvider(), null,
+					new SmsBatchStore(new File(getFilesDir(), SMS_BATCH_FILE)));
+		}
+		return smsDeferredDelivery;
+	}
+
+	private Handler getHandler() {
+		if (handler == null) {
+			handler = new Handler();
+		}
+		return handler;
+	}
+
+	private SmsPollingWatchdog getSmsPollingWatchdog() {
+		if (smsPollingWatchdog == null) {
+			smsPollingWatchdog = new SmsPollingWatchdog(getHandler(), smsObserver, smsCursorParser, smsQueryPager,
+					smsDispatcher);
+		}
+		return smsPollingWatchdog;
 	}
 
 	private void initializeContentResolver() {
@@ -112,7 +342,18 @@ public class SmsRadarService extends Service {
 
 	private void finishService() {
 		initialized = false;
+		if (SmsRadar.configObserver == configObserver) {
+			SmsRadar.configObserver = null;
+		}
+		startupGeneration++;
+		unregisterSmsStartupObserver();
 		unregisterSmsContentObserver();
+		stopSmsDeletionTracker();
+		unregisterMmsContentObserver();
+		stopSmsPollingWatchdog();
+		closeSmsIndexer();
+		flushSmsDeferredDelivery();
+		closeSmsStorage();
 	}
 
 
@@ -123,7 +364,160 @@ public class SmsRadarService extends Service {
 	}
 
 	private void unregisterSmsContentObserver() {
-		contentResolver.unregisterContentObserver(smsObserver);
+		if (smsObserver != null) {
+			contentResolver.unregisterContentObserver(smsObserver);
+		}
+	}
+
+	/**
+	 * Registers the MmsObserver if SmsListener implements MmsListener, creating it if it was not created from the
+	 * startup thread, or unregisters it otherwise.
+	 */
+	private void updateMmsObserver() {
+		if (!isMmsListenerSet()) {
+			unregisterMmsContentObserver();
+			return;
+		}
+		if (mmsObserver == null) {
+			mmsHandler = startHandlerThread(MMS_THREAD_NAME);
+			SharedPreferences preferences = getSharedPreferences(MMS_PREFERENCES, MODE_PRIVATE);
+			mmsObserver = new MmsObserver(mmsHandler, getHandler(), contentResolver, smsQueryPager, preferences);
+		}
+		if (!mmsObserverRegistered) {
+			registerMmsContentObserver();
+			interceptNewMms();
+		}
+	}
+
+	private void registerMmsContentObserver() {
+		Uri mmsUri = Uri.parse(CONTENT_MMS_URI);
+		boolean notifyForDescendents = true;
+		contentResolver.registerContentObserver(mmsUri, notifyForDescendents, mmsObserver);
+		mmsObserverRegistered = true;
+	}
+
+	private void unregisterMmsContentObserver() {
+		if (mmsObserverRegistered) {
+			contentResolver.unregisterContentObserver(mmsObserver);
+			mmsObserverRegistered = false;
+		}
+		mmsObserver = null;
+		quit(mmsHandler);
+		mmsHandler = null;
+	}
+
+	/**
+	 * Reads the mms stored while the MmsObserver was not registered from the mms thread.
+	 */
+	private void interceptNewMms() {
+		final MmsObserver mmsObserver = this.mmsObserver;
+		mmsHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				mmsObserver.interceptNewMms();
+			}
+		});
+	}
+
+	private void registerSmsStartupObserver() {
+		smsStartupObserver = new SmsStartupObserver(getHandler());
+		Uri smsUri = Uri.parse(CONTENT_SMS_URI);
+		boolean notifyForDescendents = true;
+		contentResolver.registerContentObserver(smsUri, notifyForDescendents, smsStartupObserver);
+	}
+
+	private void unregisterSmsStartupObserver() {
+		if (smsStartupObserver != null) {
+			contentResolver.unregisterContentObserver(smsStartupObserver);
+			smsStartupObserver = null;
+		}
+	}
+
+	private void startSmsPollingWatchdog() {
+		getSmsPollingWatchdog().start();
+	}
+
+	private void stopSmsPollingWatchdog() {
+		if (smsPollingWatchdog != null) {
+			smsPollingWatchdog.stop();
+		}
+	}
+
+	private void stopSmsDeletionTracker() {
+		quit(trackerHandler);
+		trackerHandler = null;
+	}
+
+	private static void quit(Handler handler) {
+		if (handler != null) {
+			handler.getLooper().quit();
+		}
+	}
+
+	private void closeSmsIndexer() {
+		SmsRadar.smsSearchIndex = null;
+		if (smsIndexer != null) {
+			smsIndexer.close();
+			smsIndexer = null;
+		}
+	}
+
+	private void flushSmsDeferredDelivery() {
+		if (smsDeferredDelivery != null) {
+			smsDeferredDelivery.flush();
+		}
+	}
+
+	private void closeSmsStorage() {
+		if (mappedFileSmsStorage != null) {
+			try {
+				mappedFileSmsStorage.close();
+			} catch (IOException e) {
+				//The file descriptor is released anyway when the process finishes
+			}
+			mappedFileSmsStorage = null;
+		}
+		SmsRadar.smsHistoryStorage = null;
+		if (smsHistoryStorage != null) {
+			smsHistoryStorage.close();
+			smsHistoryStorage = null;
+		}
+	}
+
+	/**
+	 * Dependencies created from the startup thread. They are handed to the main thread in a single Handler post and
+	 * closed there if the service was destroyed while they were loaded.
+	 */
+	private static class StartupDependencies {
+
+		private SmsQueryPager smsQueryPager;
+		private MappedFileSmsStorage mappedFileSmsStorage;
+		private SQLiteSmsHistoryStorage smsHistoryStorage;
+		private SmsCursorParser smsCursorParser;
+		private SmsIndexer smsIndexer;
+		private SmsDispatcher smsDispatcher;
+		private MmsObserver mmsObserver;
+		private Handler mmsHandler;
+		private SmsIdBitmap knownSmsIds;
+		private Handler trackerHandler;
+
+		void close() {
+			quit(mmsHandler);
+			quit(trackerHandler);
+			if (smsIndexer != null) {
+				smsIndexer.close();
+			}
+			if (smsHistoryStorage != null) {
+				smsHistoryStorage.close();
+			}
+			if (mappedFileSmsStorage != null) {
+				try {
+					mappedFileSmsStorage.close();
+				} catch (IOException e) {
+					//The file descriptor is released anyway when the process finishes
+				}
+			}
+		}
 	}
 
 	private void restartService() {
@@ -150,6 +544,10 @@ public class SmsRadarService extends Service {
 		this.smsObserver = smsObserver;
 	}
 
+	void setSmsPollingWatchdog(SmsPollingWatchdog smsPollingWatchdog) {
+		this.smsPollingWatchdog = smsPollingWatchdog;
+	}
+
 	void setContentResolver(ContentResolver contentResolver) {
 		this.contentResolver = contentResolver;
 	}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import android.database.CharArrayBuffer;
+
+/**
+ * Read only view of the sms content provider row being parsed. SmsRow instances are reused for every row, so the
+ * values returned, including the CharSequences, are only valid inside SmsRowVisitor visit method.
+ * <p/>
+ * Reading a SmsRow doesn't allocate memory once the address and body buffers are big enough, so it can be used to
+ * process a high volume of sms without creating Sms instances.
+ */
+public interface SmsRow {
+
+	/**
+	 * @return _id of the sms in the sms content provider.
+	 */
+	int getId();
+
+	/**
+	 * @return sms local creation date in milliseconds.
+	 */
+	long getDate();
+
+	/**
+	 * @return date the sms was sent in milliseconds or 0 if the sms content provider doesn't store it.
+	 */
+	long getDateSent();
+
+	/**
+	 * @return sms type value used by the sms content provider. Review SmsType values.
+	 */
+	int getType();
+
+	/**
+	 * @return id of the SIM subscription used or Sms.NO_SUBSCRIPTION if the device doesn't support multiple SIM
+	 * cards.
+	 */
+	int getSubscriptionId();
+
+	/**
+	 * @return thread_id of the conversation or Sms.NO_THREAD if the sms content provider doesn't store it.
+	 */
+	long getThreadId();
+
+	/**
+	 * @return address of the sms backed by a reused buffer. Use toString to keep it after the visit.
+	 */
+	CharSequence getAddress();
+
+	/**
+	 * @return body of the sms backed by a reused buffer. Use toString to keep it after the visit.
+	 */
+	CharSequence getBody();
+
+	void copyAddressTo(CharArrayBuffer buffer);
+
+	void copyBodyTo(CharArrayBuffer buffer);
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Collections;
+
+import android.database.Cursor;
+
+/**
+ * Reads the sms stored in the row where a cursor obtained from the sms content provider is positioned.
+ * <p/>
+ * Addresses are interned and normalized using a SmsAddressPool. The subscription id, the thread id and the read flag
+ * are read only if the sms content provider stores them.
+ */
+class SmsRowReader {
+
+	static final String ADDRESS_COLUMN_NAME = "address";
+	static final String DATE_COLUMN_NAME = "date";
+	static final String DATE_SENT_COLUMN_NAME = "date_sent";
+	static final String BODY_COLUMN_NAME = "body";
+	static final String TYPE_COLUMN_NAME = "type";
+	static final String ID_COLUMN_NAME = "_id";
+	static final String SUB_ID_COLUMN_NAME = "sub_id";
+	static final String THREAD_ID_COLUMN_NAME = "thread_id";
+	static final String READ_COLUMN_NAME = "read";
+
+	private final SmsAddressPool smsAddressPool;
+
+	SmsRowReader(SmsAddressPool smsAddressPool) {
+		this.smsAddressPool = smsAddressPool;
+	}
+
+	Sms read(Cursor cursor) {
+		String address = cursor.getString(cursor.getColumnIndex(ADDRESS_COLUMN_NAME));
+		String date = cursor.getString(cursor.getColumnIndex(DATE_COLUMN_NAME));
+		String msg = cursor.getString(cursor.getColumnIndex(BODY_COLUMN_NAME));
+		String type = cursor.getString(cursor.getColumnIndex(TYPE_COLUMN_NAME));
+
+		SmsAddressPool.PooledAddress pooledAddress = smsAddressPool.get(address);
+		String normalizedAddress = null;
+		if (pooledAddress != null) {
+			address = pooledAddress.getAddress();
+			normalizedAddress = pooledAddress.getNormalizedAddress();
+		}
+		return new Sms(getId(cursor), getThreadId(cursor), address, normalizedAddress, date, msg,
+				SmsType.fromValue(Integer.parseInt(type)), getSubscriptionId(cursor),
+				Collections.<SmsKeywordMatch>emptyList(), isRead(cursor));
+	}
+
+	private int getId(Cursor cursor) {
+		return cursor.getInt(cursor.getColumnIndex(ID_COLUMN_NAME));
+	}
+
+	private long getThreadId(Cursor cursor) {
+		int threadIdColumnIndex = cursor.getColumnIndex(THREAD_ID_COLUMN_NAME);
+		if (threadIdColumnIndex == -1 || cursor.isNull(threadIdColumnIndex)) {
+			return Sms.NO_THREAD;
+		}
+		return cursor.getLong(threadIdColumnIndex);
+	}
+
+	private boolean isRead(Cursor cursor) {
+		int readColumnIndex = cursor.getColumnIndex(READ_COLUMN_NAME);
+		return readColumnIndex != -1 && !cursor.isNull(readColumnIndex) && cursor.getInt(readColumnIndex) != 0;
+	}
+
+	private int getSubscriptionId(Cursor cursor) {
+		int subIdColumnIndex = cursor.getColumnIndex(SUB_ID_COLUMN_NAME);
+		if (subIdColumnIndex == -1 || cursor.isNull(subIdColumnIndex)) {
+			return Sms.NO_SUBSCRIPTION;
+		}
+		return cursor.getInt(subIdColumnIndex);
+	}
+}
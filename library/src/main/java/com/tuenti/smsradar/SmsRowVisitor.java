@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Visitor notified with every new sms found in the sms content provider before creating the Sms instance delivered
+ * to SmsListener and SmsSubscribers. Used by consumers which only need some values of every sms, like counters,
+ * to avoid creating Sms instances.
+ * <p/>
+ * The visitor is invoked from the thread parsing the sms and has to return quickly.
+ */
+public interface SmsRowVisitor {
+
+	/**
+	 * @param row view of the new sms valid only during this invocation
+	 * @return true to create the Sms and deliver it to SmsListener and SmsSubscribers, false if the sms has been
+	 * completely processed by the visitor. Sms not delivered are not cached, indexed or stored in the history
+	 */
+	boolean visit(SmsRow row);
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremental inverted index of the sms bodies intercepted used to answer term and prefix queries without scanning
+ * the sms content provider.
+ * <p/>
+ * Sms bodies are split in terms formed by letters and digits and lower cased. Every sms indexed gets a document
+ * number in indexing order and every term keeps the sorted list of document numbers containing it, encoded as
+ * variable length deltas. Terms are kept sorted to resolve prefix queries reading only the terms starting with the
+ * prefix. The sms content provider id and the date of every sms are kept to filter and return the results.
+ * <p/>
+ * Deleted sms are marked as removed and ignored by the queries until the index is compacted, which renumbers the
+ * documents left and rewrites the posting lists without the removed ones. The greatest sms id indexed is kept and
+ * stored with the index to know which sms have to be indexed if the index file was saved before the last sms
+ * intercepted.
+ * <p/>
+ * Queries are formed by one or more terms which have to be found in the sms body. Terms ending with "*" are used as
+ * prefixes.
+ */
+class SmsSearchIndex {
+
+	static final int MAX_TERM_LENGTH = 32;
+
+	private static final int MAGIC = 0x534d5349;
+	private static final int VERSION = 1;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final char PREFIX_WILDCARD = '*';
+
+	private final TreeMap<String, PostingList> postingLists = new TreeMap<String, PostingList>();
+	private int[] smsIds = new int[INITIAL_CAPACITY];
+	private long[] dates = new long[INITIAL_CAPACITY];
+	private int documentCount;
+	private BitSet removedDocuments = new BitSet();
+	private int removedCount;
+	private int lastSmsId = Sms.NO_ID;
+
+	/**
+	 * Indexes the body of a sms read from the sms content provider.
+	 *
+	 * @return false if the sms has not been read from the sms content provider and can't be indexed.
+	 */
+	synchronized boolean add(int smsId, long date, String body) {
+		if (smsId == Sms.NO_ID) {
+			return false;
+		}
+		int document = addDocument(smsId, date);
+		if (body != null) {
+			for (String term : tokenize(body)) {
+				getOrCreatePostingList(term).add(document);
+			}
+		}
+		lastSmsId = Math.max(lastSmsId, smsId);
+		return true;
+	}
+
+	/**
+	 * Marks the sms passed as parameter as removed. Its postings are discarded the next time the index is compacted.
+	 *
+	 * @return false if the sms was not indexed.
+	 */
+	synchronized boolean remove(int smsId) {
+		for (int document = documentCount - 1; document >= 0; document--) {
+			if (smsIds[document] == smsId && !removedDocuments.get(document)) {
+				removedDocuments.set(document);
+				removedCount++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Discards the removed sms renumbering the documents left and rewriting the posting lists.
+	 */
+	synchronized void compact() {
+		if (removedCount == 0) {
+			return;
+		}
+		int[] newDocuments = new int[documentCount];
+		int newDocumentCount = 0;
+		for (int document = 0; document < documentCount; document++) {
+			if (removedDocuments.get(document)) {
+				newDocuments[document] = -1;
+			} else {
+				smsIds[newDocumentCount] = smsIds[document];
+				dates[newDocumentCount] = dates[document];
+				newDocuments[document] = newDocumentCount++;
+			}
+		}
+		Iterator<Map.Entry<String, PostingList>> iterator = postingLists.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, PostingList> entry = iterator.next();
+			PostingList postingList = entry.getValue().renumber(newDocuments);
+			if (postingList.isEmpty()) {
+				iterator.remove();
+			} else {
+				entry.setValue(postingList);
+			}
+		}
+		documentCount = newDocumentCount;
+		removedDocuments = new BitSet();
+		removedCount = 0;
+	}
+
+	/**
+	 * @return the greatest sms id indexed or skipped, or Sms.NO_ID if the index is empty.
+	 */
+	synchronized int getLastSmsId() {
+		return lastSmsId;
+	}
+
+	/**
+	 * Marks the sms with an id lower or equal than the one passed as parameter as already indexed, used to start
+	 * indexing from the last sms intercepted.
+	 */
+	synchronized void skipTo(int smsId) {
+		lastSmsId = Math.max(lastSmsId, smsId);
+	}
+
+	/**
+	 * Searches the sms containing every term of the query.
+	 *
+	 * @param query terms to search separated by spaces. Terms ending with "*" match every term with that prefix
+	 * @param since min sms date in milliseconds
+	 * @param limit max number of results
+	 * @return ids of the sms found sorted from the last indexed to the first one
+	 */
+	synchronized int[] search(String query, long since, int limit) {
+		BitSet documents = null;
+		for (String word : query.trim().split("\\s+")) {
+			boolean prefix = word.length() > 0 && word.charAt(word.length() - 1) == PREFIX_WILDCARD;
+			List<String> terms = tokenize(word);
+			for (int i = 0; i < terms.size(); i++) {
+				boolean lastTerm = i == terms.size() - 1;
+				BitSet termDocuments = prefix && lastTerm ? findPrefix(terms.get(i)) : findTerm(terms.get(i));
+				if (documents == null) {
+					documents = termDocuments;
+				} else {
+					documents.and(termDocuments);
+				}
+			}
+		}
+		return documents != null ? collectSmsIds(documents, since, limit) : new int[0];
+	}
+
+	/**
+	 * @return number of sms indexed and not removed.
+	 */
+	synchronized int size() {
+		return documentCount - removedCount;
+	}
+
+	synchronized int getTermCount() {
+		return postingLists.size();
+	}
+
+	/**
+	 * @return bytes used to encode the posting lists.
+	 */
+	synchronized long getPostingsSizeInBytes() {
+		long size = 0;
+		for (PostingList postingList : postingLists.values()) {
+			size += postingList.size;
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the index compacting it first, so the removed sms are not written.
+	 */
+	synchronized void writeTo(DataOutput output) throws IOException {
+		compact();
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(lastSmsId);
+		output.writeInt(documentCount);
+		for (int i = 0; i < documentCount; i++) {
+			output.writeInt(smsIds[i]);
+			output.writeLong(dates[i]);
+		}
+		output.writeInt(postingLists.size());
+		for (Map.Entry<String, PostingList> entry : postingLists.entrySet()) {
+			PostingList postingList = entry.getValue();
+			output.writeUTF(entry.getKey());
+			output.writeInt(postingList.lastDocument);
+			output.writeInt(postingList.size);
+			output.write(postingList.bytes, 0, postingList.size);
+		}
+	}
+
+	static SmsSearchIndex readFrom(DataInput input) throws IOException {
+		if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+			throw new IOException("Unsupported sms search index format");
+		}
+		SmsSearchIndex smsSearchIndex = new SmsSearchIndex();
+		int lastSmsId = input.readInt();
+		int documentCount = input.readInt();
+		for (int i = 0; i < documentCount; i++) {
+			smsSearchIndex.addDocument(input.readInt(), input.readLong());
+		}
+		int termCount = input.readInt();
+		for (int i = 0; i < termCount; i++) {
+			String term = input.readUTF();
+			int lastDocument = input.readInt();
+			byte[] bytes = new byte[input.readInt()];
+			input.readFully(bytes);
+			if (lastDocument >= documentCount) {
+				throw new IOException("Posting list of term " + term + " out of bounds");
+			}
+			smsSearchIndex.postingLists.put(term, new PostingList(bytes, lastDocument));
+		}
+		smsSearchIndex.lastSmsId = lastSmsId;
+		return smsSearchIndex;
+	}
+
+	/**
+	 * Splits a text in lower cased terms formed by letters and digits. Terms longer than MAX_TERM_LENGTH are
+	 * truncated.
+	 */
+	static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<String>();
+		StringBuilder term = new StringBuilder(MAX_TERM_LENGTH);
+		int length = text.length();
+		for (int i = 0; i <= length; i++) {
+			char c = i < length ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c)) {
+				if (term.length() < MAX_TERM_LENGTH) {
+					term.append(Character.toLowerCase(c));
+				}
+			} else if (term.length() > 0) {
+				terms.add(term.toString());
+				term.setLength(0);
+			}
+		}
+		return terms;
+	}
+
+	private int addDocument(int smsId, long date) {
+		if (documentCount == smsIds.length) {
+			int[] newSmsIds = new int[smsIds.length * 2];
+			long[] newDates = new long[dates.length * 2];
+			System.arraycopy(smsIds, 0, newSmsIds, 0, documentCount);
+			System.arraycopy(dates, 0, newDates, 0, documentCount);
+			smsIds = newSmsIds;
+			dates = newDates;
+		}
+		smsIds[documentCount] = smsId;
+		dates[documentCount] = date;
+		return documentCount++;
+	}
+
+	private PostingList getOrCreatePostingList(String term) {
+		PostingList postingList = postingLists.get(term);
+		if (postingList == null) {
+			postingList = new PostingList();
+			postingLists.put(term, postingList);
+		}
+		return postingList;
+	}
+
+	private BitSet findTerm(String term) {
+		BitSet documents = new BitSet(documentCount);
+		PostingList postingList = postingLists.get(term);
+		if (postingList != null) {
+			postingList.addTo(documents);
+		}
+		return documents;
+	}
+
+	private BitSet findPrefix(String prefix) {
+		BitSet documents = new BitSet(documentCount);
+		String end = prefix + Character.MAX_VALUE;
+		for (PostingList postingList : postingLists.subMap(prefix, end).values()) {
+			postingList.addTo(documents);
+		}
+		return documents;
+	}
+
+	private int[] collectSmsIds(BitSet documents, long since, int limit) {
+		int[] result = new int[Math.min(limit, documents.cardinality())];
+		int found = 0;
+		for (int document = documentCount - 1; document >= 0 && found < result.length; document--) {
+			if (documents.get(document) && !removedDocuments.get(document) && dates[document] >= since) {
+				result[found++] = smsIds[document];
+			}
+		}
+		if (found < result.length) {
+			int[] trimmedResult = new int[found];
+			System.arraycopy(result, 0, trimmedResult, 0, found);
+			result = trimmedResult;
+		}
+		return result;
+	}
+
+	/**
+	 * Sorted document numbers containing a term encoded as deltas using 7 bits per byte. The most significant bit of
+	 * every byte indicates if the delta continues in the next byte.
+	 */
+	private static class PostingList {
+
+		private static final int INITIAL_SIZE = 4;
+
+		private byte[] bytes;
+		private int size;
+		private int lastDocument;
+
+		PostingList() {
+			this.bytes = new byte[INITIAL_SIZE];
+			this.lastDocument = -1;
+		}
+
+		PostingList(byte[] bytes, int lastDocument) {
+			this.bytes = bytes;
+			this.size = bytes.length;
+			this.lastDocument = lastDocument;
+		}
+
+		void add(int document) {
+			if (document == lastDocument) {
+				return;
+			}
+			int delta = document - lastDocument;
+			lastDocument = document;
+			while ((delta & ~0x7f) != 0) {
+				append((byte) ((delta & 0x7f) | 0x80));
+				delta >>>= 7;
+			}
+			append((byte) delta);
+		}
+
+		void addTo(BitSet documents) {
+			int document = -1;
+			int delta = 0;
+			int shift = 0;
+			for (int i = 0; i < size; i++) {
+				byte b = bytes[i];
+				delta |= (b & 0x7f) << shift;
+				if ((b & 0x80) != 0) {
+					shift += 7;
+				} else {
+					document += delta;
+					documents.set(document);
+					delta = 0;
+					shift = 0;
+				}
+			}
+		}
+
+		/**
+		 * @param newDocuments new number of every document or -1 if the document has been removed
+		 * @return posting list with the documents not removed renumbered.
+		 */
+		PostingList renumber(int[] newDocuments) {
+			BitSet documents = new BitSet(newDocuments.length);
+			addTo(documents);
+			PostingList postingList = new PostingList();
+			for (int document = documents.nextSetBit(0); document >= 0; document = documents.nextSetBit(document + 1)) {
+				if (newDocuments[document] != -1) {
+					postingList.add(newDocuments[document]);
+				}
+			}
+			return postingList;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		private void append(byte b) {
+			if (size == bytes.length) {
+				byte[] newBytes = new byte[bytes.length * 2];
+				System.arraycopy(bytes, 0, newBytes, 0, size);
+				bytes = newBytes;
+			}
+			bytes[size++] = b;
+		}
+	}
+}
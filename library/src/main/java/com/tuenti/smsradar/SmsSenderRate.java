@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Estimated number of sms sent by a sender inside the flood window.
+ */
+public class SmsSenderRate {
+
+	private final String address;
+	private final int count;
+
+	SmsSenderRate(String address, int count) {
+		this.address = address;
+		this.count = count;
+	}
+
+	/**
+	 * @return normalized address of the sender.
+	 */
+	public String getAddress() {
+		return address;
+	}
+
+	/**
+	 * @return estimated number of sms received from the sender inside the flood window. The estimation can be greater
+	 * than the real value but never lower.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return "SmsSenderRate{" +
+				"address='" + address + '\'' +
+				", count=" + count +
+				'}';
+	}
+}
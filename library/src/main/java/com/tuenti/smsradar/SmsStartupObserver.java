@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import android.database.ContentObserver;
+import android.os.Handler;
+
+/**
+ * ContentObserver registered while SmsRadarService loads its dependencies in background. It only counts the sms
+ * content provider changes notified, so the changes notified before SmsObserver is registered can be processed once
+ * the service is ready.
+ */
+class SmsStartupObserver extends ContentObserver {
+
+	private volatile int changeCount;
+
+	SmsStartupObserver(Handler handler) {
+		super(handler);
+	}
+
+	@Override
+	public boolean deliverSelfNotifications() {
+		return true;
+	}
+
+	@Override
+	public void onChange(boolean selfChange) {
+		super.onChange(selfChange);
+		changeCount++;
+	}
+
+	/**
+	 * @return number of changes notified since the observer was created.
+	 */
+	int getChangeCount() {
+		return changeCount;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Represents a change in the type, delivery status or read flag of a sms already stored in the sms content
+ * provider. For example, when an outgoing sms moves from OUTBOX to SENT or when its delivery report is received.
+ */
+public class SmsStatusChange {
+
+	private final int smsId;
+	private final SmsType previousType;
+	private final SmsType type;
+	private final SmsDeliveryStatus previousStatus;
+	private final SmsDeliveryStatus status;
+	private final boolean previouslyRead;
+	private final boolean read;
+
+	public SmsStatusChange(int smsId, SmsType previousType, SmsType type, SmsDeliveryStatus previousStatus,
+			SmsDeliveryStatus status, boolean previouslyRead, boolean read) {
+		this.smsId = smsId;
+		this.previousType = previousType;
+		this.type = type;
+		this.previousStatus = previousStatus;
+		this.status = status;
+		this.previouslyRead = previouslyRead;
+		this.read = read;
+	}
+
+	/**
+	 * @return sms content provider _id of the sms changed.
+	 */
+	public int getSmsId() {
+		return smsId;
+	}
+
+	public SmsType getPreviousType() {
+		return previousType;
+	}
+
+	public SmsType getType() {
+		return type;
+	}
+
+	public SmsDeliveryStatus getPreviousStatus() {
+		return previousStatus;
+	}
+
+	public SmsDeliveryStatus getStatus() {
+		return status;
+	}
+
+	public boolean wasPreviouslyRead() {
+		return previouslyRead;
+	}
+
+	public boolean isRead() {
+		return read;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof SmsStatusChange)) return false;
+
+		SmsStatusChange that = (SmsStatusChange) o;
+
+		if (smsId != that.smsId) return false;
+		if (previouslyRead != that.previouslyRead) return false;
+		if (read != that.read) return false;
+		if (previousType != that.previousType) return false;
+		if (type != that.type) return false;
+		if (previousStatus != that.previousStatus) return false;
+		if (status != that.status) return false;
+
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = smsId;
+		result = 31 * result + (previousType != null ? previousType.hashCode() : 0);
+		result = 31 * result + (type != null ? type.hashCode() : 0);
+		result = 31 * result + (previousStatus != null ? previousStatus.hashCode() : 0);
+		result = 31 * result + (status != null ? status.hashCode() : 0);
+		result = 31 * result + (previouslyRead ? 1 : 0);
+		result = 31 * result + (read ? 1 : 0);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "SmsStatusChange{" +
+				"smsId=" + smsId +
+				", previousType=" + previousType +
+				", type=" + type +
+				", previousStatus=" + previousStatus +
+				", status=" + status +
+				", previouslyRead=" + previouslyRead +
+				", read=" + read +
+				'}';
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * This interface can be implemented by the SmsListener used to initialize SmsRadar to be notified when the type,
+ * delivery status or read flag of a recent sms changes. Sms already intercepted are not delivered again to
+ * SmsListener methods when they change.
+ * <p/>
+ * Only the last sms stored in the sms content provider are tracked.
+ */
+public interface SmsStatusListener {
+
+	/**
+	 * Invoked when the type, delivery status or read flag of a recent sms changes.
+	 *
+	 * @param smsStatusChange with the previous and the current sms values.
+	 */
+	public void onSmsStatusChanged(SmsStatusChange smsStatusChange);
+
+}
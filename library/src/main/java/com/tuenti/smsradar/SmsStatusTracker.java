@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Arrays;
+
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * Tracks the type, delivery status and read flag of the last sms stored in the sms content provider to notify
+ * SmsStatusChange events without delivering again the sms already intercepted.
+ * <p/>
+ * For every sms inside the tracked window a compact fingerprint with the mutable columns is stored, using two
+ * arrays sorted by _id. When the content provider notifies a change over one tracked sms uri only that sms is read
+ * and compared. Any other change only reads the sms with an _id greater than the last one tracked, appending them
+ * to the window and discarding the oldest ones. The whole window is read again only the first time and when the
+ * change has no uri, as happens on Android versions previous to 4.1, and no new sms was found.
+ * <p/>
+ * The sms are tracked if SmsListener implements SmsStatusListener or while SmsThreadCache has unread sms, whose read
+ * flag changes are needed to update the unread count of their conversations.
+ */
+class SmsStatusTracker {
+
+	static final int DEFAULT_WINDOW_SIZE = 50;
+
+	private static final Uri SMS_URI = Uri.parse("content://sms");
+	private static final String TYPE_COLUMN_NAME = "type";
+	private static final String STATUS_COLUMN_NAME = "status";
+	private static final String READ_COLUMN_NAME = "read";
+	private static final String[] PROJECTION = {SmsQueryPager.ID_COLUMN_NAME, TYPE_COLUMN_NAME, STATUS_COLUMN_NAME,
+			READ_COLUMN_NAME};
+	private static final int TYPE_MASK = 0xF;
+	private static final int READ_SHIFT = 4;
+	private static final int STATUS_SHIFT = 5;
+	private static final int STATUS_MASK = 0x1FF;
+
+	private final SmsQueryPager smsQueryPager;
+	private final SmsDispatcher smsDispatcher;
+	private final int windowSize;
+
+	private long[] ids = new long[0];
+	private int[] fingerprints = new int[0];
+
+	SmsStatusTracker(SmsQueryPager smsQueryPager, SmsDispatcher smsDispatcher, int windowSize) {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("Window size has to be greater than zero");
+		}
+		this.smsQueryPager = smsQueryPager;
+		this.smsDispatcher = smsDispatcher;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Compares the sms changed with the fingerprints stored and notifies the changes found.
+	 *
+	 * @param changedUri notified by the sms content provider. Can be null on Android versions previous to 4.1.
+	 */
+	void onChange(Uri changedUri) {
+		if (!isTrackingNeeded()) {
+			clear();
+			return;
+		}
+		if (ids.length == 0) {
+			trackWindow();
+			return;
+		}
+		long changedId = getId(changedUri);
+		int index = Arrays.binarySearch(ids, changedId);
+		if (index >= 0) {
+			if (!trackSms(changedId)) {
+				untrack(index);
+				smsDispatcher.dispatchThreadSmsDeleted((int) changedId);
+			}
+		} else if (!trackNewSms() && changedUri == null) {
+			trackWindow();
+		}
+	}
+
+	int size() {
+		return ids.length;
+	}
+
+	/**
+	 * The read flag changes are needed by the conversations in SmsThreadCache even if SmsListener doesn't
+	 * implement SmsStatusListener.
+	 */
+	private boolean isTrackingNeeded() {
+		return SmsRadar.config.getSmsListener() instanceof SmsStatusListener || SmsRadar.smsThreadCache.hasUnreadSms();
+	}
+
+	void clear() {
+		ids = new long[0];
+		fingerprints = new int[0];
+	}
+
+	private boolean trackSms(long smsId) {
+		Cursor cursor = null;
+		try {
+			cursor = smsQueryPager.queryNewest(Uri.withAppendedPath(SMS_URI, String.valueOf(smsId)), PROJECTION, 1);
+			if (cursor == null || !cursor.moveToFirst()) {
+				return false;
+			}
+			int index = Arrays.binarySearch(ids, smsId);
+			int fingerprint = readFingerprint(cursor);
+			if (fingerprint != fingerprints[index]) {
+				notifyStatusChange(smsId, fingerprints[index], fingerprint);
+				fingerprints[index] = fingerprint;
+			}
+			return true;
+		} finally {
+			close(cursor);
+		}
+	}
+
+	private boolean trackNewSms() {
+		NewSmsCollector newSmsCollector = new NewSmsCollector();
+		smsQueryPager.forEachRowAfter(SMS_URI, PROJECTION, ids[ids.length - 1], newSmsCollector);
+		int newRows = Math.min(newSmsCollector.rows, windowSize);
+		if (newRows == 0) {
+			return false;
+		}
+		int keptRows = Math.min(ids.length, windowSize - newRows);
+		long[] newIds = new long[keptRows + newRows];
+		int[] newFingerprints = new int[keptRows + newRows];
+		System.arraycopy(ids, ids.length - keptRows, newIds, 0, keptRows);
+		System.arraycopy(fingerprints, fingerprints.length - keptRows, newFingerprints, 0, keptRows);
+		for (int i = 0; i < newRows; i++) {
+			int ringIndex = (newSmsCollector.rows - newRows + i) % windowSize;
+			newIds[keptRows + i] = newSmsCollector.ids[ringIndex];
+			newFingerprints[keptRows + i] = newSmsCollector.fingerprints[ringIndex];
+		}
+		ids = newIds;
+		fingerprints = newFingerprints;
+		return true;
+	}
+
+	private void untrack(int index) {
+		long[] newIds = new long[ids.length - 1];
+		int[] newFingerprints = new int[fingerprints.length - 1];
+		System.arraycopy(ids, 0, newIds, 0, index);
+		System.arraycopy(ids, index + 1, newIds, index, newIds.length - index);
+		System.arraycopy(fingerprints, 0, newFingerprints, 0, index);
+		System.arraycopy(fingerprints, index + 1, newFingerprints, index, newFingerprints.length - index);
+		ids = newIds;
+		fingerprints = newFingerprints;
+	}
+
+	private void trackWindow() {
+		Cursor cursor = null;
+		try {
+			cursor = smsQueryPager.queryNewest(SMS_URI, PROJECTION, windowSize);
+			if (cursor == null) {
+				return;
+			}
+			int rows = cursor.getCount();
+			long[] newIds = new long[rows];
+			int[] newFingerprints = new int[rows];
+			int idColumnIndex = cursor.getColumnIndex(SmsQueryPager.ID_COLUMN_NAME);
+			for (int i = rows - 1; i >= 0 && cursor.moveToNext(); i--) {
+				long smsId = cursor.getLong(idColumnIndex);
+				int fingerprint = readFingerprint(cursor);
+				int index = Arrays.binarySearch(ids, smsId);
+				if (index >= 0 && fingerprints[index] != fingerprint) {
+					notifyStatusChange(smsId, fingerprints[index], fingerprint);
+				}
+				newIds[i] = smsId;
+				newFingerprints[i] = fingerprint;
+			}
+			ids = newIds;
+			fingerprints = newFingerprints;
+		} finally {
+			close(cursor);
+		}
+	}
+
+	private int readFingerprint(Cursor cursor) {
+		int type = cursor.getInt(cursor.getColumnIndex(TYPE_COLUMN_NAME));
+		int status = cursor.getInt(cursor.getColumnIndex(STATUS_COLUMN_NAME));
+		int read = cursor.getInt(cursor.getColumnIndex(READ_COLUMN_NAME));
+		return (type & TYPE_MASK) | ((read & 1) << READ_SHIFT) | (((status + 1) & STATUS_MASK) << STATUS_SHIFT);
+	}
+
+	private void notifyStatusChange(long smsId, int previousFingerprint, int fingerprint) {
+		SmsStatusChange smsStatusChange = new SmsStatusChange((int) smsId, getType(previousFingerprint),
+				getType(fingerprint), getStatus(previousFingerprint), getStatus(fingerprint),
+				isRead(previousFingerprint), isRead(fingerprint));
+		smsDispatcher.dispatchStatusChange(smsStatusChange);
+	}
+
+	private SmsType getType(int fingerprint) {
+		try {
+			return SmsType.fromValue(fingerprint & TYPE_MASK);
+		} catch (IllegalArgumentException e) {
+			return SmsType.UNKNOWN;
+		}
+	}
+
+	private SmsDeliveryStatus getStatus(int fingerprint) {
+		return SmsDeliveryStatus.fromValue(((fingerprint >>> STATUS_SHIFT) & STATUS_MASK) - 1);
+	}
+
+	private boolean isRead(int fingerprint) {
+		return ((fingerprint >>> READ_SHIFT) & 1) == 1;
+	}
+
+	private long getId(Uri uri) {
+		if (uri == null) {
+			return -1;
+		}
+		try {
+			String lastPathSegment = uri.getLastPathSegment();
+			return lastPathSegment != null ? Long.parseLong(lastPathSegment) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private void close(Cursor cursor) {
+		if (cursor != null) {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Keeps the fingerprints of the newest sms read inside a ring buffer of the window size.
+	 */
+	private class NewSmsCollector implements SmsQueryPager.RowCallback {
+
+		private final long[] ids = new long[windowSize];
+		private final int[] fingerprints = new int[windowSize];
+		private int rows;
+
+		@Override
+		public boolean onRow(Cursor cursor) {
+			int ringIndex = rows % windowSize;
+			ids[ringIndex] = cursor.getLong(cursor.getColumnIndex(SmsQueryPager.ID_COLUMN_NAME));
+			fingerprints[ringIndex] = readFingerprint(cursor);
+			rows++;
+			return true;
+		}
+	}
+}
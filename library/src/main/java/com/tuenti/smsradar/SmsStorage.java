@@ -17,6 +17,10 @@ package com.tuenti.smsradar;
 
 /**
  * The SmsStorage has the responsibility to store the last sms intercepted by the library.
+ * <p/>
+ * The methods without subscription id store the last sms intercepted from any subscription. The ones with
+ * subscription id store the last sms intercepted for a SIM subscription, so every subscription can be processed
+ * independently on multi SIM devices.
  *
  * @author Pedro Vicente Gómez Sánchez <pgomez@tuenti.com>
  * @author Manuel Peinado <mpeinado@tuenti.com>
@@ -29,4 +33,10 @@ interface SmsStorage {
 	int getLastSmsIntercepted();
 
 	boolean isFirstSmsIntercepted();
+
+	void updateLastSmsIntercepted(int subscriptionId, int smsId);
+
+	int getLastSmsIntercepted(int subscriptionId);
+
+	boolean isFirstSmsIntercepted(int subscriptionId);
 }
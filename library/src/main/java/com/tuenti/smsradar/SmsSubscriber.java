@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * This interface has to be implemented to receive intercepted sms at the pace the consumer decides. Sms will be
+ * delivered only after being requested through the SmsSubscription passed in onSubscribe method.
+ * <p/>
+ * This interface follows the Reactive Streams Subscriber contract.
+ */
+public interface SmsSubscriber {
+
+	/**
+	 * Invoked once when the subscriber is registered.
+	 *
+	 * @param subscription used to request sms or cancel the subscription.
+	 */
+	public void onSubscribe(SmsSubscription subscription);
+
+	/**
+	 * Invoked when an incoming or outgoing sms is intercepted and the subscriber has requested it.
+	 *
+	 * @param sms intercepted.
+	 */
+	public void onNext(Sms sms);
+
+	/**
+	 * Invoked when the subscription can't continue because of an error.
+	 *
+	 * @param error cause.
+	 */
+	public void onError(Throwable error);
+
+	/**
+	 * Invoked when SmsRadar service is stopped and no more sms are going to be delivered.
+	 */
+	public void onComplete();
+
+}
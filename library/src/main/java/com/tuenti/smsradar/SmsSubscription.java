@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Represents the link between one SmsSubscriber and the SmsRadar publisher. It's used by the subscriber to signal how
+ * many sms can be processed or to stop receiving sms.
+ * <p/>
+ * This interface follows the Reactive Streams Subscription contract.
+ */
+public interface SmsSubscription {
+
+	/**
+	 * Adds n sms to the subscriber demand. SmsRadar will not deliver more sms than requested.
+	 *
+	 * @param n number of sms the subscriber is able to process. Has to be greater than zero.
+	 */
+	public void request(long n);
+
+	/**
+	 * Stops the sms delivery and releases the buffered sms.
+	 */
+	public void cancel();
+
+}
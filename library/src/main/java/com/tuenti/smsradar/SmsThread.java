@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.List;
+
+/**
+ * Snapshot of the state of a conversation kept by SmsRadar from the sms intercepted, without querying the sms
+ * content provider.
+ * <p/>
+ * The unread count only includes the received sms intercepted by SmsRadar which have not been marked as read since
+ * they were intercepted.
+ */
+public class SmsThread {
+
+	private final long threadId;
+	private final Sms lastSms;
+	private final int unreadCount;
+	private final List<String> participants;
+
+	SmsThread(long threadId, Sms lastSms, int unreadCount, List<String> participants) {
+		this.threadId = threadId;
+		this.lastSms = lastSms;
+		this.unreadCount = unreadCount;
+		this.participants = participants;
+	}
+
+	/**
+	 * @return thread_id of the conversation in the sms content provider.
+	 */
+	public long getThreadId() {
+		return threadId;
+	}
+
+	/**
+	 * @return last sms intercepted in this conversation.
+	 */
+	public Sms getLastSms() {
+		return lastSms;
+	}
+
+	public int getUnreadCount() {
+		return unreadCount;
+	}
+
+	/**
+	 * @return normalized addresses of the sms intercepted in this conversation in the order they were found.
+	 */
+	public List<String> getParticipants() {
+		return participants;
+	}
+
+	@Override
+	public String toString() {
+		return "SmsThread{" +
+				"threadId=" + threadId +
+				", lastSms=" + lastSms +
+				", unreadCount=" + unreadCount +
+				", participants=" + participants +
+				'}';
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded in memory cache of the state of the conversations with sms intercepted by SmsRadar, indexed by thread id.
+ * <p/>
+ * The state of every conversation is updated incrementally with every sms intercepted, with the read flag changes
+ * notified by SmsStatusTracker and with the sms deleted. When the cache is full the least recently used conversation
+ * is evicted.
+ * <p/>
+ * Received sms are counted as unread only if they weren't read when intercepted. The ids of the last unread sms of
+ * every conversation are kept to decrement the unread count when they are marked as read or deleted. Older unread
+ * sms are still counted but can't be matched with their read flag changes.
+ */
+class SmsThreadCache {
+
+	static final int MAX_UNREAD_SMS_TRACKED = 32;
+
+	private final Map<Long, ThreadState> threads;
+
+	SmsThreadCache(final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity has to be greater than zero");
+		}
+		this.threads = new LinkedHashMap<Long, ThreadState>(capacity, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ThreadState> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Updates the conversation of the sms passed as parameter.
+	 *
+	 * @return current state of the conversation or null if the sms thread is unknown.
+	 */
+	synchronized SmsThread update(Sms sms) {
+		if (sms == null || sms.getThreadId() == Sms.NO_THREAD) {
+			return null;
+		}
+		ThreadState threadState = getOrCreateThreadState(sms.getThreadId());
+		threadState.update(sms);
+		return threadState.snapshot();
+	}
+
+	/**
+	 * Decrements the unread count of the conversation containing the sms passed as parameter.
+	 *
+	 * @return current state of the conversation or null if the sms was not tracked as unread.
+	 */
+	synchronized SmsThread markAsRead(int smsId) {
+		for (ThreadState threadState : threads.values()) {
+			if (threadState.markAsRead(smsId)) {
+				return threadState.snapshot();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Decrements the unread count of the conversation containing the deleted sms passed as parameter.
+	 *
+	 * @return current state of the conversation or null if the sms was not tracked as unread.
+	 */
+	synchronized SmsThread remove(int smsId) {
+		return markAsRead(smsId);
+	}
+
+	/**
+	 * @return true if any conversation has unread sms whose read flag changes can be matched.
+	 */
+	synchronized boolean hasUnreadSms() {
+		for (ThreadState threadState : threads.values()) {
+			if (threadState.hasUnreadSms()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	synchronized SmsThread get(long threadId) {
+		ThreadState threadState = threads.get(threadId);
+		return threadState != null ? threadState.snapshot() : null;
+	}
+
+	/**
+	 * @return conversations sorted from the one with the newest sms to the oldest one.
+	 */
+	synchronized List<SmsThread> recent(int n) {
+		List<SmsThread> result = new ArrayList<SmsThread>(threads.size());
+		for (ThreadState threadState : threads.values()) {
+			result.add(threadState.snapshot());
+		}
+		Collections.sort(result, new Comparator<SmsThread>() {
+			@Override
+			public int compare(SmsThread thread, SmsThread otherThread) {
+				long time = thread.getLastSms().getTime();
+				long otherTime = otherThread.getLastSms().getTime();
+				return time > otherTime ? -1 : (time == otherTime ? 0 : 1);
+			}
+		});
+		return result.size() > n ? new ArrayList<SmsThread>(result.subList(0, n)) : result;
+	}
+
+	synchronized int size() {
+		return threads.size();
+	}
+
+	synchronized void clear() {
+		threads.clear();
+	}
+
+	private ThreadState getOrCreateThreadState(long threadId) {
+		ThreadState threadState = threads.get(threadId);
+		if (threadState == null) {
+			threadState = new ThreadState(threadId);
+			threads.put(threadId, threadState);
+		}
+		return threadState;
+	}
+
+	/**
+	 * Mutable state of one conversation. Snapshots are created only when the state changes.
+	 */
+	private static class ThreadState {
+
+		private final long threadId;
+		private final Set<String> participants = new LinkedHashSet<String>();
+		private final LinkedHashSet<Integer> unreadSmsIds = new LinkedHashSet<Integer>();
+		private Sms lastSms;
+		private int unreadCount;
+		private SmsThread snapshot;
+
+		ThreadState(long threadId) {
+			this.threadId = threadId;
+		}
+
+		void update(Sms sms) {
+			if (lastSms == null || sms.getTime() >= lastSms.getTime()) {
+				lastSms = sms;
+			}
+			if (sms.getNormalizedAddress() != null) {
+				participants.add(sms.getNormalizedAddress());
+			}
+			if (sms.getType() == SmsType.RECEIVED && !sms.isRead()) {
+				unreadCount++;
+				trackUnreadSms(sms.getId());
+			}
+			snapshot = null;
+		}
+
+		boolean markAsRead(int smsId) {
+			if (!unreadSmsIds.remove(smsId)) {
+				return false;
+			}
+			unreadCount = Math.max(0, unreadCount - 1);
+			snapshot = null;
+			return true;
+		}
+
+		boolean hasUnreadSms() {
+			return !unreadSmsIds.isEmpty();
+		}
+
+		SmsThread snapshot() {
+			if (snapshot == null) {
+				snapshot = new SmsThread(threadId, lastSms, unreadCount,
+						Collections.unmodifiableList(new ArrayList<String>(participants)));
+			}
+			return snapshot;
+		}
+
+		private void trackUnreadSms(int smsId) {
+			if (smsId == Sms.NO_ID) {
+				return;
+			}
+			unreadSmsIds.add(smsId);
+			if (unreadSmsIds.size() > MAX_UNREAD_SMS_TRACKED) {
+				Iterator<Integer> iterator = unreadSmsIds.iterator();
+				iterator.next();
+				iterator.remove();
+			}
+		}
+	}
+}
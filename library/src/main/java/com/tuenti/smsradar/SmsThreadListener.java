@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * This interface can be implemented by the SmsListener used to initialize SmsRadar to be notified when the state of
+ * a conversation changes because a sms of the conversation has been intercepted or marked as read.
+ * <p/>
+ * Conversation views can be updated using the SmsThread received without querying the sms content provider.
+ */
+public interface SmsThreadListener {
+
+	/**
+	 * Invoked after notifying the SmsListener with the sms which updated the conversation.
+	 *
+	 * @param smsThread with the current state of the conversation.
+	 */
+	public void onThreadUpdated(SmsThread smsThread);
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+/**
+ * Stages of the sms interception traced by SmsTracer.
+ */
+enum SmsTraceStage {
+	PROVIDER_QUERY("provider_query"),
+	PARSE("parse"),
+	STORAGE_COMMIT("storage_commit"),
+	DISPATCH("dispatch"),
+	LISTENER("listener");
+
+	private final String traceName;
+
+	SmsTraceStage(String traceName) {
+		this.traceName = traceName;
+	}
+
+	String getTraceName() {
+		return traceName;
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import android.os.Process;
+
+/**
+ * Records the begin and the end of every SmsTraceStage into a ring buffer to be able to profile where the sms
+ * interception time goes after an incident.
+ * <p/>
+ * The ring buffer is allocated when the tracer is created and recording an event doesn't allocate memory or take
+ * locks: every writer reserves a slot incrementing an atomic sequence, writes the event and publishes the slot
+ * storing the sequence. When the buffer is full the oldest events are overwritten.
+ * <p/>
+ * The events recorded can be written using the Chrome trace event JSON format, which can be opened with
+ * chrome://tracing or Perfetto.
+ */
+class SmsTracer {
+
+	static final SmsTracer DISABLED = new SmsTracer();
+
+	private static final int MAX_CAPACITY = 1 << 20;
+	private static final long NANOS_PER_MICRO = 1000;
+	private static final int BEGIN = 0;
+	private static final int END = 1;
+	private static final SmsTraceStage[] STAGES = SmsTraceStage.values();
+
+	private final boolean enabled;
+	private final int mask;
+	private final AtomicLong nextSequence = new AtomicLong();
+	private final AtomicLongArray publishedSequences;
+	private final long[] timestamps;
+	private final long[] threadIds;
+	private final int[] events;
+
+	private SmsTracer() {
+		this.enabled = false;
+		this.mask = 0;
+		this.publishedSequences = new AtomicLongArray(0);
+		this.timestamps = new long[0];
+		this.threadIds = new long[0];
+		this.events = new int[0];
+	}
+
+	/**
+	 * @param capacity max number of events kept. Rounded up to the next power of two.
+	 */
+	SmsTracer(int capacity) {
+		if (capacity <= 0 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Capacity has to be between 1 and " + MAX_CAPACITY);
+		}
+		int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.enabled = true;
+		this.mask = size - 1;
+		this.publishedSequences = new AtomicLongArray(size);
+		this.timestamps = new long[size];
+		this.threadIds = new long[size];
+		this.events = new int[size];
+	}
+
+	void begin(SmsTraceStage stage) {
+		record(stage, BEGIN);
+	}
+
+	void end(SmsTraceStage stage) {
+		record(stage, END);
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return number of events recorded since the tracer was created, including the ones overwritten.
+	 */
+	long getEventCount() {
+		return nextSequence.get();
+	}
+
+	/**
+	 * Writes the events kept in the ring buffer, from the oldest to the newest one, as a Chrome trace JSON object.
+	 * Events being recorded while writing are skipped.
+	 */
+	void writeTo(Writer writer) throws IOException {
+		int pid = Process.myPid();
+		long lastSequence = nextSequence.get();
+		long firstSequence = Math.max(0, lastSequence - (mask + 1));
+		writer.write("{\"traceEvents\":[");
+		boolean first = true;
+		for (long sequence = firstSequence; sequence < lastSequence; sequence++) {
+			int slot = (int) (sequence & mask);
+			if (publishedSequences.get(slot) != sequence + 1) {
+				continue;
+			}
+			long timestamp = timestamps[slot];
+			long threadId = threadIds[slot];
+			int event = events[slot];
+			if (publishedSequences.get(slot) != sequence + 1) {
+				continue;
+			}
+			if (!first) {
+				writer.write(',');
+			}
+			first = false;
+			writeEvent(writer, pid, timestamp, threadId, event);
+		}
+		writer.write("],\"displayTimeUnit\":\"ms\"}");
+		writer.flush();
+	}
+
+	private void record(SmsTraceStage stage, int phase) {
+		if (!enabled) {
+			return;
+		}
+		long sequence = nextSequence.getAndIncrement();
+		int slot = (int) (sequence & mask);
+		publishedSequences.set(slot, -1);
+		timestamps[slot] = System.nanoTime();
+		threadIds[slot] = Thread.currentThread().getId();
+		events[slot] = (stage.ordinal() << 1) | phase;
+		publishedSequences.lazySet(slot, sequence + 1);
+	}
+
+	private void writeEvent(Writer writer, int pid, long timestamp, long threadId, int event) throws IOException {
+		SmsTraceStage stage = STAGES[event >>> 1];
+		writer.write("{\"name\":\"");
+		writer.write(stage.getTraceName());
+		writer.write("\",\"cat\":\"smsradar\",\"ph\":\"");
+		writer.write((event & 1) == BEGIN ? 'B' : 'E');
+		writer.write("\",\"ts\":");
+		writer.write(Long.toString(timestamp / NANOS_PER_MICRO));
+		writer.write('.');
+		writer.write(Long.toString(timestamp % NANOS_PER_MICRO + NANOS_PER_MICRO).substring(1));
+		writer.write(",\"pid\":");
+		writer.write(Integer.toString(pid));
+		writer.write(",\"tid\":");
+		writer.write(Long.toString(threadId));
+		writer.write('}');
+	}
+}
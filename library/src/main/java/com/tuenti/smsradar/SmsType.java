@@ -20,6 +20,8 @@ package com.tuenti.smsradar;
  * <p/>
  * RECEIVED SmsType is the equivalent to MT in a telco terminology.
  * SENT SmsType is the equivalent to MO in a telco terminology.
+ * DRAFT, OUTBOX, FAILED and QUEUED SmsTypes are the intermediate states of an outgoing sms before being SENT. These
+ * states are only reported in SmsStatusChange events.
  * <p/>
  * Review GSM short message service to get more information: http://en.wikipedia.org/wiki/Short_Message_Service
  *
@@ -30,7 +32,11 @@ public enum SmsType {
 
 	UNKNOWN(-1),
 	RECEIVED(1),
-	SENT(2),;
+	SENT(2),
+	DRAFT(3),
+	OUTBOX(4),
+	FAILED(5),
+	QUEUED(6),;
 
 	private final int value;
 
@@ -53,4 +59,11 @@ public enum SmsType {
 		throw new IllegalArgumentException("Invalid sms type: " + value);
 	}
 
+	/**
+	 * @return value used to represent the SmsType in the Sms content provider.
+	 */
+	int getValue() {
+		return value;
+	}
+
 }
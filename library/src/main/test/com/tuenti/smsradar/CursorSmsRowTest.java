@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import android.database.CharArrayBuffer;
+import android.database.MatrixCursor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test created to check the correctness of CursorSmsRow.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CursorSmsRowTest {
+
+	private static final String[] COLUMNS = {"_id", "address", "date", "date_sent", "body", "type", "sub_id"};
+	private static final String[] COLUMNS_WITHOUT_SUBSCRIPTION = {"_id", "address", "date", "body", "type"};
+	private static final String[] COLUMNS_WITH_THREAD = {"_id", "thread_id", "address", "date", "body", "type"};
+	private static final String ANY_ADDRESS = "+34666666666";
+	private static final String ANY_BODY = "Your code is 1234";
+	private static final String OTHER_BODY = "Hi";
+	private static final long ANY_DATE = 123456789L;
+	private static final long ANY_DATE_SENT = 123456000L;
+	private static final int TYPE_RECEIVED = 1;
+	private static final int ANY_SUBSCRIPTION_ID = 2;
+	private static final long ANY_THREAD_ID = 3;
+
+	private CursorSmsRow smsRow;
+
+	@Before
+	public void setUp() {
+		smsRow = new CursorSmsRow();
+	}
+
+	@Test
+	public void shouldReadTheRowValues() {
+		MatrixCursor cursor = givenCursorWithRows(new Object[]{7, ANY_ADDRESS, ANY_DATE, ANY_DATE_SENT, ANY_BODY,
+				TYPE_RECEIVED, ANY_SUBSCRIPTION_ID});
+		cursor.moveToNext();
+
+		smsRow.moveTo(cursor);
+
+		assertEquals(7, smsRow.getId());
+		assertEquals(ANY_DATE, smsRow.getDate());
+		assertEquals(ANY_DATE_SENT, smsRow.getDateSent());
+		assertEquals(TYPE_RECEIVED, smsRow.getType());
+		assertEquals(ANY_SUBSCRIPTION_ID, smsRow.getSubscriptionId());
+		assertEquals(ANY_ADDRESS, smsRow.getAddress().toString());
+		assertEquals(ANY_BODY, smsRow.getBody().toString());
+	}
+
+	@Test
+	public void shouldReturnDefaultValuesIfTheColumnsDoNotExist() {
+		MatrixCursor cursor = new MatrixCursor(COLUMNS_WITHOUT_SUBSCRIPTION);
+		cursor.addRow(new Object[]{7, ANY_ADDRESS, ANY_DATE, ANY_BODY, TYPE_RECEIVED});
+		cursor.moveToNext();
+
+		smsRow.moveTo(cursor);
+
+		assertEquals(0, smsRow.getDateSent());
+		assertEquals(Sms.NO_SUBSCRIPTION, smsRow.getSubscriptionId());
+		assertEquals(Sms.NO_THREAD, smsRow.getThreadId());
+	}
+
+	@Test
+	public void shouldReadTheThreadId() {
+		MatrixCursor cursor = new MatrixCursor(COLUMNS_WITH_THREAD);
+		cursor.addRow(new Object[]{7, ANY_THREAD_ID, ANY_ADDRESS, ANY_DATE, ANY_BODY, TYPE_RECEIVED});
+		cursor.moveToNext();
+
+		smsRow.moveTo(cursor);
+
+		assertEquals(ANY_THREAD_ID, smsRow.getThreadId());
+	}
+
+	@Test
+	public void shouldReadTheNextRowAfterMovingTheCursor() {
+		MatrixCursor cursor = givenCursorWithRows(
+				new Object[]{7, ANY_ADDRESS, ANY_DATE, null, ANY_BODY, TYPE_RECEIVED, null},
+				new Object[]{8, ANY_ADDRESS, ANY_DATE, null, OTHER_BODY, TYPE_RECEIVED, null});
+		cursor.moveToNext();
+		smsRow.moveTo(cursor);
+		smsRow.getBody();
+
+		cursor.moveToNext();
+		smsRow.moveTo(cursor);
+
+		assertEquals(8, smsRow.getId());
+		assertEquals(OTHER_BODY, smsRow.getBody().toString());
+	}
+
+	@Test
+	public void shouldReuseTheCharSequencesForEveryRow() {
+		MatrixCursor cursor = givenCursorWithRows(
+				new Object[]{7, ANY_ADDRESS, ANY_DATE, null, ANY_BODY, TYPE_RECEIVED, null},
+				new Object[]{8, ANY_ADDRESS, ANY_DATE, null, OTHER_BODY, TYPE_RECEIVED, null});
+		cursor.moveToNext();
+		smsRow.moveTo(cursor);
+		CharSequence body = smsRow.getBody();
+
+		cursor.moveToNext();
+		smsRow.moveTo(cursor);
+
+		assertSame(body, smsRow.getBody());
+	}
+
+	@Test
+	public void shouldExposeTheBodyAsCharSequence() {
+		MatrixCursor cursor = givenCursorWithRows(new Object[]{7, ANY_ADDRESS, ANY_DATE, null, ANY_BODY,
+				TYPE_RECEIVED, null});
+		cursor.moveToNext();
+		smsRow.moveTo(cursor);
+
+		CharSequence body = smsRow.getBody();
+
+		assertEquals(ANY_BODY.length(), body.length());
+		assertEquals('Y', body.charAt(0));
+		assertEquals("1234", body.subSequence(13, 17).toString());
+	}
+
+	@Test
+	public void shouldCopyTheAddressIntoTheBufferPassedAsParameter() {
+		MatrixCursor cursor = givenCursorWithRows(new Object[]{7, ANY_ADDRESS, ANY_DATE, null, ANY_BODY,
+				TYPE_RECEIVED, null});
+		cursor.moveToNext();
+		smsRow.moveTo(cursor);
+		CharArrayBuffer buffer = new CharArrayBuffer(32);
+
+		smsRow.copyAddressTo(buffer);
+
+		assertEquals(ANY_ADDRESS, new String(buffer.data, 0, buffer.sizeCopied));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void shouldNotReadCharsOutsideTheCopiedChars() {
+		MatrixCursor cursor = givenCursorWithRows(new Object[]{7, ANY_ADDRESS, ANY_DATE, null, OTHER_BODY,
+				TYPE_RECEIVED, null});
+		cursor.moveToNext();
+		smsRow.moveTo(cursor);
+
+		smsRow.getBody().charAt(OTHER_BODY.length());
+	}
+
+	private MatrixCursor givenCursorWithRows(Object[]... rows) {
+		MatrixCursor cursor = new MatrixCursor(COLUMNS);
+		for (Object[] row : rows) {
+			cursor.addRow(row);
+		}
+		return cursor;
+	}
+}
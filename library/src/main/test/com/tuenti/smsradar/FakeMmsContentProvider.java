@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import org.robolectric.shadows.ShadowContentResolver;
+
+/**
+ * In memory replacement of the Android mms content provider created to test the mms interception.
+ * <p/>
+ * This provider reproduces the tables SmsRadar reads: content://mms with the mms headers, content://mms/{id}/addr
+ * with the addresses of a mms, content://mms/{id}/part with the parts of a mms and content://mms/part with every
+ * part. Rows are stored sorted by _id and LIMIT clauses inside "_id ASC" or "_id DESC" sort orders are supported.
+ * <p/>
+ * Selections are supported only if composed by "column operator ?" clauses joined with AND.
+ */
+public class FakeMmsContentProvider extends ContentProvider {
+
+	static final String AUTHORITY = "mms";
+
+	private static final String PART_PATH = "part";
+	private static final String ADDRESS_PATH = "addr";
+	private static final int MESSAGE_TYPE_SEND_REQ = 128;
+	private static final int MESSAGE_TYPE_RETRIEVE_CONF = 132;
+	private static final int MESSAGE_BOX_INBOX = 1;
+	private static final int MESSAGE_BOX_SENT = 2;
+
+	private final List<Map<String, Object>> mms = new ArrayList<Map<String, Object>>();
+	private final List<Map<String, Object>> addresses = new ArrayList<Map<String, Object>>();
+	private final List<Map<String, Object>> parts = new ArrayList<Map<String, Object>>();
+	private long nextMmsId = 1;
+	private long nextPartId = 1;
+
+	static FakeMmsContentProvider register() {
+		FakeMmsContentProvider provider = new FakeMmsContentProvider();
+		ShadowContentResolver.registerProvider(AUTHORITY, provider);
+		return provider;
+	}
+
+	@Override
+	public boolean onCreate() {
+		return true;
+	}
+
+	@Override
+	public String getType(Uri uri) {
+		return null;
+	}
+
+	@Override
+	public synchronized Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+			String sortOrder) {
+		List<String> segments = uri.getPathSegments();
+		List<Map<String, Object>> table;
+		if (segments.isEmpty()) {
+			table = mms;
+		} else if (segments.size() == 1 && PART_PATH.equals(segments.get(0))) {
+			table = parts;
+		} else if (segments.size() == 2) {
+			table = filterByMmsId(ADDRESS_PATH.equals(segments.get(1)) ? addresses : parts,
+					Long.parseLong(segments.get(0)));
+		} else {
+			return null;
+		}
+		boolean descending = sortOrder != null && sortOrder.toUpperCase().contains("DESC");
+		int limit = getLimit(sortOrder);
+		MatrixCursor cursor = new MatrixCursor(projection);
+		for (int i = 0; i < table.size() && cursor.getCount() < limit; i++) {
+			Map<String, Object> row = table.get(descending ? table.size() - 1 - i : i);
+			if (matches(row, selection, selectionArgs)) {
+				Object[] values = new Object[projection.length];
+				for (int j = 0; j < projection.length; j++) {
+					values[j] = row.get(projection[j]);
+				}
+				cursor.addRow(values);
+			}
+		}
+		return cursor;
+	}
+
+	@Override
+	public Uri insert(Uri uri, ContentValues values) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int delete(Uri uri, String selection, String[] selectionArgs) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stores a downloaded mms sent by the address passed as parameter.
+	 *
+	 * @return id of the mms stored
+	 */
+	long insertReceivedMms(String from, String subject, long dateInSeconds) {
+		long mmsId = insertMms(MESSAGE_BOX_INBOX, MESSAGE_TYPE_RETRIEVE_CONF, subject, dateInSeconds);
+		insertAddress(mmsId, MmsObserver.ADDRESS_TYPE_FROM, from);
+		return mmsId;
+	}
+
+	/**
+	 * Stores a sent mms sent to the address passed as parameter.
+	 *
+	 * @return id of the mms stored
+	 */
+	long insertSentMms(String to, String subject, long dateInSeconds) {
+		long mmsId = insertMms(MESSAGE_BOX_SENT, MESSAGE_TYPE_SEND_REQ, subject, dateInSeconds);
+		insertAddress(mmsId, MmsObserver.ADDRESS_TYPE_FROM, "insert-address-token");
+		insertAddress(mmsId, MmsObserver.ADDRESS_TYPE_TO, to);
+		return mmsId;
+	}
+
+	synchronized long insertMms(int messageBox, int messageType, String subject, long dateInSeconds) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		long mmsId = nextMmsId++;
+		row.put(MmsObserver.ID_COLUMN_NAME, mmsId);
+		row.put(MmsObserver.THREAD_ID_COLUMN_NAME, 1L);
+		row.put(MmsObserver.DATE_COLUMN_NAME, dateInSeconds);
+		row.put(MmsObserver.SUBJECT_COLUMN_NAME, subject);
+		row.put(MmsObserver.MESSAGE_BOX_COLUMN_NAME, messageBox);
+		row.put(MmsObserver.MESSAGE_TYPE_COLUMN_NAME, messageType);
+		mms.add(row);
+		return mmsId;
+	}
+
+	synchronized void insertAddress(long mmsId, int type, String address) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put(MmsObserver.ADDRESS_COLUMN_NAME, address);
+		row.put(MmsObserver.ADDRESS_TYPE_COLUMN_NAME, type);
+		row.put("msg_id", mmsId);
+		addresses.add(row);
+	}
+
+	/**
+	 * Stores a part with its content in the text column.
+	 *
+	 * @return id of the part stored
+	 */
+	synchronized long insertTextPart(long mmsId, String contentType, String name, int charset, String text) {
+		Map<String, Object> row = createPart(mmsId, contentType, name, charset);
+		row.put(MmsPartLoader.TEXT_COLUMN_NAME, text);
+		parts.add(row);
+		return (Long) row.get(MmsPartLoader.ID_COLUMN_NAME);
+	}
+
+	/**
+	 * Stores a part with its content in a file.
+	 *
+	 * @return id of the part stored
+	 */
+	synchronized long insertFilePart(long mmsId, String contentType, String contentLocation, String data) {
+		Map<String, Object> row = createPart(mmsId, contentType, null, 0);
+		row.put(MmsPartLoader.CONTENT_LOCATION_COLUMN_NAME, contentLocation);
+		row.put(MmsPartLoader.DATA_COLUMN_NAME, data);
+		parts.add(row);
+		return (Long) row.get(MmsPartLoader.ID_COLUMN_NAME);
+	}
+
+	private Map<String, Object> createPart(long mmsId, String contentType, String name, int charset) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put(MmsPartLoader.ID_COLUMN_NAME, nextPartId++);
+		row.put("mid", mmsId);
+		row.put(MmsPartLoader.CONTENT_TYPE_COLUMN_NAME, contentType);
+		row.put(MmsPartLoader.NAME_COLUMN_NAME, name);
+		row.put(MmsPartLoader.CHARSET_COLUMN_NAME, charset);
+		return row;
+	}
+
+	private List<Map<String, Object>> filterByMmsId(List<Map<String, Object>> table, long mmsId) {
+		List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> row : table) {
+			Object rowMmsId = row.containsKey("mid") ? row.get("mid") : row.get("msg_id");
+			if (rowMmsId.equals(mmsId)) {
+				result.add(row);
+			}
+		}
+		return result;
+	}
+
+	private int getLimit(String sortOrder) {
+		if (sortOrder == null) {
+			return Integer.MAX_VALUE;
+		}
+		String[] tokens = sortOrder.trim().split("\\s+");
+		for (int i = 0; i < tokens.length - 1; i++) {
+			if ("LIMIT".equalsIgnoreCase(tokens[i])) {
+				return Integer.parseInt(tokens[i + 1]);
+			}
+		}
+		return Integer.MAX_VALUE;
+	}
+
+	private boolean matches(Map<String, Object> row, String selection, String[] selectionArgs) {
+		if (selection == null) {
+			return true;
+		}
+		String[] clauses = selection.split("(?i)\\s+AND\\s+");
+		for (int i = 0; i < clauses.length; i++) {
+			String[] tokens = clauses[i].trim().replace("(", "").replace(")", "").split("\\s+");
+			if (tokens.length != 3 || !"?".equals(tokens[2])) {
+				throw new IllegalArgumentException("Unsupported selection: " + selection);
+			}
+			if (!matches(row.get(tokens[0]), tokens[1], selectionArgs[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean matches(Object value, String operator, String arg) {
+		if (value == null) {
+			return false;
+		}
+		int comparison = value instanceof Number ? Long.valueOf(((Number) value).longValue()).compareTo(
+				Long.parseLong(arg)) : value.toString().compareTo(arg);
+		if ("=".equals(operator)) {
+			return comparison == 0;
+		} else if ("!=".equals(operator)) {
+			return comparison != 0;
+		} else if (">".equals(operator)) {
+			return comparison > 0;
+		} else if ("<".equals(operator)) {
+			return comparison < 0;
+		}
+		throw new IllegalArgumentException("Unsupported operator: " + operator);
+	}
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import org.robolectric.shadows.ShadowContentResolver;
+
+/**
+ * In memory replacement of the Android sms content provider created to be used in tests where Mockito cursors are
+ * not enough, like throughput or latency measurements over big mailboxes.
+ * <p/>
+ * This provider reproduces the sms content provider behavior SmsRadar depends on: auto incremented _id values,
+ * content://sms/inbox and content://sms/sent filtering by type, "date DESC" as default sort order, LIMIT clauses
+ * inside the sort order and change notifications after every insertion, update or deletion.
+ * <p/>
+ * Selections are supported only if composed by "column operator ?" clauses joined with AND.
+ */
+public class FakeSmsContentProvider extends ContentProvider {
+
+	static final String AUTHORITY = "sms";
+	static final Uri SMS_URI = Uri.parse("content://sms");
+	static final Uri SMS_INBOX_URI = Uri.parse("content://sms/inbox");
+	static final Uri SMS_SENT_URI = Uri.parse("content://sms/sent");
+
+	static final String ID = "_id";
+	static final String THREAD_ID = "thread_id";
+	static final String ADDRESS = "address";
+	static final String DATE = "date";
+	static final String DATE_SENT = "date_sent";
+	static final String PROTOCOL = "protocol";
+	static final String READ = "read";
+	static final String STATUS = "status";
+	static final String TYPE = "type";
+	static final String BODY = "body";
+	static final String SUB_ID = "sub_id";
+	static final String COUNT = "COUNT(*)";
+
+	private static final String[] COLUMNS = {ID, THREAD_ID, ADDRESS, DATE, DATE_SENT, PROTOCOL, READ, STATUS, TYPE,
+			BODY, SUB_ID};
+	private static final String DEFAULT_SORT_ORDER = "date DESC";
+	private static final String INBOX_PATH = "inbox";
+	private static final String SENT_PATH = "sent";
+	private static final String RECEIVED_PROTOCOL = "0";
+	private static final int TYPE_RECEIVED = 1;
+	private static final int TYPE_SENT = 2;
+	private static final int STATUS_NONE = -1;
+	private static final int NO_SUBSCRIPTION = -1;
+
+	private final ContentResolver contentResolver;
+	private final List<Row> rows = new ArrayList<Row>();
+	private long nextId = 1;
+	private int queryCount;
+
+	FakeSmsContentProvider(ContentResolver contentResolver) {
+		this.contentResolver = contentResolver;
+	}
+
+	static FakeSmsContentProvider register(ContentResolver contentResolver) {
+		FakeSmsContentProvider provider = new FakeSmsContentProvider(contentResolver);
+		ShadowContentResolver.registerProvider(AUTHORITY, provider);
+		return provider;
+	}
+
+	@Override
+	public boolean onCreate() {
+		return true;
+	}
+
+	@Override
+	public String getType(Uri uri) {
+		return null;
+	}
+
+	@Override
+	public synchronized Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+			String sortOrder) {
+		SortOrder parsedSortOrder = new SortOrder(sortOrder != null ? sortOrder : DEFAULT_SORT_ORDER);
+		Selection parsedSelection = new Selection(selection, selectionArgs);
+		Integer type = getTypeFromUri(uri);
+		Long id = getIdFromUri(uri);
+		boolean sortedById = parsedSortOrder.column == 0;
+		int limit = sortedById ? parsedSortOrder.limit : Integer.MAX_VALUE;
+		List<Row> result = new ArrayList<Row>();
+		for (int i = 0; i < rows.size() && result.size() < limit; i++) {
+			Row row = rows.get(sortedById && parsedSortOrder.descending ? rows.size() - 1 - i : i);
+			if ((type == null || row.type == type) && (id == null || row.id == id) && parsedSelection.matches(row)) {
+				result.add(row);
+			}
+		}
+		queryCount++;
+		if (projection != null && projection.length == 1 && COUNT.equalsIgnoreCase(projection[0])) {
+			MatrixCursor cursor = new MatrixCursor(projection);
+			cursor.addRow(new Object[]{result.size()});
+			return cursor;
+		}
+		if (!sortedById) {
+			parsedSortOrder.sort(result);
+		}
+		return toCursor(projection != null ? projection : COLUMNS, result, parsedSortOrder.limit);
+	}
+
+	@Override
+	public synchronized Uri insert(Uri uri, ContentValues values) {
+		Integer uriType = getTypeFromUri(uri);
+		Row row = new Row();
+		row.id = nextId++;
+		row.threadId = getLong(values, THREAD_ID, 1);
+		row.address = values.getAsString(ADDRESS);
+		row.date = getLong(values, DATE, System.currentTimeMillis());
+		row.dateSent = getLong(values, DATE_SENT, 0);
+		row.type = (int) getLong(values, TYPE, uriType != null ? uriType : TYPE_RECEIVED);
+		row.protocol = values.containsKey(PROTOCOL) ? values.getAsString(PROTOCOL)
+				: row.type == TYPE_RECEIVED ? RECEIVED_PROTOCOL : null;
+		row.read = (int) getLong(values, READ, 0);
+		row.status = (int) getLong(values, STATUS, STATUS_NONE);
+		row.body = values.getAsString(BODY);
+		row.subId = (int) getLong(values, SUB_ID, NO_SUBSCRIPTION);
+		rows.add(row);
+		Uri rowUri = Uri.withAppendedPath(SMS_URI, String.valueOf(row.id));
+		notifyChange(rowUri);
+		return rowUri;
+	}
+
+	@Override
+	public synchronized int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+		Selection parsedSelection = new Selection(selection, selectionArgs);
+		Long id = getIdFromUri(uri);
+		int updated = 0;
+		for (Row row : rows) {
+			if ((id == null || row.id == id) && parsedSelection.matches(row)) {
+				row.type = (int) getLong(values, TYPE, row.type);
+				row.read = (int) getLong(values, READ, row.read);
+				row.status = (int) getLong(values, STATUS, row.status);
+				updated++;
+			}
+		}
+		if (updated > 0) {
+			notifyChange(uri);
+		}
+		return updated;
+	}
+
+	@Override
+	public synchronized int delete(Uri uri, String selection, String[] selectionArgs) {
+		Selection parsedSelection = new Selection(selection, selectionArgs);
+		Long id = getIdFromUri(uri);
+		int deleted = 0;
+		Iterator<Row> iterator = rows.iterator();
+		while (iterator.hasNext()) {
+			Row row = iterator.next();
+			if ((id == null || row.id == id) && parsedSelection.matches(row)) {
+				iterator.remove();
+				deleted++;
+			}
+		}
+		if (deleted > 0) {
+			notifyChange(uri);
+		}
+		return deleted;
+	}
+
+	/**
+	 * Inserts count received sms without notifying changes. Used to create big mailboxes quickly.
+	 */
+	synchronized void fill(int count, String address, String body, long date) {
+		for (int i = 0; i < count; i++) {
+			Row row = new Row();
+			row.id = nextId++;
+			row.threadId = 1;
+			row.address = address;
+			row.date = date;
+			row.type = TYPE_RECEIVED;
+			row.protocol = RECEIVED_PROTOCOL;
+			row.status = STATUS_NONE;
+			row.body = body;
+			row.subId = NO_SUBSCRIPTION;
+			rows.add(row);
+		}
+	}
+
+	Uri insertReceivedSms(String address, String body) {
+		ContentValues values = new ContentValues();
+		values.put(ADDRESS, address);
+		values.put(BODY, body);
+		return insert(SMS_INBOX_URI, values);
+	}
+
+	Uri insertSentSms(String address, String body) {
+		ContentValues values = new ContentValues();
+		values.put(ADDRESS, address);
+		values.put(BODY, body);
+		return insert(SMS_SENT_URI, values);
+	}
+
+	/**
+	 * @return number of queries received since the provider was registered.
+	 */
+	synchronized int getQueryCount() {
+		return queryCount;
+	}
+
+	synchronized int size() {
+		return rows.size();
+	}
+
+	private void notifyChange(Uri uri) {
+		if (contentResolver != null) {
+			contentResolver.notifyChange(uri, null);
+		}
+	}
+
+	private Integer getTypeFromUri(Uri uri) {
+		String path = uri.getPath();
+		if (path == null) {
+			return null;
+		} else if (path.startsWith("/" + INBOX_PATH)) {
+			return TYPE_RECEIVED;
+		} else if (path.startsWith("/" + SENT_PATH)) {
+			return TYPE_SENT;
+		}
+		return null;
+	}
+
+	private Long getIdFromUri(Uri uri) {
+		String lastPathSegment = uri.getLastPathSegment();
+		try {
+			return lastPathSegment != null ? Long.parseLong(lastPathSegment) : null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private long getLong(ContentValues values, String key, long defaultValue) {
+		Long value = values.getAsLong(key);
+		return value != null ? value : defaultValue;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compareValues(Object lhs, Object rhs) {
+		if (lhs == null || rhs == null) {
+			return lhs == null ? (rhs == null ? 0 : -1) : 1;
+		}
+		return ((Comparable<Object>) lhs).compareTo(rhs);
+	}
+
+	private Cursor toCursor(String[] projection, List<Row> result, int limit) {
+		int[] columns = new int[projection.length];
+		for (int i = 0; i < projection.length; i++) {
+			columns[i] = indexOf(projection[i]);
+		}
+		MatrixCursor cursor = new MatrixCursor(projection);
+		int count = Math.min(limit, result.size());
+		for (int i = 0; i < count; i++) {
+			Row row = result.get(i);
+			Object[] values = new Object[columns.length];
+			for (int j = 0; j < columns.length; j++) {
+				values[j] = row.get(columns[j]);
+			}
+			cursor.addRow(values);
+		}
+		return cursor;
+	}
+
+	private static int indexOf(String column) {
+		for (int i = 0; i < COLUMNS.length; i++) {
+			if (COLUMNS[i].equalsIgnoreCase(column)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unknown column: " + column);
+	}
+
+	/**
+	 * Sms content provider row.
+	 */
+	private static class Row {
+
+		private long id;
+		private long threadId;
+		private String address;
+		private long date;
+		private long dateSent;
+		private String protocol;
+		private int read;
+		private int status;
+		private int type;
+		private String body;
+		private int subId;
+
+		Object get(int column) {
+			switch (column) {
+				case 0:
+					return id;
+				case 1:
+					return threadId;
+				case 2:
+					return address;
+				case 3:
+					return date;
+				case 4:
+					return dateSent;
+				case 5:
+					return protocol;
+				case 6:
+					return read;
+				case 7:
+					return status;
+				case 8:
+					return type;
+				case 9:
+					return body;
+				default:
+					return subId;
+			}
+		}
+	}
+
+	/**
+	 * Sort order composed by one column, an optional direction and an optional LIMIT clause. Rows are stored sorted by
+	 * _id, so they are sorted again only if the sort column is a different one.
+	 */
+	private static class SortOrder {
+
+		private final int column;
+		private final boolean descending;
+		private final int limit;
+
+		SortOrder(String sortOrder) {
+			String[] tokens = sortOrder.trim().split("\\s+");
+			int parsedLimit = Integer.MAX_VALUE;
+			for (int i = 0; i < tokens.length - 1; i++) {
+				if ("LIMIT".equalsIgnoreCase(tokens[i])) {
+					parsedLimit = Integer.parseInt(tokens[i + 1]);
+				}
+			}
+			column = indexOf(tokens[0]);
+			descending = tokens.length > 1 && "DESC".equalsIgnoreCase(tokens[1]);
+			limit = parsedLimit;
+		}
+
+		void sort(List<Row> result) {
+			Collections.sort(result, new Comparator<Row>() {
+				@Override
+				public int compare(Row lhs, Row rhs) {
+					int comparison = compareValues(lhs.get(column), rhs.get(column));
+					if (comparison == 0) {
+						comparison = compareValues(lhs.id, rhs.id);
+					}
+					return descending ? -comparison : comparison;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Selection composed by "column operator ?" clauses joined with AND.
+	 */
+	private static class Selection {
+
+		private static final String IN_OPERATOR = "IN";
+
+		private final int[] columns;
+		private final String[] operators;
+		private final String[][] args;
+
+		Selection(String selection, String[] selectionArgs) {
+			String[] clauses = selection == null || selection.trim().length() == 0 ? new String[0]
+					: selection.split("(?i)\\s+AND\\s+");
+			columns = new int[clauses.length];
+			operators = new String[clauses.length];
+			args = new String[clauses.length][];
+			int argIndex = 0;
+			for (int i = 0; i < clauses.length; i++) {
+				String[] tokens = clauses[i].trim().replace("(", " ").replace(")", " ").replace(",", " ").trim()
+						.split("\\s+");
+				int argCount = tokens.length - 2;
+				boolean in = IN_OPERATOR.equalsIgnoreCase(tokens[1]);
+				if (argCount < 1 || (argCount > 1 && !in)) {
+					throw new IllegalArgumentException("Unsupported selection: " + selection);
+				}
+				columns[i] = indexOf(tokens[0]);
+				operators[i] = tokens[1].toUpperCase(Locale.US);
+				args[i] = new String[argCount];
+				for (int j = 0; j < argCount; j++) {
+					if (!"?".equals(tokens[j + 2])) {
+						throw new IllegalArgumentException("Unsupported selection: " + selection);
+					}
+					args[i][j] = selectionArgs[argIndex++];
+				}
+			}
+		}
+
+		boolean matches(Row row) {
+			for (int i = 0; i < columns.length; i++) {
+				if (!matches(row.get(columns[i]), operators[i], args[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean matches(Object value, String operator, String[] args) {
+			if (!IN_OPERATOR.equals(operator)) {
+				return matches(value, operator, args[0]);
+			}
+			for (String arg : args) {
+				if (matches(value, "=", arg)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean matches(Object value, String operator, String arg) {
+			int comparison;
+			if (value instanceof Number) {
+				comparison = compareValues(((Number) value).longValue(), Long.parseLong(arg));
+			} else {
+				comparison = compareValues(value, arg);
+			}
+			if ("=".equals(operator)) {
+				return comparison == 0;
+			} else if ("!=".equals(operator) || "<>".equals(operator)) {
+				return comparison != 0;
+			} else if (">".equals(operator)) {
+				return comparison > 0;
+			} else if (">=".equals(operator)) {
+				return comparison >= 0;
+			} else if ("<".equals(operator)) {
+				return comparison < 0;
+			} else if ("<=".equals(operator)) {
+				return comparison <= 0;
+			}
+			throw new IllegalArgumentException("Unsupported operator: " + operator);
+		}
+	}
+}
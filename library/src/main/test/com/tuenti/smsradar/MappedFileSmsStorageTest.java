@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of MappedFileSmsStorage. Two storage instances over the same file are used to
+ * simulate two processes.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MappedFileSmsStorageTest {
+
+	private static final int DEFAULT_VALUE = -1;
+	private static final int ANY_SMS_ID = 5;
+	private static final int OTHER_SMS_ID = 9;
+	private static final int ANY_SUBSCRIPTION_ID = 1;
+	private static final int OTHER_SUBSCRIPTION_ID = 2;
+
+	private File storageFile;
+	private MappedFileSmsStorage smsStorage;
+	private MappedFileSmsStorage otherProcessSmsStorage;
+
+	@Before
+	public void setUp() throws IOException {
+		storageFile = File.createTempFile("sms_radar_storage", null);
+		smsStorage = new MappedFileSmsStorage(storageFile);
+		otherProcessSmsStorage = new MappedFileSmsStorage(storageFile);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		smsStorage.close();
+		otherProcessSmsStorage.close();
+		storageFile.delete();
+	}
+
+	@Test
+	public void shouldReturnDefaultValueIfHadNotBeenEditedPreviously() {
+		assertEquals(DEFAULT_VALUE, smsStorage.getLastSmsIntercepted());
+		assertTrue(smsStorage.isFirstSmsIntercepted());
+	}
+
+	@Test
+	public void shouldUpdateLastSmsInterceptedId() {
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted());
+		assertFalse(smsStorage.isFirstSmsIntercepted());
+	}
+
+	@Test
+	public void shouldReadTheLastSmsInterceptedIdUpdatedByOtherProcess() {
+		assertEquals(DEFAULT_VALUE, otherProcessSmsStorage.getLastSmsIntercepted());
+
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+
+		assertEquals(ANY_SMS_ID, otherProcessSmsStorage.getLastSmsIntercepted());
+	}
+
+	@Test
+	public void shouldNotDecreaseTheLastSmsInterceptedIdStoredByOtherProcess() {
+		smsStorage.updateLastSmsIntercepted(OTHER_SMS_ID);
+
+		otherProcessSmsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+
+		assertEquals(OTHER_SMS_ID, smsStorage.getLastSmsIntercepted());
+	}
+
+	@Test
+	public void shouldIncrementTheGenerationOnlyWhenTheFileChanges() {
+		long generation = smsStorage.getGeneration();
+
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+
+		assertEquals(generation + 1, otherProcessSmsStorage.getGeneration());
+	}
+
+	@Test
+	public void shouldKeepTheLastSmsInterceptedIdOfEverySubscription() {
+		smsStorage.updateLastSmsIntercepted(ANY_SUBSCRIPTION_ID, OTHER_SMS_ID);
+		otherProcessSmsStorage.updateLastSmsIntercepted(OTHER_SUBSCRIPTION_ID, ANY_SMS_ID);
+
+		assertEquals(OTHER_SMS_ID, otherProcessSmsStorage.getLastSmsIntercepted(ANY_SUBSCRIPTION_ID));
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted(OTHER_SUBSCRIPTION_ID));
+		assertEquals(OTHER_SMS_ID, smsStorage.getLastSmsIntercepted());
+	}
+
+	@Test
+	public void shouldReuseTheOldestSubscriptionEntryWhenEveryEntryIsUsed() {
+		for (int i = 0; i <= MappedFileSmsStorage.MAX_SUBSCRIPTIONS; i++) {
+			smsStorage.updateLastSmsIntercepted(i, i + 1);
+		}
+
+		assertEquals(MappedFileSmsStorage.MAX_SUBSCRIPTIONS + 1,
+				smsStorage.getLastSmsIntercepted(MappedFileSmsStorage.MAX_SUBSCRIPTIONS));
+		assertEquals(2, smsStorage.getLastSmsIntercepted(1));
+	}
+
+	@Test
+	public void shouldKeepTheValuesStoredAfterReopeningTheFile() throws IOException {
+		smsStorage.updateLastSmsIntercepted(ANY_SUBSCRIPTION_ID, ANY_SMS_ID);
+		smsStorage.close();
+
+		smsStorage = new MappedFileSmsStorage(storageFile);
+
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted(ANY_SUBSCRIPTION_ID));
+	}
+
+	@Test
+	public void shouldNotUpdateTheFileIfItCantBeLocked() throws IOException {
+		long generation = otherProcessSmsStorage.getGeneration();
+		smsStorage.close();
+
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+		smsStorage.updateLastSmsIntercepted(ANY_SUBSCRIPTION_ID, ANY_SMS_ID);
+
+		assertEquals(generation, otherProcessSmsStorage.getGeneration());
+		assertEquals(DEFAULT_VALUE, otherProcessSmsStorage.getLastSmsIntercepted());
+	}
+
+	@Test
+	public void shouldReadTheCachedValuesIfTheFileCantBeLocked() throws IOException {
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted());
+		smsStorage.close();
+
+		otherProcessSmsStorage.updateLastSmsIntercepted(OTHER_SMS_ID);
+
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted());
+	}
+}
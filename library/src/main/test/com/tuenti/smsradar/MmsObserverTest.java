@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+
+/**
+ * Test created to check the correctness of MmsObserver.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MmsObserverTest {
+
+	private static final String SHARED_PREFERENCES_PATH = "mms_observer_test";
+	private static final int PAGE_SIZE = 10;
+	private static final String ANY_ADDRESS = "+34600123456";
+	private static final String OTHER_ADDRESS = "+34600654321";
+	private static final String ANY_SUBJECT = "subject";
+	private static final long ANY_DATE_IN_SECONDS = 1400000000;
+	private static final int UTF_8 = 106;
+
+	private FakeMmsContentProvider fakeMmsContentProvider;
+	private SharedPreferences sharedPreferences;
+	private SmsQueryPager smsQueryPager;
+	private RecordingMmsListener mmsListener;
+
+	@Before
+	public void setUp() {
+		ContentResolver contentResolver = Robolectric.application.getContentResolver();
+		fakeMmsContentProvider = FakeMmsContentProvider.register();
+		sharedPreferences = Robolectric.application.getSharedPreferences(SHARED_PREFERENCES_PATH,
+				Context.MODE_PRIVATE);
+		smsQueryPager = new SmsQueryPager(contentResolver, PAGE_SIZE);
+		mmsListener = new RecordingMmsListener();
+		SmsRadar.setSmsListener(mmsListener);
+	}
+
+	@After
+	public void tearDown() {
+		SmsRadar.setSmsListener(null);
+		sharedPreferences.edit().clear().commit();
+	}
+
+	@Test
+	public void shouldNotNotifyTheMmsStoredBeforeTheFirstTime() {
+		fakeMmsContentProvider.insertReceivedMms(ANY_ADDRESS, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+		MmsObserver mmsObserver = createMmsObserver();
+
+		int mmsIntercepted = mmsObserver.interceptNewMms();
+
+		assertEquals(0, mmsIntercepted);
+		assertEquals(1, mmsObserver.getLastMmsIdParsed());
+	}
+
+	@Test
+	public void shouldNotifyTheReceivedMmsWithTheSenderAddressAndThePartHeaders() {
+		MmsObserver mmsObserver = createInitializedMmsObserver();
+		long mmsId = fakeMmsContentProvider.insertReceivedMms(ANY_ADDRESS, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+		fakeMmsContentProvider.insertTextPart(mmsId, "text/plain", "text_0.txt", UTF_8, "Hello");
+		fakeMmsContentProvider.insertFilePart(mmsId, "image/jpeg", "image.jpg", "/data/parts/image");
+
+		mmsObserver.onChange(false);
+
+		assertEquals(1, mmsListener.mmsReceived.size());
+		Mms mms = mmsListener.mmsReceived.get(0);
+		assertEquals(mmsId, mms.getId());
+		assertEquals(ANY_ADDRESS, mms.getAddress());
+		assertEquals(ANY_SUBJECT, mms.getSubject());
+		assertEquals(ANY_DATE_IN_SECONDS * 1000, mms.getDate());
+		assertEquals(SmsType.RECEIVED, mms.getType());
+		assertEquals(2, mms.getParts().size());
+		assertTrue(mms.getParts().get(0).isText());
+		assertEquals("image.jpg", mms.getParts().get(1).getName());
+		assertTrue(mms.getParts().get(1).isStoredInFile());
+	}
+
+	@Test
+	public void shouldNotifyTheSentMmsWithTheRecipientAddress() {
+		MmsObserver mmsObserver = createInitializedMmsObserver();
+		fakeMmsContentProvider.insertSentMms(OTHER_ADDRESS, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+
+		mmsObserver.onChange(false);
+
+		assertEquals(0, mmsListener.mmsReceived.size());
+		assertEquals(1, mmsListener.mmsSent.size());
+		assertEquals(OTHER_ADDRESS, mmsListener.mmsSent.get(0).getAddress());
+		assertEquals(SmsType.SENT, mmsListener.mmsSent.get(0).getType());
+	}
+
+	@Test
+	public void shouldIgnoreTheDraftsAndTheMmsNotDownloaded() {
+		MmsObserver mmsObserver = createInitializedMmsObserver();
+		fakeMmsContentProvider.insertMms(MmsObserver.MESSAGE_BOX_DRAFTS, 128, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+		fakeMmsContentProvider.insertMms(1, MmsObserver.MESSAGE_TYPE_NOTIFICATION_IND, ANY_SUBJECT,
+				ANY_DATE_IN_SECONDS);
+
+		int mmsIntercepted = mmsObserver.interceptNewMms();
+
+		assertEquals(0, mmsIntercepted);
+	}
+
+	@Test
+	public void shouldNotNotifyTheSameMmsTwice() {
+		MmsObserver mmsObserver = createInitializedMmsObserver();
+		fakeMmsContentProvider.insertReceivedMms(ANY_ADDRESS, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+		mmsObserver.onChange(false);
+
+		fakeMmsContentProvider.insertReceivedMms(OTHER_ADDRESS, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+		mmsObserver.onChange(false);
+
+		assertEquals(2, mmsListener.mmsReceived.size());
+		assertEquals(OTHER_ADDRESS, mmsListener.mmsReceived.get(1).getAddress());
+	}
+
+	@Test
+	public void shouldReadEveryMmsStoredWhileTheObserverWasNotRegistered() {
+		createInitializedMmsObserver();
+		for (int i = 0; i < PAGE_SIZE + 5; i++) {
+			fakeMmsContentProvider.insertReceivedMms(ANY_ADDRESS, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+		}
+
+		int mmsIntercepted = createMmsObserver().interceptNewMms();
+
+		assertEquals(PAGE_SIZE + 5, mmsIntercepted);
+		assertEquals(PAGE_SIZE + 5, mmsListener.mmsReceived.size());
+	}
+
+	@Test
+	public void shouldSkipTheMmsIfTheSmsListenerIsNotAMmsListener() {
+		MmsObserver mmsObserver = createInitializedMmsObserver();
+		SmsRadar.setSmsListener(null);
+		fakeMmsContentProvider.insertReceivedMms(ANY_ADDRESS, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+		mmsObserver.onChange(false);
+
+		SmsRadar.setSmsListener(mmsListener);
+		mmsObserver.onChange(false);
+
+		assertEquals(0, mmsListener.mmsReceived.size());
+		assertEquals(1, mmsObserver.getLastMmsIdParsed());
+	}
+
+	private MmsObserver createInitializedMmsObserver() {
+		MmsObserver mmsObserver = createMmsObserver();
+		mmsObserver.getLastMmsIdParsed();
+		return mmsObserver;
+	}
+
+	private MmsObserver createMmsObserver() {
+		return new MmsObserver(new Handler(), new Handler(), Robolectric.application.getContentResolver(),
+				smsQueryPager, sharedPreferences);
+	}
+
+	private static class RecordingMmsListener implements SmsListener, MmsListener {
+
+		private final List<Mms> mmsReceived = new LinkedList<Mms>();
+		private final List<Mms> mmsSent = new LinkedList<Mms>();
+
+		@Override
+		public void onSmsSent(Sms sms) {
+		}
+
+		@Override
+		public void onSmsReceived(Sms sms) {
+		}
+
+		@Override
+		public void onMmsReceived(Mms mms) {
+			mmsReceived.add(mms);
+		}
+
+		@Override
+		public void onMmsSent(Mms mms) {
+			mmsSent.add(mms);
+		}
+	}
+}
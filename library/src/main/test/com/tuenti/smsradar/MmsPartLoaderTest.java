@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Test created to check the correctness of MmsPartLoader.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MmsPartLoaderTest {
+
+	private static final String ANY_ADDRESS = "+34600123456";
+	private static final String ANY_SUBJECT = "subject";
+	private static final long ANY_DATE_IN_SECONDS = 1400000000;
+	private static final int UTF_8 = 106;
+	private static final int ISO_8859_1 = 4;
+	private static final int UTF_16 = 1015;
+	private static final int UNKNOWN_CHARSET = 0;
+	private static final String ANY_TEXT = "Mañana";
+
+	private FakeMmsContentProvider fakeMmsContentProvider;
+	private MmsPartLoader mmsPartLoader;
+	private long mmsId;
+
+	@Before
+	public void setUp() {
+		fakeMmsContentProvider = FakeMmsContentProvider.register();
+		mmsPartLoader = new MmsPartLoader(Robolectric.application.getContentResolver());
+		mmsId = fakeMmsContentProvider.insertReceivedMms(ANY_ADDRESS, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+	}
+
+	@Test
+	public void shouldLoadThePartHeadersOfTheMmsWithoutTheirContent() {
+		fakeMmsContentProvider.insertTextPart(mmsId, "text/plain", "text_0.txt", UTF_8, ANY_TEXT);
+		fakeMmsContentProvider.insertFilePart(mmsId, "image/jpeg", "image.jpg", "/data/parts/image");
+		long otherMmsId = fakeMmsContentProvider.insertReceivedMms(ANY_ADDRESS, ANY_SUBJECT, ANY_DATE_IN_SECONDS);
+		fakeMmsContentProvider.insertTextPart(otherMmsId, "text/plain", null, UTF_8, ANY_TEXT);
+
+		List<MmsPart> parts = mmsPartLoader.loadParts(mmsId);
+
+		assertEquals(2, parts.size());
+		assertEquals("text/plain", parts.get(0).getContentType());
+		assertEquals("text_0.txt", parts.get(0).getName());
+		assertFalse(parts.get(0).isStoredInFile());
+		assertEquals(mmsId, parts.get(1).getMmsId());
+	}
+
+	@Test
+	public void shouldUseTheContentLocationIfThePartHasNoName() {
+		fakeMmsContentProvider.insertFilePart(mmsId, "image/jpeg", "image.jpg", "/data/parts/image");
+
+		List<MmsPart> parts = mmsPartLoader.loadParts(mmsId);
+
+		assertEquals("image.jpg", parts.get(0).getName());
+	}
+
+	@Test
+	public void shouldReadTheTextStoredInThePartRow() throws Exception {
+		fakeMmsContentProvider.insertTextPart(mmsId, "text/plain", null, UTF_8, ANY_TEXT);
+		MmsPart part = mmsPartLoader.loadParts(mmsId).get(0);
+
+		String text = mmsPartLoader.loadText(part);
+
+		assertEquals(ANY_TEXT, text);
+	}
+
+	@Test
+	public void shouldStreamTheTextStoredInThePartRowEncodedWithThePartCharset() throws Exception {
+		fakeMmsContentProvider.insertTextPart(mmsId, "text/plain", null, ISO_8859_1, ANY_TEXT);
+		MmsPart part = mmsPartLoader.loadParts(mmsId).get(0);
+
+		InputStream inputStream = mmsPartLoader.openInputStream(part);
+
+		assertEquals(ANY_TEXT, MmsPartLoader.readText(inputStream, "ISO-8859-1"));
+		inputStream.close();
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void shouldThrowFileNotFoundExceptionIfThePartDoesNotExistAnymore() throws Exception {
+		MmsPart part = new MmsPart(1000, mmsId, "text/plain", null, UTF_8, false);
+
+		mmsPartLoader.loadText(part);
+	}
+
+	@Test
+	public void shouldDecodeTheTextStreamedUsingThePartCharset() throws Exception {
+		InputStream inputStream = new ByteArrayInputStream(ANY_TEXT.getBytes("UTF-16"));
+
+		String text = MmsPartLoader.readText(inputStream, MmsPartLoader.getCharsetName(UTF_16));
+
+		assertEquals(ANY_TEXT, text);
+	}
+
+	@Test
+	public void shouldUseUtf8IfTheCharsetIsUnknown() {
+		assertEquals("UTF-8", MmsPartLoader.getCharsetName(UNKNOWN_CHARSET));
+	}
+
+	@Test
+	public void shouldReturnAnEmptyListIfTheMmsHasNoParts() {
+		List<MmsPart> parts = mmsPartLoader.loadParts(mmsId);
+
+		assertEquals(0, parts.size());
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of RecentSmsCache.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RecentSmsCacheTest {
+
+	private static final int CAPACITY = 3;
+	private static final String ANY_ADDRESS = "address";
+	private static final String OTHER_ADDRESS = "other_address";
+	private static final String ANY_BODY = "body";
+
+	private RecentSmsCache recentSmsCache;
+
+	@Before
+	public void setUp() {
+		recentSmsCache = new RecentSmsCache(CAPACITY);
+	}
+
+	@Test
+	public void shouldReturnTheLastSmsFromTheNewestToTheOldest() {
+		Sms firstSms = putSms(ANY_ADDRESS, 1);
+		Sms secondSms = putSms(ANY_ADDRESS, 2);
+
+		List<Sms> recentSms = recentSmsCache.recent(2);
+
+		assertEquals(2, recentSms.size());
+		assertEquals(secondSms, recentSms.get(0));
+		assertEquals(firstSms, recentSms.get(1));
+	}
+
+	@Test
+	public void shouldReturnNoMoreSmsThanRequested() {
+		putSms(ANY_ADDRESS, 1);
+		putSms(ANY_ADDRESS, 2);
+
+		assertEquals(1, recentSmsCache.recent(1).size());
+	}
+
+	@Test
+	public void shouldEvictTheOldestSmsWhenTheCacheIsFull() {
+		putSms(ANY_ADDRESS, 1);
+		putSms(OTHER_ADDRESS, 2);
+		putSms(OTHER_ADDRESS, 3);
+		putSms(OTHER_ADDRESS, 4);
+
+		assertEquals(CAPACITY, recentSmsCache.size());
+		assertTrue(recentSmsCache.byAddress(ANY_ADDRESS, 0).isEmpty());
+	}
+
+	@Test
+	public void shouldReturnOnlyTheSmsWithTheAddressRequested() {
+		Sms sms = putSms(ANY_ADDRESS, 1);
+		putSms(OTHER_ADDRESS, 2);
+
+		List<Sms> smsByAddress = recentSmsCache.byAddress(ANY_ADDRESS, 0);
+
+		assertEquals(1, smsByAddress.size());
+		assertEquals(sms, smsByAddress.get(0));
+	}
+
+	@Test
+	public void shouldNotReturnSmsOlderThanTheDateRequested() {
+		putSms(ANY_ADDRESS, 1);
+		Sms newSms = putSms(ANY_ADDRESS, 5);
+
+		List<Sms> smsByAddress = recentSmsCache.byAddress(ANY_ADDRESS, 3);
+
+		assertEquals(1, smsByAddress.size());
+		assertEquals(newSms, smsByAddress.get(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptANegativeNumberOfSms() {
+		recentSmsCache.recent(-1);
+	}
+
+	private Sms putSms(String address, long date) {
+		Sms sms = new Sms(address, String.valueOf(date), ANY_BODY, SmsType.RECEIVED);
+		recentSmsCache.put(sms);
+		return sms;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import org.robolectric.shadows.ShadowContentResolver;
+
+/**
+ * Read only replacement of the Android sms content provider which returns the cursors recorded by
+ * SmsCaptureRecorder.
+ * <p/>
+ * Queries are answered with the first recorded query not returned yet with the same uri and, if a projection is
+ * used, the same columns. Queries without a recorded answer return null.
+ */
+public class ReplaySmsContentProvider extends ContentProvider {
+
+	static final String AUTHORITY = "sms";
+
+	private final LinkedList<SmsCaptureEvent> recordedQueries = new LinkedList<SmsCaptureEvent>();
+
+	ReplaySmsContentProvider(List<SmsCaptureEvent> events) {
+		for (SmsCaptureEvent event : events) {
+			if (event.getType() == SmsCaptureEvent.Type.QUERY) {
+				recordedQueries.add(event);
+			}
+		}
+	}
+
+	static ReplaySmsContentProvider register(List<SmsCaptureEvent> events) {
+		ReplaySmsContentProvider provider = new ReplaySmsContentProvider(events);
+		ShadowContentResolver.registerProvider(AUTHORITY, provider);
+		return provider;
+	}
+
+	@Override
+	public boolean onCreate() {
+		return true;
+	}
+
+	@Override
+	public synchronized Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+			String sortOrder) {
+		Iterator<SmsCaptureEvent> iterator = recordedQueries.iterator();
+		while (iterator.hasNext()) {
+			SmsCaptureEvent recordedQuery = iterator.next();
+			if (matches(recordedQuery, uri, projection)) {
+				iterator.remove();
+				return toCursor(recordedQuery);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String getType(Uri uri) {
+		return null;
+	}
+
+	@Override
+	public Uri insert(Uri uri, ContentValues values) {
+		throw new UnsupportedOperationException("Recorded sms content provider is read only");
+	}
+
+	@Override
+	public int delete(Uri uri, String selection, String[] selectionArgs) {
+		throw new UnsupportedOperationException("Recorded sms content provider is read only");
+	}
+
+	@Override
+	public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+		throw new UnsupportedOperationException("Recorded sms content provider is read only");
+	}
+
+	/**
+	 * @return number of recorded queries not returned yet.
+	 */
+	synchronized int getPendingQueryCount() {
+		return recordedQueries.size();
+	}
+
+	private boolean matches(SmsCaptureEvent recordedQuery, Uri uri, String[] projection) {
+		if (!uri.toString().equals(recordedQuery.getUri())) {
+			return false;
+		}
+		return projection == null || recordedQuery.getColumns() == null
+				|| Arrays.equals(projection, recordedQuery.getColumns());
+	}
+
+	private Cursor toCursor(SmsCaptureEvent recordedQuery) {
+		if (recordedQuery.getColumns() == null) {
+			return null;
+		}
+		MatrixCursor cursor = new MatrixCursor(recordedQuery.getColumns(), recordedQuery.getRows().size());
+		for (Object[] row : recordedQuery.getRows()) {
+			cursor.addRow(row);
+		}
+		return cursor;
+	}
+}
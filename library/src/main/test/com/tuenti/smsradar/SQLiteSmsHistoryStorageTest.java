@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SQLiteSmsHistoryStorage. A new storage instance over the same database is
+ * used to check what has been written to the database.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SQLiteSmsHistoryStorageTest {
+
+	private static final int DEFAULT_VALUE = -1;
+	private static final int ANY_SMS_ID = 5;
+	private static final int OTHER_SMS_ID = 9;
+	private static final int ANY_SUBSCRIPTION_ID = 1;
+	private static final String ANY_ADDRESS = "+34 666 666 666";
+	private static final String OTHER_ADDRESS = "+34 777 777 777";
+	private static final long ANY_DATE = 1000;
+	private static final long OTHER_DATE = 2000;
+	private static final int NO_LIMIT = 100;
+
+	private SmsHistoryOpenHelper openHelper;
+	private SQLiteSmsHistoryStorage smsStorage;
+
+	@Before
+	public void setUp() {
+		openHelper = new SmsHistoryOpenHelper(Robolectric.application);
+		smsStorage = new SQLiteSmsHistoryStorage(openHelper);
+	}
+
+	@After
+	public void tearDown() {
+		openHelper.close();
+		Robolectric.application.deleteDatabase(SmsHistoryOpenHelper.DATABASE_NAME);
+	}
+
+	@Test
+	public void shouldReturnDefaultValueIfHadNotBeenEditedPreviously() {
+		assertEquals(DEFAULT_VALUE, smsStorage.getLastSmsIntercepted());
+		assertTrue(smsStorage.isFirstSmsIntercepted());
+	}
+
+	@Test
+	public void shouldStoreTheLastSmsIntercepted() {
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+
+		assertEquals(ANY_SMS_ID, givenStorageOverTheSameDatabase().getLastSmsIntercepted());
+	}
+
+	@Test
+	public void shouldStoreTheLastSmsInterceptedForEverySubscription() {
+		smsStorage.updateLastSmsIntercepted(ANY_SUBSCRIPTION_ID, ANY_SMS_ID);
+
+		SQLiteSmsHistoryStorage storedSmsStorage = givenStorageOverTheSameDatabase();
+		assertEquals(ANY_SMS_ID, storedSmsStorage.getLastSmsIntercepted(ANY_SUBSCRIPTION_ID));
+		assertEquals(ANY_SMS_ID, storedSmsStorage.getLastSmsIntercepted());
+	}
+
+	@Test
+	public void shouldUseTheLastSmsInterceptedFromAnySubscriptionIfTheSubscriptionHasNotBeenUpdated() {
+		smsStorage.updateLastSmsIntercepted(OTHER_SMS_ID);
+
+		assertEquals(OTHER_SMS_ID, smsStorage.getLastSmsIntercepted(ANY_SUBSCRIPTION_ID));
+		assertFalse(smsStorage.isFirstSmsIntercepted(ANY_SUBSCRIPTION_ID));
+	}
+
+	@Test
+	public void shouldStoreTheSmsIntercepted() {
+		Sms sms = givenSms(ANY_SMS_ID, ANY_ADDRESS, ANY_DATE);
+
+		smsStorage.storeSms(sms);
+
+		assertEquals(Arrays.asList(sms), smsStorage.getSmsByAddress(sms.getNormalizedAddress(), 0, NO_LIMIT));
+	}
+
+	@Test
+	public void shouldReturnTheSmsStoredWithTheAddressFromTheNewestToTheOldestOne() {
+		Sms sms = givenSms(ANY_SMS_ID, ANY_ADDRESS, ANY_DATE);
+		Sms otherSms = givenSms(OTHER_SMS_ID, ANY_ADDRESS, OTHER_DATE);
+		smsStorage.storeSms(sms);
+		smsStorage.storeSms(otherSms);
+		smsStorage.storeSms(givenSms(OTHER_SMS_ID + 1, OTHER_ADDRESS, OTHER_DATE));
+
+		List<Sms> smsStored = smsStorage.getSmsByAddress(sms.getNormalizedAddress(), 0, NO_LIMIT);
+
+		assertEquals(Arrays.asList(otherSms, sms), smsStored);
+	}
+
+	@Test
+	public void shouldNotReturnTheSmsStoredBeforeSinceDate() {
+		Sms sms = givenSms(ANY_SMS_ID, ANY_ADDRESS, ANY_DATE);
+		Sms otherSms = givenSms(OTHER_SMS_ID, ANY_ADDRESS, OTHER_DATE);
+		smsStorage.storeSms(sms);
+		smsStorage.storeSms(otherSms);
+
+		List<Sms> smsStored = smsStorage.getSmsByAddress(sms.getNormalizedAddress(), OTHER_DATE, NO_LIMIT);
+
+		assertEquals(Arrays.asList(otherSms), smsStored);
+	}
+
+	@Test
+	public void shouldNotWriteTheBatchUntilItEnds() {
+		Sms sms = givenSms(ANY_SMS_ID, ANY_ADDRESS, ANY_DATE);
+		smsStorage.beginBatch();
+		smsStorage.storeSms(sms);
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+
+		assertTrue(givenStorageOverTheSameDatabase().isFirstSmsIntercepted());
+		assertTrue(smsStorage.getSmsByAddress(sms.getNormalizedAddress(), 0, NO_LIMIT).isEmpty());
+	}
+
+	@Test
+	public void shouldReturnTheLastSmsInterceptedUpdatedInsideTheBatch() {
+		smsStorage.beginBatch();
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted());
+	}
+
+	@Test
+	public void shouldWriteTheSmsAndTheLastSmsInterceptedWhenTheBatchEnds() {
+		Sms sms = givenSms(ANY_SMS_ID, ANY_ADDRESS, ANY_DATE);
+		smsStorage.beginBatch();
+		smsStorage.storeSms(sms);
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+
+		smsStorage.endBatch();
+
+		assertEquals(ANY_SMS_ID, givenStorageOverTheSameDatabase().getLastSmsIntercepted());
+		assertEquals(Arrays.asList(sms), smsStorage.getSmsByAddress(sms.getNormalizedAddress(), 0, NO_LIMIT));
+	}
+
+	@Test
+	public void shouldWriteNestedBatchesWhenTheOuterBatchEnds() {
+		smsStorage.beginBatch();
+		smsStorage.beginBatch();
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+		smsStorage.endBatch();
+
+		assertTrue(givenStorageOverTheSameDatabase().isFirstSmsIntercepted());
+
+		smsStorage.endBatch();
+
+		assertEquals(ANY_SMS_ID, givenStorageOverTheSameDatabase().getLastSmsIntercepted());
+	}
+
+	private SQLiteSmsHistoryStorage givenStorageOverTheSameDatabase() {
+		return new SQLiteSmsHistoryStorage(openHelper);
+	}
+
+	private Sms givenSms(int smsId, String address, long date) {
+		return new Sms(smsId, address, SmsAddressPool.normalize(address), String.valueOf(date), "Hello",
+				SmsType.RECEIVED, ANY_SUBSCRIPTION_ID);
+	}
+}
@@ -23,6 +23,7 @@ import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 
 import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import android.content.Context;
 import android.content.SharedPreferences;
@@ -40,6 +41,9 @@ public class SharedPreferencesSmsStorageTest {
 	private static final String SHARED_PREFERENCES_PATH = "path";
 	private static final int DEFAULT_VALUE = -1;
 	private static final int ANY_SMS_ID = 1;
+	private static final int OTHER_SMS_ID = 7;
+	private static final int ANY_SUBSCRIPTION_ID = 1;
+	private static final int OTHER_SUBSCRIPTION_ID = 2;
 
 	private SharedPreferencesSmsStorage smsStorage;
 	private SharedPreferences sharedPreferences;
@@ -71,6 +75,32 @@ public class SharedPreferencesSmsStorageTest {
 		assertTrue(smsStorage.isFirstSmsIntercepted());
 	}
 
+	@Test
+	public void shouldUpdateLastSmsInterceptedIdOfTheSubscription() {
+		smsStorage.updateLastSmsIntercepted(ANY_SUBSCRIPTION_ID, ANY_SMS_ID);
+
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted(ANY_SUBSCRIPTION_ID));
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted());
+	}
+
+	@Test
+	public void shouldKeepTheLastSmsInterceptedIdOfEverySubscription() {
+		smsStorage.updateLastSmsIntercepted(ANY_SUBSCRIPTION_ID, OTHER_SMS_ID);
+		smsStorage.updateLastSmsIntercepted(OTHER_SUBSCRIPTION_ID, ANY_SMS_ID);
+
+		assertEquals(OTHER_SMS_ID, smsStorage.getLastSmsIntercepted(ANY_SUBSCRIPTION_ID));
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted(OTHER_SUBSCRIPTION_ID));
+		assertEquals(OTHER_SMS_ID, smsStorage.getLastSmsIntercepted());
+	}
+
+	@Test
+	public void shouldUseTheLastSmsInterceptedIdIfTheSubscriptionHasNotBeenUsed() {
+		smsStorage.updateLastSmsIntercepted(ANY_SMS_ID);
+
+		assertEquals(ANY_SMS_ID, smsStorage.getLastSmsIntercepted(ANY_SUBSCRIPTION_ID));
+		assertFalse(smsStorage.isFirstSmsIntercepted(ANY_SUBSCRIPTION_ID));
+	}
+
 	private void initializeSmsStorage() {
 		sharedPreferences = Robolectric.application.getSharedPreferences(SHARED_PREFERENCES_PATH,
 				Context.MODE_PRIVATE);
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test created to check the correctness of SmsAddressPool.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsAddressPoolTest {
+
+	private static final int CAPACITY = 2;
+	private static final String ANY_ADDRESS = "+34 600-123-456";
+	private static final String ANY_NORMALIZED_ADDRESS = "+34600123456";
+
+	private SmsAddressPool smsAddressPool;
+
+	@Before
+	public void setUp() {
+		smsAddressPool = new SmsAddressPool(CAPACITY);
+	}
+
+	@Test
+	public void shouldReturnTheSameInstanceForRepeatedAddresses() {
+		SmsAddressPool.PooledAddress firstAddress = smsAddressPool.get(ANY_ADDRESS);
+		SmsAddressPool.PooledAddress secondAddress = smsAddressPool.get(new String(ANY_ADDRESS));
+
+		assertSame(firstAddress, secondAddress);
+		assertSame(firstAddress.getAddress(), secondAddress.getAddress());
+	}
+
+	@Test
+	public void shouldNormalizeAddress() {
+		SmsAddressPool.PooledAddress pooledAddress = smsAddressPool.get(ANY_ADDRESS);
+
+		assertEquals(ANY_ADDRESS, pooledAddress.getAddress());
+		assertEquals(ANY_NORMALIZED_ADDRESS, pooledAddress.getNormalizedAddress());
+	}
+
+	@Test
+	public void shouldNotKeepMoreAddressesThanTheCapacity() {
+		SmsAddressPool.PooledAddress firstAddress = smsAddressPool.get("1");
+		smsAddressPool.get("2");
+		smsAddressPool.get("3");
+
+		assertEquals(CAPACITY, smsAddressPool.size());
+		assertNotSame(firstAddress, smsAddressPool.get("1"));
+	}
+
+	@Test
+	public void shouldReturnNullForNullAddresses() {
+		assertNull(smsAddressPool.get(null));
+	}
+
+	@Test
+	public void shouldReplaceInternationalPrefix() {
+		assertEquals(ANY_NORMALIZED_ADDRESS, SmsAddressPool.normalize("0034 (600) 123 456"));
+	}
+
+	@Test
+	public void shouldUpperCaseAlphanumericSenders() {
+		assertEquals("MYBANK", SmsAddressPool.normalize(" MyBank "));
+	}
+
+	@Test
+	public void shouldKeepShortCodes() {
+		assertEquals("22522", SmsAddressPool.normalize("22522"));
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsBatchStore.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsBatchStoreTest {
+
+	private static final String ANY_ADDRESS = "+34666666666";
+	private static final String ANY_DATE = "1000";
+	private static final long ANY_THREAD_ID = 7;
+
+	private File batchFile;
+	private SmsBatchStore smsBatchStore;
+
+	@Before
+	public void setUp() throws IOException {
+		batchFile = File.createTempFile("sms_radar_batch", null);
+		batchFile.delete();
+		smsBatchStore = new SmsBatchStore(batchFile);
+	}
+
+	@After
+	public void tearDown() {
+		batchFile.delete();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptNullFiles() {
+		new SmsBatchStore(null);
+	}
+
+	@Test
+	public void shouldLoadTheSmsAddedInOrder() {
+		smsBatchStore.add(givenSms(1, ANY_ADDRESS));
+		smsBatchStore.add(givenSms(2, null));
+
+		List<Sms> smsStored = new SmsBatchStore(batchFile).load();
+
+		assertEquals(2, smsStored.size());
+		Sms sms = smsStored.get(0);
+		assertEquals(1, sms.getId());
+		assertEquals(ANY_THREAD_ID, sms.getThreadId());
+		assertEquals(ANY_ADDRESS, sms.getAddress());
+		assertEquals(ANY_DATE, sms.getDate());
+		assertEquals("Sms 1", sms.getMsg());
+		assertEquals(SmsType.RECEIVED, sms.getType());
+		assertTrue(sms.isRead());
+		assertNull(smsStored.get(1).getAddress());
+	}
+
+	@Test
+	public void shouldNotLoadTheSmsCleared() {
+		smsBatchStore.add(givenSms(1, ANY_ADDRESS));
+
+		smsBatchStore.clear();
+
+		assertTrue(new SmsBatchStore(batchFile).load().isEmpty());
+	}
+
+	@Test
+	public void shouldDiscardTheLastSmsPartiallyWritten() throws IOException {
+		smsBatchStore.add(givenSms(1, ANY_ADDRESS));
+		FileOutputStream output = new FileOutputStream(batchFile, true);
+		output.write(new byte[] {0, 0, 0});
+		output.close();
+
+		List<Sms> smsStored = new SmsBatchStore(batchFile).load();
+		smsBatchStore.add(givenSms(2, ANY_ADDRESS));
+
+		assertEquals(1, smsStored.size());
+		assertEquals(2, new SmsBatchStore(batchFile).load().size());
+	}
+
+	private Sms givenSms(int smsId, String address) {
+		return new Sms(smsId, ANY_THREAD_ID, address, address, ANY_DATE, "Sms " + smsId, SmsType.RECEIVED,
+				Sms.NO_SUBSCRIPTION, Collections.<SmsKeywordMatch>emptyList(), true);
+	}
+}
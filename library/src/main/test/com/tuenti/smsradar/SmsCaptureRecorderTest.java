@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsCaptureRecorder and SmsCaptureReader.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsCaptureRecorderTest {
+
+	private static final Uri ANY_URI = Uri.parse("content://sms/inbox/1");
+	private static final String[] ANY_COLUMNS = {"_id", "address", "date"};
+	private static final String ANY_ADDRESS = "+34666666666";
+	private static final long ANY_DATE = 1000;
+
+	private File captureFile;
+	private SmsCaptureRecorder smsCaptureRecorder;
+
+	@Before
+	public void setUp() throws IOException {
+		captureFile = File.createTempFile("sms_radar_capture", null);
+		smsCaptureRecorder = new SmsCaptureRecorder(captureFile, new TimeProvider());
+	}
+
+	@After
+	public void tearDown() {
+		captureFile.delete();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptNullFiles() throws IOException {
+		new SmsCaptureRecorder(null, new TimeProvider());
+	}
+
+	@Test
+	public void shouldReadTheNotificationsRecorded() throws IOException {
+		smsCaptureRecorder.recordNotification(ANY_URI);
+		smsCaptureRecorder.recordNotification(null);
+		smsCaptureRecorder.close();
+
+		List<SmsCaptureEvent> events = readCapture();
+
+		assertEquals(2, events.size());
+		assertEquals(SmsCaptureEvent.Type.NOTIFICATION, events.get(0).getType());
+		assertEquals(ANY_URI.toString(), events.get(0).getUri());
+		assertNull(events.get(1).getUri());
+		assertTrue(events.get(1).getElapsedNanos() >= events.get(0).getElapsedNanos());
+	}
+
+	@Test
+	public void shouldReadTheRowsOfTheQueriesRecorded() throws IOException {
+		smsCaptureRecorder.recordQuery(ANY_URI, givenCursor());
+		smsCaptureRecorder.close();
+
+		SmsCaptureEvent query = readCapture().get(0);
+
+		assertEquals(SmsCaptureEvent.Type.QUERY, query.getType());
+		assertEquals(ANY_URI.toString(), query.getUri());
+		assertArrayEquals(ANY_COLUMNS, query.getColumns());
+		assertEquals(2, query.getRows().size());
+		assertArrayEquals(new Object[]{2L, null, ANY_DATE}, query.getRows().get(1));
+	}
+
+	@Test
+	public void shouldReturnACopyOfTheCursorRecorded() {
+		Cursor copy = smsCaptureRecorder.recordQuery(ANY_URI, givenCursor());
+
+		assertEquals(2, copy.getCount());
+		assertTrue(copy.moveToFirst());
+		assertEquals(ANY_ADDRESS, copy.getString(1));
+	}
+
+	@Test
+	public void shouldRecordNullCursors() throws IOException {
+		Cursor copy = smsCaptureRecorder.recordQuery(ANY_URI, null);
+		smsCaptureRecorder.close();
+
+		assertNull(copy);
+		assertNull(readCapture().get(0).getColumns());
+	}
+
+	@Test
+	public void shouldIgnoreTheEventsRecordedOnceClosed() throws IOException {
+		smsCaptureRecorder.close();
+
+		smsCaptureRecorder.recordNotification(ANY_URI);
+
+		assertTrue(readCapture().isEmpty());
+	}
+
+	private Cursor givenCursor() {
+		MatrixCursor cursor = new MatrixCursor(ANY_COLUMNS);
+		cursor.addRow(new Object[]{1L, ANY_ADDRESS, ANY_DATE});
+		cursor.addRow(new Object[]{2L, null, ANY_DATE});
+		return cursor;
+	}
+
+	private List<SmsCaptureEvent> readCapture() throws IOException {
+		SmsCaptureReader reader = new SmsCaptureReader(captureFile);
+		try {
+			return reader.readAll();
+		} finally {
+			reader.close();
+		}
+	}
+}
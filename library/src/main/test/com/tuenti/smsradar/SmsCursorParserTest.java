@@ -17,6 +17,7 @@ package com.tuenti.smsradar;
 
 import java.util.Date;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -24,7 +25,12 @@ import org.robolectric.RobolectricTestRunner;
 
 import static junit.framework.Assert.assertNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import android.database.Cursor;
 
@@ -47,9 +53,14 @@ public class SmsCursorParserTest {
 	private static final String BODY_COLUMN_NAME = "body";
 	private static final String TYPE_COLUMN_NAME = "type";
 	private static final String ID_COLUMN_NAME = "_id";
+	private static final String SUB_ID_COLUMN_NAME = "sub_id";
+	private static final int ANY_SUBSCRIPTION_ID = 2;
 	private static final int DEFAULT_ID = -1;
 	private static final int SMS_ID_ONE = 1;
 	private static final int SMS_ID_ZERO = 0;
+	private static final long MAX_AGE = 5000;
+	private static final long MAX_ADAPTIVE_AGE = 30000;
+	private static final String NOTIFIED_LATE_DATE = "123446789";
 
 	private SmsCursorParser smsCursorParser;
 
@@ -63,6 +74,11 @@ public class SmsCursorParserTest {
 		initSmsCursorParser();
 	}
 
+	@After
+	public void tearDown() {
+		SmsRadar.setSmsRowVisitor(null);
+	}
+
 	@Test
 	public void shouldNotParseAnySmsWithANullCursor() {
 		assertNull(smsCursorParser.parse(null));
@@ -114,6 +130,108 @@ public class SmsCursorParserTest {
 		assertNull(sms);
 	}
 
+	@Test
+	public void shouldParseTheSubscriptionId() {
+		Cursor mockedCursor = mockCursorToReturn(ANY_ADDRESS, NEW_DATE, ANY_BODY, TYPE_RECEIVED, SMS_ID_ONE);
+		mockCursorToReturnSubscriptionId(mockedCursor, ANY_SUBSCRIPTION_ID);
+		mockTimeProviderToReturn(NEW_DATE);
+		when(mockedSmsStorage.getLastSmsIntercepted(ANY_SUBSCRIPTION_ID)).thenReturn(SMS_ID_ZERO);
+
+		Sms sms = smsCursorParser.parse(mockedCursor);
+
+		assertEquals(ANY_SUBSCRIPTION_ID, sms.getSubscriptionId());
+	}
+
+	@Test
+	public void shouldUseTheLastSmsIdParsedOfTheSmsSubscription() {
+		Cursor mockedCursor = mockCursorToReturn(ANY_ADDRESS, NEW_DATE, ANY_BODY, TYPE_RECEIVED, SMS_ID_ONE);
+		mockCursorToReturnSubscriptionId(mockedCursor, ANY_SUBSCRIPTION_ID);
+		mockTimeProviderToReturn(NEW_DATE);
+		mockSmsCursorParserToReturnLastSmsIdParsed(2);
+		when(mockedSmsStorage.getLastSmsIntercepted(ANY_SUBSCRIPTION_ID)).thenReturn(SMS_ID_ZERO);
+
+		Sms sms = smsCursorParser.parse(mockedCursor);
+
+		assertNotNull(sms);
+		verify(mockedSmsStorage).updateLastSmsIntercepted(ANY_SUBSCRIPTION_ID, SMS_ID_ONE);
+	}
+
+	@Test
+	public void shouldNotCreateTheSmsIfTheSmsRowVisitorDoesNotRequestIt() {
+		Cursor mockedCursor = mockCursorToReturn(ANY_ADDRESS, NEW_DATE, ANY_BODY, TYPE_RECEIVED, SMS_ID_ONE);
+		mockTimeProviderToReturn(NEW_DATE);
+		mockSmsCursorParserToReturnLastSmsIdParsed(0);
+		SmsRowVisitor mockedSmsRowVisitor = mock(SmsRowVisitor.class);
+		when(mockedSmsRowVisitor.visit(any(SmsRow.class))).thenReturn(false);
+		SmsRadar.setSmsRowVisitor(mockedSmsRowVisitor);
+
+		Sms sms = smsCursorParser.parse(mockedCursor);
+
+		assertNull(sms);
+		verify(mockedSmsRowVisitor).visit(any(SmsRow.class));
+		verify(mockedSmsStorage).updateLastSmsIntercepted(SMS_ID_ONE);
+	}
+
+	@Test
+	public void shouldCreateTheSmsIfTheSmsRowVisitorRequestsIt() {
+		Cursor mockedCursor = mockCursorToReturn(ANY_ADDRESS, NEW_DATE, ANY_BODY, TYPE_RECEIVED, SMS_ID_ONE);
+		mockTimeProviderToReturn(NEW_DATE);
+		mockSmsCursorParserToReturnLastSmsIdParsed(0);
+		SmsRowVisitor mockedSmsRowVisitor = mock(SmsRowVisitor.class);
+		when(mockedSmsRowVisitor.visit(any(SmsRow.class))).thenReturn(true);
+		SmsRadar.setSmsRowVisitor(mockedSmsRowVisitor);
+
+		Sms sms = smsCursorParser.parse(mockedCursor);
+
+		Sms expectedSms = createSms(ANY_ADDRESS, NEW_DATE, ANY_BODY, SmsType.RECEIVED);
+		assertEquals(expectedSms, sms);
+	}
+
+	@Test
+	public void shouldNotVisitTheOldSms() {
+		Cursor mockedCursor = mockCursorToReturn(ANY_ADDRESS, NEW_DATE, ANY_BODY, TYPE_RECEIVED, SMS_ID_ZERO);
+		mockTimeProviderToReturn(NEW_DATE);
+		mockSmsCursorParserToReturnLastSmsIdParsed(1);
+		SmsRowVisitor mockedSmsRowVisitor = mock(SmsRowVisitor.class);
+		SmsRadar.setSmsRowVisitor(mockedSmsRowVisitor);
+
+		smsCursorParser.parse(mockedCursor);
+
+		verify(mockedSmsRowVisitor, never()).visit(any(SmsRow.class));
+	}
+
+	@Test
+	public void shouldMeasureTheLatencyOfTheNewSms() {
+		SmsFreshnessEstimator smsFreshnessEstimator = givenAnAdaptiveSmsFreshnessEstimator();
+		Cursor mockedCursor = mockCursorToReturn(ANY_ADDRESS, NOTIFIED_LATE_DATE, ANY_BODY, TYPE_RECEIVED, SMS_ID_ONE);
+		mockTimeProviderToReturn(NEW_DATE);
+		mockSmsCursorParserToReturnLastSmsIdParsed(0);
+
+		smsCursorParser.parse(mockedCursor);
+
+		assertTrue(smsFreshnessEstimator.getMaxAgeMillis() > MAX_AGE);
+	}
+
+	@Test
+	public void shouldNotMeasureTheLatencyOfTheSmsAlreadyParsed() {
+		SmsFreshnessEstimator smsFreshnessEstimator = givenAnAdaptiveSmsFreshnessEstimator();
+		Cursor mockedCursor = mockCursorToReturn(ANY_ADDRESS, NOTIFIED_LATE_DATE, ANY_BODY, TYPE_RECEIVED, SMS_ID_ONE);
+		mockTimeProviderToReturn(NEW_DATE);
+		mockSmsCursorParserToReturnLastSmsIdParsed(1);
+
+		smsCursorParser.parse(mockedCursor);
+
+		assertEquals(MAX_AGE, smsFreshnessEstimator.getMaxAgeMillis());
+	}
+
+	private SmsFreshnessEstimator givenAnAdaptiveSmsFreshnessEstimator() {
+		SmsFreshnessEstimator smsFreshnessEstimator = new SmsFreshnessEstimator(
+				new SmsFreshnessPolicy(MAX_AGE, MAX_ADAPTIVE_AGE));
+		smsCursorParser = new SmsCursorParser(mockedSmsStorage, mockedTimeProvider, new SmsAddressPool(1),
+				smsFreshnessEstimator);
+		return smsFreshnessEstimator;
+	}
+
 	private void initTimeProvider() {
 		mockedTimeProvider = mock(TimeProvider.class);
 	}
@@ -153,19 +271,28 @@ public class SmsCursorParserTest {
 
 		when(mockedCursor.getColumnIndex(DATE_COLUMN_NAME)).thenReturn(1);
 		when(mockedCursor.getString(1)).thenReturn(date);
+		when(mockedCursor.getLong(1)).thenReturn(Long.parseLong(date));
 
 		when(mockedCursor.getColumnIndex(BODY_COLUMN_NAME)).thenReturn(2);
 		when(mockedCursor.getString(2)).thenReturn(body);
 
 		when(mockedCursor.getColumnIndex(TYPE_COLUMN_NAME)).thenReturn(3);
 		when(mockedCursor.getString(3)).thenReturn(type);
+		when(mockedCursor.getInt(3)).thenReturn(Integer.parseInt(type));
 
 		when(mockedCursor.getColumnIndex(ID_COLUMN_NAME)).thenReturn(4);
 		when(mockedCursor.getInt(4)).thenReturn(id);
 
+		when(mockedCursor.getColumnIndex(SUB_ID_COLUMN_NAME)).thenReturn(-1);
+
 		return mockedCursor;
 	}
 
+	private void mockCursorToReturnSubscriptionId(Cursor mockedCursor, int subscriptionId) {
+		when(mockedCursor.getColumnIndex(SUB_ID_COLUMN_NAME)).thenReturn(5);
+		when(mockedCursor.getInt(5)).thenReturn(subscriptionId);
+	}
+
 	private void mockTimeProviderToReturn(String date) {
 		Date newDate = new Date(Long.parseLong(date));
 		when(mockedTimeProvider.getDate()).thenReturn(newDate);
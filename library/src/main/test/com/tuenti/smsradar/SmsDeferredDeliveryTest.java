@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import android.app.AlarmManager;
+import android.content.Context;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsDeferredDelivery.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsDeferredDeliveryTest {
+
+	private static final long BATCH_INTERVAL_MILLIS = 1000;
+	private static final long MAX_DELAY_MILLIS = 5000;
+	private static final int MAX_BATCH_SIZE = 3;
+	private static final String ANY_ADDRESS = "+34666666666";
+	private static final String ANY_DATE = "1000";
+
+	private FakeTimeProvider timeProvider;
+	private RecordingSmsBatchListener smsBatchListener;
+
+	@Before
+	public void setUp() {
+		timeProvider = new FakeTimeProvider();
+		smsBatchListener = new RecordingSmsBatchListener();
+		SmsRadar.addBatchListener(smsBatchListener);
+	}
+
+	@After
+	public void tearDown() {
+		SmsRadar.removeBatchListener(smsBatchListener);
+	}
+
+	@Test
+	public void shouldNotBufferSmsWithoutBatchListeners() {
+		SmsRadar.removeBatchListener(smsBatchListener);
+		SmsDeferredDelivery smsDeferredDelivery = givenSmsDeferredDelivery(false);
+
+		smsDeferredDelivery.defer(givenSms(1));
+
+		assertEquals(0, smsDeferredDelivery.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldNotDeliverTheSmsBeforeTheAlarmGoesOff() {
+		SmsDeferredDelivery smsDeferredDelivery = givenSmsDeferredDelivery(false);
+
+		smsDeferredDelivery.defer(givenSms(1));
+		smsDeferredDelivery.defer(givenSms(2));
+
+		assertTrue(smsBatchListener.batches.isEmpty());
+		assertEquals(2, smsDeferredDelivery.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldDeliverTheSmsBufferedInOneBatchWhenTheAlarmGoesOff() {
+		SmsDeferredDelivery smsDeferredDelivery = givenSmsDeferredDelivery(false);
+		smsDeferredDelivery.defer(givenSms(1));
+		smsDeferredDelivery.defer(givenSms(2));
+
+		smsDeferredDelivery.onAlarm();
+
+		assertEquals(1, smsBatchListener.batches.size());
+		assertEquals(givenSms(1), smsBatchListener.batches.get(0).get(0));
+		assertEquals(givenSms(2), smsBatchListener.batches.get(0).get(1));
+		assertEquals(0, smsDeferredDelivery.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldDeliverTheBatchOnceTheMaxBatchSizeIsReached() {
+		SmsDeferredDelivery smsDeferredDelivery = givenSmsDeferredDelivery(false);
+
+		for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+			smsDeferredDelivery.defer(givenSms(i));
+		}
+
+		assertEquals(1, smsBatchListener.batches.size());
+		assertEquals(MAX_BATCH_SIZE, smsBatchListener.batches.get(0).size());
+	}
+
+	@Test
+	public void shouldPostponeTheBatchWhileTheDeviceIsNotCharging() {
+		SmsDeferredDelivery smsDeferredDelivery = givenSmsDeferredDelivery(true);
+		smsDeferredDelivery.defer(givenSms(1));
+		timeProvider.now += BATCH_INTERVAL_MILLIS;
+
+		smsDeferredDelivery.onAlarm();
+
+		assertTrue(smsBatchListener.batches.isEmpty());
+		assertEquals(1, smsDeferredDelivery.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldDeliverTheBatchOnceTheMaxDelayIsReachedEvenIfTheDeviceIsNotCharging() {
+		SmsDeferredDelivery smsDeferredDelivery = givenSmsDeferredDelivery(true);
+		smsDeferredDelivery.defer(givenSms(1));
+		timeProvider.now += MAX_DELAY_MILLIS;
+
+		smsDeferredDelivery.onAlarm();
+
+		assertEquals(1, smsBatchListener.batches.size());
+	}
+
+	@Test
+	public void shouldDeliverThePendingBatchOnFlush() {
+		SmsDeferredDelivery smsDeferredDelivery = givenSmsDeferredDelivery(true);
+		smsDeferredDelivery.defer(givenSms(1));
+
+		smsDeferredDelivery.flush();
+
+		assertEquals(1, smsBatchListener.batches.size());
+	}
+
+	@Test
+	public void shouldDeliverTheSmsBufferedBeforeTheProcessWasKilled() throws IOException {
+		File batchFile = File.createTempFile("sms_radar_batch", null);
+		batchFile.delete();
+		SmsDeferredDelivery smsDeferredDelivery = givenSmsDeferredDelivery(false, new SmsBatchStore(batchFile));
+		smsDeferredDelivery.defer(givenSms(1));
+		smsDeferredDelivery.defer(givenSms(2));
+
+		SmsDeferredDelivery restartedSmsDeferredDelivery = givenSmsDeferredDelivery(false,
+				new SmsBatchStore(batchFile));
+		restartedSmsDeferredDelivery.onAlarm();
+
+		assertEquals(1, smsBatchListener.batches.size());
+		assertEquals(2, smsBatchListener.batches.get(0).size());
+		assertEquals(1, smsBatchListener.batches.get(0).get(0).getId());
+		assertFalse(batchFile.exists());
+	}
+
+	@Test
+	public void shouldNotDeliverEmptyBatches() {
+		SmsDeferredDelivery smsDeferredDelivery = givenSmsDeferredDelivery(false);
+
+		smsDeferredDelivery.onAlarm();
+		smsDeferredDelivery.flush();
+
+		assertTrue(smsBatchListener.batches.isEmpty());
+	}
+
+	private SmsDeferredDelivery givenSmsDeferredDelivery(boolean chargingRequired) {
+		return givenSmsDeferredDelivery(chargingRequired, null);
+	}
+
+	private SmsDeferredDelivery givenSmsDeferredDelivery(boolean chargingRequired, SmsBatchStore smsBatchStore) {
+		AlarmManager alarmManager = (AlarmManager) Robolectric.application.getSystemService(Context.ALARM_SERVICE);
+		SmsBatchPolicy smsBatchPolicy = new SmsBatchPolicy(BATCH_INTERVAL_MILLIS, MAX_DELAY_MILLIS, chargingRequired,
+				MAX_BATCH_SIZE);
+		return new SmsDeferredDelivery(Robolectric.application, alarmManager, timeProvider, smsBatchPolicy,
+				smsBatchStore);
+	}
+
+	private Sms givenSms(int smsId) {
+		return new Sms(smsId, ANY_ADDRESS, ANY_ADDRESS, ANY_DATE, "Sms " + smsId, SmsType.RECEIVED,
+				Sms.NO_SUBSCRIPTION);
+	}
+
+	private static class RecordingSmsBatchListener implements SmsBatchListener {
+
+		private final List<List<Sms>> batches = new ArrayList<List<Sms>>();
+
+		@Override
+		public void onSmsBatch(List<Sms> smsBatch) {
+			batches.add(smsBatch);
+		}
+	}
+
+	private static class FakeTimeProvider extends TimeProvider {
+
+		private long now = 1000000;
+
+		@Override
+		public Date getDate() {
+			return new Date(now);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+
+/**
+ * Test created to check the correctness of SmsDeletionTracker.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsDeletionTrackerTest {
+
+	private static final int PAGE_SIZE = 10;
+	private static final String ANY_ADDRESS = "+34600123456";
+	private static final String ANY_BODY = "body";
+
+	private FakeSmsContentProvider fakeSmsContentProvider;
+	private SmsQueryPager smsQueryPager;
+	private SmsDeletionTracker smsDeletionTracker;
+	private RecordingSmsDeletionListener smsDeletionListener;
+
+	@Before
+	public void setUp() {
+		ContentResolver contentResolver = Robolectric.application.getContentResolver();
+		fakeSmsContentProvider = FakeSmsContentProvider.register(contentResolver);
+		smsQueryPager = new SmsQueryPager(contentResolver, PAGE_SIZE);
+		smsDeletionTracker = new SmsDeletionTracker(smsQueryPager, new SmsDispatcher());
+		smsDeletionListener = new RecordingSmsDeletionListener();
+		SmsRadar.setSmsListener(smsDeletionListener);
+	}
+
+	@After
+	public void tearDown() {
+		SmsRadar.setSmsListener(null);
+	}
+
+	@Test
+	public void shouldTrackEveryStoredSmsWhenStarted() {
+		fakeSmsContentProvider.fill(PAGE_SIZE * 3 + 1, ANY_ADDRESS, ANY_BODY, 0);
+
+		smsDeletionTracker.start();
+
+		assertEquals(PAGE_SIZE * 3 + 1, smsDeletionTracker.size());
+		assertTrue(smsDeletionListener.deletedIds.isEmpty());
+	}
+
+	@Test
+	public void shouldNotifyDeletedSms() {
+		fakeSmsContentProvider.fill(PAGE_SIZE * 3, ANY_ADDRESS, ANY_BODY, 0);
+		smsDeletionTracker.start();
+
+		fakeSmsContentProvider.delete(getSmsUri(4), null, null);
+		fakeSmsContentProvider.delete(getSmsUri(25), null, null);
+		smsDeletionTracker.onChange(null);
+
+		assertEquals(2, smsDeletionListener.deletedIds.size());
+		assertEquals(Integer.valueOf(4), smsDeletionListener.deletedIds.get(0));
+		assertEquals(Integer.valueOf(25), smsDeletionListener.deletedIds.get(1));
+	}
+
+	@Test
+	public void shouldNotifyTheDeletedSmsUsingTheChangedUri() {
+		fakeSmsContentProvider.fill(PAGE_SIZE, ANY_ADDRESS, ANY_BODY, 0);
+		smsDeletionTracker.start();
+
+		fakeSmsContentProvider.delete(getSmsUri(PAGE_SIZE), null, null);
+		smsDeletionTracker.onChange(getSmsUri(PAGE_SIZE));
+
+		assertEquals(1, smsDeletionListener.deletedIds.size());
+		assertEquals(Integer.valueOf(PAGE_SIZE), smsDeletionListener.deletedIds.get(0));
+	}
+
+	@Test
+	public void shouldNotNotifyNewSmsAsDeleted() {
+		fakeSmsContentProvider.fill(PAGE_SIZE, ANY_ADDRESS, ANY_BODY, 0);
+		smsDeletionTracker.start();
+
+		Uri smsUri = fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+		smsDeletionTracker.onChange(smsUri);
+		smsDeletionTracker.onChange(null);
+
+		assertTrue(smsDeletionListener.deletedIds.isEmpty());
+		assertEquals(PAGE_SIZE + 1, smsDeletionTracker.size());
+	}
+
+	@Test
+	public void shouldNotifyTheSmsDeletedBeforeTheFirstChange() {
+		fakeSmsContentProvider.fill(PAGE_SIZE, ANY_ADDRESS, ANY_BODY, 0);
+		smsDeletionTracker.start();
+
+		fakeSmsContentProvider.delete(getSmsUri(1), null, null);
+		smsDeletionTracker.onChange(null);
+
+		assertEquals(1, smsDeletionListener.deletedIds.size());
+		assertEquals(Integer.valueOf(1), smsDeletionListener.deletedIds.get(0));
+	}
+
+	@Test
+	public void shouldNotReadEveryIdAgainIfNoSmsWasDeleted() {
+		fakeSmsContentProvider.fill(PAGE_SIZE * 3, ANY_ADDRESS, ANY_BODY, 0);
+		smsDeletionTracker.start();
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+		int queryCount = fakeSmsContentProvider.getQueryCount();
+
+		smsDeletionTracker.onChange(null);
+
+		assertEquals(2, fakeSmsContentProvider.getQueryCount() - queryCount);
+		assertEquals(PAGE_SIZE * 3 + 1, smsDeletionTracker.size());
+		assertTrue(smsDeletionListener.deletedIds.isEmpty());
+	}
+
+	@Test
+	public void shouldNotifyTheDeletionsFromTheHandlersUsingTheIdsLoaded() {
+		fakeSmsContentProvider.fill(PAGE_SIZE, ANY_ADDRESS, ANY_BODY, 0);
+		SmsDeletionTracker handlerSmsDeletionTracker = new SmsDeletionTracker(smsQueryPager, new SmsDispatcher(),
+				new Handler(), new Handler());
+		handlerSmsDeletionTracker.start(SmsDeletionTracker.loadKnownIds(smsQueryPager));
+
+		fakeSmsContentProvider.delete(getSmsUri(3), null, null);
+		handlerSmsDeletionTracker.onChange(null);
+
+		assertEquals(1, smsDeletionListener.deletedIds.size());
+		assertEquals(Integer.valueOf(3), smsDeletionListener.deletedIds.get(0));
+	}
+
+	@Test
+	public void shouldNotLoadTheIdsIfTheListenerIsNotAnSmsDeletionListener() {
+		SmsRadar.setSmsListener(null);
+		fakeSmsContentProvider.fill(PAGE_SIZE, ANY_ADDRESS, ANY_BODY, 0);
+
+		assertNull(SmsDeletionTracker.loadKnownIds(smsQueryPager));
+	}
+
+	@Test
+	public void shouldNotTrackSmsIfTheListenerIsNotAnSmsDeletionListener() {
+		SmsRadar.setSmsListener(null);
+		fakeSmsContentProvider.fill(PAGE_SIZE, ANY_ADDRESS, ANY_BODY, 0);
+
+		smsDeletionTracker.start();
+		smsDeletionTracker.onChange(null);
+
+		assertEquals(0, smsDeletionTracker.size());
+	}
+
+	private Uri getSmsUri(int smsId) {
+		return Uri.withAppendedPath(FakeSmsContentProvider.SMS_URI, String.valueOf(smsId));
+	}
+
+	private static class RecordingSmsDeletionListener implements SmsListener, SmsDeletionListener {
+
+		private final List<Integer> deletedIds = new LinkedList<Integer>();
+
+		@Override
+		public void onSmsSent(Sms sms) {
+		}
+
+		@Override
+		public void onSmsReceived(Sms sms) {
+		}
+
+		@Override
+		public void onSmsDeleted(int smsId) {
+			deletedIds.add(smsId);
+		}
+	}
+}
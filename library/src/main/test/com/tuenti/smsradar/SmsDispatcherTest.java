@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import android.app.AlarmManager;
+import android.content.Context;
+import android.os.Handler;
+
+/**
+ * Test created to check the correctness of SmsDispatcher.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsDispatcherTest {
+
+	private static final String ANY_ADDRESS = "+34600123456";
+	private static final String ANY_DATE = "123456789";
+	private static final int SIM_ONE = 1;
+	private static final int SIM_TWO = 2;
+	private static final String SHORT_CODE = "12345";
+	private static final int BULK_SMS = 1000;
+	private static final int MAX_SMS_PER_SENDER = 5;
+	private static final long ONE_MINUTE = 60000;
+	private static final long ANY_THREAD_ID = 7;
+
+	private RecordingSmsListener smsListener;
+
+	@Before
+	public void setUp() {
+		smsListener = new RecordingSmsListener();
+		SmsRadar.setSmsListener(smsListener);
+		SmsRadar.highPriorityLaneLatency.reset();
+		SmsRadar.normalLaneLatency.reset();
+	}
+
+	@After
+	public void tearDown() {
+		SmsRadar.config = SmsRadarConfig.DEFAULT;
+		SmsRadar.smsThreadCache.clear();
+		SmsRadar.setFloodPolicy(FloodPolicy.NONE, SmsFloodDetector.DEFAULT_MAX_SMS_PER_WINDOW,
+				SmsFloodDetector.DEFAULT_WINDOW_MILLIS);
+		Robolectric.unPauseMainLooper();
+	}
+
+	@Test
+	public void shouldDeliverTheSmsImmediatelyWithoutHandler() {
+		SmsDispatcher smsDispatcher = new SmsDispatcher();
+
+		smsDispatcher.dispatch(createSms("1", SIM_ONE));
+
+		assertEquals(1, smsListener.smsReceived.size());
+	}
+
+	@Test
+	public void shouldQueueTheSmsUntilTheHandlerDeliversThem() {
+		Robolectric.pauseMainLooper();
+		SmsDispatcher smsDispatcher = new SmsDispatcher(new Handler());
+
+		smsDispatcher.dispatch(createSms("1", SIM_ONE));
+		smsDispatcher.dispatch(createSms("2", SIM_ONE));
+
+		assertEquals(0, smsListener.smsReceived.size());
+		assertEquals(2, smsDispatcher.getPendingSmsCount(SIM_ONE));
+	}
+
+	@Test
+	public void shouldAlternateTheSmsOfEverySubscription() {
+		Robolectric.pauseMainLooper();
+		SmsDispatcher smsDispatcher = new SmsDispatcher(new Handler());
+		smsDispatcher.dispatch(createSms("1", SIM_ONE));
+		smsDispatcher.dispatch(createSms("2", SIM_ONE));
+		smsDispatcher.dispatch(createSms("3", SIM_ONE));
+		smsDispatcher.dispatch(createSms("4", SIM_TWO));
+		smsDispatcher.dispatch(createSms("5", SIM_TWO));
+
+		Robolectric.unPauseMainLooper();
+
+		assertEquals(5, smsListener.smsReceived.size());
+		assertEquals("1", smsListener.smsReceived.get(0).getMsg());
+		assertEquals("4", smsListener.smsReceived.get(1).getMsg());
+		assertEquals("2", smsListener.smsReceived.get(2).getMsg());
+		assertEquals("5", smsListener.smsReceived.get(3).getMsg());
+		assertEquals("3", smsListener.smsReceived.get(4).getMsg());
+		assertEquals(0, smsDispatcher.getPendingSmsCount(SIM_ONE));
+	}
+
+	@Test
+	public void shouldDeliverTheHighPrioritySmsBeforeThePendingOnes() {
+		SmsRadar.addPriorityClassifier(new ShortCodeClassifier());
+		Robolectric.pauseMainLooper();
+		SmsDispatcher smsDispatcher = new SmsDispatcher(new Handler());
+		smsDispatcher.dispatch(createSms("1", SIM_ONE));
+		smsDispatcher.dispatch(createSms("2", SIM_ONE));
+		smsDispatcher.dispatch(createSms(SHORT_CODE, "otp", SIM_ONE));
+
+		assertEquals(1, smsDispatcher.getPendingHighPrioritySmsCount());
+		Robolectric.unPauseMainLooper();
+
+		assertEquals("otp", smsListener.smsReceived.get(0).getMsg());
+		assertEquals("1", smsListener.smsReceived.get(1).getMsg());
+		assertEquals("2", smsListener.smsReceived.get(2).getMsg());
+	}
+
+	@Test
+	public void shouldMeasureTheLatencyOfEveryLane() {
+		SmsRadar.addPriorityClassifier(new ShortCodeClassifier());
+		Robolectric.pauseMainLooper();
+		SmsDispatcher smsDispatcher = new SmsDispatcher(new Handler());
+		for (int i = 0; i < BULK_SMS; i++) {
+			smsDispatcher.dispatch(createSms(String.valueOf(i), SIM_ONE));
+			if (i == BULK_SMS / 2) {
+				smsDispatcher.dispatch(createSms(SHORT_CODE, "otp", SIM_ONE));
+			}
+		}
+
+		Robolectric.unPauseMainLooper();
+
+		SmsLaneMetrics highPriorityMetrics = SmsRadar.getLaneMetrics(SmsLane.HIGH_PRIORITY);
+		SmsLaneMetrics normalMetrics = SmsRadar.getLaneMetrics(SmsLane.NORMAL);
+		assertEquals(1, highPriorityMetrics.getCount());
+		assertEquals(BULK_SMS, normalMetrics.getCount());
+		assertTrue(highPriorityMetrics.getP99Micros() <= normalMetrics.getP99Micros());
+	}
+
+	@Test
+	public void shouldNotNotifyTheThrottledSms() {
+		SmsRadar.setFloodPolicy(FloodPolicy.THROTTLE, MAX_SMS_PER_SENDER, ONE_MINUTE);
+		SmsDispatcher smsDispatcher = new SmsDispatcher();
+
+		for (int i = 0; i < MAX_SMS_PER_SENDER * 2; i++) {
+			smsDispatcher.dispatch(createSms(String.valueOf(i), SIM_ONE));
+		}
+
+		assertEquals(MAX_SMS_PER_SENDER, smsListener.smsReceived.size());
+	}
+
+	@Test
+	public void shouldNotThrottleTheSentSms() {
+		SmsRadar.setFloodPolicy(FloodPolicy.THROTTLE, MAX_SMS_PER_SENDER, ONE_MINUTE);
+		SmsDispatcher smsDispatcher = new SmsDispatcher();
+
+		for (int i = 0; i < MAX_SMS_PER_SENDER * 2; i++) {
+			smsDispatcher.dispatch(new Sms(ANY_ADDRESS, SmsAddressPool.normalize(ANY_ADDRESS), ANY_DATE,
+					String.valueOf(i), SmsType.SENT, SIM_ONE));
+		}
+
+		assertEquals(MAX_SMS_PER_SENDER * 2, smsListener.smsSent.size());
+	}
+
+	@Test
+	public void shouldCoalesceThePendingSmsOfFloodingSenders() {
+		SmsRadar.setFloodPolicy(FloodPolicy.COALESCE, MAX_SMS_PER_SENDER, ONE_MINUTE);
+		Robolectric.pauseMainLooper();
+		SmsDispatcher smsDispatcher = new SmsDispatcher(new Handler());
+		for (int i = 0; i < MAX_SMS_PER_SENDER * 2; i++) {
+			smsDispatcher.dispatch(createSms(String.valueOf(i), SIM_ONE));
+		}
+
+		Robolectric.unPauseMainLooper();
+
+		assertEquals(MAX_SMS_PER_SENDER, smsListener.smsReceived.size());
+		assertEquals(String.valueOf(MAX_SMS_PER_SENDER * 2 - 1),
+				smsListener.smsReceived.get(MAX_SMS_PER_SENDER - 1).getMsg());
+	}
+
+	@Test
+	public void shouldBufferTheSmsDeliveredForTheBatchListeners() {
+		SmsBatchListener smsBatchListener = new SmsBatchListener() {
+			@Override
+			public void onSmsBatch(List<Sms> smsBatch) {
+			}
+		};
+		SmsRadar.addBatchListener(smsBatchListener);
+		SmsDeferredDelivery smsDeferredDelivery = new SmsDeferredDelivery(Robolectric.application,
+				(AlarmManager) Robolectric.application.getSystemService(Context.ALARM_SERVICE), new TimeProvider(),
+				SmsBatchPolicy.DEFAULT);
+		SmsDispatcher smsDispatcher = new SmsDispatcher(null, null, smsDeferredDelivery);
+
+		smsDispatcher.dispatch(createSms("1", SIM_ONE));
+
+		SmsRadar.removeBatchListener(smsBatchListener);
+		assertEquals(1, smsDeferredDelivery.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldNotifyTheThreadUpdatedIfTheListenerImplementsSmsThreadListener() {
+		RecordingSmsThreadListener smsThreadListener = new RecordingSmsThreadListener();
+		SmsRadar.setSmsListener(smsThreadListener);
+		SmsDispatcher smsDispatcher = new SmsDispatcher();
+
+		smsDispatcher.dispatch(new Sms(1, ANY_THREAD_ID, ANY_ADDRESS, ANY_ADDRESS, ANY_DATE, "1", SmsType.RECEIVED,
+				SIM_ONE));
+
+		assertEquals(1, smsThreadListener.threadsUpdated.size());
+		assertEquals(ANY_THREAD_ID, smsThreadListener.threadsUpdated.get(0).getThreadId());
+		assertEquals(1, smsThreadListener.threadsUpdated.get(0).getUnreadCount());
+	}
+
+	@Test
+	public void shouldNotifyTheThreadUpdatedWhenAnSmsIsMarkedAsRead() {
+		RecordingSmsThreadListener smsThreadListener = new RecordingSmsThreadListener();
+		SmsRadar.setSmsListener(smsThreadListener);
+		SmsDispatcher smsDispatcher = new SmsDispatcher();
+		smsDispatcher.dispatch(new Sms(1, ANY_THREAD_ID, ANY_ADDRESS, ANY_ADDRESS, ANY_DATE, "1", SmsType.RECEIVED,
+				SIM_ONE));
+
+		smsDispatcher.dispatchStatusChange(new SmsStatusChange(1, SmsType.RECEIVED, SmsType.RECEIVED,
+				SmsDeliveryStatus.NONE, SmsDeliveryStatus.NONE, false, true));
+
+		assertEquals(2, smsThreadListener.threadsUpdated.size());
+		assertEquals(0, smsThreadListener.threadsUpdated.get(1).getUnreadCount());
+	}
+
+	private Sms createSms(String msg, int subscriptionId) {
+		return createSms(ANY_ADDRESS, msg, subscriptionId);
+	}
+
+	private Sms createSms(String address, String msg, int subscriptionId) {
+		return new Sms(address, SmsAddressPool.normalize(address), ANY_DATE, msg, SmsType.RECEIVED, subscriptionId);
+	}
+
+	private static class RecordingSmsListener implements SmsListener {
+
+		private final List<Sms> smsSent = new LinkedList<Sms>();
+		private final List<Sms> smsReceived = new LinkedList<Sms>();
+
+		@Override
+		public void onSmsSent(Sms sms) {
+			smsSent.add(sms);
+		}
+
+		@Override
+		public void onSmsReceived(Sms sms) {
+			smsReceived.add(sms);
+		}
+	}
+
+	private static class RecordingSmsThreadListener extends RecordingSmsListener implements SmsThreadListener {
+
+		private final List<SmsThread> threadsUpdated = new LinkedList<SmsThread>();
+
+		@Override
+		public void onThreadUpdated(SmsThread smsThread) {
+			threadsUpdated.add(smsThread);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsFloodDetector.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsFloodDetectorTest {
+
+	private static final int MAX_SMS_PER_WINDOW = 10;
+	private static final long WINDOW_MILLIS = 60000;
+	private static final String FLOODING_SENDER = "12345";
+	private static final String ANY_SENDER = "+34600123456";
+
+	private FakeTimeProvider timeProvider;
+	private SmsFloodDetector smsFloodDetector;
+
+	@Before
+	public void setUp() {
+		timeProvider = new FakeTimeProvider();
+		smsFloodDetector = new SmsFloodDetector(MAX_SMS_PER_WINDOW, WINDOW_MILLIS, timeProvider);
+	}
+
+	@Test
+	public void shouldNotDetectSendersUnderTheLimit() {
+		boolean flooding = record(ANY_SENDER, MAX_SMS_PER_WINDOW);
+
+		assertFalse(flooding);
+		assertEquals(MAX_SMS_PER_WINDOW, smsFloodDetector.estimate(ANY_SENDER));
+	}
+
+	@Test
+	public void shouldDetectSendersOverTheLimit() {
+		boolean flooding = record(FLOODING_SENDER, MAX_SMS_PER_WINDOW + 1);
+
+		assertTrue(flooding);
+		assertTrue(smsFloodDetector.isFlooding(FLOODING_SENDER));
+		assertFalse(smsFloodDetector.isFlooding(ANY_SENDER));
+	}
+
+	@Test
+	public void shouldForgetTheSmsOutsideTheWindow() {
+		record(FLOODING_SENDER, MAX_SMS_PER_WINDOW + 1);
+
+		timeProvider.now += WINDOW_MILLIS;
+
+		assertEquals(0, smsFloodDetector.estimate(FLOODING_SENDER));
+		assertFalse(record(FLOODING_SENDER, 1));
+	}
+
+	@Test
+	public void shouldSlideTheWindow() {
+		record(FLOODING_SENDER, 6);
+		timeProvider.now += WINDOW_MILLIS / 2;
+		record(FLOODING_SENDER, 6);
+
+		timeProvider.now += WINDOW_MILLIS / 2;
+
+		assertEquals(6, smsFloodDetector.estimate(FLOODING_SENDER));
+	}
+
+	@Test
+	public void shouldReturnTheHeavyHittersSortedByCount() {
+		record(ANY_SENDER, 3);
+		record(FLOODING_SENDER, 20);
+		for (int i = 0; i < 50; i++) {
+			record("sender" + i, 1);
+		}
+
+		List<SmsSenderRate> heavyHitters = smsFloodDetector.getHeavyHitters(2);
+
+		assertEquals(2, heavyHitters.size());
+		assertEquals(FLOODING_SENDER, heavyHitters.get(0).getAddress());
+		assertTrue(heavyHitters.get(0).getCount() >= 20);
+		assertEquals(ANY_SENDER, heavyHitters.get(1).getAddress());
+	}
+
+	private boolean record(String address, int times) {
+		boolean flooding = false;
+		for (int i = 0; i < times; i++) {
+			flooding = smsFloodDetector.record(address);
+		}
+		return flooding;
+	}
+
+	private static class FakeTimeProvider extends TimeProvider {
+
+		private long now = 1000000;
+
+		@Override
+		public Date getDate() {
+			return new Date(now);
+		}
+	}
+}
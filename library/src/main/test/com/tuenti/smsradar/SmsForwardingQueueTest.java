@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Test created to check the correctness of SmsForwardingQueue.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsForwardingQueueTest {
+
+	private File queueFile;
+	private SmsForwardingQueue smsForwardingQueue;
+
+	@Before
+	public void setUp() throws IOException {
+		queueFile = File.createTempFile("sms_radar_forwarding_queue", null);
+		queueFile.delete();
+		smsForwardingQueue = new SmsForwardingQueue(queueFile);
+	}
+
+	@After
+	public void tearDown() {
+		queueFile.delete();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptNullFiles() {
+		new SmsForwardingQueue(null);
+	}
+
+	@Test
+	public void shouldReturnTheFirstRecordsInOrder() {
+		smsForwardingQueue.add("1");
+		smsForwardingQueue.add("2");
+		smsForwardingQueue.add("3");
+
+		assertEquals(Arrays.asList("1", "2"), smsForwardingQueue.peek(2));
+	}
+
+	@Test
+	public void shouldRemoveTheFirstRecords() {
+		smsForwardingQueue.add("1");
+		smsForwardingQueue.add("2");
+
+		smsForwardingQueue.remove(1);
+
+		assertEquals(Arrays.asList("2"), smsForwardingQueue.peek(2));
+	}
+
+	@Test
+	public void shouldKeepTheRecordsAfterBeingLoadedAgain() {
+		smsForwardingQueue.add("1");
+		smsForwardingQueue.add("2");
+		smsForwardingQueue.remove(1);
+		smsForwardingQueue.add("3");
+
+		SmsForwardingQueue loadedQueue = new SmsForwardingQueue(queueFile);
+
+		assertEquals(Arrays.asList("2", "3"), loadedQueue.peek(10));
+	}
+
+	@Test
+	public void shouldDeleteTheFileOnceEmpty() {
+		smsForwardingQueue.add("1");
+
+		smsForwardingQueue.remove(1);
+
+		assertFalse(queueFile.exists());
+	}
+
+	@Test
+	public void shouldDiscardARecordPartiallyWritten() throws IOException {
+		smsForwardingQueue.add("1");
+		FileOutputStream output = new FileOutputStream(queueFile, true);
+		output.write(new byte[]{0, 10, 'x'});
+		output.close();
+
+		SmsForwardingQueue loadedQueue = new SmsForwardingQueue(queueFile);
+		loadedQueue.add("2");
+
+		assertEquals(Arrays.asList("1", "2"), new SmsForwardingQueue(queueFile).peek(10));
+	}
+}
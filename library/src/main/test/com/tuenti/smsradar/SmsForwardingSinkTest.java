@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import android.os.Handler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsForwardingSink using a local HTTP server as endpoint.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsForwardingSinkTest {
+
+	private static final int BATCH_SIZE = 2;
+	private static final long MAX_BATCH_DELAY_MILLIS = 1000;
+	private static final String ANY_ADDRESS = "+34666666666";
+	private static final String ANY_DATE = "1000";
+
+	private File queueFile;
+	private HttpServer httpServer;
+	private RecordingHttpHandler recordingHttpHandler;
+	private SmsForwardingSink smsForwardingSink;
+
+	@Before
+	public void setUp() throws IOException {
+		queueFile = File.createTempFile("sms_radar_forwarding_queue", null);
+		queueFile.delete();
+		recordingHttpHandler = new RecordingHttpHandler();
+		httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		httpServer.createContext("/sms", recordingHttpHandler);
+		httpServer.start();
+		URL endpoint = new URL("http://127.0.0.1:" + httpServer.getAddress().getPort() + "/sms");
+		smsForwardingSink = new SmsForwardingSink(endpoint, new SmsForwardingQueue(queueFile), new Handler(),
+				BATCH_SIZE, MAX_BATCH_DELAY_MILLIS);
+	}
+
+	@After
+	public void tearDown() {
+		smsForwardingSink.close();
+		httpServer.stop(0);
+		queueFile.delete();
+	}
+
+	@Test
+	public void shouldNotSendTheSmsBeforeTheBatchIsFull() {
+		smsForwardingSink.onSmsReceived(givenSms(1, "Hello"));
+
+		assertEquals(0, recordingHttpHandler.getRequests().size());
+		assertEquals(1, smsForwardingSink.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldSendACompressedBatchOnceTheBatchSizeIsReached() {
+		smsForwardingSink.onSmsReceived(givenSms(1, "Hello"));
+		smsForwardingSink.onSmsSent(givenSms(2, "Bye"));
+
+		List<String> requests = recordingHttpHandler.getRequests();
+		assertEquals(1, requests.size());
+		assertTrue(requests.get(0).startsWith("{\"sms\":[{\"id\":1,"));
+		assertTrue(requests.get(0).contains("\"msg\":\"Bye\""));
+		assertEquals(0, smsForwardingSink.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldSendTheSmsQueuedOnFlush() {
+		smsForwardingSink.onSmsReceived(givenSms(1, "Hello"));
+
+		assertTrue(smsForwardingSink.flush());
+
+		assertEquals(1, recordingHttpHandler.getRequests().size());
+		assertEquals(0, smsForwardingSink.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldKeepTheSmsQueuedIfTheEndpointFails() {
+		recordingHttpHandler.responseCode = 503;
+
+		smsForwardingSink.onSmsReceived(givenSms(1, "Hello"));
+		smsForwardingSink.onSmsReceived(givenSms(2, "Hello again"));
+
+		assertEquals(2, smsForwardingSink.getPendingSmsCount());
+		assertEquals(2, new SmsForwardingQueue(queueFile).size());
+	}
+
+	@Test
+	public void shouldSendTheSmsQueuedOnceTheEndpointRecovers() {
+		recordingHttpHandler.responseCode = 503;
+		smsForwardingSink.onSmsReceived(givenSms(1, "Hello"));
+		smsForwardingSink.onSmsReceived(givenSms(2, "Hello again"));
+		recordingHttpHandler.responseCode = 200;
+
+		assertTrue(smsForwardingSink.flush());
+
+		assertEquals(0, smsForwardingSink.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldDiscardTheBatchesRejectedByTheEndpoint() {
+		recordingHttpHandler.responseCode = 400;
+
+		smsForwardingSink.onSmsReceived(givenSms(1, "Hello"));
+		smsForwardingSink.onSmsReceived(givenSms(2, "Hello again"));
+
+		assertEquals(0, smsForwardingSink.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldNotSendTheSmsIfTheEndpointIsNotReachable() {
+		httpServer.stop(0);
+		smsForwardingSink.onSmsReceived(givenSms(1, "Hello"));
+
+		assertFalse(smsForwardingSink.flush());
+		assertEquals(1, smsForwardingSink.getPendingSmsCount());
+	}
+
+	@Test
+	public void shouldEscapeTheSmsValues() {
+		String json = SmsForwardingSink.toJson(givenSms(1, "\"Quoted\"\nline\\"));
+
+		assertTrue(json.contains("\"msg\":\"\\\"Quoted\\\"\\nline\\\\\""));
+	}
+
+	private Sms givenSms(int smsId, String msg) {
+		return new Sms(smsId, ANY_ADDRESS, ANY_ADDRESS, ANY_DATE, msg, SmsType.RECEIVED, Sms.NO_SUBSCRIPTION);
+	}
+
+	/**
+	 * Endpoint stand-in which records the uncompressed body of every request received.
+	 */
+	private static class RecordingHttpHandler implements HttpHandler {
+
+		private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+		private volatile int responseCode = 200;
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			InputStream input = exchange.getRequestBody();
+			if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+				input = new GZIPInputStream(input);
+			}
+			requests.add(read(input));
+			exchange.sendResponseHeaders(responseCode, -1);
+			exchange.close();
+		}
+
+		List<String> getRequests() {
+			return new ArrayList<String>(requests);
+		}
+
+		private String read(InputStream input) throws IOException {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				output.write(buffer, 0, read);
+			}
+			return output.toString("UTF-8");
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsFreshnessEstimator.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsFreshnessEstimatorTest {
+
+	private static final long MAX_AGE = 5000;
+	private static final long MAX_ADAPTIVE_AGE = 30000;
+	private static final long NOW = 1000000;
+
+	@Test
+	public void shouldConsiderFreshTheSmsNotOlderThanTheMaxAge() {
+		SmsFreshnessEstimator estimator = new SmsFreshnessEstimator(new SmsFreshnessPolicy(MAX_AGE));
+
+		assertTrue(estimator.isFresh(NOW - MAX_AGE, NOW));
+		assertFalse(estimator.isFresh(NOW - MAX_AGE - 1, NOW));
+	}
+
+	@Test
+	public void shouldNotAdaptTheMaxAgeIfThePolicyIsNotAdaptive() {
+		SmsFreshnessEstimator estimator = new SmsFreshnessEstimator(new SmsFreshnessPolicy(MAX_AGE));
+
+		estimator.onSmsNotified(NOW - 4000, NOW);
+
+		assertEquals(MAX_AGE, estimator.getMaxAgeMillis());
+	}
+
+	@Test
+	public void shouldIncreaseTheMaxAgeWhenTheNotificationsAreSlow() {
+		SmsFreshnessEstimator estimator = createAdaptiveEstimator();
+
+		for (int i = 0; i < 10; i++) {
+			estimator.onSmsNotified(NOW - 8000, NOW);
+		}
+
+		assertTrue(estimator.getMaxAgeMillis() > 8000);
+		assertTrue(estimator.isFresh(NOW - 8000, NOW));
+	}
+
+	@Test
+	public void shouldNotIncreaseTheMaxAgeOverTheAdaptiveMaxAge() {
+		SmsFreshnessEstimator estimator = createAdaptiveEstimator();
+
+		estimator.onSmsNotified(NOW - 29000, NOW);
+		estimator.onSmsNotified(NOW - 1000, NOW);
+
+		assertEquals(MAX_ADAPTIVE_AGE, estimator.getMaxAgeMillis());
+	}
+
+	@Test
+	public void shouldIgnoreLatenciesGreaterThanTheAdaptiveMaxAge() {
+		SmsFreshnessEstimator estimator = createAdaptiveEstimator();
+
+		estimator.onSmsNotified(NOW - MAX_ADAPTIVE_AGE * 10, NOW);
+
+		assertEquals(MAX_AGE, estimator.getMaxAgeMillis());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptAnAdaptiveMaxAgeLowerThanTheMaxAge() {
+		new SmsFreshnessPolicy(MAX_AGE, MAX_AGE - 1);
+	}
+
+	private SmsFreshnessEstimator createAdaptiveEstimator() {
+		return new SmsFreshnessEstimator(new SmsFreshnessPolicy(MAX_AGE, MAX_ADAPTIVE_AGE));
+	}
+}
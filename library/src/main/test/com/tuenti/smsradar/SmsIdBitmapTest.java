@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsIdBitmap.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsIdBitmapTest {
+
+	private static final int BIG_MAILBOX_SIZE = 100000;
+	private static final int MAX_BIG_MAILBOX_BYTES = 32 * 1024;
+
+	private SmsIdBitmap smsIdBitmap;
+
+	@Before
+	public void setUp() {
+		smsIdBitmap = new SmsIdBitmap();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptIdsInDescendingOrder() {
+		smsIdBitmap.append(5);
+
+		smsIdBitmap.append(4);
+	}
+
+	@Test
+	public void shouldContainTheIdsAppended() {
+		appendIds(1, 2, 3, 7, 70000, 70001);
+
+		assertTrue(smsIdBitmap.contains(1));
+		assertTrue(smsIdBitmap.contains(3));
+		assertTrue(smsIdBitmap.contains(7));
+		assertTrue(smsIdBitmap.contains(70001));
+		assertEquals(6, smsIdBitmap.size());
+		assertEquals(70001, smsIdBitmap.getLastId());
+	}
+
+	@Test
+	public void shouldNotContainTheIdsNotAppended() {
+		appendIds(1, 2, 3, 7, 70000);
+
+		assertFalse(smsIdBitmap.contains(0));
+		assertFalse(smsIdBitmap.contains(4));
+		assertFalse(smsIdBitmap.contains(8));
+		assertFalse(smsIdBitmap.contains(69999));
+		assertFalse(smsIdBitmap.contains(70002));
+	}
+
+	@Test
+	public void shouldReturnTheIdsNotContainedInOtherBitmap() {
+		appendIds(1, 2, 3, 4, 5, 70000);
+		SmsIdBitmap other = new SmsIdBitmap();
+		other.append(1);
+		other.append(3);
+		other.append(5);
+		other.append(6);
+
+		List<Integer> idsNotContained = getIdsNotIn(other);
+
+		assertEquals(3, idsNotContained.size());
+		assertEquals(Integer.valueOf(2), idsNotContained.get(0));
+		assertEquals(Integer.valueOf(4), idsNotContained.get(1));
+		assertEquals(Integer.valueOf(70000), idsNotContained.get(2));
+	}
+
+	@Test
+	public void shouldKeepTheIdsAfterChangingTheChunkRepresentation() {
+		for (int id = 0; id < 20000; id += 2) {
+			smsIdBitmap.append(id);
+		}
+
+		assertTrue(smsIdBitmap.contains(19998));
+		assertFalse(smsIdBitmap.contains(19999));
+		assertEquals(10000, smsIdBitmap.size());
+		assertEquals(10000, getIdsNotIn(new SmsIdBitmap()).size());
+	}
+
+	@Test
+	public void shouldUseFewMemoryForBigMailboxes() {
+		for (int id = 1; id <= BIG_MAILBOX_SIZE; id++) {
+			if (id % 7 != 0) {
+				smsIdBitmap.append(id);
+			}
+		}
+
+		assertTrue(smsIdBitmap.getSizeInBytes() <= MAX_BIG_MAILBOX_BYTES);
+	}
+
+	private void appendIds(int... ids) {
+		for (int id : ids) {
+			smsIdBitmap.append(id);
+		}
+	}
+
+	private List<Integer> getIdsNotIn(SmsIdBitmap other) {
+		final List<Integer> ids = new LinkedList<Integer>();
+		smsIdBitmap.forEachIdNotIn(other, new SmsIdBitmap.IdCallback() {
+			@Override
+			public void onId(int id) {
+				ids.add(id);
+			}
+		});
+		return ids;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import android.net.Uri;
+
+/**
+ * Test created to check the correctness of SmsIndexer.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsIndexerTest {
+
+	private static final int SAVE_INTERVAL = 2;
+	private static final int PAGE_SIZE = 10;
+	private static final String ANY_ADDRESS = "+34666666666";
+	private static final String ANY_DATE = "1000";
+
+	private File indexFile;
+	private SmsIndexer smsIndexer;
+
+	@Before
+	public void setUp() throws IOException {
+		indexFile = File.createTempFile("sms_radar_index", null);
+		indexFile.delete();
+		smsIndexer = new SmsIndexer(new SmsSearchIndex(), indexFile, SAVE_INTERVAL);
+	}
+
+	@After
+	public void tearDown() {
+		indexFile.delete();
+	}
+
+	@Test
+	public void shouldIndexSmsBody() {
+		smsIndexer.index(givenSms(1, "Your code is 1234"));
+
+		assertArrayEquals(new int[]{1}, smsIndexer.getSmsSearchIndex().search("code", 0, 10));
+	}
+
+	@Test
+	public void shouldNotSaveTheIndexBeforeIndexingSaveIntervalSms() {
+		smsIndexer.index(givenSms(1, "Hello"));
+
+		assertFalse(indexFile.exists());
+	}
+
+	@Test
+	public void shouldSaveTheIndexAfterIndexingSaveIntervalSms() {
+		smsIndexer.index(givenSms(1, "Hello"));
+		smsIndexer.index(givenSms(2, "Hello again"));
+
+		assertEquals(2, SmsIndexer.load(indexFile).size());
+	}
+
+	@Test
+	public void shouldSaveTheSmsNotSavedYetOnFlush() {
+		smsIndexer.index(givenSms(1, "Hello"));
+
+		assertTrue(smsIndexer.flush());
+
+		assertArrayEquals(new int[]{1}, SmsIndexer.load(indexFile).search("hello", 0, 10));
+	}
+
+	@Test
+	public void shouldLoadAnEmptyIndexIfTheFileDoesNotExist() {
+		assertEquals(0, SmsIndexer.load(indexFile).size());
+	}
+
+	@Test
+	public void shouldLoadAnEmptyIndexIfTheFileIsCorrupted() throws IOException {
+		FileOutputStream output = new FileOutputStream(indexFile);
+		output.write(new byte[]{1, 2, 3});
+		output.close();
+
+		assertEquals(0, SmsIndexer.load(indexFile).size());
+	}
+
+	@Test
+	public void shouldNotLoadTheRemovedSms() {
+		smsIndexer.index(givenSms(1, "Hello"));
+		smsIndexer.index(givenSms(2, "Hello again"));
+
+		smsIndexer.remove(1);
+		smsIndexer.remove(2);
+
+		assertEquals(0, SmsIndexer.load(indexFile).size());
+	}
+
+	@Test
+	public void shouldIndexTheSmsInterceptedAfterTheLastSave() {
+		FakeSmsContentProvider fakeSmsContentProvider = givenAFakeSmsContentProvider();
+		Uri smsUri = fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, "Hello");
+		smsIndexer.index(givenSms(getId(smsUri), "Hello"));
+		smsIndexer.flush();
+		int lastSmsIdParsed = getId(fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, "Your code is 1234"));
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, "Not intercepted yet");
+
+		SmsIndexer loadedSmsIndexer = new SmsIndexer(SmsIndexer.load(indexFile), indexFile, SAVE_INTERVAL);
+		loadedSmsIndexer.catchUp(givenASmsQueryPager(), lastSmsIdParsed);
+
+		SmsSearchIndex smsSearchIndex = SmsIndexer.load(indexFile);
+		assertArrayEquals(new int[]{lastSmsIdParsed}, smsSearchIndex.search("code", 0, 10));
+		assertEquals(0, smsSearchIndex.search("intercepted", 0, 10).length);
+		assertEquals(lastSmsIdParsed, smsSearchIndex.getLastSmsId());
+	}
+
+	@Test
+	public void shouldStartANewIndexFromTheLastSmsIntercepted() {
+		FakeSmsContentProvider fakeSmsContentProvider = givenAFakeSmsContentProvider();
+		int lastSmsIdParsed = getId(fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, "Hello"));
+
+		smsIndexer.catchUp(givenASmsQueryPager(), lastSmsIdParsed);
+
+		SmsSearchIndex smsSearchIndex = SmsIndexer.load(indexFile);
+		assertEquals(0, smsSearchIndex.size());
+		assertEquals(lastSmsIdParsed, smsSearchIndex.getLastSmsId());
+	}
+
+	private FakeSmsContentProvider givenAFakeSmsContentProvider() {
+		return FakeSmsContentProvider.register(Robolectric.application.getContentResolver());
+	}
+
+	private SmsQueryPager givenASmsQueryPager() {
+		return new SmsQueryPager(Robolectric.application.getContentResolver(), PAGE_SIZE);
+	}
+
+	private int getId(Uri smsUri) {
+		return Integer.parseInt(smsUri.getLastPathSegment());
+	}
+
+	private Sms givenSms(int smsId, String msg) {
+		return new Sms(smsId, ANY_ADDRESS, ANY_ADDRESS, ANY_DATE, msg, SmsType.RECEIVED, Sms.NO_SUBSCRIPTION);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsKeywordMatcher.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsKeywordMatcherTest {
+
+	private static final String ANY_BODY = "Your verification code is 1234";
+
+	@Test
+	public void shouldNotMatchAnythingWithoutKeywords() {
+		SmsKeywordMatcher smsKeywordMatcher = createMatcher();
+
+		assertTrue(smsKeywordMatcher.match(ANY_BODY).isEmpty());
+	}
+
+	@Test
+	public void shouldNotMatchNullBodies() {
+		SmsKeywordMatcher smsKeywordMatcher = createMatcher("code");
+
+		assertTrue(smsKeywordMatcher.match(null).isEmpty());
+	}
+
+	@Test
+	public void shouldMatchKeywordIgnoringCase() {
+		SmsKeywordMatcher smsKeywordMatcher = createMatcher("VERIFICATION");
+
+		List<SmsKeywordMatch> matches = smsKeywordMatcher.match(ANY_BODY);
+
+		assertEquals(1, matches.size());
+		assertEquals(new SmsKeywordMatch("VERIFICATION", 5, 17), matches.get(0));
+	}
+
+	@Test
+	public void shouldMatchEveryKeywordInOneScan() {
+		SmsKeywordMatcher smsKeywordMatcher = createMatcher("code", "verification", "password");
+
+		List<SmsKeywordMatch> matches = smsKeywordMatcher.match(ANY_BODY);
+
+		assertEquals(2, matches.size());
+		assertEquals(new SmsKeywordMatch("verification", 5, 17), matches.get(0));
+		assertEquals(new SmsKeywordMatch("code", 18, 22), matches.get(1));
+	}
+
+	@Test
+	public void shouldMatchOverlappingKeywords() {
+		SmsKeywordMatcher smsKeywordMatcher = createMatcher("he", "she", "hers");
+
+		List<SmsKeywordMatch> matches = smsKeywordMatcher.match("ushers");
+
+		assertEquals(3, matches.size());
+		assertEquals(new SmsKeywordMatch("she", 1, 4), matches.get(0));
+		assertEquals(new SmsKeywordMatch("he", 2, 4), matches.get(1));
+		assertEquals(new SmsKeywordMatch("hers", 2, 6), matches.get(2));
+	}
+
+	@Test
+	public void shouldMatchRepeatedOccurrences() {
+		SmsKeywordMatcher smsKeywordMatcher = createMatcher("aa");
+
+		List<SmsKeywordMatch> matches = smsKeywordMatcher.match("aaa");
+
+		assertEquals(2, matches.size());
+	}
+
+	private SmsKeywordMatcher createMatcher(String... keywords) {
+		return new SmsKeywordMatcher(Arrays.asList(keywords));
+	}
+}
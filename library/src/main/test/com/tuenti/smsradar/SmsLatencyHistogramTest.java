@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsLatencyHistogram.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsLatencyHistogramTest {
+
+	private SmsLatencyHistogram histogram;
+
+	@Before
+	public void setUp() {
+		histogram = new SmsLatencyHistogram();
+	}
+
+	@Test
+	public void shouldReturnZeroIfNoValueHasBeenRecorded() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	@Test
+	public void shouldReturnTheExactValueForSmallLatencies() {
+		histogram.record(3);
+		histogram.record(5);
+
+		assertEquals(3, histogram.getPercentile(50));
+		assertEquals(5, histogram.getPercentile(99));
+		assertEquals(5, histogram.getMax());
+	}
+
+	@Test
+	public void shouldReturnPercentilesWithABoundedError() {
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000);
+		}
+
+		assertPercentileClose(500000, histogram.getPercentile(50));
+		assertPercentileClose(990000, histogram.getPercentile(99));
+		assertEquals(1000000, histogram.getPercentile(100));
+		assertEquals(1000, histogram.getCount());
+	}
+
+	@Test
+	public void shouldRemoveTheValuesRecordedOnReset() {
+		histogram.record(100);
+
+		histogram.reset();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	private void assertPercentileClose(long expected, long percentile) {
+		assertTrue(percentile >= expected);
+		assertTrue(percentile <= expected + expected / 8);
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load generator created to measure SmsObserver throughput and latency using FakeSmsContentProvider.
+ * <p/>
+ * Each generated sms is inserted in the provider and then SmsObserver is notified like the Android sms content
+ * provider does. The latency of one sms is the time between the insertion and the SmsListener invocation.
+ */
+class SmsLoadGenerator {
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final long NANOS_PER_MILLI = 1000000L;
+	private static final String BODY_PREFIX = "load-";
+
+	private final FakeSmsContentProvider fakeSmsContentProvider;
+	private final SmsObserver smsObserver;
+
+	SmsLoadGenerator(FakeSmsContentProvider fakeSmsContentProvider, SmsObserver smsObserver) {
+		this.fakeSmsContentProvider = fakeSmsContentProvider;
+		this.smsObserver = smsObserver;
+	}
+
+	/**
+	 * Inserts count sms from address at messagesPerSecond rate. Use zero as rate to insert them as fast as possible.
+	 */
+	LoadReport run(int count, int messagesPerSecond, String address) throws InterruptedException {
+		RecordingSmsListener listener = new RecordingSmsListener();
+		SmsListener previousListener = SmsRadar.config.getSmsListener();
+		SmsRadar.setSmsListener(listener);
+		long[] latencies = new long[count];
+		try {
+			long interval = messagesPerSecond > 0 ? NANOS_PER_SECOND / messagesPerSecond : 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				waitUntil(start + i * interval);
+				String body = BODY_PREFIX + i;
+				long insertionTime = System.nanoTime();
+				fakeSmsContentProvider.insertReceivedSms(address, body);
+				smsObserver.onChange(false);
+				Long deliveryTime = listener.deliveryTimes.get(body);
+				latencies[i] = deliveryTime != null ? deliveryTime - insertionTime : -1;
+			}
+			long elapsed = System.nanoTime() - start;
+			return new LoadReport(count, listener.deliveryTimes.size(), elapsed, latencies);
+		} finally {
+			SmsRadar.setSmsListener(previousListener);
+		}
+	}
+
+	private void waitUntil(long time) throws InterruptedException {
+		long remaining = time - System.nanoTime();
+		if (remaining > 0) {
+			Thread.sleep(remaining / NANOS_PER_MILLI, (int) (remaining % NANOS_PER_MILLI));
+		}
+	}
+
+	/**
+	 * Throughput and latency measured during one load generator execution.
+	 */
+	static class LoadReport {
+
+		private final int generated;
+		private final int delivered;
+		private final long elapsedNanos;
+		private final long[] sortedLatencies;
+
+		LoadReport(int generated, int delivered, long elapsedNanos, long[] latencies) {
+			this.generated = generated;
+			this.delivered = delivered;
+			this.elapsedNanos = elapsedNanos;
+			this.sortedLatencies = latencies.clone();
+			Arrays.sort(this.sortedLatencies);
+		}
+
+		int getGenerated() {
+			return generated;
+		}
+
+		int getDelivered() {
+			return delivered;
+		}
+
+		double getThroughput() {
+			return elapsedNanos > 0 ? delivered * (double) NANOS_PER_SECOND / elapsedNanos : 0;
+		}
+
+		long getLatencyPercentileNanos(double percentile) {
+			if (sortedLatencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+			return sortedLatencies[Math.max(0, index)];
+		}
+
+		@Override
+		public String toString() {
+			return "LoadReport{" +
+					"generated=" + generated +
+					", delivered=" + delivered +
+					", throughput=" + getThroughput() + " sms/s" +
+					", p50=" + getLatencyPercentileNanos(50) / NANOS_PER_MILLI + " ms" +
+					", p99=" + getLatencyPercentileNanos(99) / NANOS_PER_MILLI + " ms" +
+					'}';
+		}
+	}
+
+	private static class RecordingSmsListener implements SmsListener {
+
+		private final Map<String, Long> deliveryTimes = new HashMap<String, Long>();
+
+		@Override
+		public void onSmsSent(Sms sms) {
+			record(sms);
+		}
+
+		@Override
+		public void onSmsReceived(Sms sms) {
+			record(sms);
+		}
+
+		private void record(Sms sms) {
+			deliveryTimes.put(sms.getMsg(), System.nanoTime());
+		}
+	}
+}
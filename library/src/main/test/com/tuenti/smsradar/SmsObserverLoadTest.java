@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+
+/**
+ * Test created to measure SmsObserver throughput and latency over a big mailbox using FakeSmsContentProvider.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsObserverLoadTest {
+
+	private static final String SHARED_PREFERENCES_PATH = "load_test";
+	private static final int MAILBOX_SIZE = 100000;
+	private static final int BURST_SIZE = 50;
+	private static final int MESSAGES_PER_SECOND = 50;
+	private static final int AS_FAST_AS_POSSIBLE = 0;
+	private static final String ANY_ADDRESS = "+34600123456";
+	private static final String ANY_BODY = "body";
+	private static final long OLD_DATE = 1;
+	private static final double MIN_THROUGHPUT_RATIO = 0.5;
+	private static final long MAX_P99_LATENCY_NANOS = 1000000000L;
+
+	private SharedPreferences sharedPreferences;
+	private SmsLoadGenerator smsLoadGenerator;
+
+	@Before
+	public void setUp() {
+		ContentResolver contentResolver = Robolectric.application.getContentResolver();
+		FakeSmsContentProvider fakeSmsContentProvider = FakeSmsContentProvider.register(contentResolver);
+		fakeSmsContentProvider.fill(MAILBOX_SIZE, ANY_ADDRESS, ANY_BODY, OLD_DATE);
+		sharedPreferences = Robolectric.application.getSharedPreferences(SHARED_PREFERENCES_PATH,
+				Context.MODE_PRIVATE);
+		SmsStorage smsStorage = new SharedPreferencesSmsStorage(sharedPreferences);
+		SmsCursorParser smsCursorParser = new SmsCursorParser(smsStorage, new TimeProvider());
+		SmsObserver smsObserver = new SmsObserver(contentResolver, new Handler(), smsCursorParser);
+		smsLoadGenerator = new SmsLoadGenerator(fakeSmsContentProvider, smsObserver);
+	}
+
+	@After
+	public void tearDown() {
+		sharedPreferences.edit().clear().commit();
+	}
+
+	@Test
+	public void shouldDeliverEverySmsOfABurst() throws Exception {
+		SmsLoadGenerator.LoadReport report = smsLoadGenerator.run(BURST_SIZE, MESSAGES_PER_SECOND, ANY_ADDRESS);
+
+		assertEquals(BURST_SIZE, report.getDelivered());
+		assertTrue(report.getThroughput() >= MESSAGES_PER_SECOND * MIN_THROUGHPUT_RATIO);
+		assertTrue(report.getLatencyPercentileNanos(99) <= MAX_P99_LATENCY_NANOS);
+	}
+
+	@Test
+	public void shouldDeliverEverySmsGeneratedAsFastAsPossible() throws Exception {
+		SmsLoadGenerator.LoadReport report = smsLoadGenerator.run(BURST_SIZE, AS_FAST_AS_POSSIBLE, ANY_ADDRESS);
+
+		assertEquals(BURST_SIZE, report.getDelivered());
+		assertTrue(report.getThroughput() >= MESSAGES_PER_SECOND * MIN_THROUGHPUT_RATIO);
+		assertTrue(report.getLatencyPercentileNanos(99) <= MAX_P99_LATENCY_NANOS);
+	}
+}
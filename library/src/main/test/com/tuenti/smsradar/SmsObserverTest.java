@@ -115,7 +115,7 @@ public class SmsObserverTest {
 	}
 
 	private void initializeSmsRadar() {
-		SmsRadar.smsListener = mockedSmsListener;
+		SmsRadar.setSmsListener(mockedSmsListener);
 	}
 
 	private void initializeSmsObserver() {
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+
+/**
+ * Test created to check the correctness of SmsPollingWatchdog.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsPollingWatchdogTest {
+
+	private static final String SHARED_PREFERENCES_PATH = "watchdog_test";
+	private static final int PAGE_SIZE = 10;
+	private static final String ANY_ADDRESS = "+34600123456";
+	private static final String ANY_BODY = "body";
+	private static final String MISSED_BODY = "missed";
+
+	private SharedPreferences sharedPreferences;
+	private FakeSmsContentProvider fakeSmsContentProvider;
+	private SmsObserver smsObserver;
+	private SmsPollingWatchdog smsPollingWatchdog;
+	private RecordingSmsListener smsListener;
+
+	@Before
+	public void setUp() {
+		ContentResolver contentResolver = Robolectric.application.getContentResolver();
+		fakeSmsContentProvider = FakeSmsContentProvider.register(contentResolver);
+		sharedPreferences = Robolectric.application.getSharedPreferences(SHARED_PREFERENCES_PATH,
+				Context.MODE_PRIVATE);
+		SmsCursorParser smsCursorParser = new SmsCursorParser(new SharedPreferencesSmsStorage(sharedPreferences),
+				new TimeProvider());
+		SmsQueryPager smsQueryPager = new SmsQueryPager(contentResolver, PAGE_SIZE);
+		SmsDispatcher smsDispatcher = new SmsDispatcher();
+		Handler handler = new Handler();
+		smsObserver = new SmsObserver(handler, smsCursorParser, smsQueryPager, smsDispatcher);
+		smsPollingWatchdog = new SmsPollingWatchdog(handler, smsObserver, smsCursorParser, smsQueryPager,
+				smsDispatcher);
+		smsListener = new RecordingSmsListener();
+		SmsRadar.setSmsListener(smsListener);
+		interceptFirstSms();
+		smsPollingWatchdog.start();
+	}
+
+	@After
+	public void tearDown() {
+		smsPollingWatchdog.stop();
+		SmsRadar.setSmsListener(null);
+		sharedPreferences.edit().clear().commit();
+	}
+
+	@Test
+	public void shouldNotStartPollingIfThereIsNoSmsMissed() {
+		smsPollingWatchdog.check();
+		smsPollingWatchdog.check();
+
+		assertFalse(smsPollingWatchdog.isPolling());
+	}
+
+	@Test
+	public void shouldNotStartPollingIfTheObserverIsNotified() {
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+		smsObserver.onChange(false);
+		smsPollingWatchdog.check();
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+		smsObserver.onChange(false);
+		smsPollingWatchdog.check();
+
+		assertFalse(smsPollingWatchdog.isPolling());
+	}
+
+	@Test
+	public void shouldNotStartPollingAfterTheFirstCheckWithSmsMissed() {
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, MISSED_BODY);
+
+		smsPollingWatchdog.check();
+
+		assertFalse(smsPollingWatchdog.isPolling());
+	}
+
+	@Test
+	public void shouldStartPollingAndInterceptTheSmsMissedAfterTwoChecksWithoutNotifications() {
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, MISSED_BODY);
+		fakeSmsContentProvider.insertSentSms(ANY_ADDRESS, MISSED_BODY);
+
+		smsPollingWatchdog.check();
+		smsPollingWatchdog.check();
+
+		assertTrue(smsPollingWatchdog.isPolling());
+		assertEquals(2, smsListener.intercepted.size());
+		assertEquals(SmsType.RECEIVED, smsListener.intercepted.get(0).getType());
+		assertEquals(SmsType.SENT, smsListener.intercepted.get(1).getType());
+	}
+
+	@Test
+	public void shouldIncreasePollingIntervalIfThereIsNoNewSms() {
+		startPolling();
+
+		smsPollingWatchdog.poll();
+
+		assertEquals(SmsPollingWatchdog.MIN_POLLING_INTERVAL_MILLIS * 2, smsPollingWatchdog.getPollingInterval());
+	}
+
+	@Test
+	public void shouldResetPollingIntervalAfterInterceptingNewSms() {
+		startPolling();
+		smsPollingWatchdog.poll();
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, MISSED_BODY);
+
+		smsPollingWatchdog.poll();
+
+		assertEquals(SmsPollingWatchdog.MIN_POLLING_INTERVAL_MILLIS, smsPollingWatchdog.getPollingInterval());
+	}
+
+	@Test
+	public void shouldStopPollingWhenTheObserverIsNotifiedAgain() {
+		startPolling();
+
+		smsObserver.onChange(false);
+		smsPollingWatchdog.poll();
+
+		assertFalse(smsPollingWatchdog.isPolling());
+	}
+
+	private void interceptFirstSms() {
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+		smsObserver.onChange(false);
+		smsListener.intercepted.clear();
+	}
+
+	private void startPolling() {
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, MISSED_BODY);
+		smsPollingWatchdog.check();
+		smsPollingWatchdog.check();
+	}
+
+	private static class RecordingSmsListener implements SmsListener {
+
+		private final List<Sms> intercepted = new LinkedList<Sms>();
+
+		@Override
+		public void onSmsSent(Sms sms) {
+			intercepted.add(sms);
+		}
+
+		@Override
+		public void onSmsReceived(Sms sms) {
+			intercepted.add(sms);
+		}
+	}
+}
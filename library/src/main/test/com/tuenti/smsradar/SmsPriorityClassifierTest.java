@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of the SmsPriorityClassifier implementations.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsPriorityClassifierTest {
+
+	private static final String ANY_DATE = "123456789";
+	private static final String ANY_BODY = "Your code is 1234";
+
+	@Test
+	public void shouldClassifyShortCodesAsHighPriority() {
+		ShortCodeClassifier classifier = new ShortCodeClassifier();
+
+		assertTrue(classifier.isHighPriority(createSms("12345")));
+		assertTrue(classifier.isHighPriority(createSms("123 456")));
+	}
+
+	@Test
+	public void shouldNotClassifyPhoneNumbersOrAlphanumericSendersAsHighPriority() {
+		ShortCodeClassifier classifier = new ShortCodeClassifier();
+
+		assertFalse(classifier.isHighPriority(createSms("+34600123456")));
+		assertFalse(classifier.isHighPriority(createSms("TUENTI")));
+	}
+
+	@Test
+	public void shouldClassifySmsWithTheKeywordsAsHighPriority() {
+		KeywordClassifier classifier = new KeywordClassifier("CODE");
+		Sms sms = createSms("+34600123456").withKeywordMatches(Arrays.asList(new SmsKeywordMatch("code", 5, 9)));
+
+		assertTrue(classifier.isHighPriority(sms));
+	}
+
+	@Test
+	public void shouldNotClassifySmsWithoutTheKeywordsAsHighPriority() {
+		KeywordClassifier classifier = new KeywordClassifier("code");
+		Sms sms = createSms("+34600123456").withKeywordMatches(Arrays.asList(new SmsKeywordMatch("offer", 0, 5)));
+
+		assertFalse(classifier.isHighPriority(sms));
+	}
+
+	private Sms createSms(String address) {
+		return new Sms(address, ANY_DATE, ANY_BODY, SmsType.RECEIVED);
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsPublisher.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsPublisherTest {
+
+	private static final int BUFFER_SIZE = 2;
+	private static final String ANY_ADDRESS = "address";
+	private static final String OTHER_ADDRESS = "other_address";
+	private static final String FORMATTED_ADDRESS = "+34 600 12 34 56";
+	private static final String NORMALIZED_ADDRESS = "+34600123456";
+	private static final String ANY_DATE = "123456789";
+
+	private SmsPublisher smsPublisher;
+	private RecordingSmsSubscriber smsSubscriber;
+
+	@Before
+	public void setUp() {
+		smsPublisher = new SmsPublisher();
+		smsSubscriber = new RecordingSmsSubscriber();
+	}
+
+	@Test
+	public void shouldNotDeliverSmsIfNotRequested() {
+		subscribe(OverflowPolicy.DROP_OLDEST);
+
+		smsPublisher.publish(createSms(ANY_ADDRESS, "1"));
+
+		assertTrue(smsSubscriber.received.isEmpty());
+	}
+
+	@Test
+	public void shouldDeliverOnlyTheRequestedSms() {
+		subscribe(OverflowPolicy.DROP_OLDEST);
+		Sms firstSms = createSms(ANY_ADDRESS, "1");
+		smsPublisher.publish(firstSms);
+		smsPublisher.publish(createSms(ANY_ADDRESS, "2"));
+
+		smsSubscriber.subscription.request(1);
+
+		assertEquals(1, smsSubscriber.received.size());
+		assertEquals(firstSms, smsSubscriber.received.get(0));
+	}
+
+	@Test
+	public void shouldDeliverPublishedSmsIfAlreadyRequested() {
+		subscribe(OverflowPolicy.DROP_OLDEST);
+		smsSubscriber.subscription.request(1);
+		Sms sms = createSms(ANY_ADDRESS, "1");
+
+		smsPublisher.publish(sms);
+
+		assertEquals(1, smsSubscriber.received.size());
+		assertEquals(sms, smsSubscriber.received.get(0));
+	}
+
+	@Test
+	public void shouldDropOldestSmsIfBufferIsFull() {
+		subscribe(OverflowPolicy.DROP_OLDEST);
+		publishSms("1", "2", "3");
+
+		smsSubscriber.subscription.request(BUFFER_SIZE);
+
+		assertReceivedMessages("2", "3");
+	}
+
+	@Test
+	public void shouldDropNewestSmsIfBufferIsFull() {
+		subscribe(OverflowPolicy.DROP_NEWEST);
+		publishSms("1", "2", "3");
+
+		smsSubscriber.subscription.request(BUFFER_SIZE);
+
+		assertReceivedMessages("1", "2");
+	}
+
+	@Test
+	public void shouldCoalesceSmsWithTheSameAddressIfBufferIsFull() {
+		subscribe(OverflowPolicy.COALESCE_BY_ADDRESS);
+		smsPublisher.publish(createSms(ANY_ADDRESS, "1"));
+		smsPublisher.publish(createSms(OTHER_ADDRESS, "2"));
+		smsPublisher.publish(createSms(ANY_ADDRESS, "3"));
+
+		smsSubscriber.subscription.request(BUFFER_SIZE);
+
+		assertReceivedMessages("2", "3");
+	}
+
+	@Test
+	public void shouldCoalesceSmsWithTheSameNormalizedAddress() {
+		subscribe(OverflowPolicy.COALESCE_BY_ADDRESS);
+		smsPublisher.publish(createSms(FORMATTED_ADDRESS, "1"));
+		smsPublisher.publish(createSms(OTHER_ADDRESS, "2"));
+		smsPublisher.publish(createSms(NORMALIZED_ADDRESS, "3"));
+
+		smsSubscriber.subscription.request(BUFFER_SIZE);
+
+		assertReceivedMessages("2", "3");
+	}
+
+	@Test
+	public void shouldNotifyErrorInsteadOfBlockingTheMainThreadIfBufferIsFull() {
+		subscribe(OverflowPolicy.BLOCK);
+
+		publishSms("1", "2", "3");
+
+		assertTrue(smsSubscriber.error instanceof IllegalStateException);
+		smsSubscriber.subscription.request(BUFFER_SIZE);
+		assertTrue(smsSubscriber.received.isEmpty());
+	}
+
+	@Test
+	public void shouldNotDeliverSmsAfterCancel() {
+		subscribe(OverflowPolicy.DROP_OLDEST);
+		smsSubscriber.subscription.request(1);
+		smsSubscriber.subscription.cancel();
+
+		smsPublisher.publish(createSms(ANY_ADDRESS, "1"));
+
+		assertTrue(smsSubscriber.received.isEmpty());
+	}
+
+	@Test
+	public void shouldNotifyErrorIfRequestedSmsIsNotPositive() {
+		subscribe(OverflowPolicy.DROP_OLDEST);
+
+		smsSubscriber.subscription.request(0);
+
+		assertTrue(smsSubscriber.error instanceof IllegalArgumentException);
+	}
+
+	@Test
+	public void shouldCompleteAfterDeliveringBufferedSms() {
+		subscribe(OverflowPolicy.DROP_OLDEST);
+		publishSms("1");
+
+		smsPublisher.complete();
+		smsSubscriber.subscription.request(1);
+
+		assertReceivedMessages("1");
+		assertTrue(smsSubscriber.completed);
+	}
+
+	private void subscribe(OverflowPolicy overflowPolicy) {
+		smsPublisher.subscribe(smsSubscriber, BUFFER_SIZE, overflowPolicy);
+	}
+
+	private void publishSms(String... messages) {
+		for (String msg : messages) {
+			smsPublisher.publish(createSms(ANY_ADDRESS, msg));
+		}
+	}
+
+	private void assertReceivedMessages(String... messages) {
+		assertEquals(messages.length, smsSubscriber.received.size());
+		for (int i = 0; i < messages.length; i++) {
+			assertEquals(messages[i], smsSubscriber.received.get(i).getMsg());
+		}
+	}
+
+	private Sms createSms(String address, String msg) {
+		return new Sms(address, ANY_DATE, msg, SmsType.RECEIVED);
+	}
+
+	private static class RecordingSmsSubscriber implements SmsSubscriber {
+
+		private final List<Sms> received = new LinkedList<Sms>();
+		private SmsSubscription subscription;
+		private Throwable error;
+		private boolean completed;
+
+		@Override
+		public void onSubscribe(SmsSubscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(Sms sms) {
+			received.add(sms);
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+/**
+ * Test created to check the correctness of SmsQueryPager.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsQueryPagerTest {
+
+	private static final int PAGE_SIZE = 10;
+	private static final int MAILBOX_SIZE = 25;
+	private static final String ANY_ADDRESS = "address";
+	private static final String ANY_BODY = "body";
+	private static final long ANY_DATE = 1;
+	private static final String[] ID_PROJECTION = {"_id"};
+
+	private SmsQueryPager smsQueryPager;
+
+	@Before
+	public void setUp() {
+		ContentResolver contentResolver = Robolectric.application.getContentResolver();
+		FakeSmsContentProvider fakeSmsContentProvider = FakeSmsContentProvider.register(contentResolver);
+		fakeSmsContentProvider.fill(MAILBOX_SIZE, ANY_ADDRESS, ANY_BODY, ANY_DATE);
+		smsQueryPager = new SmsQueryPager(contentResolver, PAGE_SIZE);
+	}
+
+	@Test
+	public void shouldReturnOnlyTheNewestRowsRequested() {
+		Cursor cursor = smsQueryPager.queryNewest(FakeSmsContentProvider.SMS_URI, ID_PROJECTION, 1);
+
+		assertEquals(1, cursor.getCount());
+		cursor.moveToFirst();
+		assertEquals(MAILBOX_SIZE, cursor.getLong(0));
+		cursor.close();
+	}
+
+	@Test
+	public void shouldNotReturnMoreRowsThanThePageSize() {
+		Cursor cursor = smsQueryPager.queryPageAfter(FakeSmsContentProvider.SMS_URI, ID_PROJECTION, 0);
+
+		assertEquals(PAGE_SIZE, cursor.getCount());
+		cursor.close();
+	}
+
+	@Test
+	public void shouldReadEveryRowAfterTheIdFromTheOldestToTheNewest() {
+		List<Long> ids = readIdsAfter(5);
+
+		assertEquals(MAILBOX_SIZE - 5, ids.size());
+		assertEquals(6L, (long) ids.get(0));
+		assertEquals((long) MAILBOX_SIZE, (long) ids.get(ids.size() - 1));
+	}
+
+	@Test
+	public void shouldReadEveryRowBeforeTheIdFromTheNewestToTheOldest() {
+		final List<Long> ids = new ArrayList<Long>();
+
+		smsQueryPager.forEachRowBefore(FakeSmsContentProvider.SMS_URI, ID_PROJECTION, Long.MAX_VALUE,
+				new SmsQueryPager.RowCallback() {
+					@Override
+					public boolean onRow(Cursor cursor) {
+						ids.add(cursor.getLong(0));
+						return true;
+					}
+				});
+
+		assertEquals(MAILBOX_SIZE, ids.size());
+		assertEquals((long) MAILBOX_SIZE, (long) ids.get(0));
+		assertEquals(1L, (long) ids.get(ids.size() - 1));
+	}
+
+	@Test
+	public void shouldStopReadingWhenTheCallbackReturnsFalse() {
+		int rowsRead = smsQueryPager.forEachRowAfter(FakeSmsContentProvider.SMS_URI, ID_PROJECTION, 0,
+				new SmsQueryPager.RowCallback() {
+					@Override
+					public boolean onRow(Cursor cursor) {
+						return false;
+					}
+				});
+
+		assertEquals(1, rowsRead);
+	}
+
+	private List<Long> readIdsAfter(long id) {
+		final List<Long> ids = new ArrayList<Long>();
+		smsQueryPager.forEachRowAfter(FakeSmsContentProvider.SMS_URI, ID_PROJECTION, id,
+				new SmsQueryPager.RowCallback() {
+					@Override
+					public boolean onRow(Cursor cursor) {
+						ids.add(cursor.getLong(0));
+						return true;
+					}
+				});
+		return ids;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+/**
+ * Test created to check the correctness of SmsRadarConfig and how the running components apply a new configuration.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsRadarConfigTest {
+
+	private static final int ANY_PAGE_SIZE = 10;
+	private static final int OTHER_PAGE_SIZE = 3;
+	private static final int MAILBOX_SIZE = 25;
+	private static final String ANY_ADDRESS = "address";
+	private static final String ANY_BODY = "body";
+	private static final long ANY_DATE = 1;
+	private static final String[] ID_PROJECTION = {"_id"};
+	private static final long MAX_AGE = 5000;
+	private static final long OTHER_MAX_AGE = 60000;
+	private static final long NOW = 1000000;
+
+	@After
+	public void tearDown() {
+		SmsRadar.config = SmsRadarConfig.DEFAULT;
+	}
+
+	@Test
+	public void shouldNotModifyTheConfigCopied() {
+		SmsRadarConfig config = SmsRadarConfig.DEFAULT.withPageSize(ANY_PAGE_SIZE);
+
+		SmsRadarConfig copy = config.withPageSize(OTHER_PAGE_SIZE).withPriorityClassifier(new ShortCodeClassifier());
+
+		assertEquals(ANY_PAGE_SIZE, config.getPageSize());
+		assertTrue(config.getPriorityClassifiers().isEmpty());
+		assertEquals(OTHER_PAGE_SIZE, copy.getPageSize());
+		assertEquals(1, copy.getPriorityClassifiers().size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void shouldNotAllowModifyingTheListenersOfAConfig() {
+		SmsRadarConfig config = SmsRadarConfig.DEFAULT.withBatchListener(new AnySmsBatchListener());
+
+		config.getBatchListeners().clear();
+	}
+
+	@Test
+	public void shouldRemoveTheListenersAddedToACopy() {
+		SmsBatchListener smsBatchListener = new AnySmsBatchListener();
+		SmsRadarConfig config = SmsRadarConfig.DEFAULT.withBatchListener(smsBatchListener);
+
+		SmsRadarConfig copy = config.withoutBatchListener(smsBatchListener);
+
+		assertEquals(1, config.getBatchListeners().size());
+		assertTrue(copy.getBatchListeners().isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptNullConfigs() {
+		SmsRadar.setConfig(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptPageSizesLowerThanOne() {
+		SmsRadarConfig.DEFAULT.withPageSize(0);
+	}
+
+	@Test
+	public void shouldReplaceOnlyTheValueConfiguredUsingTheSmsRadarSetters() {
+		SmsRowVisitor smsRowVisitor = new SmsRowVisitor() {
+			@Override
+			public boolean visit(SmsRow row) {
+				return true;
+			}
+		};
+		SmsRadar.setSmsRowVisitor(smsRowVisitor);
+
+		SmsRadar.setPageSize(OTHER_PAGE_SIZE);
+
+		assertSame(smsRowVisitor, SmsRadar.getConfig().getSmsRowVisitor());
+		assertEquals(OTHER_PAGE_SIZE, SmsRadar.getConfig().getPageSize());
+	}
+
+	@Test
+	public void shouldQueryThePageSizeConfiguredWithoutCreatingTheQueryPagerAgain() {
+		ContentResolver contentResolver = Robolectric.application.getContentResolver();
+		FakeSmsContentProvider fakeSmsContentProvider = FakeSmsContentProvider.register(contentResolver);
+		fakeSmsContentProvider.fill(MAILBOX_SIZE, ANY_ADDRESS, ANY_BODY, ANY_DATE);
+		SmsQueryPager smsQueryPager = new SmsQueryPager(contentResolver);
+		SmsRadar.setConfig(SmsRadar.getConfig().withPageSize(ANY_PAGE_SIZE));
+		assertPageSize(ANY_PAGE_SIZE, smsQueryPager);
+
+		SmsRadar.setConfig(SmsRadar.getConfig().withPageSize(OTHER_PAGE_SIZE));
+
+		assertPageSize(OTHER_PAGE_SIZE, smsQueryPager);
+	}
+
+	@Test
+	public void shouldApplyTheFreshnessPolicyConfiguredWithoutCreatingTheEstimatorAgain() {
+		SmsFreshnessEstimator estimator = new SmsFreshnessEstimator();
+		SmsRadar.setFreshnessPolicy(new SmsFreshnessPolicy(MAX_AGE));
+		long smsDate = NOW - MAX_AGE - 1;
+		assertFalse(estimator.isFresh(smsDate, NOW));
+
+		SmsRadar.setFreshnessPolicy(new SmsFreshnessPolicy(OTHER_MAX_AGE));
+
+		assertTrue(estimator.isFresh(smsDate, NOW));
+	}
+
+	@Test
+	public void shouldNotifyTheSmsListenerConfiguredWithoutCreatingTheDispatcherAgain() {
+		SmsDispatcher smsDispatcher = new SmsDispatcher();
+		RecordingSmsListener firstSmsListener = new RecordingSmsListener();
+		RecordingSmsListener secondSmsListener = new RecordingSmsListener();
+		SmsRadar.setSmsListener(firstSmsListener);
+		smsDispatcher.dispatch(createSms(1));
+
+		SmsRadar.setSmsListener(secondSmsListener);
+		smsDispatcher.dispatch(createSms(2));
+
+		assertEquals(1, firstSmsListener.smsReceived.size());
+		assertEquals(1, secondSmsListener.smsReceived.size());
+		assertEquals(2, secondSmsListener.smsReceived.get(0).getId());
+	}
+
+	@Test
+	public void shouldRemoveTheSmsListenerWhenTheServiceIsStopped() {
+		SmsRadar.initializeSmsRadarService(Robolectric.application, new RecordingSmsListener());
+
+		SmsRadar.stopSmsRadarService(Robolectric.application);
+
+		assertNull(SmsRadar.getConfig().getSmsListener());
+	}
+
+	private void assertPageSize(int expectedPageSize, SmsQueryPager smsQueryPager) {
+		Cursor cursor = smsQueryPager.queryPageAfter(FakeSmsContentProvider.SMS_URI, ID_PROJECTION, 0);
+		assertEquals(expectedPageSize, cursor.getCount());
+		cursor.close();
+	}
+
+	private Sms createSms(int id) {
+		return new Sms(id, ANY_ADDRESS, ANY_ADDRESS, String.valueOf(ANY_DATE), ANY_BODY, SmsType.RECEIVED,
+				Sms.NO_SUBSCRIPTION);
+	}
+
+	private static class RecordingSmsListener implements SmsListener {
+
+		private final List<Sms> smsReceived = new LinkedList<Sms>();
+
+		@Override
+		public void onSmsSent(Sms sms) {
+		}
+
+		@Override
+		public void onSmsReceived(Sms sms) {
+			smsReceived.add(sms);
+		}
+	}
+
+	private static class AnySmsBatchListener implements SmsBatchListener {
+
+		@Override
+		public void onSmsBatch(List<Sms> smsBatch) {
+		}
+	}
+}
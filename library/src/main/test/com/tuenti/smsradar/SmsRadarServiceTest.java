@@ -18,6 +18,7 @@ package com.tuenti.smsradar;
 
 import java.util.Date;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,7 +31,11 @@ import org.robolectric.shadows.ShadowIntent;
 import org.robolectric.shadows.ShadowPendingIntent;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,6 +43,7 @@ import android.app.AlarmManager;
 import android.app.PendingIntent;
 import android.content.ContentResolver;
 import android.content.Intent;
+import android.database.ContentObserver;
 import android.net.Uri;
 
 /**
@@ -54,6 +60,7 @@ public class SmsRadarServiceTest {
 	private static final int ANY_START_ID = 0;
 	public static final boolean NOTIFY_FOR_DESCENDANTS = true;
 	private static final Uri CONTENT_SMS_URI = Uri.parse("content://sms");
+	private static final Uri CONTENT_MMS_URI = Uri.parse("content://mms");
 	private static final long ANY_TIME = 4L;
 	private static final long ONE_SECOND = 1000;
 
@@ -65,6 +72,8 @@ public class SmsRadarServiceTest {
 	private AlarmManager mockedAlarmManager;
 	@Mock
 	private TimeProvider mockedTimeProvider;
+	@Mock
+	private SmsPollingWatchdog mockedSmsPollingWatchdog;
 
 	private SmsRadarService smsRadarService;
 
@@ -100,6 +109,49 @@ public class SmsRadarServiceTest {
 		verify(mockedContentResolver).unregisterContentObserver(mockedSmsObserver);
 	}
 
+	@Test
+	public void shouldNotRegisterTheMmsObserverIfTheSmsListenerIsNotAMmsListener() {
+		SmsRadar.setSmsListener(null);
+
+		startSmsInterceptorService();
+
+		verify(mockedContentResolver, never()).registerContentObserver(eq(CONTENT_MMS_URI), anyBoolean(),
+				any(ContentObserver.class));
+	}
+
+	@Test
+	public void shouldRegisterTheMmsObserverWhenTheSmsListenerIsReplacedByAMmsListener() {
+		SmsRadar.setSmsListener(null);
+		startSmsInterceptorService();
+
+		SmsRadar.setSmsListener(new AnyMmsListener());
+
+		verify(mockedContentResolver).registerContentObserver(eq(CONTENT_MMS_URI), eq(NOTIFY_FOR_DESCENDANTS),
+				any(ContentObserver.class));
+	}
+
+	@Test
+	public void shouldStartSmsPollingWatchdog() {
+		startSmsInterceptorService();
+
+		verify(mockedSmsPollingWatchdog).start();
+	}
+
+	@Test
+	public void shouldStopSmsPollingWatchdog() {
+		startSmsInterceptorService();
+		stopSmsInterceptorService();
+
+		verify(mockedSmsPollingWatchdog).stop();
+	}
+
+	@Test
+	public void shouldReportTheTimeToReadyOnceStarted() {
+		startSmsInterceptorService();
+
+		assertTrue(SmsRadar.getTimeToReadyMillis() >= 0);
+	}
+
 	@Test
 	public void shouldRestartServiceUsingAlarmManagerWhenTaskRemoved() {
 		when(mockedTimeProvider.getDate()).thenReturn(new Date(ANY_TIME));
@@ -129,16 +181,43 @@ public class SmsRadarServiceTest {
 	private void startSmsInterceptorService() {
 		smsRadarService.setContentResolver(mockedContentResolver);
 		smsRadarService.setSmsObserver(mockedSmsObserver);
+		smsRadarService.setSmsPollingWatchdog(mockedSmsPollingWatchdog);
 		smsRadarService.setAlarmManager(mockedAlarmManager);
 		smsRadarService.setTimeProvider(mockedTimeProvider);
 		smsRadarService.onStartCommand(ANY_INTENT, ANY_FLAG, ANY_START_ID);
 	}
 
+	@After
+	public void tearDown() {
+		stopSmsInterceptorService();
+		SmsRadar.setSmsListener(null);
+	}
+
 	private void stopSmsInterceptorService() {
 		smsRadarService.setContentResolver(mockedContentResolver);
 		smsRadarService.setSmsObserver(mockedSmsObserver);
+		smsRadarService.setSmsPollingWatchdog(mockedSmsPollingWatchdog);
 		smsRadarService.setAlarmManager(mockedAlarmManager);
 		smsRadarService.setTimeProvider(mockedTimeProvider);
 		smsRadarService.onDestroy();
 	}
+
+	private static class AnyMmsListener implements SmsListener, MmsListener {
+
+		@Override
+		public void onSmsSent(Sms sms) {
+		}
+
+		@Override
+		public void onSmsReceived(Sms sms) {
+		}
+
+		@Override
+		public void onMmsReceived(Mms mms) {
+		}
+
+		@Override
+		public void onMmsSent(Mms mms) {
+		}
+	}
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+
+/**
+ * Replay driver created to reproduce a capture recorded with SmsRadar startCapture method through SmsObserver and
+ * SmsCursorParser using ReplaySmsContentProvider.
+ * <p/>
+ * Notifications are replayed in the recorded order, waiting the recorded time between them divided by the speed
+ * passed as parameter. SmsCursorParser uses the recorded clock, so the freshness of the first sms is evaluated like
+ * in the device. The latency of one notification is the time SmsObserver needs to process it.
+ */
+class SmsReplayDriver {
+
+	static final double AS_FAST_AS_POSSIBLE = 0;
+	static final double ORIGINAL_SPEED = 1;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private final ContentResolver contentResolver;
+	private final SmsStorage smsStorage;
+	private ReplaySmsContentProvider replaySmsContentProvider;
+
+	SmsReplayDriver(ContentResolver contentResolver, SmsStorage smsStorage) {
+		this.contentResolver = contentResolver;
+		this.smsStorage = smsStorage;
+	}
+
+	/**
+	 * Replays the capture stored in the file passed as parameter. Use AS_FAST_AS_POSSIBLE as speed to replay the
+	 * notifications without waiting between them.
+	 */
+	ReplayReport run(File capture, double speed) throws IOException, InterruptedException {
+		SmsCaptureReader reader = new SmsCaptureReader(capture);
+		List<SmsCaptureEvent> events;
+		try {
+			events = reader.readAll();
+		} finally {
+			reader.close();
+		}
+		replaySmsContentProvider = ReplaySmsContentProvider.register(events);
+		RecordedTimeProvider timeProvider = new RecordedTimeProvider(reader.getStartDate());
+		SmsCursorParser smsCursorParser = new SmsCursorParser(smsStorage, timeProvider);
+		SmsObserver smsObserver = new SmsObserver(contentResolver, new Handler(), smsCursorParser);
+		return replay(events, speed, smsObserver, timeProvider);
+	}
+
+	/**
+	 * @return number of recorded queries not requested during the last replay.
+	 */
+	int getPendingQueryCount() {
+		return replaySmsContentProvider.getPendingQueryCount();
+	}
+
+	private ReplayReport replay(List<SmsCaptureEvent> events, double speed, SmsObserver smsObserver,
+			RecordedTimeProvider timeProvider) throws InterruptedException {
+		CountingSmsListener listener = new CountingSmsListener();
+		SmsListener previousListener = SmsRadar.config.getSmsListener();
+		SmsRadar.setSmsListener(listener);
+		try {
+			long[] latencies = new long[countNotifications(events)];
+			int notifications = 0;
+			long start = System.nanoTime();
+			for (SmsCaptureEvent event : events) {
+				if (event.getType() != SmsCaptureEvent.Type.NOTIFICATION) {
+					continue;
+				}
+				if (speed > 0) {
+					waitUntil(start + (long) (event.getElapsedNanos() / speed));
+				}
+				timeProvider.elapsedNanos = event.getElapsedNanos();
+				Uri uri = event.getUri() != null ? Uri.parse(event.getUri()) : null;
+				long notificationTime = System.nanoTime();
+				smsObserver.onChange(false, uri);
+				latencies[notifications++] = System.nanoTime() - notificationTime;
+			}
+			return new ReplayReport(notifications, listener.delivered, System.nanoTime() - start, latencies);
+		} finally {
+			SmsRadar.setSmsListener(previousListener);
+		}
+	}
+
+	private int countNotifications(List<SmsCaptureEvent> events) {
+		int notifications = 0;
+		for (SmsCaptureEvent event : events) {
+			if (event.getType() == SmsCaptureEvent.Type.NOTIFICATION) {
+				notifications++;
+			}
+		}
+		return notifications;
+	}
+
+	private void waitUntil(long time) throws InterruptedException {
+		long remaining = time - System.nanoTime();
+		if (remaining > 0) {
+			Thread.sleep(remaining / NANOS_PER_MILLI, (int) (remaining % NANOS_PER_MILLI));
+		}
+	}
+
+	/**
+	 * Throughput and latency measured during one replay.
+	 */
+	static class ReplayReport {
+
+		private final int notifications;
+		private final int delivered;
+		private final long elapsedNanos;
+		private final long[] sortedLatencies;
+
+		ReplayReport(int notifications, int delivered, long elapsedNanos, long[] latencies) {
+			this.notifications = notifications;
+			this.delivered = delivered;
+			this.elapsedNanos = elapsedNanos;
+			this.sortedLatencies = latencies.clone();
+			Arrays.sort(this.sortedLatencies);
+		}
+
+		int getNotifications() {
+			return notifications;
+		}
+
+		int getDelivered() {
+			return delivered;
+		}
+
+		double getThroughput() {
+			return elapsedNanos > 0 ? notifications * (double) NANOS_PER_SECOND / elapsedNanos : 0;
+		}
+
+		long getLatencyPercentileNanos(double percentile) {
+			if (sortedLatencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+			return sortedLatencies[Math.max(0, index)];
+		}
+
+		@Override
+		public String toString() {
+			return "ReplayReport{" +
+					"notifications=" + notifications +
+					", delivered=" + delivered +
+					", throughput=" + getThroughput() + " notifications/s" +
+					", p50=" + getLatencyPercentileNanos(50) / NANOS_PER_MILLI + " ms" +
+					", p99=" + getLatencyPercentileNanos(99) / NANOS_PER_MILLI + " ms" +
+					'}';
+		}
+	}
+
+	/**
+	 * TimeProvider returning the device date when the notification being replayed was recorded.
+	 */
+	private static class RecordedTimeProvider extends TimeProvider {
+
+		private final long startDate;
+		private long elapsedNanos;
+
+		RecordedTimeProvider(long startDate) {
+			this.startDate = startDate;
+		}
+
+		@Override
+		public Date getDate() {
+			return new Date(startDate + elapsedNanos / NANOS_PER_MILLI);
+		}
+	}
+
+	private static class CountingSmsListener implements SmsListener {
+
+		private int delivered;
+
+		@Override
+		public void onSmsSent(Sms sms) {
+			delivered++;
+		}
+
+		@Override
+		public void onSmsReceived(Sms sms) {
+			delivered++;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Handler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check that a capture recorded with SmsCaptureRecorder is reproduced by SmsReplayDriver.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsReplayDriverTest {
+
+	private static final String CAPTURE_PREFERENCES_PATH = "capture_test";
+	private static final String REPLAY_PREFERENCES_PATH = "replay_test";
+	private static final String ANY_ADDRESS = "+34666666666";
+	private static final int SMS_CAPTURED = 3;
+	private static final double MIN_THROUGHPUT = 100;
+	private static final long MAX_P99_LATENCY_NANOS = 1000000000L;
+
+	private ContentResolver contentResolver;
+	private SharedPreferences capturePreferences;
+	private SharedPreferences replayPreferences;
+	private File captureFile;
+
+	@Before
+	public void setUp() throws IOException {
+		contentResolver = Robolectric.application.getContentResolver();
+		capturePreferences = Robolectric.application.getSharedPreferences(CAPTURE_PREFERENCES_PATH,
+				Context.MODE_PRIVATE);
+		replayPreferences = Robolectric.application.getSharedPreferences(REPLAY_PREFERENCES_PATH,
+				Context.MODE_PRIVATE);
+		captureFile = File.createTempFile("sms_radar_capture", null);
+	}
+
+	@After
+	public void tearDown() {
+		SmsRadar.stopCapture();
+		capturePreferences.edit().clear().commit();
+		replayPreferences.edit().clear().commit();
+		captureFile.delete();
+	}
+
+	@Test
+	public void shouldDeliverEverySmsCaptured() throws Exception {
+		givenSmsCaptured(SMS_CAPTURED);
+		SmsReplayDriver smsReplayDriver = new SmsReplayDriver(contentResolver,
+				new SharedPreferencesSmsStorage(replayPreferences));
+
+		SmsReplayDriver.ReplayReport report = smsReplayDriver.run(captureFile, SmsReplayDriver.AS_FAST_AS_POSSIBLE);
+
+		assertEquals(SMS_CAPTURED, report.getNotifications());
+		assertEquals(SMS_CAPTURED, report.getDelivered());
+		assertTrue(report.getThroughput() >= MIN_THROUGHPUT);
+		assertTrue(report.getLatencyPercentileNanos(99) <= MAX_P99_LATENCY_NANOS);
+	}
+
+	@Test
+	public void shouldRequestEveryQueryCaptured() throws Exception {
+		givenSmsCaptured(SMS_CAPTURED);
+		SmsReplayDriver smsReplayDriver = new SmsReplayDriver(contentResolver,
+				new SharedPreferencesSmsStorage(replayPreferences));
+
+		smsReplayDriver.run(captureFile, SmsReplayDriver.AS_FAST_AS_POSSIBLE);
+
+		assertEquals(0, smsReplayDriver.getPendingQueryCount());
+	}
+
+	private void givenSmsCaptured(int smsCount) throws IOException {
+		FakeSmsContentProvider fakeSmsContentProvider = FakeSmsContentProvider.register(null);
+		SmsCursorParser smsCursorParser = new SmsCursorParser(new SharedPreferencesSmsStorage(capturePreferences),
+				new TimeProvider());
+		SmsObserver smsObserver = new SmsObserver(contentResolver, new Handler(), smsCursorParser);
+		SmsRadar.startCapture(captureFile);
+		for (int i = 0; i < smsCount; i++) {
+			Uri uri = fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, "Sms " + i);
+			smsObserver.onChange(false, uri);
+		}
+		SmsRadar.stopCapture();
+	}
+}
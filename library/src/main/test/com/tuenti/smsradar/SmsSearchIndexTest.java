@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsSearchIndex.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsSearchIndexTest {
+
+	private static final long ANY_DATE = 1000;
+	private static final long OTHER_DATE = 2000;
+	private static final int NO_LIMIT = Integer.MAX_VALUE;
+
+	private SmsSearchIndex smsSearchIndex;
+
+	@Before
+	public void setUp() {
+		smsSearchIndex = new SmsSearchIndex();
+	}
+
+	@Test
+	public void shouldTokenizeLowerCasingLettersAndDigits() {
+		assertEquals(Arrays.asList("your", "code", "is", "1234"), SmsSearchIndex.tokenize("Your CODE is: 1234."));
+	}
+
+	@Test
+	public void shouldTruncateLongTerms() {
+		String longTerm = "abcdefghijklmnopqrstuvwxyzabcdefghij";
+
+		String term = SmsSearchIndex.tokenize(longTerm).get(0);
+
+		assertEquals(SmsSearchIndex.MAX_TERM_LENGTH, term.length());
+	}
+
+	@Test
+	public void shouldNotIndexSmsWithoutId() {
+		assertFalse(smsSearchIndex.add(Sms.NO_ID, ANY_DATE, "Hello"));
+
+		assertEquals(0, smsSearchIndex.size());
+	}
+
+	@Test
+	public void shouldFindSmsContainingTermIgnoringCase() {
+		smsSearchIndex.add(1, ANY_DATE, "Your code is 1234");
+		smsSearchIndex.add(2, ANY_DATE, "Dinner tonight?");
+
+		int[] smsIds = smsSearchIndex.search("CODE", 0, NO_LIMIT);
+
+		assertArrayEquals(new int[]{1}, smsIds);
+	}
+
+	@Test
+	public void shouldReturnEmptyResultIfTermIsNotIndexed() {
+		smsSearchIndex.add(1, ANY_DATE, "Your code is 1234");
+
+		assertEquals(0, smsSearchIndex.search("pin", 0, NO_LIMIT).length);
+	}
+
+	@Test
+	public void shouldFindSmsContainingEveryTerm() {
+		smsSearchIndex.add(1, ANY_DATE, "Your bank code is 1234");
+		smsSearchIndex.add(2, ANY_DATE, "Your code is 5678");
+		smsSearchIndex.add(3, ANY_DATE, "Bank holiday tomorrow");
+
+		int[] smsIds = smsSearchIndex.search("bank code", 0, NO_LIMIT);
+
+		assertArrayEquals(new int[]{1}, smsIds);
+	}
+
+	@Test
+	public void shouldFindSmsContainingTermsStartingWithPrefix() {
+		smsSearchIndex.add(1, ANY_DATE, "Verification code");
+		smsSearchIndex.add(2, ANY_DATE, "Please verify your account");
+		smsSearchIndex.add(3, ANY_DATE, "Very good");
+
+		int[] smsIds = smsSearchIndex.search("verif*", 0, NO_LIMIT);
+
+		assertArrayEquals(new int[]{2, 1}, smsIds);
+	}
+
+	@Test
+	public void shouldReturnSmsFromTheLastIndexedToTheFirstOne() {
+		smsSearchIndex.add(1, ANY_DATE, "Hello");
+		smsSearchIndex.add(5, ANY_DATE, "Hello again");
+		smsSearchIndex.add(3, ANY_DATE, "Hello from the other SIM");
+
+		int[] smsIds = smsSearchIndex.search("hello", 0, NO_LIMIT);
+
+		assertArrayEquals(new int[]{3, 5, 1}, smsIds);
+	}
+
+	@Test
+	public void shouldIgnoreSmsOlderThanSinceDate() {
+		smsSearchIndex.add(1, ANY_DATE, "Hello");
+		smsSearchIndex.add(2, OTHER_DATE, "Hello");
+
+		int[] smsIds = smsSearchIndex.search("hello", OTHER_DATE, NO_LIMIT);
+
+		assertArrayEquals(new int[]{2}, smsIds);
+	}
+
+	@Test
+	public void shouldReturnUpToLimitSms() {
+		for (int smsId = 1; smsId <= 10; smsId++) {
+			smsSearchIndex.add(smsId, ANY_DATE, "Hello");
+		}
+
+		int[] smsIds = smsSearchIndex.search("hello", 0, 3);
+
+		assertArrayEquals(new int[]{10, 9, 8}, smsIds);
+	}
+
+	@Test
+	public void shouldStoreEveryTermOnlyOncePerSms() {
+		smsSearchIndex.add(1, ANY_DATE, "ha ha ha ha");
+
+		assertEquals(1, smsSearchIndex.getTermCount());
+		assertEquals(1, smsSearchIndex.getPostingsSizeInBytes());
+	}
+
+	@Test
+	public void shouldEncodeConsecutiveSmsUsingOneBytePerSms() {
+		for (int smsId = 1; smsId <= 1000; smsId++) {
+			smsSearchIndex.add(smsId, ANY_DATE, "Hello");
+		}
+
+		assertEquals(1000, smsSearchIndex.getPostingsSizeInBytes());
+		assertEquals(1000, smsSearchIndex.search("hello", 0, NO_LIMIT).length);
+	}
+
+	@Test
+	public void shouldDecodeDeltasLongerThanOneByte() {
+		smsSearchIndex.add(1, ANY_DATE, "rare word");
+		for (int smsId = 2; smsId <= 20000; smsId++) {
+			smsSearchIndex.add(smsId, ANY_DATE, "common");
+		}
+		smsSearchIndex.add(20001, ANY_DATE, "rare again");
+
+		int[] smsIds = smsSearchIndex.search("rare", 0, NO_LIMIT);
+
+		assertArrayEquals(new int[]{20001, 1}, smsIds);
+	}
+
+	@Test
+	public void shouldReadTheIndexWritten() throws IOException {
+		smsSearchIndex.add(1, ANY_DATE, "Your code is 1234");
+		smsSearchIndex.add(2, OTHER_DATE, "Your code is 5678");
+
+		SmsSearchIndex readSmsSearchIndex = writeAndRead(smsSearchIndex);
+
+		assertEquals(2, readSmsSearchIndex.size());
+		assertArrayEquals(new int[]{2}, readSmsSearchIndex.search("code", OTHER_DATE, NO_LIMIT));
+		assertArrayEquals(new int[]{1}, readSmsSearchIndex.search("123*", 0, NO_LIMIT));
+	}
+
+	@Test
+	public void shouldKeepIndexingAfterReadingTheIndex() throws IOException {
+		smsSearchIndex.add(1, ANY_DATE, "Your code is 1234");
+
+		SmsSearchIndex readSmsSearchIndex = writeAndRead(smsSearchIndex);
+		readSmsSearchIndex.add(2, ANY_DATE, "Your code is 5678");
+
+		assertArrayEquals(new int[]{2, 1}, readSmsSearchIndex.search("code", 0, NO_LIMIT));
+	}
+
+	@Test
+	public void shouldNotFindTheRemovedSms() {
+		smsSearchIndex.add(1, ANY_DATE, "Your code is 1234");
+		smsSearchIndex.add(2, ANY_DATE, "Your code is 5678");
+
+		assertTrue(smsSearchIndex.remove(1));
+
+		assertArrayEquals(new int[]{2}, smsSearchIndex.search("code", 0, NO_LIMIT));
+		assertEquals(1, smsSearchIndex.size());
+	}
+
+	@Test
+	public void shouldDiscardThePostingsOfTheRemovedSmsWhenCompacted() {
+		smsSearchIndex.add(1, ANY_DATE, "Your code is 1234");
+		smsSearchIndex.add(2, ANY_DATE, "Dinner tonight?");
+		smsSearchIndex.add(3, ANY_DATE, "Your code is 5678");
+		smsSearchIndex.remove(2);
+
+		smsSearchIndex.compact();
+
+		assertEquals(5, smsSearchIndex.getTermCount());
+		assertArrayEquals(new int[]{3, 1}, smsSearchIndex.search("code", 0, NO_LIMIT));
+		assertEquals(0, smsSearchIndex.search("dinner", 0, NO_LIMIT).length);
+	}
+
+	@Test
+	public void shouldNotWriteTheRemovedSms() throws IOException {
+		smsSearchIndex.add(1, ANY_DATE, "Your code is 1234");
+		smsSearchIndex.add(2, ANY_DATE, "Your code is 5678");
+		smsSearchIndex.remove(2);
+
+		SmsSearchIndex readSmsSearchIndex = writeAndRead(smsSearchIndex);
+
+		assertEquals(1, readSmsSearchIndex.size());
+		assertArrayEquals(new int[]{1}, readSmsSearchIndex.search("code", 0, NO_LIMIT));
+	}
+
+	@Test
+	public void shouldReadTheLastSmsIdIndexed() throws IOException {
+		smsSearchIndex.add(1, ANY_DATE, "Hello");
+		smsSearchIndex.skipTo(5);
+
+		SmsSearchIndex readSmsSearchIndex = writeAndRead(smsSearchIndex);
+
+		assertEquals(5, readSmsSearchIndex.getLastSmsId());
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldNotReadDataWithoutIndexFormat() throws IOException {
+		byte[] data = new byte[]{1, 2, 3, 4, 5, 6, 7, 8};
+
+		SmsSearchIndex.readFrom(new DataInputStream(new ByteArrayInputStream(data)));
+	}
+
+	@Test
+	public void shouldNotFindAnySmsUsingQueryWithoutTerms() {
+		smsSearchIndex.add(1, ANY_DATE, "Hello");
+
+		assertTrue(smsSearchIndex.search(" * ", 0, NO_LIMIT).length == 0);
+	}
+
+	private SmsSearchIndex writeAndRead(SmsSearchIndex smsSearchIndex) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		smsSearchIndex.writeTo(new DataOutputStream(bytes));
+		return SmsSearchIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+
+/**
+ * Test created to check the correctness of SmsStatusTracker.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsStatusTrackerTest {
+
+	private static final int WINDOW_SIZE = 3;
+	private static final int PAGE_SIZE = 10;
+	private static final String ANY_ADDRESS = "+34600123456";
+	private static final String ANY_BODY = "body";
+	private static final int TYPE_SENT = 2;
+	private static final int TYPE_OUTBOX = 4;
+	private static final int STATUS_COMPLETE = 0;
+	private static final int STATUS_PENDING = 32;
+	private static final long THREAD_ID = 1;
+
+	private FakeSmsContentProvider fakeSmsContentProvider;
+	private SmsStatusTracker smsStatusTracker;
+	private RecordingSmsStatusListener smsStatusListener;
+
+	@Before
+	public void setUp() {
+		ContentResolver contentResolver = Robolectric.application.getContentResolver();
+		fakeSmsContentProvider = FakeSmsContentProvider.register(contentResolver);
+		SmsQueryPager smsQueryPager = new SmsQueryPager(contentResolver, PAGE_SIZE);
+		smsStatusTracker = new SmsStatusTracker(smsQueryPager, new SmsDispatcher(), WINDOW_SIZE);
+		smsStatusListener = new RecordingSmsStatusListener();
+		SmsRadar.setSmsListener(smsStatusListener);
+		SmsRadar.smsThreadCache.clear();
+	}
+
+	@After
+	public void tearDown() {
+		SmsRadar.setSmsListener(null);
+		SmsRadar.smsThreadCache.clear();
+	}
+
+	@Test
+	public void shouldNotNotifyNewSms() {
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+
+		smsStatusTracker.onChange(null);
+
+		assertTrue(smsStatusListener.changes.isEmpty());
+	}
+
+	@Test
+	public void shouldNotifyTypeChangesOfOutgoingSms() {
+		Uri smsUri = insertOutgoingSms();
+		smsStatusTracker.onChange(smsUri);
+
+		updateSms(smsUri, FakeSmsContentProvider.TYPE, TYPE_SENT);
+		smsStatusTracker.onChange(smsUri);
+
+		assertEquals(1, smsStatusListener.changes.size());
+		SmsStatusChange change = smsStatusListener.changes.get(0);
+		assertEquals(SmsType.OUTBOX, change.getPreviousType());
+		assertEquals(SmsType.SENT, change.getType());
+	}
+
+	@Test
+	public void shouldNotifyDeliveryStatusChangesWithoutTheChangedUri() {
+		Uri smsUri = insertOutgoingSms();
+		updateSms(smsUri, FakeSmsContentProvider.STATUS, STATUS_PENDING);
+		smsStatusTracker.onChange(null);
+
+		updateSms(smsUri, FakeSmsContentProvider.STATUS, STATUS_COMPLETE);
+		smsStatusTracker.onChange(null);
+
+		assertEquals(1, smsStatusListener.changes.size());
+		SmsStatusChange change = smsStatusListener.changes.get(0);
+		assertEquals(SmsDeliveryStatus.PENDING, change.getPreviousStatus());
+		assertEquals(SmsDeliveryStatus.COMPLETE, change.getStatus());
+	}
+
+	@Test
+	public void shouldNotifyReadFlagChanges() {
+		Uri smsUri = fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+		smsStatusTracker.onChange(smsUri);
+
+		updateSms(smsUri, FakeSmsContentProvider.READ, 1);
+		smsStatusTracker.onChange(smsUri);
+
+		assertEquals(1, smsStatusListener.changes.size());
+		assertTrue(smsStatusListener.changes.get(0).isRead());
+	}
+
+	@Test
+	public void shouldTrackOnlyTheSmsInsideTheWindow() {
+		for (int i = 0; i < WINDOW_SIZE * 2; i++) {
+			fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+		}
+
+		smsStatusTracker.onChange(null);
+
+		assertEquals(WINDOW_SIZE, smsStatusTracker.size());
+	}
+
+	@Test
+	public void shouldAppendTheNewSmsDiscardingTheOldestOnes() {
+		Uri oldestSmsUri = insertOutgoingSms();
+		smsStatusTracker.onChange(oldestSmsUri);
+		Uri newestSmsUri = null;
+		for (int i = 0; i < WINDOW_SIZE; i++) {
+			newestSmsUri = insertOutgoingSms();
+		}
+		smsStatusTracker.onChange(newestSmsUri);
+
+		updateSms(oldestSmsUri, FakeSmsContentProvider.TYPE, TYPE_SENT);
+		updateSms(newestSmsUri, FakeSmsContentProvider.TYPE, TYPE_SENT);
+		smsStatusTracker.onChange(oldestSmsUri);
+		smsStatusTracker.onChange(newestSmsUri);
+
+		assertEquals(WINDOW_SIZE, smsStatusTracker.size());
+		assertEquals(1, smsStatusListener.changes.size());
+		assertEquals(getId(newestSmsUri), smsStatusListener.changes.get(0).getSmsId());
+	}
+
+	@Test
+	public void shouldStopTrackingDeletedSms() {
+		Uri smsUri = insertOutgoingSms();
+		smsStatusTracker.onChange(smsUri);
+		insertOutgoingSms();
+		smsStatusTracker.onChange(null);
+
+		fakeSmsContentProvider.delete(smsUri, null, null);
+		smsStatusTracker.onChange(smsUri);
+
+		assertEquals(1, smsStatusTracker.size());
+	}
+
+	@Test
+	public void shouldNotTrackSmsIfTheListenerIsNotAnSmsStatusListener() {
+		SmsRadar.setSmsListener(null);
+		fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+
+		smsStatusTracker.onChange(null);
+
+		assertEquals(0, smsStatusTracker.size());
+	}
+
+	@Test
+	public void shouldUpdateTheUnreadCountOfTheThreadIfTheListenerIsNotAnSmsStatusListener() {
+		SmsRadar.setSmsListener(null);
+		Uri smsUri = fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+		SmsRadar.smsThreadCache.update(new Sms(getId(smsUri), THREAD_ID, ANY_ADDRESS, ANY_ADDRESS, "0", ANY_BODY,
+				SmsType.RECEIVED, Sms.NO_SUBSCRIPTION));
+		smsStatusTracker.onChange(smsUri);
+
+		updateSms(smsUri, FakeSmsContentProvider.READ, 1);
+		smsStatusTracker.onChange(smsUri);
+
+		assertEquals(0, SmsRadar.smsThreadCache.get(THREAD_ID).getUnreadCount());
+	}
+
+	@Test
+	public void shouldRemoveTheDeletedSmsFromTheUnreadSmsOfTheThread() {
+		Uri smsUri = fakeSmsContentProvider.insertReceivedSms(ANY_ADDRESS, ANY_BODY);
+		SmsRadar.smsThreadCache.update(new Sms(getId(smsUri), THREAD_ID, ANY_ADDRESS, ANY_ADDRESS, "0", ANY_BODY,
+				SmsType.RECEIVED, Sms.NO_SUBSCRIPTION));
+		smsStatusTracker.onChange(smsUri);
+
+		fakeSmsContentProvider.delete(smsUri, null, null);
+		smsStatusTracker.onChange(smsUri);
+
+		assertEquals(0, SmsRadar.smsThreadCache.get(THREAD_ID).getUnreadCount());
+	}
+
+	private Uri insertOutgoingSms() {
+		ContentValues values = new ContentValues();
+		values.put(FakeSmsContentProvider.ADDRESS, ANY_ADDRESS);
+		values.put(FakeSmsContentProvider.BODY, ANY_BODY);
+		values.put(FakeSmsContentProvider.TYPE, TYPE_OUTBOX);
+		return fakeSmsContentProvider.insert(FakeSmsContentProvider.SMS_URI, values);
+	}
+
+	private int getId(Uri smsUri) {
+		return Integer.parseInt(smsUri.getLastPathSegment());
+	}
+
+	private void updateSms(Uri smsUri, String column, int value) {
+		ContentValues values = new ContentValues();
+		values.put(column, value);
+		fakeSmsContentProvider.update(smsUri, values, null, null);
+	}
+
+	private static class RecordingSmsStatusListener implements SmsListener, SmsStatusListener {
+
+		private final List<SmsStatusChange> changes = new LinkedList<SmsStatusChange>();
+
+		@Override
+		public void onSmsSent(Sms sms) {
+		}
+
+		@Override
+		public void onSmsReceived(Sms sms) {
+		}
+
+		@Override
+		public void onSmsStatusChanged(SmsStatusChange smsStatusChange) {
+			changes.add(smsStatusChange);
+		}
+	}
+}
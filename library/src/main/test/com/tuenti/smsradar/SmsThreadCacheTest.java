@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test created to check the correctness of SmsThreadCache.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsThreadCacheTest {
+
+	private static final int CAPACITY = 2;
+	private static final long THREAD_ONE = 1;
+	private static final long THREAD_TWO = 2;
+	private static final long THREAD_THREE = 3;
+	private static final String ANY_ADDRESS = "+34666666666";
+	private static final String OTHER_ADDRESS = "+34777777777";
+
+	private SmsThreadCache smsThreadCache;
+
+	@Before
+	public void setUp() {
+		smsThreadCache = new SmsThreadCache(CAPACITY);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptZeroCapacity() {
+		new SmsThreadCache(0);
+	}
+
+	@Test
+	public void shouldIgnoreSmsWithoutThread() {
+		SmsThread smsThread = smsThreadCache.update(givenSms(1, Sms.NO_THREAD, ANY_ADDRESS, 1000, SmsType.RECEIVED));
+
+		assertNull(smsThread);
+		assertEquals(0, smsThreadCache.size());
+	}
+
+	@Test
+	public void shouldKeepTheLastSmsOfTheThread() {
+		Sms lastSms = givenSms(2, THREAD_ONE, ANY_ADDRESS, 2000, SmsType.SENT);
+		smsThreadCache.update(givenSms(1, THREAD_ONE, ANY_ADDRESS, 1000, SmsType.RECEIVED));
+		smsThreadCache.update(lastSms);
+
+		assertSame(lastSms, smsThreadCache.get(THREAD_ONE).getLastSms());
+	}
+
+	@Test
+	public void shouldCountTheReceivedSmsAsUnread() {
+		smsThreadCache.update(givenSms(1, THREAD_ONE, ANY_ADDRESS, 1000, SmsType.RECEIVED));
+		smsThreadCache.update(givenSms(2, THREAD_ONE, ANY_ADDRESS, 2000, SmsType.SENT));
+		smsThreadCache.update(givenSms(3, THREAD_ONE, ANY_ADDRESS, 3000, SmsType.RECEIVED));
+
+		assertEquals(2, smsThreadCache.get(THREAD_ONE).getUnreadCount());
+	}
+
+	@Test
+	public void shouldDecrementTheUnreadCountWhenAnSmsIsMarkedAsRead() {
+		smsThreadCache.update(givenSms(1, THREAD_ONE, ANY_ADDRESS, 1000, SmsType.RECEIVED));
+		smsThreadCache.update(givenSms(2, THREAD_ONE, ANY_ADDRESS, 2000, SmsType.RECEIVED));
+
+		SmsThread smsThread = smsThreadCache.markAsRead(1);
+
+		assertEquals(1, smsThread.getUnreadCount());
+		assertNull(smsThreadCache.markAsRead(1));
+	}
+
+	@Test
+	public void shouldNotCountTheSmsAlreadyReadAsUnread() {
+		smsThreadCache.update(givenReadSms(1, THREAD_ONE, ANY_ADDRESS, 1000));
+
+		assertEquals(0, smsThreadCache.get(THREAD_ONE).getUnreadCount());
+	}
+
+	@Test
+	public void shouldDecrementTheUnreadCountWhenAnUnreadSmsIsRemoved() {
+		smsThreadCache.update(givenSms(1, THREAD_ONE, ANY_ADDRESS, 1000, SmsType.RECEIVED));
+		smsThreadCache.update(givenSms(2, THREAD_ONE, ANY_ADDRESS, 2000, SmsType.RECEIVED));
+
+		SmsThread smsThread = smsThreadCache.remove(1);
+
+		assertEquals(1, smsThread.getUnreadCount());
+		assertNull(smsThreadCache.remove(1));
+	}
+
+	@Test
+	public void shouldCollectTheThreadParticipants() {
+		smsThreadCache.update(givenSms(1, THREAD_ONE, ANY_ADDRESS, 1000, SmsType.RECEIVED));
+		smsThreadCache.update(givenSms(2, THREAD_ONE, OTHER_ADDRESS, 2000, SmsType.RECEIVED));
+		smsThreadCache.update(givenSms(3, THREAD_ONE, ANY_ADDRESS, 3000, SmsType.RECEIVED));
+
+		assertEquals(Arrays.asList(ANY_ADDRESS, OTHER_ADDRESS), smsThreadCache.get(THREAD_ONE).getParticipants());
+	}
+
+	@Test
+	public void shouldEvictTheLeastRecentlyUsedThread() {
+		smsThreadCache.update(givenSms(1, THREAD_ONE, ANY_ADDRESS, 1000, SmsType.RECEIVED));
+		smsThreadCache.update(givenSms(2, THREAD_TWO, ANY_ADDRESS, 2000, SmsType.RECEIVED));
+		smsThreadCache.get(THREAD_ONE);
+
+		smsThreadCache.update(givenSms(3, THREAD_THREE, ANY_ADDRESS, 3000, SmsType.RECEIVED));
+
+		assertEquals(CAPACITY, smsThreadCache.size());
+		assertNull(smsThreadCache.get(THREAD_TWO));
+	}
+
+	@Test
+	public void shouldReturnTheThreadsWithTheNewestSmsFirst() {
+		smsThreadCache.update(givenSms(1, THREAD_ONE, ANY_ADDRESS, 2000, SmsType.RECEIVED));
+		smsThreadCache.update(givenSms(2, THREAD_TWO, ANY_ADDRESS, 1000, SmsType.RECEIVED));
+
+		List<SmsThread> recentThreads = smsThreadCache.recent(1);
+
+		assertEquals(1, recentThreads.size());
+		assertEquals(THREAD_ONE, recentThreads.get(0).getThreadId());
+	}
+
+	private Sms givenSms(int smsId, long threadId, String address, long date, SmsType type) {
+		return new Sms(smsId, threadId, address, address, String.valueOf(date), "body", type, Sms.NO_SUBSCRIPTION);
+	}
+
+	private Sms givenReadSms(int smsId, long threadId, String address, long date) {
+		return new Sms(smsId, threadId, address, address, String.valueOf(date), "body", SmsType.RECEIVED,
+				Sms.NO_SUBSCRIPTION, Collections.<SmsKeywordMatch>emptyList(), true);
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) Tuenti Technologies S.L. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuenti.smsradar;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test created to check the correctness of SmsTracer.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SmsTracerTest {
+
+	private static final int ANY_CAPACITY = 8;
+	private static final String EMPTY_TRACE = "{\"traceEvents\":[],\"displayTimeUnit\":\"ms\"}";
+
+	@Test
+	public void shouldNotRecordEventsIfDisabled() throws IOException {
+		SmsTracer smsTracer = SmsTracer.DISABLED;
+
+		smsTracer.begin(SmsTraceStage.PARSE);
+		smsTracer.end(SmsTraceStage.PARSE);
+
+		assertEquals(0, smsTracer.getEventCount());
+		assertEquals(EMPTY_TRACE, write(smsTracer));
+	}
+
+	@Test
+	public void shouldWriteTheEventsRecordedUsingTheChromeTraceFormat() throws IOException {
+		SmsTracer smsTracer = new SmsTracer(ANY_CAPACITY);
+
+		smsTracer.begin(SmsTraceStage.PROVIDER_QUERY);
+		smsTracer.end(SmsTraceStage.PROVIDER_QUERY);
+
+		String trace = write(smsTracer);
+		assertTrue(trace.startsWith("{\"traceEvents\":[{\"name\":\"provider_query\""));
+		assertTrue(trace.contains("{\"name\":\"provider_query\",\"cat\":\"smsradar\",\"ph\":\"B\""));
+		assertTrue(trace.contains("{\"name\":\"provider_query\",\"cat\":\"smsradar\",\"ph\":\"E\""));
+		assertTrue(trace.contains("\"tid\":" + Thread.currentThread().getId()));
+	}
+
+	@Test
+	public void shouldKeepOnlyTheNewestEventsWhenTheBufferIsFull() throws IOException {
+		SmsTracer smsTracer = new SmsTracer(2);
+
+		smsTracer.begin(SmsTraceStage.PARSE);
+		smsTracer.end(SmsTraceStage.PARSE);
+		smsTracer.begin(SmsTraceStage.LISTENER);
+		smsTracer.end(SmsTraceStage.LISTENER);
+
+		String trace = write(smsTracer);
+		assertEquals(4, smsTracer.getEventCount());
+		assertFalse(trace.contains("parse"));
+		assertTrue(trace.contains("listener"));
+	}
+
+	@Test
+	public void shouldRecordTheEventsOfEveryThread() throws Exception {
+		final SmsTracer smsTracer = new SmsTracer(1024);
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 100; j++) {
+						smsTracer.begin(SmsTraceStage.DISPATCH);
+						smsTracer.end(SmsTraceStage.DISPATCH);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(800, smsTracer.getEventCount());
+		assertEquals(800, write(smsTracer).split("\"name\"").length - 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptACapacityLowerThanOne() {
+		new SmsTracer(0);
+	}
+
+	private String write(SmsTracer smsTracer) throws IOException {
+		StringWriter writer = new StringWriter();
+		smsTracer.writeTo(writer);
+		return writer.toString();
+	}
+}